@@ -0,0 +1,112 @@
+package com.dump.service;
+
+import com.dump.service.caching.CacheRegionFactory;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.util.Map;
+
+
+/**
+ * Hibernate second-level entity and query cache for Users, User lookups and the immutable Dump keys. Regions
+ * are LRU with a maximum entry count and a time to live, sized by dump.cache.[region].max-entries and
+ * dump.cache.[region].ttl (seconds). Disabled with dump.cache.enabled=false.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Value("${dump.cache.users.max-entries:10000}")
+    private int userEntries;
+
+    // bounds how far behind a cached User's view count can fall
+    @Value("${dump.cache.users.ttl:300}")
+    private long userTtl;
+
+    @Value("${dump.cache.user-queries.max-entries:10000}")
+    private int userQueryEntries;
+
+    @Value("${dump.cache.user-queries.ttl:300}")
+    private long userQueryTtl;
+
+    @Value("${dump.cache.dump-keys.max-entries:100000}")
+    private int dumpKeyEntries;
+
+    @Value("${dump.cache.dump-keys.ttl:3600}")
+    private long dumpKeyTtl;
+
+
+    /**
+     * Region factory handed to Hibernate as an instance, so its regions can be published as metrics
+     * @return  CacheRegionFactory
+     */
+    @Bean
+    public CacheRegionFactory cacheRegionFactory() {
+        net.sf.ehcache.config.Configuration configuration = new net.sf.ehcache.config.Configuration()
+                .name("dump-" + Integer.toHexString(System.identityHashCode(this)))
+                .updateCheck(false)
+                .defaultCache(region("default", 1000, 300))
+                .cache(region("users", userEntries, userTtl))
+                .cache(region("user-queries", userQueryEntries, userQueryTtl))
+                .cache(region("dump-keys", dumpKeyEntries, dumpKeyTtl))
+                .cache(region("dump-key-ids", dumpKeyEntries, dumpKeyTtl))
+                .cache(region(StandardQueryCache.class.getName(), 1000, 300))
+                // query results are checked against these, they must outlive every query region
+                .cache(region(UpdateTimestampsCache.REGION_NAME, 0, 0).eternal(true));
+
+        return new CacheRegionFactory(configuration);
+    }
+
+
+    /**
+     * Enables the second-level cache on the entity manager factory before it is built. Static so it doesn't
+     * pull the configuration in early.
+     * @param beanFactory   Bean factory to get the region factory from
+     * @param enabled       FALSE to run without the cache
+     * @return  BeanPostProcessor
+     */
+    @Bean
+    public static BeanPostProcessor entityCachePostProcessor(BeanFactory beanFactory,
+                                                             @Value("${dump.cache.enabled:true}") boolean enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if(bean instanceof LocalContainerEntityManagerFactoryBean) {
+                    Map<String, Object> properties = ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap();
+
+                    properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, String.valueOf(enabled));
+                    properties.put(AvailableSettings.USE_QUERY_CACHE, String.valueOf(enabled));
+
+                    if(enabled) {
+                        properties.put(AvailableSettings.CACHE_REGION_FACTORY, beanFactory.getBean(CacheRegionFactory.class));
+                    }
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                return bean;
+            }
+        };
+    }
+
+
+    private static CacheConfiguration region(String name, int maxEntries, long ttl) {
+        return new CacheConfiguration()
+                .name(name)
+                .maxElementsInMemory(maxEntries)
+                .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU)
+                .timeToLiveSeconds(ttl)
+                .statistics(true);
+    }
+}
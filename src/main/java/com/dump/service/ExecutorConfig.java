@@ -0,0 +1,76 @@
+package com.dump.service;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.executors.BoundedScheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * Thread pools for the separate workload classes. Each pool is bounded, rejects work it can't queue and
+ * drains on shutdown.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${dump.executors.drain-timeout:30000}")
+    private long drainTimeout;
+
+    @Value("${dump.executors.scheduling.threads:2}")
+    private int schedulingThreads;
+
+    @Value("${dump.executors.scheduling.queue:64}")
+    private int schedulingQueue;
+
+    @Value("${dump.executors.persistence.threads:16}")
+    private int persistenceThreads;
+
+    @Value("${dump.executors.persistence.queue:256}")
+    private int persistenceQueue;
+
+    @Value("${dump.executors.compute.threads:0}")
+    private int computeThreads;
+
+    @Value("${dump.executors.compute.queue:64}")
+    private int computeQueue;
+
+
+    /**
+     * Runs @Scheduled jobs, found by name by the scheduling infrastructure
+     * @return  BoundedScheduler
+     */
+    @Bean(destroyMethod = "shutdownGracefully")
+    public BoundedScheduler taskScheduler() {
+        return new BoundedScheduler("scheduling", schedulingThreads, schedulingQueue, drainTimeout);
+    }
+
+    /**
+     * Adjusts the concurrency limit every few milliseconds, on its own thread so slow @Scheduled jobs can't
+     * delay it while the database is under load
+     * @return  BoundedScheduler
+     */
+    @Bean(destroyMethod = "shutdownGracefully")
+    public BoundedScheduler admissionScheduler() {
+        return new BoundedScheduler("admission", 1, 4, drainTimeout);
+    }
+
+    /**
+     * Runs blocking database work. Sized for the connection pool rather than the CPU count.
+     * @return  BoundedExecutor
+     */
+    @Bean(destroyMethod = "shutdownGracefully")
+    public BoundedExecutor persistenceExecutor() {
+        return new BoundedExecutor("persistence", persistenceThreads, persistenceQueue, drainTimeout);
+    }
+
+    /**
+     * Runs CPU bound work such as image resizing and search. Defaults to one thread per core.
+     * @return  BoundedExecutor
+     */
+    @Bean(destroyMethod = "shutdownGracefully")
+    public BoundedExecutor computeExecutor() {
+        int threads = computeThreads > 0 ? computeThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedExecutor("compute", threads, computeQueue, drainTimeout);
+    }
+}
@@ -0,0 +1,57 @@
+package com.dump.service;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.fastpath.FastPathHandler;
+import com.dump.service.fastpath.FastPathServer;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.utils.DefaultAvatar;
+import com.dump.service.views.ViewCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * Optional NIO listener on a separate port serving raw Dump downloads and avatars without going through
+ * Spring MVC. Enabled with dump.fastpath.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "dump.fastpath.enabled", havingValue = "true")
+public class FastPathConfig {
+
+    @Autowired
+    private CoalescingLoader loader;
+
+    @Autowired
+    private ViewCounter viewCounter;
+
+    @Autowired
+    private DefaultAvatar defaultAvatar;
+
+    @Autowired
+    @Qualifier("persistenceExecutor")
+    private BoundedExecutor persistenceExecutor;
+
+    @Value("${dump.fastpath.port:8081}")
+    private int port;
+
+    @Value("${dump.fastpath.idle-timeout:30000}")
+    private long idleTimeout;
+
+    @Value("${dump.fastpath.max-connections:10000}")
+    private int maxConnections;
+
+
+    /**
+     * Fast path listener, sharing the loader, view counter and persistence pool with the Spring app
+     * @return  FastPathServer
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FastPathServer fastPathServer() {
+        FastPathHandler handler = new FastPathHandler(loader, viewCounter, defaultAvatar);
+        return new FastPathServer(port, handler, persistenceExecutor, idleTimeout, maxConnections);
+    }
+}
@@ -0,0 +1,68 @@
+package com.dump.service;
+
+import com.dump.service.tracing.QueryTraceFilter;
+import com.dump.service.tracing.TracingDataSource;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+
+/**
+ * Per-request JDBC statement tracing. Every DataSource is wrapped so statements are counted and timed, and
+ * requests over the thresholds are logged with their statement shapes. Disabled with
+ * dump.query-trace.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "dump.query-trace.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryTraceConfig {
+
+    @Value("${dump.query-trace.headers:false}")
+    private boolean headers;
+
+    @Value("${dump.query-trace.max-queries:8}")
+    private int maxQueries;
+
+    @Value("${dump.query-trace.max-time:100}")
+    private long maxTime;
+
+    @Value("${dump.query-trace.max-repeats:4}")
+    private int maxRepeats;
+
+
+    /**
+     * Wraps DataSources in a TracingDataSource. Static so it doesn't pull the configuration in early.
+     * @return  BeanPostProcessor
+     */
+    @Bean
+    public static BeanPostProcessor tracingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if(bean instanceof DataSource && !(bean instanceof TracingDataSource)) {
+                    return new TracingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+
+    /**
+     * Request filter starting a trace per request
+     * @return  QueryTraceFilter
+     */
+    @Bean
+    public QueryTraceFilter queryTraceFilter() {
+        return new QueryTraceFilter(headers, maxQueries, maxTime, maxRepeats);
+    }
+}
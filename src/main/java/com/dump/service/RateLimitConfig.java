@@ -0,0 +1,64 @@
+package com.dump.service;
+
+import com.dump.service.ratelimit.RateLimit;
+import com.dump.service.ratelimit.RateLimitFilter;
+import com.dump.service.ratelimit.TokenBuckets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * Per-client rate limits on adding Dumps, logging in and searching. Each limit is a sustained rate per second
+ * and a burst, e.g. dump.rate-limit.search.rate and dump.rate-limit.search.burst. The bucket table takes 16
+ * bytes per client, dump.rate-limit.clients of them. Disabled with dump.rate-limit.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "dump.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    @Value("${dump.rate-limit.clients:1048576}")
+    private int clients;
+
+    @Value("${dump.rate-limit.stripes:64}")
+    private int stripes;
+
+    @Value("${dump.rate-limit.add.rate:0.5}")
+    private double addRate;
+
+    @Value("${dump.rate-limit.add.burst:20}")
+    private int addBurst;
+
+    @Value("${dump.rate-limit.login.rate:0.2}")
+    private double loginRate;
+
+    @Value("${dump.rate-limit.login.burst:10}")
+    private int loginBurst;
+
+    @Value("${dump.rate-limit.search.rate:2}")
+    private double searchRate;
+
+    @Value("${dump.rate-limit.search.burst:30}")
+    private int searchBurst;
+
+
+    /**
+     * Request filter enforcing the limits
+     * @return  RateLimitFilter
+     */
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        RateLimitFilter filter = new RateLimitFilter(new TokenBuckets(clients, stripes));
+
+        RateLimit add = new RateLimit("add", addRate, addBurst);
+
+        // live Dumps count as added Dumps
+        filter.limit("POST", "/api/dumps/add", add);
+        filter.limit("POST", "/api/dumps/live", add);
+        filter.limit("GET", "/api/users/login", new RateLimit("login", loginRate, loginBurst));
+        filter.limit("GET", "/api/dumps/search", new RateLimit("search", searchRate, searchBurst));
+
+        return filter;
+    }
+}
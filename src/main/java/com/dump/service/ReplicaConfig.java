@@ -0,0 +1,159 @@
+package com.dump.service;
+
+import com.dump.service.routing.Replica;
+import com.dump.service.routing.ReplicaRouting;
+import com.dump.service.routing.ReplicaRoutingDataSource;
+import com.dump.service.routing.ReplicaSet;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Read replicas. Read-only transactions go to the replicas listed in dump.replicas.urls, everything else to
+ * the primary configured by spring.datasource.*. Only active when replicas are listed.
+ *
+ * Replicas are checked every dump.replicas.check-interval milliseconds and skipped while they fail or lag more
+ * than dump.replicas.max-lag milliseconds, as reported by dump.replicas.lag-query (SHOW SLAVE STATUS for
+ * MySQL). Reads by a user or of a Dump within dump.replicas.sticky-window milliseconds of a write go to the
+ * primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "dump.replicas.urls")
+public class ReplicaConfig {
+
+    @Value("${dump.replicas.urls}")
+    private String[] urls;
+
+    @Value("${dump.replicas.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${dump.replicas.password:${spring.datasource.password:}}")
+    private String password;
+
+    @Value("${dump.replicas.driver-class-name:${spring.datasource.driver-class-name:}}")
+    private String driverClassName;
+
+    @Value("${dump.replicas.max-active:16}")
+    private int maxActive;
+
+    @Value("${dump.replicas.max-lag:5000}")
+    private long maxLag;
+
+    @Value("${dump.replicas.lag-query:}")
+    private String lagQuery;
+
+    @Value("${dump.replicas.check-timeout:2}")
+    private int checkTimeout;
+
+
+    /**
+     * Connection pools and health of the replicas
+     * @return  ReplicaSet
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet() {
+        List<Replica> replicas = new ArrayList<>();
+
+        for(int i = 0; i < urls.length; i++) {
+            org.apache.tomcat.jdbc.pool.DataSource pool = new org.apache.tomcat.jdbc.pool.DataSource();
+            pool.setName("replica-" + i);
+            pool.setUrl(urls[i].trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            if(!driverClassName.isEmpty()) {
+                pool.setDriverClassName(driverClassName);
+            }
+            pool.setMaxActive(maxActive);
+            pool.setMaxIdle(maxActive);
+            // fail over to the primary quickly rather than queueing behind a dead replica
+            pool.setMaxWait(1000);
+            pool.setTestOnBorrow(true);
+            pool.setValidationQuery("SELECT 1");
+            pool.setValidationInterval(1000);
+            pool.setDefaultReadOnly(true);
+
+            replicas.add(new Replica("replica-" + i, pool));
+        }
+
+        return new ReplicaSet(replicas, maxLag, lagQuery, checkTimeout);
+    }
+
+
+    /**
+     * Routes the primary DataSource. Static so it doesn't pull the configuration in early.
+     * @param beanFactory   Bean factory to get the replicas from
+     * @return  BeanPostProcessor
+     */
+    @Bean
+    public static RoutingPostProcessor replicaRoutingPostProcessor(BeanFactory beanFactory) {
+        return new RoutingPostProcessor(beanFactory);
+    }
+
+
+    /**
+     * Clears primary pins left on container threads by synchronous handlers
+     * @return  Filter
+     */
+    @Bean
+    public OncePerRequestFilter replicaRoutingFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                try {
+                    chain.doFilter(request, response);
+                }
+                finally {
+                    ReplicaRouting.reset();
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Wraps the primary DataSource in a routing one. Ordered, so it runs before the tracing wrapper, which then
+     * traces replica statements too.
+     */
+    public static class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+        private final BeanFactory beanFactory;
+
+        RoutingPostProcessor(BeanFactory beanFactory) {
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if(bean instanceof DataSource && beanName.equals("dataSource")) {
+                return ReplicaRoutingDataSource.lazy((DataSource) bean, beanFactory.getBean(ReplicaSet.class));
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.dump.service;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.repositories.UserShardRepository;
+import com.dump.service.sharding.Shard;
+import com.dump.service.sharding.ShardRebalancer;
+import com.dump.service.sharding.ShardRoutingDataSource;
+import com.dump.service.sharding.ShardSchema;
+import com.dump.service.sharding.ShardSet;
+import com.dump.service.sharding.ShardingAspect;
+import com.dump.service.sharding.UserShards;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Dump shards. Dumps are spread over the databases listed in dump.shards.urls by consistent hashing of their
+ * public ID, while Users, revisions and the Dump ID sequence stay in the home database configured by
+ * spring.datasource.* (and its read replicas). Only active when shards are listed.
+ *
+ * Shards are named shard-0, shard-1, ... in the order listed, and the names place them on the hash ring, so
+ * new shards must be appended. After changing the list, turn on dump.shards.fallback-reads on every node and
+ * start one node with dump.shards.rebalance=true to move the Dumps to their new shards.
+ */
+@Configuration
+@ConditionalOnProperty(name = "dump.shards.urls")
+public class ShardConfig {
+
+    @Value("${dump.shards.urls}")
+    private String[] urls;
+
+    @Value("${dump.shards.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${dump.shards.password:${spring.datasource.password:}}")
+    private String password;
+
+    @Value("${dump.shards.driver-class-name:${spring.datasource.driver-class-name:}}")
+    private String driverClassName;
+
+    @Value("${dump.shards.max-active:16}")
+    private int maxActive;
+
+    @Value("${dump.shards.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${dump.shards.create-schema:true}")
+    private boolean createSchema;
+
+    @Value("${dump.shards.threads:0}")
+    private int threads;
+
+    @Value("${dump.shards.queue:256}")
+    private int queue;
+
+    @Value("${dump.shards.timeout:5000}")
+    private long timeout;
+
+    @Value("${dump.shards.fallback-reads:false}")
+    private boolean fallbackReads;
+
+    @Value("${dump.shards.rebalance-batch:500}")
+    private int rebalanceBatch;
+
+    @Value("${dump.executors.drain-timeout:30000}")
+    private long drainTimeout;
+
+
+    /**
+     * Connection pools of the shards and the ring placing Dumps on them
+     * @return  ShardSet
+     */
+    @Bean(destroyMethod = "close")
+    public ShardSet shardSet() {
+        List<Shard> shards = new ArrayList<>();
+
+        for(int i = 0; i < urls.length; i++) {
+            org.apache.tomcat.jdbc.pool.DataSource pool = new org.apache.tomcat.jdbc.pool.DataSource();
+            pool.setName("shard-" + i);
+            pool.setUrl(urls[i].trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            if(!driverClassName.isEmpty()) {
+                pool.setDriverClassName(driverClassName);
+            }
+            pool.setMaxActive(maxActive);
+            pool.setMaxIdle(maxActive);
+            pool.setTestOnBorrow(true);
+            pool.setValidationQuery("SELECT 1");
+            pool.setValidationInterval(1000);
+
+            if(createSchema) {
+                ShardSchema.migrate(pool);
+            }
+
+            shards.add(new Shard("shard-" + i, pool));
+        }
+
+        return new ShardSet(shards, virtualNodes);
+    }
+
+
+    /**
+     * Runs the queries gathered from several shards. Defaults to four threads per shard.
+     * @return  BoundedExecutor
+     */
+    @Bean(destroyMethod = "shutdownGracefully")
+    public BoundedExecutor shardExecutor() {
+        return new BoundedExecutor("shards", threads > 0 ? threads : 4 * urls.length, queue, drainTimeout);
+    }
+
+
+    /**
+     * Index of the shards holding each User's Dumps
+     * @param repository    Index storage
+     * @return  UserShards
+     */
+    @Bean
+    public UserShards userShards(UserShardRepository repository) {
+        return new UserShards(repository, shardSet());
+    }
+
+
+    /**
+     * Routes DumpRepository calls to the shards
+     * @param userShards    Index of the shards holding each User's Dumps
+     * @param executor      Shard executor
+     * @return  ShardingAspect
+     */
+    @Bean
+    public ShardingAspect shardingAspect(UserShards userShards, @Qualifier("shardExecutor") BoundedExecutor executor) {
+        return new ShardingAspect(shardSet(), userShards, executor, timeout, fallbackReads);
+    }
+
+
+    /**
+     * Moves Dumps to the shards the ring places them on
+     * @param userShards    Index of the shards holding each User's Dumps
+     * @param dataSource    Shard routing DataSource
+     * @return  ShardRebalancer
+     */
+    @Bean
+    public ShardRebalancer shardRebalancer(UserShards userShards, DataSource dataSource) {
+        return new ShardRebalancer(shardSet(), userShards, dataSource, rebalanceBatch);
+    }
+
+
+    /**
+     * Rebalances the shards once the application has started
+     * @param rebalancer    ShardRebalancer
+     * @return  ApplicationRunner
+     */
+    @Bean
+    @ConditionalOnProperty(name = "dump.shards.rebalance", havingValue = "true")
+    public ApplicationRunner shardRebalanceRunner(ShardRebalancer rebalancer) {
+        return args -> rebalancer.rebalance();
+    }
+
+
+    /**
+     * Routes the home DataSource. Static so it doesn't pull the configuration in early.
+     * @return  BeanPostProcessor
+     */
+    @Bean
+    public static RoutingPostProcessor shardRoutingPostProcessor() {
+        return new RoutingPostProcessor();
+    }
+
+
+    /**
+     * Wraps the home DataSource in a shard routing one. Runs after the replica routing wrapper, so statements
+     * routed to the home database still go to its replicas, and before the tracing wrapper, which then traces
+     * shard statements too.
+     */
+    public static class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if(bean instanceof DataSource && beanName.equals("dataSource")) {
+                return ShardRoutingDataSource.lazy((DataSource) bean);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE + 1;
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package com.dump.service;
 
+import com.dump.service.assets.StaticAssetCache;
+import com.dump.service.assets.StaticAssetHandler;
+import com.dump.service.serialization.Serialization;
+import com.dump.service.serialization.SmileHttpMessageConverter;
+import com.dump.service.serialization.StreamingJsonHttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
-import java.util.concurrent.Executor;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -19,31 +31,67 @@ import java.util.concurrent.Executor;
 public class WebConfig extends WebMvcConfigurerAdapter {
 
 
+    @Value("${dump.static.location:static}")
+    private String staticLocation;
+
+
     /**
-     * Adds resource handler which serves Angular base page from a static folder external to the JAR
-     * @param registry
+     * In-memory cache of the Angular bundle in the static folder external to the JAR
+     * @return  StaticAssetCache
+     */
+    @Bean
+    public StaticAssetCache staticAssetCache() {
+        return new StaticAssetCache(Paths.get(staticLocation));
+    }
+
+    /**
+     * Maps every path not handled by a controller to the in-memory static assets, in place of a resource handler
+     * @return  SimpleUrlHandlerMapping
+     */
+    @Bean
+    public SimpleUrlHandlerMapping staticAssetHandlerMapping() {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping();
+        mapping.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        mapping.setUrlMap(Collections.singletonMap("/**", new StaticAssetHandler(staticAssetCache())));
+        return mapping;
+    }
+
+    /**
+     * Replaces the default JSON converter with one that streams through the shared ObjectMapper, stops the
+     * String converter from sending Accept-Charset, and adds the binary Smile converter last so JSON stays
+     * the default
+     * @param converters    Configured message converters
      */
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/**").addResourceLocations("file:static/");//.setCachePeriod(31556926);
-        // TODO: Enable cache for production
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for(int i = 0; i < converters.size(); i++) {
+            if(converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                converters.set(i, new StreamingJsonHttpMessageConverter(objectMapper()));
+            }
+            else if(converters.get(i) instanceof StringHttpMessageConverter) {
+                // listing every installed charset on each String response costs milliseconds and ~4KB of headers
+                ((StringHttpMessageConverter) converters.get(i)).setWriteAcceptCharset(false);
+            }
+        }
+
+        converters.add(new SmileHttpMessageConverter(Serialization.createSmileMapper()));
     }
 
     /**
-     * Required to find internal resources
-     * @return InternalResourceViewResolver
+     * Shared, pre-configured ObjectMapper
+     * @return  ObjectMapper
      */
     @Bean
-    public InternalResourceViewResolver defaultViewResolver() {
-        return new InternalResourceViewResolver();
+    public ObjectMapper objectMapper() {
+        return Serialization.createMapper();
     }
 
     /**
-     * Here to clear "Could not find default TaskScheduler bean"
-     * @return  SimpleAsyncTaskExecutor
+     * Required to find internal resources
+     * @return InternalResourceViewResolver
      */
     @Bean
-    public Executor taskExecutor() {
-        return new SimpleAsyncTaskExecutor();
+    public InternalResourceViewResolver defaultViewResolver() {
+        return new InternalResourceViewResolver();
     }
 }
\ No newline at end of file
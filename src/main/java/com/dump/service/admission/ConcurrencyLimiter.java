@@ -0,0 +1,262 @@
+package com.dump.service.admission;
+
+import com.dump.service.executors.BoundedScheduler;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.annotation.PostConstruct;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Adaptive limit on the requests in flight on the persistence path, from being queued for the persistence
+ * executor until their handler returns. Requests over the share of the limit their priority may fill are
+ * turned away at once rather than queued, see {@link com.dump.service.executors.AsyncResponses}.
+ *
+ * The limit follows the latency of the Dump and User repository calls. Every dump.concurrency.window
+ * milliseconds the mean latency of the window is compared with its long-term average: while they match the
+ * limit grows by about its square root, and as the window gets slower than the tolerance allows, the limit
+ * shrinks in proportion (a gradient limit). Calls failing for lack of database capacity, such as timeouts or
+ * no free connection, cut the limit by a tenth. The long-term average moves slowly, so a database which gets
+ * slower is met with a smaller limit rather than taken as the new normal.
+ *
+ * Requests are admitted once, not per repository call, so a handler is never turned away halfway through.
+ * The limit is adjusted on the admission scheduler's own thread, which the @Scheduled jobs don't share.
+ */
+@Aspect
+@Component
+public class ConcurrencyLimiter implements MetricSource {
+
+    // latency may reach this multiple of the long-term average before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    // windows the long-term average spans
+    private static final int LONG_WINDOWS = 100;
+    private static final int MIN_SAMPLES = 10;
+
+    @Value("${dump.concurrency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dump.concurrency.initial-limit:32}")
+    private int initialLimit;
+
+    @Value("${dump.concurrency.min-limit:4}")
+    private int minLimit;
+
+    @Value("${dump.concurrency.max-limit:256}")
+    private int maxLimit;
+
+    @Value("${dump.concurrency.window:100}")
+    private long window;
+
+    // not set when constructed outside Spring, the limit is then only adjusted by calling adjust()
+    @Autowired(required = false)
+    @Qualifier("admissionScheduler")
+    private BoundedScheduler scheduler;
+
+    private volatile double limit;
+    private volatile double longLatency;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder[] rejected = new LongAdder[Priority.values().length];
+
+
+    @PostConstruct
+    public void init() {
+        limit = initialLimit;
+
+        for(int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+
+        if(enabled && scheduler != null) {
+            scheduler.scheduleWithFixedDelay(this::adjust, window, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Admits a request if requests of its priority may still fill the limit
+     * @param priority  Request priority
+     * @return  Permit to release once the request leaves the persistence path, null if it was turned away
+     */
+    public Permit tryAcquire(Priority priority) {
+        if(!enabled) {
+            return new Permit(null);
+        }
+
+        int cap = Math.max(1, (int) (limit * priority.getShare()));
+
+        while(true) {
+            int current = inflight.get();
+
+            if(current >= cap) {
+                rejected[priority.ordinal()].increment();
+                return null;
+            }
+
+            if(inflight.compareAndSet(current, current + 1)) {
+                peak.accumulateAndGet(current + 1, Math::max);
+                return new Permit(inflight);
+            }
+        }
+    }
+
+
+    /**
+     * Records the latency of one repository call
+     * @param nanos     Latency in nanoseconds
+     * @param failed    Whether the call failed for lack of database capacity
+     */
+    public void record(long nanos, boolean failed) {
+        latencySum.add(nanos);
+        latencyCount.increment();
+
+        if(failed) {
+            failures.increment();
+        }
+    }
+
+
+    @Around("target(com.dump.service.repositories.DumpRepository) || target(com.dump.service.repositories.UserRepository)")
+    public Object repository(ProceedingJoinPoint pjp) throws Throwable {
+        long start = System.nanoTime();
+
+        try {
+            Object result = pjp.proceed();
+            record(System.nanoTime() - start, false);
+            return result;
+        }
+        catch(Throwable e) {
+            record(System.nanoTime() - start, isOverload(e));
+            throw e;
+        }
+    }
+
+
+    /**
+     * Moves the limit by the latencies recorded since the last adjustment, every dump.concurrency.window
+     * milliseconds
+     */
+    public void adjust() {
+        long count = latencyCount.sumThenReset();
+        long sum = latencySum.sumThenReset();
+        long failed = failures.sumThenReset();
+        int used = peak.getAndSet(inflight.get());
+
+        double current = limit;
+        double next;
+
+        if(failed > 0) {
+            next = current * BACKOFF;
+        }
+        else if(count < MIN_SAMPLES) {
+            return;
+        }
+        else {
+            double latency = (double) sum / count;
+
+            longLatency = longLatency == 0 ? latency : longLatency + (latency - longLatency) / LONG_WINDOWS;
+
+            // once the load is gone, don't hold the limit down with the slow period's average
+            if(longLatency > 2 * latency) {
+                longLatency *= 0.95;
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / latency));
+            next = current * gradient + Math.sqrt(current);
+
+            // a limit which isn't being used says nothing about whether a higher one would be safe
+            if(used < current / 2) {
+                next = Math.min(next, current);
+            }
+
+            next = current * (1 - SMOOTHING) + next * SMOOTHING;
+        }
+
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+
+    /**
+     * @return  Current limit
+     */
+    public double getLimit() {
+        return limit;
+    }
+
+
+    /**
+     * @return  Requests currently admitted
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.gauge("dump_concurrency_limit", "Adaptive limit on requests in flight on the persistence path",
+                new String[0], limit);
+        writer.gauge("dump_concurrency_inflight", "Requests in flight on the persistence path",
+                new String[0], inflight.get());
+        writer.gauge("dump_concurrency_baseline_seconds", "Long-term average repository call latency the limit adapts to",
+                new String[0], longLatency / 1e9);
+
+        for(Priority priority : Priority.values()) {
+            writer.counter("dump_concurrency_rejected_total", "Requests turned away with a 503 over the concurrency limit",
+                    new String[] { "priority", priority.name().toLowerCase(Locale.ROOT) }, rejected[priority.ordinal()].sum());
+        }
+    }
+
+
+    /**
+     * Whether a repository call failed because the database is out of capacity, rather than because of the call
+     */
+    private static boolean isOverload(Throwable e) {
+        return e instanceof QueryTimeoutException || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessResourceException || e instanceof CannotCreateTransactionException;
+    }
+
+
+    /**
+     * Place of an admitted request. Releasing more than once has no effect, so every path out of a request
+     * may release it.
+     */
+    public static class Permit {
+        private final AtomicInteger inflight;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AtomicInteger inflight) {
+            this.inflight = inflight;
+        }
+
+        public void release() {
+            if(inflight != null && released.compareAndSet(false, true)) {
+                inflight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.dump.service.admission;
+
+
+/**
+ * Admission priority of a request on the persistence path. Each priority may fill a share of the concurrency
+ * limit, so as the limit fills up the lower priorities are turned away first and the last slots are kept for
+ * cheap reads.
+ */
+public enum Priority {
+    /** Cheap, high-value reads such as viewing a Dump */
+    HIGH(1.0),
+    /** Lists, profiles, updates */
+    NORMAL(0.8),
+    /** Expensive or deferrable work such as searching and adding Dumps */
+    LOW(0.5);
+
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    /**
+     * @return  Share of the concurrency limit requests of this priority may fill
+     */
+    public double getShare() {
+        return share;
+    }
+}
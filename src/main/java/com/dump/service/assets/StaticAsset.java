@@ -0,0 +1,72 @@
+package com.dump.service.assets;
+
+
+/**
+ * In-memory copy of one static file together with its pre-compressed variants
+ */
+public class StaticAsset {
+    private final String path;
+    private final String contentType;
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final byte[] brotli;
+    private final String etag;
+    private final long lastModified;
+    private final boolean fingerprinted;
+
+    public StaticAsset(String path, String contentType, byte[] identity, byte[] gzip, byte[] brotli,
+                       String etag, long lastModified, boolean fingerprinted) {
+        this.path = path;
+        this.contentType = contentType;
+        this.identity = identity;
+        this.gzip = gzip;
+        this.brotli = brotli;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fingerprinted = fingerprinted;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return  Gzip encoded bytes, null if not worth compressing
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    /**
+     * @return  Brotli encoded bytes from a pre-built .br file, null if none was deployed
+     */
+    public byte[] getBrotli() {
+        return brotli;
+    }
+
+    /**
+     * @return  Hash of the identity bytes, unquoted
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return  TRUE if the file name carries a content hash, so it can be cached forever
+     */
+    public boolean isFingerprinted() {
+        return fingerprinted;
+    }
+}
@@ -0,0 +1,264 @@
+package com.dump.service.assets;
+
+import com.dump.service.utils.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+
+/**
+ * Holds the Angular bundle from the external static folder in memory, along with gzip and pre-built brotli
+ * variants. A file watcher reloads the folder whenever it changes, so requests never touch the disk.
+ */
+public class StaticAssetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetCache.class);
+
+    /**
+     * Matches build output names such as main.3f2a9c1b7d6e5f40.bundle.js
+     */
+    private static final Pattern FINGERPRINT = Pattern.compile(".*[.-][0-9a-f]{8,}\\.[^/]+$");
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+    static {
+        CONTENT_TYPES.put("html", "text/html;charset=UTF-8");
+        CONTENT_TYPES.put("js", "application/javascript;charset=UTF-8");
+        CONTENT_TYPES.put("css", "text/css;charset=UTF-8");
+        CONTENT_TYPES.put("json", "application/json;charset=UTF-8");
+        CONTENT_TYPES.put("map", "application/json;charset=UTF-8");
+        CONTENT_TYPES.put("txt", "text/plain;charset=UTF-8");
+        CONTENT_TYPES.put("xml", "application/xml;charset=UTF-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+    }
+
+    /**
+     * Files smaller than this are not worth compressing
+     */
+    private static final int MIN_COMPRESS_SIZE = 1024;
+
+    private final Path root;
+    private volatile Map<String, StaticAsset> assets = Collections.emptyMap();
+    private WatchService watchService;
+    private Thread watcher;
+
+
+    /**
+     * Creates a StaticAssetCache
+     * @param root  Static folder to serve
+     */
+    public StaticAssetCache(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+
+    /**
+     * Loads the static folder and starts watching it for changes
+     */
+    @PostConstruct
+    public void start() {
+        reload();
+
+        if(!Files.isDirectory(root)) {
+            logger.warn("Static folder {} does not exist, no assets will be served", root);
+            return;
+        }
+
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            registerAll(root);
+        }
+        catch(IOException e) {
+            logger.warn("Could not watch static folder {}, assets will not reload", root, e);
+            return;
+        }
+
+        watcher = new Thread(this::watch, "static-asset-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+
+    /**
+     * Stops the file watcher
+     */
+    @PreDestroy
+    public void stop() {
+        if(watcher != null) {
+            watcher.interrupt();
+        }
+
+        try {
+            if(watchService != null) {
+                watchService.close();
+            }
+        }
+        catch(IOException e) {
+            // nothing to do
+        }
+    }
+
+
+    /**
+     * Finds an asset
+     * @param path  Path relative to the static folder, without leading slash
+     * @return  StaticAsset, null if not found
+     */
+    public StaticAsset get(String path) {
+        return assets.get(path);
+    }
+
+
+    /**
+     * @return  Number of cached assets
+     */
+    public int size() {
+        return assets.size();
+    }
+
+
+    /**
+     * Rebuilds the cache from disk and swaps it in atomically
+     */
+    public void reload() {
+        if(!Files.isDirectory(root)) {
+            assets = Collections.emptyMap();
+            return;
+        }
+
+        final Map<String, StaticAsset> loaded = new HashMap<>();
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String name = file.getFileName().toString();
+
+                    // pre-compressed variants are loaded together with their source file
+                    if(!name.endsWith(".gz") && !name.endsWith(".br")) {
+                        StaticAsset asset = load(file, attrs);
+                        loaded.put(asset.getPath(), asset);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch(IOException e) {
+            logger.error("Failed to load static folder {}, keeping previous assets", root, e);
+            return;
+        }
+
+        assets = loaded;
+        logger.info("Loaded {} static assets from {}", loaded.size(), root);
+    }
+
+
+    private StaticAsset load(Path file, BasicFileAttributes attrs) throws IOException {
+        String path = root.relativize(file).toString().replace('\\', '/');
+        byte[] identity = Files.readAllBytes(file);
+        String contentType = contentType(path);
+
+        byte[] gzip = readIfExists(file.resolveSibling(file.getFileName() + ".gz"));
+        if(gzip == null && identity.length >= MIN_COMPRESS_SIZE && isCompressible(contentType)) {
+            gzip = gzip(identity);
+        }
+        if(gzip != null && gzip.length >= identity.length) {
+            gzip = null;
+        }
+
+        byte[] brotli = readIfExists(file.resolveSibling(file.getFileName() + ".br"));
+
+        return new StaticAsset(path, contentType, identity, gzip, brotli, Hashing.sha256(identity).substring(0, 32),
+                attrs.lastModifiedTime().toMillis(), FINGERPRINT.matcher(path).matches());
+    }
+
+    private void watch() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+
+                // let a deployment finish writing before reloading
+                Thread.sleep(250);
+
+                do {
+                    for(WatchEvent<?> event : key.pollEvents()) {
+                        if(event.kind() == ENTRY_CREATE) {
+                            Path created = ((Path) key.watchable()).resolve((Path) event.context());
+                            if(Files.isDirectory(created)) {
+                                registerAll(created);
+                            }
+                        }
+                    }
+                    key.reset();
+                } while((key = watchService.poll()) != null);
+
+                reload();
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+        catch(IOException e) {
+            logger.error("Static folder watcher failed, assets will not reload", e);
+        }
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static byte[] readIfExists(Path file) throws IOException {
+        return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3);
+        try(GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String contentType(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String type = CONTENT_TYPES.get(ext);
+        return type == null ? "application/octet-stream" : type;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/javascript")
+                || contentType.startsWith("application/json") || contentType.startsWith("application/xml")
+                || contentType.startsWith("image/svg") || contentType.startsWith("image/x-icon")
+                || contentType.equals("font/ttf") || contentType.equals("application/vnd.ms-fontobject");
+    }
+}
@@ -0,0 +1,156 @@
+package com.dump.service.assets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+
+
+/**
+ * Serves static assets from memory. Picks the smallest pre-built encoding the client accepts, marks
+ * fingerprinted files as immutable and answers conditional requests with 304.
+ */
+public class StaticAssetHandler implements HttpRequestHandler {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    private static final String SHORT = "public, max-age=3600";
+
+    private final StaticAssetCache cache;
+
+    public StaticAssetHandler(StaticAssetCache cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Handles a static asset request
+     * @param request   HTTP request
+     * @param response  HTTP response
+     * @throws IOException  on write failure
+     */
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if(!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        StaticAsset asset = path == null ? null : cache.get(path);
+
+        if(asset == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        byte[] body = asset.getIdentity();
+        String encoding = null;
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if(asset.getBrotli() != null && accepts(acceptEncoding, "br")) {
+            body = asset.getBrotli();
+            encoding = "br";
+        }
+        else if(asset.getGzip() != null && accepts(acceptEncoding, "gzip")) {
+            body = asset.getGzip();
+            encoding = "gzip";
+        }
+
+        // each encoding is a different representation, so it needs its own strong validator
+        String etag = "\"" + asset.getEtag() + (encoding == null ? "" : "-" + encoding) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, asset.getLastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, asset.isFingerprinted() ? IMMUTABLE
+                : asset.getPath().endsWith(".html") ? REVALIDATE : SHORT);
+        if(asset.getGzip() != null || asset.getBrotli() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if(notModified(request, asset)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(asset.getContentType());
+        response.setContentLength(body.length);
+        if(encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+
+        if("GET".equals(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+
+    /**
+     * Checks If-None-Match against every encoding of the asset, falling back to If-Modified-Since
+     */
+    private static boolean notModified(HttpServletRequest request, StaticAsset asset) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if(ifNoneMatch != null) {
+            if(ifNoneMatch.trim().equals("*")) {
+                return true;
+            }
+
+            for(String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if(tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if(tag.startsWith("\"" + asset.getEtag())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return since >= 0 && asset.getLastModified() / 1000 <= since / 1000;
+        }
+        catch(IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Checks if an Accept-Encoding header allows a coding (q=0 means refused)
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        if(acceptEncoding == null) {
+            return false;
+        }
+
+        for(String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] params = part.trim().split(";");
+
+            if(params[0].trim().equals(coding) || params[0].trim().equals("*")) {
+                for(int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if(param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        }
+                        catch(NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.dump.service.caching;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Statistics;
+import net.sf.ehcache.config.Configuration;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+
+/**
+ * Hibernate second-level cache backed by an in-JVM Ehcache, with regions configured in code rather than from
+ * an ehcache.xml. Each instance owns its own CacheManager, so several application contexts in one JVM (as in
+ * the tests) don't share entries.
+ *
+ * Publishes hits, misses, size and evictions per region. A query region hit may still be thrown away by
+ * Hibernate if one of the queried tables changed since, so its ratio is an upper bound.
+ */
+public class CacheRegionFactory extends EhCacheRegionFactory implements MetricSource {
+
+    private final Configuration configuration;
+
+
+    /**
+     * @param configuration Cache manager configuration with every region defined
+     */
+    public CacheRegionFactory(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+
+    @Override
+    public void start(SessionFactoryOptions settings, Properties properties) {
+        this.settings = settings;
+
+        if(manager == null) {
+            manager = new CacheManager(configuration);
+        }
+    }
+
+
+    @Override
+    public void stop() {
+        if(manager != null) {
+            manager.shutdown();
+            manager = null;
+        }
+    }
+
+
+    /**
+     * Keys of the entries in a region, which may include some which have just expired
+     * @param region    Region name
+     * @return  Hibernate cache keys, empty if there is no such region or the cache isn't running
+     */
+    public List<?> keys(String region) {
+        CacheManager current = manager;
+        Ehcache cache = current == null ? null : current.getEhcache(region);
+
+        return cache == null ? Collections.emptyList() : cache.getKeysNoDuplicateCheck();
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        CacheManager current = manager;
+        if(current == null) {
+            return;
+        }
+
+        for(String name : current.getCacheNames()) {
+            Ehcache cache = current.getEhcache(name);
+            if(cache == null || name.equals(UpdateTimestampsCache.REGION_NAME)) {
+                continue;
+            }
+
+            Statistics statistics = cache.getStatistics();
+            long hits = statistics.getCacheHits();
+            long misses = statistics.getCacheMisses();
+            String[] labels = { "region", name };
+
+            writer.counter("dump_cache_hits_total", "Second-level cache hits", labels, hits);
+            writer.counter("dump_cache_misses_total", "Second-level cache misses", labels, misses);
+            writer.gauge("dump_cache_hit_ratio", "Second-level cache hits over lookups", labels, hits + misses == 0 ? 0 : hits / (double) (hits + misses));
+            writer.gauge("dump_cache_entries", "Entries in a second-level cache region", labels, statistics.getObjectCount());
+            writer.counter("dump_cache_evictions_total", "Entries evicted from a second-level cache region for space", labels, statistics.getEvictionCount());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.dump.service.caching;
+
+import com.dump.service.objects.DumpKey;
+import com.dump.service.objects.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Invalidation hooks for writes Hibernate can't see through the cached entities. Cached Dump keys are
+ * read-only, so a write to a Dump row through the Dump entity leaves them in place until evicted here.
+ * Also lists the cached keys, for the snapshot the next process warms up from. Harmless when the
+ * second-level cache is disabled.
+ */
+@Component
+public class EntityCaches {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheRegionFactory cacheRegionFactory;
+
+
+    /**
+     * Evicts the cached key of a deleted Dump, by ID and by public ID
+     * @param id        Dump ID
+     * @param publicId  Dump public ID
+     */
+    public void evictDump(Integer id, String publicId) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = sessionFactory.getEntityPersister(DumpKey.class.getName());
+
+        if(id != null) {
+            sessionFactory.getCache().evictEntity(DumpKey.class, id);
+        }
+
+        if(publicId != null && persister.hasNaturalIdCache()) {
+            NaturalIdRegionAccessStrategy access = persister.getNaturalIdCacheAccessStrategy();
+
+            // the key is built against a session only to read its tenant
+            try(Session session = sessionFactory.openSession()) {
+                access.evict(access.generateCacheKey(new Object[] { publicId }, persister, (SessionImplementor) session));
+            }
+        }
+    }
+
+
+    /**
+     * Evicts every cached Dump key, for writes which may have changed a Dump's public ID or owner
+     */
+    public void evictDumps() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+
+        sessionFactory.getCache().evictEntityRegion(DumpKey.class);
+        sessionFactory.getCache().evictNaturalIdRegion(DumpKey.class);
+    }
+
+
+    /**
+     * Public IDs of the Dumps whose keys are cached by public ID
+     * @param max   Maximum number of public IDs to return
+     * @return  Public IDs, empty when the cache is disabled
+     */
+    public List<String> cachedDumpIds(int max) {
+        EntityPersister persister = persister(DumpKey.class);
+        List<String> publicIds = new ArrayList<>();
+
+        if(!persister.hasNaturalIdCache()) {
+            return publicIds;
+        }
+
+        NaturalIdRegionAccessStrategy access = persister.getNaturalIdCacheAccessStrategy();
+
+        for(Object key : cacheRegionFactory.keys(access.getRegion().getName())) {
+            if(publicIds.size() >= max) {
+                break;
+            }
+            publicIds.add((String) access.getNaturalIdValues(key)[0]);
+        }
+
+        return publicIds;
+    }
+
+
+    /**
+     * IDs of the cached Users
+     * @param max   Maximum number of IDs to return
+     * @return  User IDs, empty when the cache is disabled
+     */
+    public List<Integer> cachedUserIds(int max) {
+        EntityPersister persister = persister(User.class);
+        List<Integer> ids = new ArrayList<>();
+
+        if(!persister.hasCache()) {
+            return ids;
+        }
+
+        EntityRegionAccessStrategy access = persister.getCacheAccessStrategy();
+
+        for(Object key : cacheRegionFactory.keys(access.getRegion().getName())) {
+            if(ids.size() >= max) {
+                break;
+            }
+            ids.add((Integer) access.getCacheKeyId(key));
+        }
+
+        return ids;
+    }
+
+
+    private EntityPersister persister(Class<?> entity) {
+        return entityManagerFactory.unwrap(SessionFactoryImplementor.class).getEntityPersister(entity.getName());
+    }
+}
@@ -1,25 +1,55 @@
 package com.dump.service.controllers;
 
 import com.dump.service.Enumerations;
+import com.dump.service.admission.Priority;
+import com.dump.service.caching.EntityCaches;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.lists.ListVersions;
+import com.dump.service.live.LiveDumps;
+import com.dump.service.live.Slice;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.revisions.RevisionStore;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.trending.Trending;
+import com.dump.service.trending.TrendingWindow;
 import com.dump.service.objects.User;
 import com.dump.service.repositories.DumpRepository;
 import com.dump.service.repositories.UserRepository;
 import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpHeader;
+import com.dump.service.objects.DumpSummary;
 import com.dump.service.utils.Auth;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.dump.service.utils.ConditionalRequests;
+import com.dump.service.utils.Hashing;
+import com.dump.service.views.UniqueViewers;
+import com.dump.service.views.ViewCounter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Spring REST controller for Dump management
@@ -28,6 +58,14 @@ import java.util.Random;
 @RestController
 @RequestMapping(path="/api/dumps")
 public class DumpAPIController {
+
+    // header carrying the token of a live Dump's producer
+    static final String LIVE_TOKEN = "X-Live-Token";
+
+    // headers of a live Dump read: where to read from next, and whether the Dump is closed and read to its end
+    static final String LIVE_OFFSET = "X-Live-Offset";
+    static final String LIVE_CLOSED = "X-Live-Closed";
+
     @Autowired
     private DumpRepository dumpRepository;
 
@@ -37,62 +75,178 @@ public class DumpAPIController {
     @Autowired
     private Auth authUtil;
 
+    @Autowired
+    private RevisionStore revisionStore;
+
+    @Autowired
+    private AsyncResponses async;
+
+    @Autowired
+    private ViewCounter viewCounter;
+
+    @Autowired
+    private CoalescingLoader loader;
+
+    @Autowired
+    private ListVersions listVersions;
+
+    @Autowired
+    private EntityCaches entityCaches;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private Trending trending;
+
+    @Autowired
+    private LiveDumps liveDumps;
+
+    @Value("${dump.async.search-timeout:30000}")
+    private long searchTimeout;
+
+    @Value("${dump.multi-get.max-ids:100}")
+    private int maxIds;
+
+    @Value("${dump.live.max-wait:30000}")
+    private long liveMaxWait;
+
+    @Value("${dump.live.stream-timeout:300000}")
+    private long liveStreamTimeout;
+
 
     /**
-     * Handler for returning Dump data to client
+     * Handler for returning Dump data to client. Conditional requests are checked against the stored content
+     * hash and modification time before the contents are loaded.
+     * @param request   HTTP request, for the viewer fingerprint
+     * @param headers   HTTP headers for conditional request check
      * @param id    Public ID of Dump to query
      * @param download  TRUE causes server to generate a download MIME type
-     * @return  HTTP Response entity on error, Dump object on success, Dump contents on success if download=TRUE
+     * @return  HTTP Response entity on error, Dump object on success, Dump contents on success if download=TRUE,
+     *          304 if the client's copy is current
      */
     @GetMapping(path="/view/{id}")
-    public @ResponseBody ResponseEntity view(
+    public @ResponseBody DeferredResult<ResponseEntity> view(
+            HttpServletRequest request,
+            @RequestHeader HttpHeaders headers,
             @PathVariable("id") String id,
             @RequestParam(value = "download", required = false) Boolean download
     ) {
-        // TODO: add protection for private dumps
-        Dump dump = dumpRepository.findByPublicId(id);
+        boolean raw = download != null && download;
+        long viewer = UniqueViewers.fingerprint(request.getRemoteAddr(), headers.getFirst(HttpHeaders.USER_AGENT));
 
-        if (dump == null) {
-            return new ResponseEntity(HttpStatus.NOT_FOUND);
-        }
+        return async.run(Priority.HIGH, () -> {
+            // answer revalidations from the header columns alone
+            if(ConditionalRequests.isConditional(headers)) {
+                DumpHeader header = dumpRepository.findHeaderByPublicId(id);
 
-        // delete and return 404 if dump exists but is expired
-        if(dump.getExpiration().before(new Date()) && dump.getExpiration().after(new Date(3600))) {
-            // TODO: uncomment for production
-            //dumpRepository.delete(dump);
-            //return new ResponseEntity(HttpStatus.NOT_FOUND);
-        }
+                if(header != null) {
+                    String etag = viewTag(header.getContentHash(), header.getModified(), raw);
 
-        dump.setViews(dump.getViews() + 1);
-        dumpRepository.save(dump);
+                    if(ConditionalRequests.notModified(headers, etag, header.getModified())) {
+                        viewCounter.record(header.getPublicId(), header.getUsername(), header.getExposure(), viewer);
+
+                        return new ResponseEntity(viewHeaders(etag, header.getModified(), raw), HttpStatus.NOT_MODIFIED);
+                    }
+                }
+            }
 
-        if(dump.getUsername().length() > 0) {
-            User user = userRepository.findByUsernameIgnoreCase(dump.getUsername());
+            // TODO: add protection for private dumps
+            Dump dump = loader.findDump(id);
 
-            if(user != null) {
-                user.setViews(user.getViews() + 1);
-                userRepository.save(user);
+            if (dump == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
             }
-        }
 
-        if(download != null && download) {
-            // TODO: add content types
-            String cd = String.format("attachment; filename=\"%s.txt\"", dump.getPublicId());
+            // delete and return 404 if dump exists but is expired
+            if(dump.getExpiration().before(new Date()) && dump.getExpiration().after(new Date(3600))) {
+                // TODO: uncomment for production
+                //dumpRepository.delete(dump);
+                //return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
 
-            MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
-            headers.add("Content-Type", "text/plain");
-            headers.add("Content-disposition", cd);
+            viewCounter.record(dump, viewer);
+            dump.setViews(dump.getViews() + 1);
 
-            return new ResponseEntity<>(dump.getContents(), headers, HttpStatus.OK);
-        }
+            HttpHeaders validators = viewHeaders(viewTag(dump.getContentHash(), dump.getModified(), raw), dump.getModified(), raw);
 
-        ObjectMapper mapper = new ObjectMapper();
+            if(raw) {
+                // TODO: add content types
+                String cd = String.format("attachment; filename=\"%s.txt\"", dump.getPublicId());
 
-        try {
-            return new ResponseEntity<>(mapper.writeValueAsString(dump), HttpStatus.OK);
-        } catch (Exception e) {
-            return new ResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR);
+                validators.add("Content-Type", "text/plain");
+                validators.add("Content-disposition", cd);
+
+                return new ResponseEntity<>(dump.getContents(), validators, HttpStatus.OK);
+            }
+
+            return new ResponseEntity<>(dump, validators, HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Handler for returning the list metadata of several Dumps at once, without contents. The Dumps are found
+     * with one query per shard holding them, and views are not counted. Unlisted and private Dumps are only
+     * returned to their owner.
+     * @param headers   HTTP headers for authorization check
+     * @param ids   Comma separated public IDs of Dumps to query, at most dump.multi-get.max-ids
+     * @return  Map of each public ID to its DumpSummary, or to null if there is no such Dump or it isn't public
+     *          and not owned by the authenticated user. 400 if no IDs or too many were given.
+     */
+    @GetMapping(path="/view")
+    public @ResponseBody DeferredResult<ResponseEntity> viewAll(
+            @RequestHeader HttpHeaders headers,
+            @RequestParam("ids") List<String> ids
+    ) {
+        Set<String> keys = new LinkedHashSet<>();
+        for(String id : ids) {
+            if(!id.trim().isEmpty()) {
+                keys.add(id.trim());
+            }
         }
+
+        return async.run(Priority.HIGH, () -> {
+            if(keys.isEmpty() || keys.size() > maxIds) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
+
+            for(String key : keys) {
+                readYourWrites.pinDump(key);
+            }
+
+            // every ID is answered, misses with null
+            Map<String, DumpSummary> summaries = new LinkedHashMap<>();
+            for(String key : keys) {
+                summaries.put(key, null);
+            }
+
+            User authUser = null;
+            boolean verified = false;
+
+            for(DumpSummary summary : dumpRepository.findSummariesByPublicIdIn(keys)) {
+                if(summary.getExposure() != Enumerations.Exposure.PUBLIC) {
+                    // only look up the user once a Dump needs it, an expired session reads as anonymous
+                    if(!verified) {
+                        try {
+                            authUser = authUtil.verifyAuthorization(headers);
+                        }
+                        catch(Exception e) {
+                            authUser = null;
+                        }
+                        verified = true;
+                    }
+
+                    if(authUser == null || !authUser.getUsername().equalsIgnoreCase(summary.getUsername())) {
+                        continue;
+                    }
+                }
+
+                summaries.put(summary.getPublicId(), summary);
+            }
+
+            return new ResponseEntity<>(summaries, HttpStatus.OK);
+        });
     }
 
 
@@ -103,39 +257,46 @@ public class DumpAPIController {
      * @return  HTTP status code of result
      */
     @DeleteMapping(path="/delete")
-    public @ResponseBody ResponseEntity delete (
+    public @ResponseBody DeferredResult<ResponseEntity> delete (
             @RequestHeader HttpHeaders headers,
             @RequestParam("publicId") String publicId
     ) {
-        User authUser = null;
+        return async.run(() -> {
+            User authUser = null;
 
-        try {
-            authUser = authUtil.verifyAuthorization(headers);
-        }
-        catch(Exception e) {
-            if(e.getMessage().equalsIgnoreCase("expired")) {
-                return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+            try {
+                authUser = authUtil.verifyAuthorization(headers);
+            }
+            catch(Exception e) {
+                if(e.getMessage().equalsIgnoreCase("expired")) {
+                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                }
             }
-        }
 
-        if(authUser == null) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
+            if(authUser == null) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        // acquire target
-        Dump target = dumpRepository.findByPublicId(publicId);
-        if(target == null) {
-            return new ResponseEntity(HttpStatus.BAD_REQUEST);
-        }
+            // acquire target
+            Dump target = dumpRepository.findByPublicId(publicId);
+            if(target == null) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
 
-        // verify dump is owned by deleting user
-        if(!target.getUsername().equalsIgnoreCase(authUser.getUsername())) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
+            // verify dump is owned by deleting user
+            if(!target.getUsername().equalsIgnoreCase(authUser.getUsername())) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        dumpRepository.delete(target);
+            dumpRepository.delete(target);
+            entityCaches.evictDump(target.getId(), target.getPublicId());
+            revisionStore.delete(publicId);
+            viewCounter.delete(publicId);
+            listVersions.changed(target.getUsername());
+            readYourWrites.wroteDump(target.getPublicId(), target.getUsername());
 
-        return new ResponseEntity(HttpStatus.OK);
+            return new ResponseEntity(HttpStatus.OK);
+        });
     }
 
 
@@ -155,6 +316,27 @@ public class DumpAPIController {
     }
 
 
+    /**
+     * Retrieves the trending public Dumps, served from memory and refreshed every dump.trending.exchange-interval
+     * @param window    "hour" or "day"
+     * @param limit     Maximum number of Dumps to return
+     * @return  Array of public IDs and decayed view counts, highest first, 400 on an unknown window
+     */
+    @GetMapping(path="/trending")
+    public @ResponseBody ResponseEntity trending (
+            @RequestParam(defaultValue = "hour", value = "window", required = false) String window,
+            @RequestParam(defaultValue = "10", value = "limit", required = false) Integer limit
+    ) {
+        List<TrendingWindow.Trend> top = trending.top(window, limit);
+
+        if(top == null) {
+            return new ResponseEntity(HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(top, HttpStatus.OK);
+    }
+
+
     /**
      * Updates existing Dump
      * @param headers   HTTP headers for authorization check
@@ -162,50 +344,85 @@ public class DumpAPIController {
      * @return  HTTP status code of result
      */
     @PostMapping(path="/update")
-    public @ResponseBody ResponseEntity update (
+    public @ResponseBody DeferredResult<ResponseEntity> update (
             @RequestHeader HttpHeaders headers,
             @RequestBody Dump dump
     ) {
-        User authUser = null;
+        return async.run(() -> {
+            User authUser = null;
 
-        try {
-            authUser = authUtil.verifyAuthorization(headers);
-        }
-        catch(Exception e) {
-            if(e.getMessage().equalsIgnoreCase("expired")) {
-                return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+            try {
+                authUser = authUtil.verifyAuthorization(headers);
+            }
+            catch(Exception e) {
+                if(e.getMessage().equalsIgnoreCase("expired")) {
+                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                }
             }
-        }
 
-        // verify user
-        if (authUser == null || !authUser.getUsername().equalsIgnoreCase(dump.getUsername())) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
+            // verify user
+            if (authUser == null || !authUser.getUsername().equalsIgnoreCase(dump.getUsername())) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        // make sure title is <= 250 characters
-        if(dump.getTitle().length() > 250) {
-            dump.setTitle(dump.getTitle().substring(0, 250));
-        }
+            // acquire owner and hash of target without touching contents
+            DumpHeader target = dumpRepository.findHeaderByPublicId(dump.getPublicId());
+            if(target == null) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
 
-        dumpRepository.save(dump);
+            // verify dump is owned by updating user, the owner in the body is chosen by the client
+            if(!target.getUsername().equalsIgnoreCase(authUser.getUsername())) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
+
+            // rewrite the row of that public ID, whatever row ID the body carries
+            dump.setId(target.getId());
+
+            // make sure title is <= 250 characters
+            if(dump.getTitle().length() > 250) {
+                dump.setTitle(dump.getTitle().substring(0, 250));
+            }
+
+            String hash = Hashing.sha256(dump.getContents());
+
+            // base of the revision, read before the row is rewritten
+            String previous = null;
+            if(dump.getContents() != null && !hash.equals(target.getContentHash())) {
+                previous = dumpRepository.findContentsByPublicId(target.getPublicId());
+            }
+
+            dump.setContentHash(hash);
+            dump.setModified(new Date());
+
+            dumpRepository.save(dump);
 
-        return new ResponseEntity<>(dump.getPublicId(), HttpStatus.OK);
+            if(previous != null) {
+                revisionStore.record(target.getPublicId(), previous, dump.getContents());
+            }
+            // the whole row is rewritten from the request, public ID and owner included
+            entityCaches.evictDumps();
+            listVersions.changed(dump.getUsername());
+            readYourWrites.wroteDump(dump.getPublicId(), dump.getUsername());
+
+            return new ResponseEntity<>(dump.getPublicId(), HttpStatus.OK);
+        });
     }
 
 
     /**
-     * Add new Dump to database
+     * Partially updates an existing Dump. Only non-null fields of the patch are written, and contents are only
+     * written when their hash differs from the stored hash.
      * @param headers   HTTP headers for authorization check
-     * @param dump      Dump to add
-     * @return HTTP status code of result
+     * @param patch     Dump containing the public ID and the fields to change
+     * @return  HTTP status code of result
      */
-    @PostMapping(path="/add")
-    public @ResponseBody ResponseEntity add (
+    @PatchMapping(path="/update")
+    public @ResponseBody DeferredResult<ResponseEntity> patch (
             @RequestHeader HttpHeaders headers,
-            @RequestBody Dump dump
+            @RequestBody Dump patch
     ) {
-        // verify user if not Anonymous
-        if(!dump.getUsername().equalsIgnoreCase("anonymous")) {
+        return async.run(() -> {
             User authUser = null;
 
             try {
@@ -217,26 +434,307 @@ public class DumpAPIController {
                 }
             }
 
-            if (authUser == null) {
+            if(authUser == null) {
                 return new ResponseEntity(HttpStatus.FORBIDDEN);
             }
+
+            // acquire owner and hash of target without touching contents
+            DumpHeader target = dumpRepository.findHeaderByPublicId(patch.getPublicId());
+            if(target == null) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
+
+            // verify dump is owned by updating user
+            if(!target.getUsername().equalsIgnoreCase(authUser.getUsername())) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
+
+            Map<String, Object> fields = new HashMap<>();
+
+            if(patch.getTitle() != null) {
+                // make sure title is <= 250 characters
+                fields.put("title", patch.getTitle().length() > 250 ? patch.getTitle().substring(0, 250) : patch.getTitle());
+            }
+            if(patch.getExposure() != null) {
+                fields.put("exposure", patch.getExposure());
+            }
+            if(patch.getExpiration() != null) {
+                fields.put("expiration", patch.getExpiration());
+            }
+            if(patch.getType() != null) {
+                fields.put("type", patch.getType());
+            }
+
+            // only write contents if they actually changed
+            String previous = null;
+            if(patch.getContents() != null) {
+                String hash = Hashing.sha256(patch.getContents());
+
+                if(!hash.equals(target.getContentHash())) {
+                    // base of the revision, read before the row is rewritten
+                    previous = dumpRepository.findContentsByPublicId(target.getPublicId());
+                    fields.put("contents", patch.getContents());
+                    fields.put("contentHash", hash);
+                }
+            }
+
+            if(!fields.isEmpty()) {
+                fields.put("modified", new Date());
+            }
+
+            dumpRepository.updateFields(target.getPublicId(), fields);
+
+            if(previous != null) {
+                revisionStore.record(target.getPublicId(), previous, patch.getContents());
+            }
+
+            if(!fields.isEmpty()) {
+                listVersions.changed(target.getUsername());
+                readYourWrites.wroteDump(target.getPublicId(), target.getUsername());
+            }
+
+            return new ResponseEntity<>(target.getPublicId(), HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Lists the stored revisions of a Dump. Revisions of unlisted and private Dumps are only listed to their owner.
+     * @param headers   HTTP headers for authorization check
+     * @param id    Public ID of Dump
+     * @return  Array of revision metadata, oldest first. 404 if there is no such Dump or it isn't public and not
+     *          owned by the authenticated user.
+     */
+    @GetMapping(path="/revisions/{id}")
+    public @ResponseBody DeferredResult<ResponseEntity> revisions(
+            @RequestHeader HttpHeaders headers,
+            @PathVariable("id") String id
+    ) {
+        return async.run(() -> {
+            if(!canReadRevisions(headers, id)) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(revisionStore.list(id), HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Returns the contents of a Dump at a given revision. Revisions of unlisted and private Dumps are only returned
+     * to their owner.
+     * @param headers   HTTP headers for authorization check
+     * @param id        Public ID of Dump
+     * @param revision  Revision number
+     * @return  Dump contents at that revision, 404 if it doesn't exist or the Dump isn't public and not owned by
+     *          the authenticated user
+     */
+    @GetMapping(path="/revisions/{id}/{revision}")
+    public @ResponseBody DeferredResult<ResponseEntity> revision(
+            @RequestHeader HttpHeaders headers,
+            @PathVariable("id") String id,
+            @PathVariable("revision") Integer revision
+    ) {
+        return async.run(() -> {
+            if(!canReadRevisions(headers, id)) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
+
+            String contents = revisionStore.fetch(id, revision);
+
+            if(contents == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
+
+            HttpHeaders contentHeaders = new HttpHeaders();
+            contentHeaders.add("Content-Type", "text/plain");
+
+            return new ResponseEntity<>(contents, contentHeaders, HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Checks whether the caller may read the revisions of a Dump, the same way {@link #viewAll} shows its
+     * metadata: public Dumps to everyone, the rest only to their owner. An expired session reads as anonymous.
+     * @param headers   HTTP headers for authorization check
+     * @param id        Public ID of Dump
+     * @return  TRUE if the Dump exists and the caller may read its revisions
+     */
+    private boolean canReadRevisions(HttpHeaders headers, String id) {
+        DumpHeader header = dumpRepository.findHeaderByPublicId(id);
+
+        if(header == null) {
+            return false;
         }
 
-        // generate dump public id
-        String newId = genPublicId();
-        while(dumpRepository.findByPublicId(newId) != null) {
-            newId = genPublicId();
+        if(header.getExposure() == Enumerations.Exposure.PUBLIC) {
+            return true;
         }
-        dump.setPublicId(newId);
 
-        // make sure title is <= 250 characters
-        if(dump.getTitle().length() > 250) {
-            dump.setTitle(dump.getTitle().substring(0, 250));
+        User authUser;
+
+        try {
+            authUser = authUtil.verifyAuthorization(headers);
+        }
+        catch(Exception e) {
+            authUser = null;
         }
 
-        dumpRepository.save(dump);
+        return authUser != null && authUser.getUsername().equalsIgnoreCase(header.getUsername());
+    }
+
+
+    /**
+     * Add new Dump to database
+     * @param headers   HTTP headers for authorization check
+     * @param dump      Dump to add
+     * @return HTTP status code of result
+     */
+    @PostMapping(path="/add")
+    public @ResponseBody DeferredResult<ResponseEntity> add (
+            @RequestHeader HttpHeaders headers,
+            @RequestBody Dump dump
+    ) {
+        return async.run(Priority.LOW, () -> {
+            ResponseEntity rejected = store(headers, dump);
+            if(rejected != null) {
+                return rejected;
+            }
 
-        return new ResponseEntity<>(newId, HttpStatus.OK);
+            return new ResponseEntity<>(dump.getPublicId(), HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Adds a live Dump, which the producer then appends to until closing it. The Dump is stored with empty
+     * contents, which are filled in when it is closed.
+     * @param headers   HTTP headers for authorization check
+     * @param dump      Dump to add, without contents
+     * @return  Public ID of the Dump and the token to append to it with
+     */
+    @PostMapping(path="/live")
+    public @ResponseBody DeferredResult<ResponseEntity> open (
+            @RequestHeader HttpHeaders headers,
+            @RequestBody Dump dump
+    ) {
+        return async.run(Priority.LOW, () -> {
+            dump.setContents("");
+
+            ResponseEntity rejected = store(headers, dump);
+            if(rejected != null) {
+                return rejected;
+            }
+
+            String token = liveDumps.open(dump.getPublicId(), dump.getUsername());
+
+            Map<String, String> opened = new LinkedHashMap<>();
+            opened.put("publicId", dump.getPublicId());
+            opened.put("token", token);
+
+            return new ResponseEntity<>(opened, HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Appends text to a live Dump
+     * @param token     Producer's token, from the X-Live-Token header
+     * @param id        Public ID of the live Dump
+     * @param offset    Length the producer expects the Dump to have, so a retried append isn't stored twice
+     * @param body      UTF-8 text to append
+     * @return  New length of the Dump in bytes; 409 with the current length if it isn't the expected one, 410
+     *          if the Dump was closed, 413 if it would grow past dump.live.max-size
+     */
+    @PostMapping(path="/live/{id}/append")
+    public @ResponseBody DeferredResult<ResponseEntity> append (
+            @RequestHeader(LIVE_TOKEN) String token,
+            @PathVariable("id") String id,
+            @RequestParam(value = "offset", required = false) Integer offset,
+            @RequestBody byte[] body
+    ) {
+        return async.run(() -> live(liveDumps.append(id, token, offset, new String(body, StandardCharsets.UTF_8))));
+    }
+
+
+    /**
+     * Closes a live Dump, sealing the appended text into its contents
+     * @param token     Producer's token, from the X-Live-Token header
+     * @param id        Public ID of the live Dump
+     * @return  Final length of the Dump in bytes
+     */
+    @PostMapping(path="/live/{id}/close")
+    public @ResponseBody DeferredResult<ResponseEntity> close (
+            @RequestHeader(LIVE_TOKEN) String token,
+            @PathVariable("id") String id
+    ) {
+        return async.run(() -> live(liveDumps.close(id, token)));
+    }
+
+
+    /**
+     * Long-polls a live Dump. Answers at once with the text after the offset, or once some is appended or the
+     * wait is over. The X-Live-Offset header is the offset to poll from next, and X-Live-Closed is true once
+     * the Dump is closed and read to its end. Ordinary Dumps are answered like closed live Dumps.
+     * @param id        Public ID of the Dump
+     * @param offset    Byte offset to read from
+     * @param wait      Milliseconds to wait for text, capped at dump.live.max-wait
+     * @return  Text after the offset, possibly none, 404 if there is no such Dump
+     */
+    @GetMapping(path="/live/{id}")
+    public @ResponseBody DeferredResult<ResponseEntity> tail (
+            @PathVariable("id") String id,
+            @RequestParam(defaultValue = "0", value = "offset", required = false) Integer offset,
+            @RequestParam(defaultValue = "25000", value = "wait", required = false) Long wait
+    ) {
+        long timeout = Math.max(0, Math.min(wait, liveMaxWait));
+
+        // the followers' waits are ended by the next poll of dump.live.poll-interval, this is a backstop
+        DeferredResult<ResponseEntity> result = new DeferredResult<>(timeout + 5000, tailResponse(Slice.failed(Slice.Status.UNAVAILABLE, offset)));
+
+        liveDumps.follow(id, offset, timeout, slice -> result.setResult(tailResponse(slice)));
+
+        return result;
+    }
+
+
+    /**
+     * Streams a live Dump as Server-Sent Events. Each "append" event carries the offset and text of the bytes
+     * appended, with the offset after them as event ID, so a client reconnecting with Last-Event-ID resumes
+     * where it was. A "close" event with the final length ends the stream once the Dump is closed. Streams
+     * end after dump.live.stream-timeout milliseconds, for the client to reconnect.
+     * @param id            Public ID of the Dump
+     * @param lastEventId   Offset to resume from, takes precedence over the offset parameter
+     * @param offset        Byte offset to stream from
+     * @return  Event stream, ended at once with a "missing" event if there is no such Dump
+     */
+    @GetMapping(path="/live/{id}/events")
+    public SseEmitter events (
+            @PathVariable("id") String id,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(defaultValue = "0", value = "offset", required = false) Integer offset
+    ) {
+        int from = offset;
+
+        if(lastEventId != null) {
+            try {
+                from = Integer.parseInt(lastEventId.trim());
+            }
+            catch(NumberFormatException e) {
+                // stream from the offset parameter
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(liveStreamTimeout + 5000);
+        AtomicBoolean done = new AtomicBoolean();
+
+        emitter.onCompletion(() -> done.set(true));
+        emitter.onTimeout(() -> done.set(true));
+
+        stream(emitter, done, id, from, System.currentTimeMillis() + liveStreamTimeout);
+
+        return emitter;
     }
 
 
@@ -245,39 +743,40 @@ public class DumpAPIController {
      * @param headers   HTTP headers for authorization check
      * @param username  username to query
      * @param viewAll   TRUE returns all Dumps, FALSE only returns PUBLIC Dumps
-     * @return  Array of Dumps
+     * @return  Array of Dumps, 304 if the list hasn't changed
      */
     @GetMapping(path="/user")
-    public @ResponseBody ResponseEntity recent(
+    public @ResponseBody DeferredResult<ResponseEntity> recent(
             @RequestHeader HttpHeaders headers,
             @RequestParam("username") String username,
             @RequestParam("viewAll") boolean viewAll
     ) {
-        Dump[] dumps;
+        return async.run(() -> {
+            if(viewAll) {
+                User authUser = null;
 
-        if(viewAll) {
-            User authUser = null;
+                try {
+                    authUser = authUtil.verifyAuthorization(headers);
+                }
+                catch(Exception e) {
+                    if(e.getMessage().equalsIgnoreCase("expired")) {
+                        return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                    }
+                }
 
-            try {
-                authUser = authUtil.verifyAuthorization(headers);
-            }
-            catch(Exception e) {
-                if(e.getMessage().equalsIgnoreCase("expired")) {
-                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                if (authUser == null || !authUser.getUsername().equalsIgnoreCase(username)) {
+                    return new ResponseEntity(HttpStatus.FORBIDDEN);
                 }
-            }
 
-            if (authUser == null || !authUser.getUsername().equalsIgnoreCase(username)) {
-                return new ResponseEntity(HttpStatus.FORBIDDEN);
+                return list(headers, listVersions.userTag(username),
+                        () -> dumpRepository.findFirst100ByUsernameIgnoreCaseOrderByIdDesc(username));
             }
 
-            dumps = dumpRepository.findFirst100ByUsernameIgnoreCaseOrderByIdDesc(username);
-        }
-        else {
-            dumps = dumpRepository.findFirst100ByUsernameIgnoreCaseAndExposureOrderByIdDesc(username, Enumerations.Exposure.PUBLIC);
-        }
+            readYourWrites.pinUser(username);
 
-        return new ResponseEntity<>(dumps, HttpStatus.OK);
+            return list(headers, listVersions.userTag(username),
+                    () -> dumpRepository.findFirst100ByUsernameIgnoreCaseAndExposureOrderByIdDesc(username, Enumerations.Exposure.PUBLIC));
+        });
     }
 
 
@@ -285,63 +784,281 @@ public class DumpAPIController {
      * Retrieves list of most recent new Dumps committed to DB
      * @param headers   HTTP headers for authorization check
      * @param mine      TRUE if we are asking for users own Dumps
-     * @return  Array of Dumps
+     * @return  Array of Dumps, 304 if the list hasn't changed
      */
     @GetMapping(path="/recent")
-    public @ResponseBody ResponseEntity recent(
+    public @ResponseBody DeferredResult<ResponseEntity> recent(
             @RequestHeader HttpHeaders headers,
             @RequestParam(value = "mine", required = false) boolean mine
     ) {
-        if(mine) {
-            User authUser = null;
+        return async.run(() -> {
+            if(mine) {
+                User authUser = null;
 
-            try {
-                authUser = authUtil.verifyAuthorization(headers);
-            }
-            catch(Exception e) {
-                if(e.getMessage().equalsIgnoreCase("expired")) {
-                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                try {
+                    authUser = authUtil.verifyAuthorization(headers);
+                }
+                catch(Exception e) {
+                    if(e.getMessage().equalsIgnoreCase("expired")) {
+                        return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                    }
                 }
-            }
 
-            if(authUser == null) {
-                return new ResponseEntity(HttpStatus.FORBIDDEN);
-            }
+                if(authUser == null) {
+                    return new ResponseEntity(HttpStatus.FORBIDDEN);
+                }
 
-            return  new ResponseEntity<>(dumpRepository.findFirst10ByUsernameIgnoreCaseOrderByIdDesc(authUser.getUsername()), HttpStatus.OK);
-        }
+                String username = authUser.getUsername();
 
-        return new ResponseEntity<>(dumpRepository.findFirst10ByExposureOrderByIdDesc(Enumerations.Exposure.PUBLIC), HttpStatus.OK);
+                return list(headers, listVersions.userTag(username),
+                        () -> dumpRepository.findFirst10ByUsernameIgnoreCaseOrderByIdDesc(username));
+            }
+
+            return list(headers, listVersions.publicTag(),
+                    () -> dumpRepository.findFirst10ByExposureOrderByIdDesc(Enumerations.Exposure.PUBLIC));
+        });
     }
 
 
     /**
      * Retrieves a range of Dumps from the database in pageable format
+     * @param headers   HTTP headers for conditional request check
      * @param page  Page to return to user
      * @param limit Number of items per page
      * @param type  Exposure to retrieve (Public, Private, Unlisted)
-     * @return  Array of Dumps
+     * @return  Array of Dumps, 304 if the list hasn't changed
      */
     @GetMapping(path="/search")
-    public @ResponseBody ResponseEntity recent(
+    public @ResponseBody DeferredResult<ResponseEntity> recent(
+            @RequestHeader HttpHeaders headers,
             @RequestParam("page") Integer page,
             @RequestParam("limit") Integer limit,
             @RequestParam(defaultValue = "", value = "title", required = false) String title,
             @RequestParam(defaultValue = "", value = "contents", required = false) String contents,
             @RequestParam(value = "type", required = false) String type
     ) {
-        // ensure limit is not over 20
-        limit = Math.max(limit, 20);
+        return async.run(Priority.LOW, () -> {
+            // ensure limit is not over 20
+            int pageSize = Math.max(limit, 20);
+
+            Sort sorter = new Sort(Sort.Direction.DESC, "id");
+
+            return list(headers, listVersions.publicTag(), () -> {
+                if(type != null) {
+                    Page<Dump[]> retPage = dumpRepository.findByExposureAndTypeAndTitleContainsAndContentsContainsOrderByIdDesc(new PageRequest(page, pageSize, sorter), Enumerations.Exposure.PUBLIC, type, title, contents);
+                    return retPage.getContent();
+                }
+
+                Page<Dump[]> retPage = dumpRepository.findByExposureAndTitleContainsAndContentsContainsOrderByIdDesc(new PageRequest(page, pageSize, sorter), Enumerations.Exposure.PUBLIC, title, contents);
+                return retPage.getContent();
+            });
+        }, searchTimeout);
+    }
+
+
+    /**
+     * Stores a new Dump for /add and /live: checks its owner is authorized unless Anonymous, gives it a free
+     * public ID, and records the write for the lists and the writer's reads
+     * @param headers   HTTP headers for authorization check
+     * @param dump      Dump to add
+     * @return  null once stored, the error response if the owner isn't authorized
+     */
+    private ResponseEntity store(HttpHeaders headers, Dump dump) {
+        // verify user if not Anonymous
+        if(!dump.getUsername().equalsIgnoreCase("anonymous")) {
+            User authUser = null;
+
+            try {
+                authUser = authUtil.verifyAuthorization(headers);
+            }
+            catch(Exception e) {
+                if(e.getMessage().equalsIgnoreCase("expired")) {
+                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                }
+            }
+
+            if (authUser == null) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
+        }
+
+        // generate dump public id, checking for collisions without loading contents
+        String newId = genPublicId();
+        while(dumpRepository.findKeyByPublicId(newId) != null) {
+            newId = genPublicId();
+        }
+        dump.setPublicId(newId);
+
+        // make sure title is <= 250 characters
+        if(dump.getTitle().length() > 250) {
+            dump.setTitle(dump.getTitle().substring(0, 250));
+        }
+
+        dump.setContentHash(Hashing.sha256(dump.getContents()));
+        dump.setModified(new Date());
+
+        dumpRepository.save(dump);
+        listVersions.changed(dump.getUsername());
+        readYourWrites.wroteDump(newId, dump.getUsername());
+
+        return null;
+    }
+
+
+    /**
+     * Answers a list request, or a 304 if the client already has the current version of the list. A list which
+     * may come from a replica behind the current version is sent untagged.
+     * @param request   Request headers
+     * @param etag      Current list tag, read before the query runs
+     * @param query     Loads the list
+     * @return  HTTP response
+     */
+    private ResponseEntity list(HttpHeaders request, String etag, Supplier<Object> query) {
+        if(readYourWrites.isListBehind()) {
+            return new ResponseEntity<>(query.get(), HttpStatus.OK);
+        }
+
+        HttpHeaders validators = ConditionalRequests.validators(etag, null);
+
+        if(ConditionalRequests.notModified(request, etag, null)) {
+            return new ResponseEntity(validators, HttpStatus.NOT_MODIFIED);
+        }
+
+        return new ResponseEntity<>(query.get(), validators, HttpStatus.OK);
+    }
+
+
+    /**
+     * Answers an append or close of a live Dump
+     * @param result    Outcome and length of the live Dump
+     * @return  HTTP response with the length
+     */
+    private static ResponseEntity live(LiveDumps.Result result) {
+        switch(result.getOutcome()) {
+            case OK:
+                return new ResponseEntity<>(result.getLength(), HttpStatus.OK);
+            case CONFLICT:
+                return new ResponseEntity<>(result.getLength(), HttpStatus.CONFLICT);
+            case CLOSED:
+                return new ResponseEntity<>(result.getLength(), HttpStatus.GONE);
+            case TOO_LARGE:
+                return new ResponseEntity<>(result.getLength(), HttpStatus.PAYLOAD_TOO_LARGE);
+            case FORBIDDEN:
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            default:
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+    }
+
+
+    /**
+     * Answers a long-poll of a live Dump
+     * @param slice Text read
+     * @return  HTTP response
+     */
+    private static ResponseEntity tailResponse(Slice slice) {
+        if(slice.getStatus() == Slice.Status.NOT_FOUND) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(LIVE_OFFSET, Integer.toString(slice.getNext()));
+        headers.add(LIVE_CLOSED, Boolean.toString(slice.isClosed()));
+        headers.setCacheControl("no-store");
+
+        if(slice.getStatus() == Slice.Status.UNAVAILABLE) {
+            headers.add(HttpHeaders.RETRY_AFTER, "1");
+            return new ResponseEntity(headers, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+
+        return new ResponseEntity<>(slice.getText(), headers, HttpStatus.OK);
+    }
+
+
+    /**
+     * Follows a live Dump into an event stream, one read after the other, until it is closed, the stream ends
+     * or the client goes away
+     */
+    private void stream(SseEmitter emitter, AtomicBoolean done, String id, int offset, long deadline) {
+        liveDumps.follow(id, offset, Math.max(0, deadline - System.currentTimeMillis()), slice -> {
+            if(done.get()) {
+                return;
+            }
+
+            try {
+                if(slice.getStatus() == Slice.Status.NOT_FOUND) {
+                    emitter.send(SseEmitter.event().name("missing").data(id));
+                    emitter.complete();
+                    return;
+                }
+
+                if(slice.getStatus() == Slice.Status.UNAVAILABLE) {
+                    // the client reconnects from its last event
+                    emitter.complete();
+                    return;
+                }
+
+                if(slice.getData().length > 0) {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("offset", slice.getOffset());
+                    event.put("text", slice.getText());
+
+                    emitter.send(SseEmitter.event().id(Integer.toString(slice.getNext())).name("append")
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+
+                if(slice.isClosed()) {
+                    emitter.send(SseEmitter.event().id(Integer.toString(slice.getNext())).name("close")
+                            .data(Collections.singletonMap("length", slice.getNext()), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                }
+                else if(System.currentTimeMillis() >= deadline) {
+                    emitter.complete();
+                }
+                else {
+                    stream(emitter, done, id, slice.getNext(), deadline);
+                }
+            }
+            catch(IOException | IllegalStateException e) {
+                // the client went away
+                done.set(true);
+                emitter.completeWithError(e);
+            }
+        });
+    }
+
+
+    /**
+     * Builds the entity tag of a Dump view. A raw download is exactly the stored contents, so its tag is the
+     * strong content hash. The JSON view also carries metadata and a live view count and may be sent as Smile,
+     * so its tag is weak and includes the modification time.
+     * @param contentHash   Stored content hash, null if none
+     * @param modified      Modification time, null if unknown
+     * @param raw           TRUE for the raw download
+     * @return  Entity tag, null if the Dump has no content hash
+     */
+    private static String viewTag(String contentHash, Date modified, boolean raw) {
+        if(contentHash == null) {
+            return null;
+        }
+
+        if(raw) {
+            return ConditionalRequests.strong(contentHash);
+        }
+
+        return ConditionalRequests.weak(contentHash + "-" + (modified == null ? "0" : Long.toHexString(modified.getTime())));
+    }
 
-        Sort sorter = new Sort(Sort.Direction.DESC, "id");
+    private static HttpHeaders viewHeaders(String etag, Date modified, boolean raw) {
+        HttpHeaders headers = ConditionalRequests.validators(etag, modified);
 
-        if(type != null) {
-            Page<Dump[]> retPage = dumpRepository.findByExposureAndTypeAndTitleContainsAndContentsContainsOrderByIdDesc(new PageRequest(page, limit, sorter), Enumerations.Exposure.PUBLIC, type, title, contents);
-            return new ResponseEntity<>(retPage.getContent(), HttpStatus.OK);
+        if(!raw) {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         }
 
-        Page<Dump[]> retPage = dumpRepository.findByExposureAndTitleContainsAndContentsContainsOrderByIdDesc(new PageRequest(page, limit, sorter), Enumerations.Exposure.PUBLIC, title, contents);
-        return new ResponseEntity<>(retPage.getContent(), HttpStatus.OK);
+        return headers;
     }
 
 
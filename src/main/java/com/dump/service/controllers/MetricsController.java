@@ -0,0 +1,69 @@
+package com.dump.service.controllers;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Spring REST controller exporting metrics in the Prometheus text format
+ */
+@RestController
+@RequestMapping(path="/api/metrics")
+public class MetricsController {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired(required = false)
+    private List<MetricSource> sources = Collections.emptyList();
+
+    @Value("${dump.metrics.allow-remote:false}")
+    private boolean allowRemote;
+
+
+    /**
+     * Collects metrics from every MetricSource. Only answers local scrapers unless remote access is enabled.
+     * @param request   HTTP request, to check the client address
+     * @return  Prometheus text, NOT_FOUND for remote clients
+     */
+    @GetMapping
+    public @ResponseBody ResponseEntity metrics(HttpServletRequest request) {
+        if(!allowRemote && !isLoopback(request.getRemoteAddr())) {
+            return new ResponseEntity(HttpStatus.NOT_FOUND);
+        }
+
+        MetricsWriter writer = new MetricsWriter();
+        for(MetricSource source : sources) {
+            source.writeMetrics(writer);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+
+        return new ResponseEntity<>(writer.toString(), headers, HttpStatus.OK);
+    }
+
+
+    private static boolean isLoopback(String address) {
+        try {
+            return InetAddress.getByName(address).isLoopbackAddress();
+        }
+        catch(UnknownHostException e) {
+            return false;
+        }
+    }
+}
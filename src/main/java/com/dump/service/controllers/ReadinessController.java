@@ -0,0 +1,36 @@
+package com.dump.service.controllers;
+
+import com.dump.service.warmup.CacheWarmer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Spring REST controller answering load balancer readiness checks
+ */
+@RestController
+@RequestMapping(path="/api/ready")
+public class ReadinessController {
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+
+    /**
+     * Reports whether the instance should take traffic, which it should once its caches are warmed up
+     * @return  OK once ready, SERVICE_UNAVAILABLE while warming up or shutting down
+     */
+    @GetMapping
+    public @ResponseBody ResponseEntity ready() {
+        if(!cacheWarmer.isReady()) {
+            return new ResponseEntity<>("warming up", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        return new ResponseEntity<>("ready", HttpStatus.OK);
+    }
+}
@@ -1,14 +1,22 @@
 package com.dump.service.controllers;
 
+import com.dump.service.admission.Priority;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.repositories.UserAvatarRepository;
 import com.dump.service.repositories.UserRepository;
 import com.dump.service.objects.User;
+import com.dump.service.objects.UserAvatar;
+import com.dump.service.routing.ReadYourWrites;
 import com.dump.service.utils.Auth;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
@@ -16,6 +24,10 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Spring REST controller for handling uploads
@@ -31,12 +43,26 @@ public class UploadController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private AsyncResponses async;
+
+    @Autowired
+    @Qualifier("computeExecutor")
+    private BoundedExecutor computeExecutor;
+
     @Autowired
     private Environment env;
 
 
     /**
-     * Handles profile uploads by user
+     * Handles profile uploads by user. The avatar is decoded, resized and encoded on the compute executor, and
+     * the upload is answered with a 503 when that executor is saturated.
      * @param headers   HTTP headers for authorization check
      * @param avatar    User avatar image
      * @param email     User email address
@@ -46,67 +72,99 @@ public class UploadController {
      */
     @PostMapping(path="/profile")
     public @ResponseBody
-    ResponseEntity avatar (
+    DeferredResult<ResponseEntity> avatar (
             @RequestHeader HttpHeaders headers,
             @RequestParam(value = "avatar", required = false) MultipartFile avatar,
             @RequestParam(value = "email") String email,
             @RequestParam(value = "website") String website,
             @RequestParam(value = "password", required = false) String password
     ) {
-        User authUser = null;
-
-        try {
-            authUser = authUtil.verifyAuthorization(headers, true);
-        }
-        catch(Exception e) {
-            if(e.getMessage().equalsIgnoreCase("expired")) {
-                return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
-            }
-        }
+        return async.run(Priority.LOW, () -> {
+            User authUser = null;
 
-        if(authUser == null) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
-
-        // store avatar if uploaded
-        if(avatar != null) {
             try {
-                // convert uploaded image to BufferedImages
-                ByteArrayInputStream bais = new ByteArrayInputStream(avatar.getBytes());
-                BufferedImage bi = ImageIO.read(bais);
-
-                // resize to 150x150
-                BufferedImage bo = new BufferedImage(150, 150, bi.getType());
-                Graphics2D g2d = bo.createGraphics();
-                g2d.drawImage(bi, 0, 0, 150, 150, null);
-                g2d.dispose();
-
-                // save to ByteArrayOutputStream
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(bo, "png", baos);
-
-                // save to user
-                authUser.setAvatar(baos.toByteArray());
+                authUser = authUtil.verifyAuthorization(headers, true);
             }
             catch(Exception e) {
-                // TODO: something meaningful here
+                if(e.getMessage().equalsIgnoreCase("expired")) {
+                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                }
             }
-        }
 
-        // store email
-        authUser.setEmail(email);
+            if(authUser == null) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        // store website
-        authUser.setWebsite(website);
+            // store avatar if uploaded
+            if(avatar != null) {
+                Future<byte[]> resized;
+
+                try {
+                    resized = computeExecutor.submit(() -> resize(avatar.getBytes()));
+                }
+                catch(RejectedExecutionException e) {
+                    return AsyncResponses.unavailable();
+                }
+
+                try {
+                    // save to user
+                    authUser.setAvatar(resized.get());
+                }
+                catch(ExecutionException e) {
+                    // TODO: something meaningful here
+                }
+            }
 
-        // store password
-        if(password != null) {
-            authUser.setPassword(password);
-        }
+            // store email
+            authUser.setEmail(email);
 
-        userRepository.save(authUser);
+            // store website
+            authUser.setWebsite(website);
 
-        // return new info to user
-        return new ResponseEntity<User>(authUser, HttpStatus.OK);
+            // store password
+            if(password != null) {
+                authUser.setPassword(password);
+            }
+
+            // cached Users are updated by Hibernate as this is saved, and the avatar lives outside the User entity
+            userRepository.save(authUser);
+            readYourWrites.wroteUser(authUser.getId(), authUser.getUsername());
+
+            if(authUser.getAvatar() != null) {
+                userAvatarRepository.save(new UserAvatar(authUser.getId(), authUser.getAvatar()));
+            }
+            else {
+                UserAvatar current = userAvatarRepository.findOne(authUser.getId());
+                authUser.setAvatar(current == null ? null : current.getAvatar());
+            }
+
+            // return new info to user
+            return new ResponseEntity<User>(authUser, HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Resizes an uploaded avatar to 150x150
+     * @param upload    Uploaded image
+     * @return  PNG image
+     * @throws IOException  if the upload can't be read
+     */
+    private static byte[] resize(byte[] upload) throws IOException {
+        // convert uploaded image to BufferedImages
+        ByteArrayInputStream bais = new ByteArrayInputStream(upload);
+        BufferedImage bi = ImageIO.read(bais);
+
+        // resize to 150x150
+        BufferedImage bo = new BufferedImage(150, 150, bi.getType());
+        Graphics2D g2d = bo.createGraphics();
+        g2d.drawImage(bi, 0, 0, 150, 150, null);
+        g2d.dispose();
+
+        // save to ByteArrayOutputStream
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(bo, "png", baos);
+
+        return baos.toByteArray();
     }
 }
@@ -1,19 +1,25 @@
 package com.dump.service.controllers;
 
+import com.dump.service.admission.Priority;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.repositories.UserAvatarRepository;
 import com.dump.service.repositories.UserRepository;
+import com.dump.service.routing.ReadYourWrites;
 import com.dump.service.objects.User;
+import com.dump.service.objects.UserAvatar;
 import com.dump.service.utils.Auth;
+import com.dump.service.utils.DefaultAvatar;
 import io.jsonwebtoken.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import java.io.InputStream;
 import java.util.*;
 
 
@@ -34,8 +40,23 @@ public class UserAPIController {
     @Autowired
     private UserRepository userRepository;
 
-    @Value("classpath:t.png")
-    private Resource res;
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+
+    @Autowired
+    private AsyncResponses async;
+
+    @Autowired
+    private DefaultAvatar defaultAvatar;
+
+    @Autowired
+    private CoalescingLoader loader;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Value("${dump.multi-get.max-ids:100}")
+    private int maxIds;
 
 
     /**
@@ -45,14 +66,16 @@ public class UserAPIController {
      */
     @GetMapping(path="/exists/{username}")
     public @ResponseBody
-    ResponseEntity exists(@PathVariable("username") String username) {
-        User user = userRepository.findByUsernameIgnoreCase(username);
+    DeferredResult<ResponseEntity> exists(@PathVariable("username") String username) {
+        return async.run(() -> {
+            User user = loader.findUser(username);
 
-        if(user == null) {
-            return new ResponseEntity(HttpStatus.NOT_FOUND);
-        }
+            if(user == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
 
-        return new ResponseEntity(HttpStatus.OK);
+            return new ResponseEntity(HttpStatus.OK);
+        });
     }
 
 
@@ -63,33 +86,23 @@ public class UserAPIController {
      */
     @GetMapping(path="/avatar/{username}.png")
     public @ResponseBody
-    ResponseEntity avatar(@PathVariable("username") String username) {
-        User user = userRepository.findByUsernameIgnoreCase(username);
+    DeferredResult<ResponseEntity> avatar(@PathVariable("username") String username) {
+        return async.run(Priority.HIGH, () -> {
+            UserAvatar avatar = loader.findAvatar(username);
 
-        if(user == null) {
-            return new ResponseEntity(HttpStatus.NOT_FOUND);
-        }
+            if(avatar == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Type","image/png");
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("Content-Type","image/png");
 
-        if(user.getAvatar() == null) {
-            try {
-                // TODO: don't load this every time
-                InputStream is = res.getInputStream();
-                byte[] byteArr = new byte[4096];
-                is.read(byteArr);
-                return new ResponseEntity<>(byteArr, headers, HttpStatus.OK);
-            }
-            catch(Exception e) {
-                return new ResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR);
+            if(avatar.getAvatar() == null) {
+                return new ResponseEntity<>(defaultAvatar.getBytes(), headers, HttpStatus.OK);
             }
-        }
 
-        User justAvatar = new User();
-        justAvatar.setAvatar(user.getAvatar());
-
-        return new ResponseEntity<>(justAvatar.getAvatar(), headers, HttpStatus.OK);
+            return new ResponseEntity<>(avatar.getAvatar(), headers, HttpStatus.OK);
+        });
     }
 
 
@@ -99,18 +112,21 @@ public class UserAPIController {
      * @return  User object
      */
     @GetMapping(path="/profile")
-    public @ResponseBody ResponseEntity profile(@RequestParam("username") String username) {
-        User user  = userRepository.findByUsernameIgnoreCase(username);
+    public @ResponseBody DeferredResult<ResponseEntity> profile(@RequestParam("username") String username) {
+        return async.run(() -> {
+            User user = loader.findUser(username);
 
-        // bail if we can't find the user
-        if(user == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+            // bail if we can't find the user
+            if(user == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
 
-        // clear password before sending to user
-        user.setPassword("");
+            // clear password before sending to user
+            user.setPassword("");
+            user.setAvatar(avatarOf(username));
 
-        return new ResponseEntity<>(user, HttpStatus.OK);
+            return new ResponseEntity<>(user, HttpStatus.OK);
+        });
     }
 
 
@@ -120,23 +136,27 @@ public class UserAPIController {
      * @return  User object
      */
     @GetMapping(path="/myprofile")
-    public @ResponseBody ResponseEntity myProfile(@RequestHeader HttpHeaders headers) {
-        User authUser = null;
-
-        try {
-            authUser = authUtil.verifyAuthorization(headers);
-        }
-        catch(Exception e) {
-            if(e.getMessage().equalsIgnoreCase("expired")) {
-                return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+    public @ResponseBody DeferredResult<ResponseEntity> myProfile(@RequestHeader HttpHeaders headers) {
+        return async.run(() -> {
+            User authUser = null;
+
+            try {
+                authUser = authUtil.verifyAuthorization(headers);
+            }
+            catch(Exception e) {
+                if(e.getMessage().equalsIgnoreCase("expired")) {
+                    return new ResponseEntity(HttpStatus.I_AM_A_TEAPOT);
+                }
+            }
+
+            if(authUser == null) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
             }
-        }
 
-        if(authUser == null) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
+            authUser.setAvatar(avatarOf(authUser.getUsername()));
 
-        return new ResponseEntity<>(authUser, HttpStatus.OK);
+            return new ResponseEntity<>(authUser, HttpStatus.OK);
+        });
     }
 
 
@@ -146,19 +166,27 @@ public class UserAPIController {
      * @return HTTP status code of result, and user ID if success
      */
     @PostMapping(path="/add")
-    public @ResponseBody ResponseEntity add(@RequestBody User user) {
-        // sanity check
-        if(user == null) {
-            return new ResponseEntity(HttpStatus.BAD_REQUEST);
-        }
+    public @ResponseBody DeferredResult<ResponseEntity> add(@RequestBody User user) {
+        return async.run(() -> {
+            // sanity check
+            if(user == null) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
+
+            // save to DB
+            userRepository.save(user);
+            readYourWrites.wroteUser(user.getId(), user.getUsername());
 
-        // save to DB
-        userRepository.save(user);
+            // get saved user ID
+            User saved = userRepository.findByUsernameIgnoreCase(user.getUsername());
 
-        // get saved user ID
-        user = userRepository.findByUsernameIgnoreCase(user.getUsername());
+            // the avatar isn't part of the User entity
+            if(user.getAvatar() != null) {
+                userAvatarRepository.save(new UserAvatar(saved.getId(), user.getAvatar()));
+            }
 
-        return new ResponseEntity<>(user.getId(), HttpStatus.OK);
+            return new ResponseEntity<>(saved.getId(), HttpStatus.OK);
+        });
     }
 
 
@@ -168,14 +196,51 @@ public class UserAPIController {
      * @return  Username string
      */
     @GetMapping(path="/username")
-    public @ResponseBody ResponseEntity username(@RequestParam Integer id) {
-        User user = userRepository.findById(id);
+    public @ResponseBody DeferredResult<ResponseEntity> username(@RequestParam Integer id) {
+        return async.run(() -> {
+            readYourWrites.pinUser(id);
+            User user = userRepository.findById(id);
+
+            if(user == null) {
+                return new ResponseEntity(HttpStatus.NOT_FOUND);
+            }
+
+            return new ResponseEntity<>(user.getUsername(), HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Retrieves the usernames associated with several IDs at once
+     * @param ids   Comma separated IDs of users, at most dump.multi-get.max-ids
+     * @return  Map of each ID to its username, or to null if there is no such user. 400 if no IDs or too many
+     *          were given.
+     */
+    @GetMapping(path="/usernames")
+    public @ResponseBody DeferredResult<ResponseEntity> usernames(@RequestParam List<Integer> ids) {
+        Set<Integer> keys = new LinkedHashSet<>(ids);
+        keys.remove(null);
+
+        return async.run(() -> {
+            if(keys.isEmpty() || keys.size() > maxIds) {
+                return new ResponseEntity(HttpStatus.BAD_REQUEST);
+            }
+
+            for(Integer id : keys) {
+                readYourWrites.pinUser(id);
+            }
 
-        if(user == null) {
-            return new ResponseEntity(HttpStatus.NOT_FOUND);
-        }
+            // every ID is answered, misses with null
+            Map<Integer, String> usernames = new LinkedHashMap<>();
+            for(Integer id : keys) {
+                usernames.put(id, null);
+            }
+            for(User user : userRepository.findByIdIn(keys)) {
+                usernames.put(user.getId(), user.getUsername());
+            }
 
-        return new ResponseEntity<>(user.getUsername(), HttpStatus.OK);
+            return new ResponseEntity<>(usernames, HttpStatus.OK);
+        });
     }
 
 
@@ -187,34 +252,48 @@ public class UserAPIController {
      * @return  JSON containing JWT on success, Forbidden on failure
      */
     @GetMapping(path="/login")
-    public @ResponseBody ResponseEntity login(
+    public @ResponseBody DeferredResult<ResponseEntity> login(
             @RequestParam String username,
             @RequestParam String password,
             @RequestParam(required = false) boolean remember
             ) {
-        User user =  userRepository.findByUsernameIgnoreCaseAndPassword(username, password);
+        return async.run(() -> {
+            // a user may log in right after signing up or changing their password
+            readYourWrites.pinUser(username);
+            User user =  userRepository.findByUsernameIgnoreCaseAndPassword(username, password);
 
-        if(user == null) {
-            return new ResponseEntity(HttpStatus.FORBIDDEN);
-        }
+            if(user == null) {
+                return new ResponseEntity(HttpStatus.FORBIDDEN);
+            }
 
-        // generate expiration dates
-        GregorianCalendar cal = new GregorianCalendar();
-        cal.setTime(new Date());
-        cal.add(Calendar.DATE, remember ? 365 : 3);
+            // generate expiration dates
+            GregorianCalendar cal = new GregorianCalendar();
+            cal.setTime(new Date());
+            cal.add(Calendar.DATE, remember ? 365 : 3);
 
-        Map<String, Object> claimMap = new HashMap<>();
-        claimMap.put("username", user.getUsername());
+            Map<String, Object> claimMap = new HashMap<>();
+            claimMap.put("username", user.getUsername());
 
-        String compactJws = Jwts.builder()
-                .setClaims(claimMap)
-                .setSubject(user.getId().toString())
-                .setExpiration(cal.getTime())
-                .signWith(SignatureAlgorithm.HS256, env.getProperty("dump.jwt-key"))
-                .compact();
+            String compactJws = Jwts.builder()
+                    .setClaims(claimMap)
+                    .setSubject(user.getId().toString())
+                    .setExpiration(cal.getTime())
+                    .signWith(SignatureAlgorithm.HS256, env.getProperty("dump.jwt-key"))
+                    .compact();
 
-        String returnStr = String.format("{\"jwt\":\"%s\"}", compactJws);
+            String returnStr = String.format("{\"jwt\":\"%s\"}", compactJws);
 
-        return new ResponseEntity<>(returnStr, HttpStatus.OK);
+            return new ResponseEntity<>(returnStr, HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * @param username  username of an existing User
+     * @return  Avatar of the User, null if none
+     */
+    private byte[] avatarOf(String username) {
+        UserAvatar avatar = loader.findAvatar(username);
+        return avatar == null ? null : avatar.getAvatar();
     }
 }
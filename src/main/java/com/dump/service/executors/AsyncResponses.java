@@ -0,0 +1,162 @@
+package com.dump.service.executors;
+
+import com.dump.service.admission.ConcurrencyLimiter;
+import com.dump.service.admission.Priority;
+import com.dump.service.routing.ReplicaRouting;
+import com.dump.service.tracing.QueryTrace;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Runs controller handlers on the persistence executor so the container thread is released while the
+ * database works. Handlers answer 503 when the pool is saturated or the request times out, and at once,
+ * without being queued, when the concurrency limit leaves no room for their priority.
+ *
+ * With dump.async.enabled=false handlers run on the container thread as before, which is kept for comparison.
+ */
+@Component
+public class AsyncResponses {
+
+    @Autowired
+    @Qualifier("persistenceExecutor")
+    private BoundedExecutor executor;
+
+    @Autowired
+    private ConcurrencyLimiter limiter;
+
+    @Value("${dump.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dump.async.timeout:10000}")
+    private long defaultTimeout;
+
+
+    /**
+     * Runs a handler of normal priority with the default timeout
+     * @param handler   Handler body
+     * @return  DeferredResult completed with the handler's response
+     */
+    public DeferredResult<ResponseEntity> run(Callable<ResponseEntity> handler) {
+        return run(Priority.NORMAL, handler, defaultTimeout);
+    }
+
+
+    /**
+     * Runs a handler of normal priority
+     * @param handler   Handler body
+     * @param timeout   Milliseconds before the client gets a 503
+     * @return  DeferredResult completed with the handler's response
+     */
+    public DeferredResult<ResponseEntity> run(Callable<ResponseEntity> handler, long timeout) {
+        return run(Priority.NORMAL, handler, timeout);
+    }
+
+
+    /**
+     * Runs a handler with the default timeout
+     * @param priority  Admission priority
+     * @param handler   Handler body
+     * @return  DeferredResult completed with the handler's response
+     */
+    public DeferredResult<ResponseEntity> run(Priority priority, Callable<ResponseEntity> handler) {
+        return run(priority, handler, defaultTimeout);
+    }
+
+
+    /**
+     * Runs a handler
+     * @param priority  Admission priority
+     * @param handler   Handler body
+     * @param timeout   Milliseconds before the client gets a 503
+     * @return  DeferredResult completed with the handler's response
+     */
+    public DeferredResult<ResponseEntity> run(Priority priority, Callable<ResponseEntity> handler, long timeout) {
+        DeferredResult<ResponseEntity> result = new DeferredResult<>(timeout, unavailable());
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire(priority);
+
+        if(permit == null) {
+            result.setResult(unavailable());
+            return result;
+        }
+
+        if(!enabled) {
+            try {
+                complete(result, handler);
+            }
+            finally {
+                permit.release();
+            }
+            return result;
+        }
+
+        // statements run on the pool still belong to this request's trace
+        QueryTrace trace = QueryTrace.current();
+        AtomicBoolean started = new AtomicBoolean();
+
+        try {
+            Future<?> task = executor.submit(() -> {
+                if(!started.compareAndSet(false, true)) {
+                    return;
+                }
+
+                QueryTrace previous = QueryTrace.attach(trace);
+
+                try {
+                    complete(result, handler);
+                }
+                finally {
+                    QueryTrace.attach(previous);
+                    ReplicaRouting.reset();
+                    permit.release();
+                }
+            });
+
+            // a timed out request still holds its place in the queue, don't let it reach the database
+            result.onTimeout(() -> {
+                task.cancel(false);
+
+                if(started.compareAndSet(false, true)) {
+                    permit.release();
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            permit.release();
+            result.setResult(unavailable());
+        }
+
+        return result;
+    }
+
+
+    private static void complete(DeferredResult<ResponseEntity> result, Callable<ResponseEntity> handler) {
+        try {
+            result.setResult(handler.call());
+        }
+        catch(Exception e) {
+            result.setErrorResult(e);
+        }
+    }
+
+    /**
+     * @return  Response for a request turned away for lack of capacity, telling the client to retry shortly
+     */
+    public static ResponseEntity unavailable() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity(headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,131 @@
+package com.dump.service.executors;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Fixed size thread pool with a bounded queue. Tasks submitted while every thread is busy and the queue is
+ * full are rejected with a RejectedExecutionException instead of piling up, and the time each task waits
+ * in the queue is recorded.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    private final PoolMetrics metrics;
+    private final long drainTimeoutMillis;
+
+
+    /**
+     * Creates a BoundedExecutor
+     * @param name                  Pool name, used for thread names and metric labels
+     * @param threads               Maximum number of threads
+     * @param queueCapacity         Maximum number of waiting tasks
+     * @param drainTimeoutMillis    Time given to queued and running tasks to finish on shutdown
+     */
+    public BoundedExecutor(String name, int threads, int queueCapacity, long drainTimeoutMillis) {
+        super(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new CustomizableThreadFactory(name + "-"));
+
+        this.metrics = new PoolMetrics(name);
+        this.drainTimeoutMillis = drainTimeoutMillis;
+
+        // idle pools give their threads back
+        allowCoreThreadTimeOut(true);
+
+        setRejectedExecutionHandler((task, executor) -> {
+            metrics.rejected.increment();
+            throw new RejectedExecutionException("Executor " + metrics.name
+                    + (executor.isShutdown() ? " is shut down" : " is saturated"));
+        });
+    }
+
+
+    /**
+     * Queues a task, remembering when it was queued
+     * @param command   Task to run
+     * @throws RejectedExecutionException   if the pool is saturated or shut down
+     */
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+    }
+
+
+    /**
+     * Stops accepting tasks and waits for queued and running ones to finish, interrupting whatever is
+     * still running after the drain timeout
+     */
+    public void shutdownGracefully() {
+        shutdown();
+
+        try {
+            if(!awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                List<Runnable> dropped = shutdownNow();
+                logger.warn("Executor {} did not drain in {}ms, dropped {} queued tasks",
+                        metrics.name, drainTimeoutMillis, dropped.size());
+            }
+        }
+        catch(InterruptedException e) {
+            shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * @return  Pool name
+     */
+    public String getName() {
+        return metrics.name;
+    }
+
+
+    /**
+     * @return  Number of tasks rejected so far
+     */
+    public long getRejectedCount() {
+        return metrics.rejected.sum();
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        metrics.write(writer, this);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable thrown) {
+        super.afterExecute(task, thrown);
+        metrics.finished(task instanceof TimedTask ? ((TimedTask) task).command : task, thrown);
+    }
+
+
+    /**
+     * Task wrapper recording the time spent in the queue
+     */
+    private class TimedTask implements Runnable {
+        final Runnable command;
+        final long queued = System.nanoTime();
+
+        TimedTask(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            metrics.waitTime.record(System.nanoTime() - queued);
+            command.run();
+        }
+    }
+}
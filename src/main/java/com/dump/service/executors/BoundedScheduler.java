@@ -0,0 +1,113 @@
+package com.dump.service.executors;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Scheduled thread pool for @Scheduled jobs with a cap on pending tasks. Wait time is how late a task
+ * started compared to when it was due.
+ */
+public class BoundedScheduler extends ScheduledThreadPoolExecutor implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedScheduler.class);
+
+    private final PoolMetrics metrics;
+    private final int queueCapacity;
+    private final long drainTimeoutMillis;
+
+
+    /**
+     * Creates a BoundedScheduler
+     * @param name                  Pool name, used for thread names and metric labels
+     * @param threads               Number of threads
+     * @param queueCapacity         Maximum number of pending tasks
+     * @param drainTimeoutMillis    Time given to running tasks to finish on shutdown
+     */
+    public BoundedScheduler(String name, int threads, int queueCapacity, long drainTimeoutMillis) {
+        super(threads, new CustomizableThreadFactory(name + "-"));
+
+        this.metrics = new PoolMetrics(name);
+        this.queueCapacity = queueCapacity;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+
+        setRemoveOnCancelPolicy(true);
+        setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+
+        setRejectedExecutionHandler((task, executor) -> {
+            metrics.rejected.increment();
+            throw new RejectedExecutionException("Scheduler " + metrics.name + " is shut down");
+        });
+    }
+
+
+    /**
+     * Stops scheduling and waits for running jobs to finish, interrupting them after the drain timeout
+     */
+    public void shutdownGracefully() {
+        shutdown();
+
+        try {
+            if(!awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                shutdownNow();
+                logger.warn("Scheduler {} did not finish running jobs in {}ms", metrics.name, drainTimeoutMillis);
+            }
+        }
+        catch(InterruptedException e) {
+            shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        metrics.write(writer, this);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+        return checkCapacity(task);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable, RunnableScheduledFuture<V> task) {
+        return checkCapacity(task);
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        super.beforeExecute(thread, task);
+
+        if(task instanceof Delayed) {
+            metrics.waitTime.record(-((Delayed) task).getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable thrown) {
+        super.afterExecute(task, thrown);
+        metrics.finished(task, thrown);
+    }
+
+
+    private <V> RunnableScheduledFuture<V> checkCapacity(RunnableScheduledFuture<V> task) {
+        if(getQueue().size() >= queueCapacity) {
+            metrics.rejected.increment();
+            throw new RejectedExecutionException("Scheduler " + metrics.name + " has " + queueCapacity + " pending tasks");
+        }
+
+        return task;
+    }
+}
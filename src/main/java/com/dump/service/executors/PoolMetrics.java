@@ -0,0 +1,75 @@
+package com.dump.service.executors;
+
+import com.dump.service.metrics.LatencyHistogram;
+import com.dump.service.metrics.MetricsWriter;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters shared by the executor pools
+ */
+class PoolMetrics {
+
+    final String name;
+    final LongAdder completed = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LatencyHistogram waitTime = new LatencyHistogram();
+
+    PoolMetrics(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Counts a finished task. Tasks submitted as futures capture their exception instead of throwing it.
+     * @param task      Task which ran
+     * @param thrown    Exception thrown by the task, null if none
+     */
+    void finished(Runnable task, Throwable thrown) {
+        if(thrown == null && task instanceof Future && ((Future<?>) task).isDone()) {
+            try {
+                ((Future<?>) task).get();
+            }
+            catch(CancellationException e) {
+                // cancelled while running, not a failure
+            }
+            catch(ExecutionException e) {
+                thrown = e.getCause();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if(thrown == null) {
+            completed.increment();
+        }
+        else {
+            failed.increment();
+        }
+    }
+
+
+    /**
+     * Writes the metrics of a pool
+     * @param writer    Metrics writer
+     * @param pool      Pool the metrics belong to
+     */
+    void write(MetricsWriter writer, ThreadPoolExecutor pool) {
+        String[] labels = { "pool", name };
+
+        writer.gauge("dump_executor_threads", "Threads in the pool", labels, pool.getPoolSize());
+        writer.gauge("dump_executor_active", "Threads running a task", labels, pool.getActiveCount());
+        writer.gauge("dump_executor_queued", "Tasks waiting in the queue", labels, pool.getQueue().size());
+        writer.counter("dump_executor_completed_total", "Tasks run to completion", labels, completed.sum());
+        writer.counter("dump_executor_failed_total", "Tasks which threw an exception", labels, failed.sum());
+        writer.counter("dump_executor_rejected_total", "Tasks rejected because the pool was full or shut down", labels, rejected.sum());
+        writer.summary("dump_executor_wait_seconds", "Time tasks spent queued before starting", labels, waitTime);
+    }
+}
@@ -0,0 +1,148 @@
+package com.dump.service.fastpath;
+
+import com.dump.service.Enumerations;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.UserAvatar;
+import com.dump.service.routing.ReplicaRouting;
+import com.dump.service.utils.DefaultAvatar;
+import com.dump.service.views.ViewCounter;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Serves raw Dump downloads and avatars for the fast path server. Uses the same loader and view counter
+ * as the Spring controllers, so responses and view counts match the MVC endpoints.
+ *
+ * Requests here skip rate limiting, ETag revalidation and admission control, and carry no authorization,
+ * so only public Dumps are served. Unlisted and private Dumps answer 404 and stay on the MVC listener.
+ */
+public class FastPathHandler {
+
+    static final String DOWNLOAD_PREFIX = "/api/dumps/view/";
+    static final String AVATAR_PREFIX = "/api/users/avatar/";
+
+    private static final FastPathResponse NOT_FOUND = FastPathResponse.empty(404);
+
+    private final CoalescingLoader loader;
+    private final ViewCounter viewCounter;
+    private final DefaultAvatar defaultAvatar;
+
+
+    /**
+     * Creates a FastPathHandler
+     * @param loader        Shared Dump and User loader
+     * @param viewCounter   Shared view counter
+     * @param defaultAvatar Avatar for users without one
+     */
+    public FastPathHandler(CoalescingLoader loader, ViewCounter viewCounter, DefaultAvatar defaultAvatar) {
+        this.loader = loader;
+        this.viewCounter = viewCounter;
+        this.defaultAvatar = defaultAvatar;
+    }
+
+
+    /**
+     * Handles a GET request. Blocks on the database, so it must not run on the selector thread.
+     * @param path      Request path, still URL encoded
+     * @param query     Query string, null if none
+     * @param viewer    Viewer hash, see {@link com.dump.service.views.UniqueViewers#fingerprint(String, String)}
+     * @return  Response
+     */
+    public FastPathResponse handle(String path, String query, long viewer) {
+        try {
+            return route(path, query, viewer);
+        }
+        finally {
+            ReplicaRouting.reset();
+        }
+    }
+
+
+    private FastPathResponse route(String path, String query, long viewer) {
+        if(path.startsWith(DOWNLOAD_PREFIX)) {
+            String id = decode(path.substring(DOWNLOAD_PREFIX.length()));
+
+            // only raw downloads are served here, JSON views stay on the MVC listener
+            if(id == null || !isDownload(query)) {
+                return NOT_FOUND;
+            }
+
+            return download(id, viewer);
+        }
+
+        if(path.startsWith(AVATAR_PREFIX) && path.endsWith(".png")) {
+            String username = decode(path.substring(AVATAR_PREFIX.length(), path.length() - 4));
+
+            if(username == null) {
+                return NOT_FOUND;
+            }
+
+            return avatar(username);
+        }
+
+        return NOT_FOUND;
+    }
+
+
+    private FastPathResponse download(String id, long viewer) {
+        Dump dump = loader.findDump(id);
+
+        if(dump == null || dump.getExposure() != Enumerations.Exposure.PUBLIC) {
+            return NOT_FOUND;
+        }
+
+        viewCounter.record(dump, viewer);
+
+        byte[] body = dump.getContents() == null ? new byte[0] : dump.getContents().getBytes(StandardCharsets.UTF_8);
+        String cd = String.format("attachment; filename=\"%s.txt\"", dump.getPublicId());
+
+        return new FastPathResponse(200, "text/plain;charset=UTF-8", cd, body);
+    }
+
+    private FastPathResponse avatar(String username) {
+        UserAvatar avatar = loader.findAvatar(username);
+
+        if(avatar == null) {
+            return NOT_FOUND;
+        }
+
+        byte[] body = avatar.getAvatar() == null ? defaultAvatar.getBytes() : avatar.getAvatar();
+
+        return new FastPathResponse(200, "image/png", null, body);
+    }
+
+    private static boolean isDownload(String query) {
+        if(query == null) {
+            return false;
+        }
+
+        for(String param : query.split("&")) {
+            if(param.equalsIgnoreCase("download=true")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Decodes a single path segment, null if it is empty or contains a slash
+     */
+    private static String decode(String segment) {
+        if(segment.isEmpty() || segment.indexOf('/') >= 0) {
+            return null;
+        }
+
+        try {
+            // '+' is literal in paths
+            return URLDecoder.decode(segment.replace("+", "%2B"), "UTF-8");
+        }
+        catch(UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
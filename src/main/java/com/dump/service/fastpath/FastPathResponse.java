@@ -0,0 +1,54 @@
+package com.dump.service.fastpath;
+
+
+/**
+ * Response produced by the fast path handler
+ */
+public class FastPathResponse {
+
+    private final int status;
+    private final String contentType;
+    private final String contentDisposition;
+    private final byte[] body;
+
+
+    /**
+     * Creates a FastPathResponse
+     * @param status                HTTP status code
+     * @param contentType           Content-Type header, null for none
+     * @param contentDisposition    Content-Disposition header, null for none
+     * @param body                  Response body
+     */
+    public FastPathResponse(int status, String contentType, String contentDisposition, byte[] body) {
+        this.status = status;
+        this.contentType = contentType;
+        this.contentDisposition = contentDisposition;
+        this.body = body;
+    }
+
+
+    /**
+     * Creates a response without a body
+     * @param status    HTTP status code
+     * @return  FastPathResponse
+     */
+    public static FastPathResponse empty(int status) {
+        return new FastPathResponse(status, null, null, new byte[0]);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentDisposition() {
+        return contentDisposition;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
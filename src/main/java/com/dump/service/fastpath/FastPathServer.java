@@ -0,0 +1,511 @@
+package com.dump.service.fastpath;
+
+import com.dump.service.metrics.LatencyHistogram;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.views.UniqueViewers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Minimal HTTP/1.1 listener for the hottest read paths, running a single NIO selector thread beside Tomcat.
+ *
+ * The selector thread only parses request heads and writes responses. Handlers block on the database, so
+ * they run on the persistence executor and hand their response back to the selector. Only GET and HEAD
+ * without a body are supported; connections are kept alive and requests on one connection are answered in
+ * order.
+ */
+public class FastPathServer implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FastPathServer.class);
+
+    private static final int MAX_HEAD = 8192;
+    private static final byte[] HEAD_END = { '\r', '\n', '\r', '\n' };
+
+    private final InetSocketAddress address;
+    private final FastPathHandler handler;
+    private final Executor executor;
+    private final long idleTimeoutMillis;
+    private final int maxConnections;
+
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = new HashSet<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread loop;
+    private volatile boolean running;
+
+    private volatile String[] date = { "", "" };
+
+
+    /**
+     * Creates a FastPathServer
+     * @param port              Port to listen on, 0 for any free port
+     * @param handler           Request handler
+     * @param executor          Executor handlers run on
+     * @param idleTimeoutMillis Time after which idle keep-alive connections are closed
+     * @param maxConnections    Maximum number of open connections
+     */
+    public FastPathServer(int port, FastPathHandler handler, Executor executor, long idleTimeoutMillis, int maxConnections) {
+        this.address = new InetSocketAddress(port);
+        this.handler = handler;
+        this.executor = executor;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxConnections = maxConnections;
+    }
+
+
+    /**
+     * Binds the port and starts the selector thread
+     * @throws IOException  if the port can't be bound
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.socket().setReuseAddress(true);
+        server.bind(address, 1024);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        loop = new Thread(this::run, "fastpath-selector");
+        loop.start();
+
+        logger.info("Fast path listening on port {}", getPort());
+    }
+
+
+    /**
+     * Stops accepting requests and closes every connection
+     */
+    public void stop() {
+        running = false;
+
+        if(selector != null) {
+            selector.wakeup();
+        }
+
+        try {
+            if(loop != null) {
+                loop.join(5000);
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * @return  Port the server is bound to
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        String[] labels = {};
+
+        writer.gauge("dump_fastpath_connections", "Open fast path connections", labels, open.get());
+        writer.counter("dump_fastpath_requests_total", "Requests answered by the fast path", labels, requests.sum());
+        writer.counter("dump_fastpath_rejected_total", "Fast path requests rejected by a saturated executor", labels, rejected.sum());
+        writer.summary("dump_fastpath_request_seconds", "Time from parsed request head to response written", labels, latency);
+    }
+
+
+    private void run() {
+        long lastSweep = System.currentTimeMillis();
+
+        try {
+            while(running) {
+                selector.select(1000);
+
+                Connection completed;
+                while((completed = ready.poll()) != null) {
+                    completed.startWrite();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if(!key.isValid()) {
+                        continue;
+                    }
+
+                    if(key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if(key.isReadable()) {
+                            connection.read();
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                    catch(IOException e) {
+                        connection.close();
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if(now - lastSweep >= 1000) {
+                    sweep(now);
+                    lastSweep = now;
+                }
+            }
+        }
+        catch(IOException e) {
+            logger.error("Fast path selector failed, listener stopped", e);
+        }
+        finally {
+            for(Connection connection : new HashSet<>(connections)) {
+                connection.close();
+            }
+
+            try {
+                server.close();
+                selector.close();
+            }
+            catch(IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while((channel = server.accept()) != null) {
+            if(connections.size() >= maxConnections) {
+                channel.close();
+                continue;
+            }
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            open.incrementAndGet();
+        }
+    }
+
+    /**
+     * Closes keep-alive connections which haven't sent anything for a while. Connections waiting on a
+     * handler are left alone.
+     */
+    private void sweep(long now) {
+        for(Connection connection : new HashSet<>(connections)) {
+            if(!connection.busy && now - connection.lastActive > idleTimeoutMillis) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Formats the Date header at most once per second
+     */
+    private String date() {
+        String second = Long.toString(System.currentTimeMillis() / 1000);
+        String[] cached = date;
+
+        if(!cached[0].equals(second)) {
+            cached = new String[] { second, DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)) };
+            date = cached;
+        }
+
+        return cached[1];
+    }
+
+    private static String reason(int status) {
+        switch(status) {
+            case 200: return "OK";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 431: return "Request Header Fields Too Large";
+            case 503: return "Service Unavailable";
+            default: return "Internal Server Error";
+        }
+    }
+
+    private static int indexOf(byte[] data, int limit, byte[] pattern) {
+        outer:
+        for(int i = 0; i + pattern.length <= limit; i++) {
+            for(int j = 0; j < pattern.length; j++) {
+                if(data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+
+    /**
+     * One client connection. Only touched by the selector thread, except for the response handed over
+     * through the ready queue.
+     */
+    private class Connection {
+        final SocketChannel channel;
+        final String address;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_HEAD);
+        SelectionKey key;
+
+        boolean busy;
+        boolean keepAlive;
+        boolean head;
+        long lastActive = System.currentTimeMillis();
+        long started;
+
+        ByteBuffer[] out;
+        ByteBuffer[] pending;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.address = channel.socket().getInetAddress() == null ? "" : channel.socket().getInetAddress().getHostAddress();
+        }
+
+        void read() throws IOException {
+            if(channel.read(in) < 0) {
+                close();
+                return;
+            }
+
+            lastActive = System.currentTimeMillis();
+
+            if(!busy) {
+                parse();
+            }
+        }
+
+        /**
+         * Parses a complete request head from the input buffer and dispatches it
+         */
+        void parse() {
+            int end = indexOf(in.array(), in.position(), HEAD_END);
+
+            if(end < 0) {
+                if(!in.hasRemaining()) {
+                    busy = true;
+                    started = System.nanoTime();
+                    key.interestOps(0);
+                    keepAlive = false;
+                    respond(FastPathResponse.empty(431));
+                }
+                return;
+            }
+
+            String text = new String(in.array(), 0, end, StandardCharsets.ISO_8859_1);
+
+            // keep pipelined bytes for the next request
+            int consumed = end + HEAD_END.length;
+            System.arraycopy(in.array(), consumed, in.array(), 0, in.position() - consumed);
+            in.position(in.position() - consumed);
+
+            busy = true;
+            started = System.nanoTime();
+            key.interestOps(0);
+
+            String[] lines = text.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+
+            if(requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                keepAlive = false;
+                respond(FastPathResponse.empty(400));
+                return;
+            }
+
+            String method = requestLine[0];
+            boolean http11 = requestLine[2].equals("HTTP/1.1");
+            boolean hasBody = false;
+            String userAgent = null;
+            keepAlive = http11;
+
+            for(int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if(colon < 0) {
+                    continue;
+                }
+
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = lines[i].substring(colon + 1).trim();
+
+                if(name.equals("connection")) {
+                    keepAlive = http11 ? !value.equalsIgnoreCase("close") : value.equalsIgnoreCase("keep-alive");
+                }
+                else if(name.equals("transfer-encoding") || (name.equals("content-length") && !value.equals("0"))) {
+                    hasBody = true;
+                }
+                else if(name.equals("user-agent")) {
+                    userAgent = value;
+                }
+            }
+
+            head = method.equals("HEAD");
+
+            // request bodies are never read, so the connection can't be reused after one
+            if(hasBody) {
+                keepAlive = false;
+                respond(FastPathResponse.empty(400));
+                return;
+            }
+
+            if(!head && !method.equals("GET")) {
+                respond(FastPathResponse.empty(405));
+                return;
+            }
+
+            String target = requestLine[1];
+            int q = target.indexOf('?');
+            String path = q < 0 ? target : target.substring(0, q);
+            String query = q < 0 ? null : target.substring(q + 1);
+            long viewer = UniqueViewers.fingerprint(address, userAgent);
+
+            try {
+                executor.execute(() -> {
+                    FastPathResponse response;
+
+                    try {
+                        response = handler.handle(path, query, viewer);
+                    }
+                    catch(RuntimeException e) {
+                        logger.error("Fast path request {} failed", path, e);
+                        response = FastPathResponse.empty(500);
+                    }
+
+                    respond(response);
+                });
+            }
+            catch(RejectedExecutionException e) {
+                rejected.increment();
+                respond(FastPathResponse.empty(503));
+            }
+        }
+
+        /**
+         * Encodes a response and hands it to the selector thread. Called from any thread.
+         */
+        void respond(FastPathResponse response) {
+            StringBuilder sb = new StringBuilder(256);
+            byte[] body = response.getBody();
+
+            sb.append("HTTP/1.1 ").append(response.getStatus()).append(' ').append(reason(response.getStatus())).append("\r\n");
+            sb.append("Date: ").append(date()).append("\r\n");
+            sb.append("Content-Length: ").append(body.length).append("\r\n");
+            if(response.getContentType() != null) {
+                sb.append("Content-Type: ").append(response.getContentType()).append("\r\n");
+            }
+            if(response.getContentDisposition() != null) {
+                sb.append("Content-Disposition: ").append(response.getContentDisposition()).append("\r\n");
+            }
+            if(response.getStatus() == 405) {
+                sb.append("Allow: GET, HEAD\r\n");
+            }
+            if(response.getStatus() == 503) {
+                sb.append("Retry-After: 1\r\n");
+            }
+            sb.append("Access-Control-Allow-Origin: *\r\n");
+            sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+
+            ByteBuffer headers = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+            pending = head || body.length == 0 ? new ByteBuffer[] { headers } : new ByteBuffer[] { headers, ByteBuffer.wrap(body) };
+
+            ready.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Starts writing a response handed over by respond()
+         */
+        void startWrite() {
+            if(!channel.isOpen()) {
+                return;
+            }
+
+            out = pending;
+            pending = null;
+
+            try {
+                key.interestOps(SelectionKey.OP_WRITE);
+                write();
+            }
+            catch(IOException e) {
+                close();
+            }
+        }
+
+        void write() throws IOException {
+            channel.write(out);
+
+            if(out[out.length - 1].hasRemaining()) {
+                return;
+            }
+
+            latency.record(System.nanoTime() - started);
+            requests.increment();
+            out = null;
+            busy = false;
+            lastActive = System.currentTimeMillis();
+
+            if(!keepAlive) {
+                close();
+                return;
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+            parse();
+        }
+
+        void close() {
+            if(connections.remove(this)) {
+                open.decrementAndGet();
+            }
+
+            try {
+                channel.close();
+            }
+            catch(IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
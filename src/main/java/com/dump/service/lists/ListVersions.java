@@ -0,0 +1,82 @@
+package com.dump.service.lists;
+
+import com.dump.service.objects.ListVersion;
+import com.dump.service.repositories.ListVersionRepository;
+import com.dump.service.utils.ConditionalRequests;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+
+/**
+ * Version counters for the Dump lists (/recent, /user and /search), used as weak ETags so pollers get cheap
+ * 304s. Every Dump write bumps the public version and the version of the Dump's owner. The versions are rows
+ * of the home database, so every node derives the same tag and a write on one node changes the tags of all.
+ */
+@Component
+public class ListVersions {
+
+    private static final String PUBLIC = "public";
+
+    @Autowired
+    private ListVersionRepository repository;
+
+
+    /**
+     * Records a write to a Dump. Call after the write is committed.
+     * @param username  Owner of the changed Dump
+     */
+    public void changed(String username) {
+        bump(PUBLIC);
+
+        if(username != null) {
+            bump(user(username));
+        }
+    }
+
+
+    /**
+     * Tag of the lists built from public Dumps. Read it before querying, so a concurrent write can only make
+     * the tag older than the data, never newer.
+     * @return  Weak entity tag
+     */
+    public String publicTag() {
+        return ConditionalRequests.weak("p" + version(PUBLIC));
+    }
+
+
+    /**
+     * Tag of a user's lists. Read it before querying, like {@link #publicTag()}.
+     * @param username  List owner
+     * @return  Weak entity tag
+     */
+    public String userTag(String username) {
+        return ConditionalRequests.weak("u" + version(user(username)));
+    }
+
+
+    private void bump(String id) {
+        if(repository.increment(id) > 0) {
+            return;
+        }
+
+        try {
+            repository.save(new ListVersion(id, 1L));
+        }
+        catch(DataIntegrityViolationException e) {
+            // another node created the row first
+            repository.increment(id);
+        }
+    }
+
+    private long version(String id) {
+        Long version = repository.findVersionById(id);
+        return version == null ? 0 : version;
+    }
+
+    private static String user(String username) {
+        return "user:" + username.toLowerCase(Locale.ROOT);
+    }
+}
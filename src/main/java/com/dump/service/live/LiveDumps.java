@@ -0,0 +1,686 @@
+package com.dump.service.live;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.lists.ListVersions;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.DumpChunk;
+import com.dump.service.objects.LiveDump;
+import com.dump.service.repositories.DumpChunkRepository;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.LiveDumpRepository;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.routing.ReplicaRouting;
+import com.dump.service.utils.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+
+/**
+ * Live Dumps, which a producer appends to while followers read along, until the producer closes them.
+ *
+ * Opening a live Dump stores the Dump row with empty contents and returns an append token to the producer.
+ * Every append is stored as a chunk in the home database right away, and closing seals the chunks into the
+ * contents of the Dump row, after which it is an ordinary Dump. Live Dumps nobody appended to for
+ * dump.live.idle-timeout milliseconds are sealed as they are.
+ *
+ * Followers read from a byte offset on. Each node keeps a {@link TailBuffer} of the latest bytes of every
+ * live Dump followed on it, which every dump.live.poll-interval milliseconds is brought up to date with one
+ * lookup of the live Dump and, if it grew, one read of the new chunks, however many follow it. Followers
+ * which are up to date wait on the buffer until it grows, the Dump is closed or their wait ends. Appends on
+ * this node go into the buffer directly. Followers further behind than the buffer reaches read the chunks,
+ * or the sealed contents, themselves. Reads of sealed contents return everything from the offset on.
+ */
+@Service
+public class LiveDumps implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveDumps.class);
+
+    // producers read the primary, so the first append finds a live Dump just opened
+    private static final long PRIMARY_PIN = 1000;
+
+    @Autowired
+    private LiveDumpRepository liveDumpRepository;
+
+    @Autowired
+    private DumpChunkRepository chunkRepository;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private ListVersions listVersions;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    @Qualifier("persistenceExecutor")
+    private BoundedExecutor persistenceExecutor;
+
+    @Autowired
+    @Qualifier("computeExecutor")
+    private BoundedExecutor computeExecutor;
+
+    @Value("${dump.live.buffer-size:262144}")
+    private int bufferSize;
+
+    @Value("${dump.live.max-size:16777216}")
+    private int maxSize;
+
+    @Value("${dump.live.max-read:65536}")
+    private int maxRead;
+
+    @Value("${dump.live.idle-timeout:3600000}")
+    private long idleTimeout;
+
+    @Value("${dump.live.retention:3600000}")
+    private long retention;
+
+    @Value("${dump.live.tail-idle:60000}")
+    private long tailIdle;
+
+    private final ConcurrentMap<String, LiveTail> tails = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder tailReads = new LongAdder();
+    private final LongAdder catchUpReads = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder sealed = new LongAdder();
+
+
+    /**
+     * Outcome of an append or close
+     */
+    public enum Outcome {
+        OK,
+        NOT_FOUND,
+        FORBIDDEN,
+        // the producer's offset is not the length of the live Dump
+        CONFLICT,
+        CLOSED,
+        TOO_LARGE
+    }
+
+
+    /**
+     * Starts a live Dump. Call once the Dump row has been stored.
+     * @param publicId  Public ID of the stored Dump
+     * @param username  Owner of the Dump
+     * @return  Token the producer appends and closes with
+     */
+    public String open(String publicId, String username) {
+        byte[] secret = new byte[16];
+        random.nextBytes(secret);
+
+        String token = Hashing.toHex(secret);
+        liveDumpRepository.save(new LiveDump(publicId, username, Hashing.sha256(token), new Date()));
+
+        return token;
+    }
+
+
+    /**
+     * Appends text to a live Dump
+     * @param publicId  Dump public ID
+     * @param token     Producer's token
+     * @param offset    Length the producer expects the live Dump to have, null to append at whatever length
+     *                  it has
+     * @param text      Text to append
+     * @return  Outcome and length of the live Dump
+     */
+    public Result append(String publicId, String token, Integer offset, String text) {
+        ReplicaRouting.pin(PRIMARY_PIN);
+
+        LiveDump live = liveDumpRepository.findOne(publicId);
+        Result refused = authorize(live, token);
+
+        if(refused != null) {
+            return refused;
+        }
+
+        int length = live.getLength();
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        if(live.getClosed()) {
+            return new Result(Outcome.CLOSED, length);
+        }
+        if(offset != null && offset != length) {
+            return new Result(Outcome.CONFLICT, length);
+        }
+        if(data.length == 0) {
+            return new Result(Outcome.OK, length);
+        }
+        if((long) length + data.length > maxSize) {
+            return new Result(Outcome.TOO_LARGE, length);
+        }
+
+        if(liveDumpRepository.append(publicId, length, text) == 0) {
+            // closed or appended to meanwhile
+            LiveDump current = liveDumpRepository.findOne(publicId);
+            return new Result(current.getClosed() ? Outcome.CLOSED : Outcome.CONFLICT, current.getLength());
+        }
+
+        appended.add(data.length);
+
+        LiveTail tail = tails.get(publicId);
+        if(tail != null) {
+            // a tail behind the live Dump is left to the next poll
+            tail.buffer.append(length, data);
+            tail.touched = System.currentTimeMillis();
+            schedule(tail);
+        }
+
+        return new Result(Outcome.OK, length + data.length);
+    }
+
+
+    /**
+     * Closes a live Dump and seals its chunks into the Dump's contents. Closing again only seals again.
+     * @param publicId  Dump public ID
+     * @param token     Producer's token
+     * @return  Outcome and final length of the live Dump
+     */
+    public Result close(String publicId, String token) {
+        ReplicaRouting.pin(PRIMARY_PIN);
+
+        LiveDump live = liveDumpRepository.findOne(publicId);
+        Result refused = authorize(live, token);
+
+        if(refused != null) {
+            return refused;
+        }
+
+        if(!live.getClosed()) {
+            liveDumpRepository.close(publicId);
+            live = liveDumpRepository.findOne(publicId);
+        }
+
+        seal(live);
+
+        LiveTail tail = tails.get(publicId);
+        if(tail != null) {
+            if(tail.buffer.getEnd() == live.getLength()) {
+                tail.closed = true;
+            }
+            schedule(tail);
+        }
+
+        return new Result(Outcome.OK, live.getLength());
+    }
+
+
+    /**
+     * Reads a Dump from an offset on, waiting for bytes to be appended if there are none yet. Closed and
+     * ordinary Dumps are read from their contents.
+     * @param publicId  Dump public ID
+     * @param offset    Byte offset to read from
+     * @param wait      Milliseconds to wait for bytes to be appended
+     * @param listener  Called once with the bytes read, with no bytes once the wait ends, or with the reason the
+     *                  Dump can't be read. May be called before this returns.
+     */
+    public void follow(String publicId, int offset, long wait, Consumer<Slice> listener) {
+        Follower follower = new Follower(Math.max(0, offset), System.currentTimeMillis() + wait, listener);
+        LiveTail tail = tails.get(publicId);
+
+        if(tail == null || !offer(tail, follower)) {
+            load(publicId, follower);
+        }
+    }
+
+
+    /**
+     * Brings the tail buffers of followed live Dumps up to date, answers their followers and drops the buffers
+     * of live Dumps nobody followed for dump.live.tail-idle milliseconds
+     */
+    @Scheduled(fixedDelayString = "${dump.live.poll-interval:250}")
+    public void poll() {
+        long now = System.currentTimeMillis();
+
+        for(LiveTail tail : tails.values()) {
+            if(tail.followers.isEmpty()) {
+                if(now - tail.touched > tailIdle && tails.remove(tail.publicId, tail)) {
+                    // followers which came meanwhile start over
+                    for(Follower follower; (follower = tail.followers.poll()) != null; ) {
+                        load(tail.publicId, follower);
+                    }
+                }
+                continue;
+            }
+
+            if(!tail.closed) {
+                try {
+                    LiveDump live = liveDumpRepository.findOne(tail.publicId);
+
+                    if(live == null) {
+                        // sealed and dropped long ago, or deleted
+                        tails.remove(tail.publicId, tail);
+
+                        for(Follower follower; (follower = tail.followers.poll()) != null; ) {
+                            load(tail.publicId, follower);
+                        }
+                        continue;
+                    }
+
+                    refresh(tail, live);
+                }
+                catch(RuntimeException e) {
+                    logger.warn("Failed to read live Dump {}", tail.publicId, e);
+                }
+            }
+
+            deliver(tail, now);
+        }
+    }
+
+
+    /**
+     * Seals live Dumps whose producer went away without closing them, and drops sealed ones after
+     * dump.live.retention milliseconds
+     */
+    @Scheduled(fixedDelayString = "${dump.live.sweep-interval:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+
+        try {
+            for(LiveDump live : liveDumpRepository.findFirst100ByClosedFalseAndUpdatedBeforeOrderByUpdatedAsc(new Date(now - idleTimeout))) {
+                if(liveDumpRepository.close(live.getPublicId()) > 0) {
+                    logger.info("Sealing abandoned live Dump {}", live.getPublicId());
+                    seal(liveDumpRepository.findOne(live.getPublicId()));
+                }
+            }
+
+            for(LiveDump live : liveDumpRepository.findFirst100ByClosedTrueAndUpdatedBeforeOrderByUpdatedAsc(new Date(now - retention))) {
+                // in case sealing failed when it was closed
+                seal(live);
+                liveDumpRepository.delete(live.getPublicId());
+            }
+        }
+        catch(RuntimeException e) {
+            logger.warn("Failed to sweep live Dumps", e);
+        }
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        int followers = 0;
+        for(LiveTail tail : tails.values()) {
+            followers += tail.followers.size();
+        }
+
+        writer.gauge("dump_live_tails", "Live Dumps with a tail buffer on this node",
+                new String[0], tails.size());
+        writer.gauge("dump_live_followers", "Followers waiting for live Dumps to grow",
+                new String[0], followers);
+        writer.counter("dump_live_appended_bytes_total", "Bytes appended to live Dumps through this node",
+                new String[0], appended.sum());
+        writer.counter("dump_live_tail_reads_total", "Chunk reads bringing tail buffers up to date",
+                new String[0], tailReads.sum());
+        writer.counter("dump_live_catch_up_reads_total", "Reads of followers behind the tail buffers",
+                new String[0], catchUpReads.sum());
+        writer.counter("dump_live_deliveries_total", "Reads answered to followers of live Dumps",
+                new String[0], delivered.sum());
+        writer.counter("dump_live_sealed_total", "Live Dumps sealed into ordinary Dumps",
+                new String[0], sealed.sum());
+    }
+
+
+    /**
+     * Checks the producer's token
+     * @return  Outcome refusing the producer, null if the token is the live Dump's
+     */
+    private static Result authorize(LiveDump live, String token) {
+        if(live == null) {
+            return new Result(Outcome.NOT_FOUND, 0);
+        }
+
+        if(token == null || !MessageDigest.isEqual(Hashing.sha256(token).getBytes(StandardCharsets.US_ASCII),
+                live.getTokenHash().getBytes(StandardCharsets.US_ASCII))) {
+            return new Result(Outcome.FORBIDDEN, 0);
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Writes the chunks of a closed live Dump into the Dump's contents and deletes them. Does nothing once
+     * they are deleted.
+     */
+    private void seal(LiveDump live) {
+        DumpChunk[] chunks = chunkRepository.findByPublicIdOrderByEndOffsetAsc(live.getPublicId());
+
+        if(chunks.length == 0) {
+            return;
+        }
+
+        ByteArrayOutputStream contents = new ByteArrayOutputStream(live.getLength());
+        for(DumpChunk chunk : chunks) {
+            if(chunk.getStartOffset() != contents.size()) {
+                throw new IllegalStateException("Live Dump " + live.getPublicId() + " has no chunk at " + contents.size());
+            }
+            contents.write(chunk.getData(), 0, chunk.getData().length);
+        }
+
+        String text = new String(contents.toByteArray(), StandardCharsets.UTF_8);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("contents", text);
+        fields.put("contentHash", Hashing.sha256(text));
+        fields.put("modified", new Date());
+
+        dumpRepository.updateFields(live.getPublicId(), fields);
+        listVersions.changed(live.getUsername());
+        readYourWrites.wroteDump(live.getPublicId(), live.getUsername());
+
+        chunkRepository.deleteByPublicId(live.getPublicId());
+        sealed.increment();
+    }
+
+
+    /**
+     * Answers a follower from a tail buffer, or has it wait on the buffer
+     * @return  FALSE if the follower's offset is older than the buffer reaches
+     */
+    private boolean offer(LiveTail tail, Follower follower) {
+        tail.touched = System.currentTimeMillis();
+
+        byte[] data = tail.buffer.read(follower.offset, maxRead);
+
+        if(data == null) {
+            return false;
+        }
+
+        if(data.length > 0 || tail.closed) {
+            deliver(follower, slice(tail, follower.offset, data));
+        }
+        else {
+            tail.followers.add(follower);
+
+            // the buffer was dropped meanwhile
+            if(tails.get(tail.publicId) != tail && tail.followers.remove(follower)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Answers the followers of a tail buffer which have bytes to read, or whose wait has ended
+     */
+    private void deliver(LiveTail tail, long now) {
+        for(Iterator<Follower> iterator = tail.followers.iterator(); iterator.hasNext(); ) {
+            Follower follower = iterator.next();
+            byte[] data = tail.buffer.read(follower.offset, maxRead);
+
+            if(data == null) {
+                iterator.remove();
+                load(tail.publicId, follower);
+            }
+            else if(data.length > 0 || tail.closed || now >= follower.deadline) {
+                iterator.remove();
+                deliver(follower, slice(tail, follower.offset, data));
+            }
+        }
+    }
+
+
+    /**
+     * Has the followers of a tail buffer answered after a local append, off the producer's thread
+     */
+    private void schedule(LiveTail tail) {
+        if(tail.followers.isEmpty() || !tail.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            computeExecutor.execute(() -> {
+                tail.scheduled.set(false);
+                deliver(tail, System.currentTimeMillis());
+            });
+        }
+        catch(RejectedExecutionException e) {
+            // the next poll answers them
+            tail.scheduled.set(false);
+        }
+    }
+
+
+    /**
+     * Reads for a follower the tail buffer can't answer, on the persistence executor
+     */
+    private void load(String publicId, Follower follower) {
+        try {
+            persistenceExecutor.execute(() -> {
+                try {
+                    read(publicId, follower);
+                }
+                catch(RuntimeException e) {
+                    logger.warn("Failed to read live Dump {}", publicId, e);
+                    deliver(follower, Slice.failed(Slice.Status.UNAVAILABLE, follower.offset));
+                }
+            });
+        }
+        catch(RejectedExecutionException e) {
+            deliver(follower, Slice.failed(Slice.Status.UNAVAILABLE, follower.offset));
+        }
+    }
+
+    private void read(String publicId, Follower follower) {
+        LiveDump live = liveDumpRepository.findOne(publicId);
+
+        if(live == null || live.getClosed()) {
+            String contents = dumpRepository.findContentsByPublicId(publicId);
+
+            if(contents == null) {
+                deliver(follower, Slice.failed(Slice.Status.NOT_FOUND, follower.offset));
+                return;
+            }
+
+            byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+
+            // a live Dump being sealed is still read from its chunks
+            if(live == null || bytes.length == live.getLength()) {
+                // sealed contents no longer change, so the rest goes in one read rather than loading them again
+                // for every dump.live.max-read bytes
+                int from = Math.min(follower.offset, bytes.length);
+                deliver(follower, new Slice(from, Arrays.copyOfRange(bytes, from, bytes.length), true));
+                return;
+            }
+        }
+        else {
+            LiveTail tail = tails.computeIfAbsent(publicId,
+                    id -> new LiveTail(id, new TailBuffer(bufferSize, Math.min(follower.offset, live.getLength()))));
+
+            refresh(tail, live);
+
+            if(offer(tail, follower)) {
+                return;
+            }
+        }
+
+        catchUpReads.increment();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int position = follower.offset;
+
+        for(DumpChunk chunk : chunkRepository.findFirst64ByPublicIdAndEndOffsetGreaterThanOrderByEndOffsetAsc(publicId, follower.offset)) {
+            if(chunk.getStartOffset() > position || out.size() == maxRead) {
+                break;
+            }
+
+            int from = position - chunk.getStartOffset();
+            int length = Math.min(chunk.getData().length - from, maxRead - out.size());
+
+            out.write(chunk.getData(), from, length);
+            position += length;
+        }
+
+        byte[] data = trim(out.toByteArray(), live.getLength() - follower.offset);
+        deliver(follower, new Slice(follower.offset, data, live.getClosed() && follower.offset + data.length == live.getLength()));
+    }
+
+
+    /**
+     * Appends the chunks a tail buffer is missing. The chunks of a sealed live Dump are gone, so a buffer still
+     * behind it is filled from the sealed contents.
+     */
+    private void refresh(LiveTail tail, LiveDump live) {
+        synchronized(tail) {
+            if(live.getLength() > tail.buffer.getEnd()) {
+                tailReads.increment();
+
+                for(DumpChunk chunk : chunkRepository.findFirst64ByPublicIdAndEndOffsetGreaterThanOrderByEndOffsetAsc(tail.publicId, tail.buffer.getEnd())) {
+                    if(!tail.buffer.append(chunk.getStartOffset(), chunk.getData())) {
+                        break;
+                    }
+                }
+
+                if(live.getClosed() && live.getLength() > tail.buffer.getEnd()) {
+                    String contents = dumpRepository.findContentsByPublicId(tail.publicId);
+                    byte[] bytes = contents == null ? new byte[0] : contents.getBytes(StandardCharsets.UTF_8);
+
+                    if(bytes.length == live.getLength()) {
+                        tail.buffer.append(0, bytes);
+                    }
+                }
+            }
+
+            if(live.getClosed() && tail.buffer.getEnd() == live.getLength()) {
+                tail.closed = true;
+            }
+        }
+    }
+
+
+    private Slice slice(LiveTail tail, int offset, byte[] data) {
+        data = trim(data, tail.buffer.getEnd() - offset);
+        return new Slice(offset, data, tail.closed && offset + data.length == tail.buffer.getEnd());
+    }
+
+    private void deliver(Follower follower, Slice slice) {
+        if(!follower.done.compareAndSet(false, true)) {
+            return;
+        }
+
+        delivered.increment();
+
+        try {
+            follower.listener.accept(slice);
+        }
+        catch(RuntimeException e) {
+            logger.warn("Live Dump follower failed", e);
+        }
+    }
+
+
+    /**
+     * Cuts bytes cut short of what was available back to the last whole UTF-8 character, so followers can decode
+     * every slice on its own
+     * @param data      Bytes read
+     * @param available Bytes there were to read
+     */
+    private static byte[] trim(byte[] data, int available) {
+        if(data.length == 0 || data.length >= available) {
+            return data;
+        }
+
+        int lead = data.length - 1;
+        while(lead > 0 && (data[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+
+        int first = data[lead] & 0xFF;
+        int length = first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : first >= 0xC0 ? 2 : 1;
+
+        return lead + length <= data.length ? data : Arrays.copyOf(data, lead);
+    }
+
+
+    /**
+     * Outcome of an append or close, and the length of the live Dump
+     */
+    public static class Result {
+        private final Outcome outcome;
+        private final int length;
+
+        Result(Outcome outcome, int length) {
+            this.outcome = outcome;
+            this.length = length;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+
+    /**
+     * Tail buffer of a live Dump followed on this node, and the followers waiting on it
+     */
+    private static class LiveTail {
+        final String publicId;
+        final TailBuffer buffer;
+        final Queue<Follower> followers = new ConcurrentLinkedQueue<>();
+
+        // a delivery after a local append is queued
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // the buffer reaches the end of the closed live Dump
+        volatile boolean closed;
+        volatile long touched = System.currentTimeMillis();
+
+        LiveTail(String publicId, TailBuffer buffer) {
+            this.publicId = publicId;
+            this.buffer = buffer;
+        }
+    }
+
+
+    /**
+     * A read waiting for bytes, answered exactly once
+     */
+    private static class Follower {
+        final int offset;
+        final long deadline;
+        final Consumer<Slice> listener;
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Follower(int offset, long deadline, Consumer<Slice> listener) {
+            this.offset = offset;
+            this.deadline = deadline;
+            this.listener = listener;
+        }
+    }
+}
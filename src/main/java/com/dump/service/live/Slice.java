@@ -0,0 +1,87 @@
+package com.dump.service.live;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Bytes of a live Dump read by a follower, see {@link LiveDumps#follow}
+ */
+public class Slice {
+
+    /**
+     * Outcome of a read
+     */
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        // the read could not be queued
+        UNAVAILABLE
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Status status;
+    private final int offset;
+    private final byte[] data;
+    private final boolean closed;
+
+
+    /**
+     * Creates a Slice
+     * @param offset    Offset of the first byte
+     * @param data      Bytes read, empty if none were appended before the follower's wait ended
+     * @param closed    TRUE if the Dump is closed and the bytes reach its end
+     */
+    public Slice(int offset, byte[] data, boolean closed) {
+        this(Status.OK, offset, data, closed);
+    }
+
+    private Slice(Status status, int offset, byte[] data, boolean closed) {
+        this.status = status;
+        this.offset = offset;
+        this.data = data;
+        this.closed = closed;
+    }
+
+
+    /**
+     * @param status    NOT_FOUND or UNAVAILABLE
+     * @param offset    Offset which was read
+     * @return  Slice without bytes
+     */
+    public static Slice failed(Status status, int offset) {
+        return new Slice(status, offset, EMPTY, false);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * @return  Offset to read from next
+     */
+    public int getNext() {
+        return offset + data.length;
+    }
+
+
+    /**
+     * @return  Bytes read, as text
+     */
+    public String getText() {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
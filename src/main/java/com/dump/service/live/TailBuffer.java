@@ -0,0 +1,107 @@
+package com.dump.service.live;
+
+
+/**
+ * The most recent bytes of a live Dump, in a ring of fixed capacity addressed by their offset in the Dump.
+ * Appending past the capacity drops the oldest bytes. Every follower of the Dump on this node reads from the
+ * same buffer, so a chunk is read from the database once however many follow it.
+ */
+public class TailBuffer {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] ring;
+
+    // offset of the oldest byte held, and of the byte after the newest
+    private int start;
+    private int end;
+
+
+    /**
+     * Creates an empty buffer
+     * @param capacity  Number of bytes held
+     * @param offset    Offset of the first byte to be appended
+     */
+    public TailBuffer(int capacity, int offset) {
+        this.ring = new byte[capacity];
+        this.start = offset;
+        this.end = offset;
+    }
+
+
+    /**
+     * Appends bytes. Bytes the buffer already had are skipped, so overlapping chunks may be appended.
+     * @param offset    Offset of the first byte
+     * @param data      Bytes
+     * @return  FALSE if the bytes start after the end of the buffer, leaving a gap, in which case nothing is appended
+     */
+    public synchronized boolean append(int offset, byte[] data) {
+        if(offset > end) {
+            return false;
+        }
+
+        int from = end - offset;
+        if(from >= data.length) {
+            return true;
+        }
+
+        // only the last capacity bytes are kept
+        from = Math.max(from, data.length - ring.length);
+
+        int length = data.length - from;
+        int position = (offset + from) % ring.length;
+        int first = Math.min(length, ring.length - position);
+
+        System.arraycopy(data, from, ring, position, first);
+        System.arraycopy(data, from + first, ring, 0, length - first);
+
+        end = offset + data.length;
+        start = Math.max(start, end - ring.length);
+
+        return true;
+    }
+
+
+    /**
+     * Reads bytes from an offset on
+     * @param offset    Offset of the first byte
+     * @param max       Maximum number of bytes to read
+     * @return  Bytes up to the end of the buffer, empty if there are none yet, null if the offset is older than
+     *          the oldest byte held
+     */
+    public synchronized byte[] read(int offset, int max) {
+        if(offset < start) {
+            return null;
+        }
+
+        if(offset >= end) {
+            return EMPTY;
+        }
+
+        int length = Math.min(max, end - offset);
+        int position = offset % ring.length;
+        int first = Math.min(length, ring.length - position);
+
+        byte[] data = new byte[length];
+        System.arraycopy(ring, position, data, 0, first);
+        System.arraycopy(ring, 0, data, first, length - first);
+
+        return data;
+    }
+
+
+    /**
+     * @return  Offset of the oldest byte held
+     */
+    public synchronized int getStart() {
+        return start;
+    }
+
+
+    /**
+     * @return  Offset after the newest byte held
+     */
+    public synchronized int getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,101 @@
+package com.dump.service.loading;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.objects.UserAvatar;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserAvatarRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.routing.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+
+/**
+ * Read-side lookups of Dumps and Users shared by every read path. Concurrent lookups of the same public ID
+ * or username run one query between them, so a burst of requests for a popular Dump hits the database once.
+ *
+ * Lookups pinned to the primary by {@link ReadYourWrites} don't join a query in flight, which may be reading a
+ * replica that hasn't seen the write yet.
+ */
+@Component
+public class CoalescingLoader implements MetricSource {
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    private final SingleFlight<String, Dump> dumps = new SingleFlight<>(Dump::new);
+    private final SingleFlight<String, User> users = new SingleFlight<>(User::new);
+    private final SingleFlight<String, UserAvatar> avatars = new SingleFlight<>(UserAvatar::new);
+
+
+    /**
+     * Finds a Dump by public ID
+     * @param publicId  Dump public ID to find
+     * @return  Dump, null if not found. Every caller gets its own instance.
+     */
+    public Dump findDump(String publicId) {
+        if(readYourWrites.pinDump(publicId)) {
+            return dumpRepository.findByPublicId(publicId);
+        }
+
+        return dumps.load(publicId, dumpRepository::findByPublicId);
+    }
+
+
+    /**
+     * Finds a User by username (case-insensitive)
+     * @param username  username to find
+     * @return  User, null if not found. Every caller gets its own instance.
+     */
+    public User findUser(String username) {
+        if(readYourWrites.pinUser(username)) {
+            return userRepository.findByUsernameIgnoreCase(username);
+        }
+
+        return users.load(username.toLowerCase(Locale.ROOT), key -> userRepository.findByUsernameIgnoreCase(username));
+    }
+
+
+    /**
+     * Finds the avatar of a User by username (case-insensitive)
+     * @param username  username to find
+     * @return  UserAvatar with a null avatar if the User has none, null if there is no such User. Every caller
+     *          gets its own instance.
+     */
+    public UserAvatar findAvatar(String username) {
+        if(readYourWrites.pinUser(username)) {
+            return userAvatarRepository.findByUsernameIgnoreCase(username);
+        }
+
+        return avatars.load(username.toLowerCase(Locale.ROOT), key -> userAvatarRepository.findByUsernameIgnoreCase(username));
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        write(writer, "dump", dumps);
+        write(writer, "user", users);
+        write(writer, "avatar", avatars);
+    }
+
+    private static void write(MetricsWriter writer, String name, SingleFlight<?, ?> flight) {
+        String[] labels = { "loader", name };
+
+        writer.counter("dump_loader_queries_total", "Lookups which ran a query", labels, flight.getLoads());
+        writer.counter("dump_loader_coalesced_total", "Lookups which joined a query already in flight", labels, flight.getCoalesced());
+    }
+}
@@ -0,0 +1,101 @@
+package com.dump.service.loading;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * Coalesces concurrent loads of the same key. The first caller runs the load; callers arriving while it
+ * is in flight wait for its result instead of running their own. Nothing is kept once the load finishes,
+ * so this only absorbs bursts of simultaneous misses, it is not a cache.
+ *
+ * @param <K>   Key type
+ * @param <V>   Value type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+
+    /**
+     * Creates a SingleFlight
+     * @param copier    Copies a loaded value for each waiting caller, so callers may modify what they get
+     */
+    public SingleFlight(UnaryOperator<V> copier) {
+        this.copier = copier;
+    }
+
+
+    /**
+     * Loads a value, joining a load of the same key which is already running
+     * @param key       Key to load
+     * @param loader    Loads the value, may return null
+     * @return  Loaded value
+     */
+    public V load(K key, Function<K, V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+
+        if(running != null) {
+            coalesced.increment();
+            V value = await(running);
+            return value == null ? null : copier.apply(value);
+        }
+
+        loads.increment();
+
+        try {
+            V value = loader.apply(key);
+            mine.complete(value);
+            return value;
+        }
+        catch(RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+
+    /**
+     * @return  Number of loads which actually ran
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+
+    /**
+     * @return  Number of calls which waited on another caller's load
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced load", e);
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.dump.service.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Records latency, call and error counts of every REST handler and every Dump and User repository method.
+ * Each method gets its own lock-free histogram, looked up by Method so the hot path allocates nothing.
+ *
+ * Handlers returning a DeferredResult are timed until the request completes rather than until the handler
+ * returns, and a 5xx result counts as an error.
+ *
+ * Handlers are labelled with their HTTP method and mapping path and repository methods with their parameter
+ * types, so handlers and overloads sharing a method name don't report the same series.
+ */
+@Aspect
+@Component
+public class InstrumentationAspect implements MetricSource {
+
+    private final ConcurrentMap<Method, MethodStats> handlers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, MethodStats> dumpRepository = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, MethodStats> userRepository = new ConcurrentHashMap<>();
+
+
+    @Around("@within(org.springframework.web.bind.annotation.RestController) && execution(public * *(..))")
+    public Object handler(ProceedingJoinPoint pjp) throws Throwable {
+        MethodStats stats = stats(handlers, pjp, null);
+        long start = System.nanoTime();
+        Object result;
+
+        try {
+            result = pjp.proceed();
+        }
+        catch(Throwable e) {
+            stats.record(start, true);
+            throw e;
+        }
+
+        if(result instanceof DeferredResult) {
+            DeferredResult<?> deferred = (DeferredResult<?>) result;
+            deferred.onCompletion(() -> stats.record(start, isError(deferred.getResult())));
+        }
+        else {
+            stats.record(start, isError(result));
+        }
+
+        return result;
+    }
+
+
+    @Around("target(com.dump.service.repositories.DumpRepository)")
+    public Object dumpRepository(ProceedingJoinPoint pjp) throws Throwable {
+        return time(stats(dumpRepository, pjp, "DumpRepository"), pjp);
+    }
+
+
+    @Around("target(com.dump.service.repositories.UserRepository)")
+    public Object userRepository(ProceedingJoinPoint pjp) throws Throwable {
+        return time(stats(userRepository, pjp, "UserRepository"), pjp);
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        write(writer, "dump_handler", "REST handler", handlers);
+        write(writer, "dump_repository", "Repository method", dumpRepository);
+        write(writer, "dump_repository", "Repository method", userRepository);
+    }
+
+
+    private static Object time(MethodStats stats, ProceedingJoinPoint pjp) throws Throwable {
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try {
+            Object result = pjp.proceed();
+            failed = false;
+            return result;
+        }
+        finally {
+            stats.record(start, failed);
+        }
+    }
+
+    /**
+     * Finds the stats of the advised method
+     * @param map   Stats of one kind of target
+     * @param pjp   Join point
+     * @param owner Name to label a repository method with, null to label a handler by its declaring class
+     */
+    private static MethodStats stats(ConcurrentMap<Method, MethodStats> map, ProceedingJoinPoint pjp, String owner) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        MethodStats stats = map.get(method);
+
+        if(stats == null) {
+            String[] labels = owner == null
+                    ? handlerLabels(pjp.getTarget().getClass(), method)
+                    : new String[] { "class", owner, "method", signature(method) };
+            stats = map.computeIfAbsent(method, m -> new MethodStats(labels));
+        }
+
+        return stats;
+    }
+
+    /**
+     * @return  Labels of a handler: its class and method, and the HTTP methods and path it is mapped to
+     */
+    private static String[] handlerLabels(Class<?> type, Method method) {
+        RequestMapping root = AnnotatedElementUtils.findMergedAnnotation(type, RequestMapping.class);
+        RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+
+        StringJoiner methods = new StringJoiner(",");
+        StringJoiner paths = new StringJoiner(",");
+
+        if(mapping != null) {
+            for(RequestMethod requestMethod : mapping.method()) {
+                methods.add(requestMethod.name());
+            }
+
+            String prefix = root == null || root.path().length == 0 ? "" : root.path()[0];
+            for(String path : mapping.path().length == 0 ? new String[] { "" } : mapping.path()) {
+                paths.add(prefix + path);
+            }
+        }
+
+        return new String[] {
+                "class", type.getSimpleName().split("\\$\\$")[0],
+                "method", method.getName(),
+                "http_method", methods.toString(),
+                "path", paths.toString()
+        };
+    }
+
+    /**
+     * @return  Name of a method followed by the simple names of its parameter types
+     */
+    private static String signature(Method method) {
+        StringJoiner parameters = new StringJoiner(",", method.getName() + "(", ")");
+
+        for(Class<?> parameter : method.getParameterTypes()) {
+            parameters.add(parameter.getSimpleName());
+        }
+
+        return parameters.toString();
+    }
+
+    private static boolean isError(Object result) {
+        if(result instanceof Throwable) {
+            return true;
+        }
+
+        return result instanceof ResponseEntity && ((ResponseEntity) result).getStatusCode().is5xxServerError();
+    }
+
+    private static void write(MetricsWriter writer, String prefix, String kind, Map<Method, MethodStats> map) {
+        for(MethodStats stats : map.values()) {
+            writer.summary(prefix + "_seconds", kind + " latency", stats.labels, stats.latency);
+            writer.counter(prefix + "_errors_total", kind + " calls which failed", stats.labels, stats.errors.sum());
+        }
+    }
+
+
+    /**
+     * Latency and errors of one method. The call count is the summary's _count.
+     */
+    private static class MethodStats {
+        final String[] labels;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        MethodStats(String[] labels) {
+            this.labels = labels;
+        }
+
+        void record(long start, boolean failed) {
+            latency.record(System.nanoTime() - start);
+
+            if(failed) {
+                errors.increment();
+            }
+        }
+    }
+}
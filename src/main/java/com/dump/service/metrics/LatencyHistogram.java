@@ -0,0 +1,111 @@
+package com.dump.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds, in the style of HdrHistogram.
+ *
+ * Every power of two is split into 32 linear sub-buckets, so recorded values keep about 3% precision
+ * from 1ns up to roughly two hours in a fixed array. Recording is a single atomic increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final long MAX_VALUE = (1L << 43) - 1;
+    private static final int SLOTS = (42 - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Records a duration
+     * @param nanos Duration in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+
+        long current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until the larger value sticks
+        }
+    }
+
+
+    /**
+     * @return  Number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+
+    /**
+     * @return  Sum of recorded values in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+
+    /**
+     * @return  Largest recorded value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+
+    /**
+     * Finds the value below which a given fraction of recorded values fall
+     * @param quantile  Quantile between 0 and 1, e.g. 0.99
+     * @return  Highest value equivalent to the quantile in nanoseconds, 0 if nothing was recorded
+     */
+    public long valueAtQuantile(double quantile) {
+        long[] snapshot = new long[SLOTS];
+        long total = 0;
+
+        for(int i = 0; i < SLOTS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if(total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for(int i = 0; i < SLOTS; i++) {
+            seen += snapshot[i];
+            if(seen >= rank) {
+                return Math.min(highestEquivalent(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+
+    static int index(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return bucket * SUB_COUNT + (int) (value >>> bucket);
+    }
+
+    static long highestEquivalent(int index) {
+        int bucket = Math.max(0, index / SUB_COUNT - 1);
+        long sub = index - bucket * SUB_COUNT;
+        return ((sub + 1) << bucket) - 1;
+    }
+}
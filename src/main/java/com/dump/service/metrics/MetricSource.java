@@ -0,0 +1,14 @@
+package com.dump.service.metrics;
+
+
+/**
+ * Component which exports metrics. Every bean implementing this is collected by the metrics endpoint.
+ */
+public interface MetricSource {
+
+    /**
+     * Writes the current metric values
+     * @param writer    Writer to add samples to
+     */
+    void writeMetrics(MetricsWriter writer);
+}
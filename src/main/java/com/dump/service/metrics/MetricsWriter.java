@@ -0,0 +1,142 @@
+package com.dump.service.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Collects metric samples and renders them in the Prometheus text exposition format. Samples are grouped
+ * by metric name, so several sources can write to the same metric with different labels.
+ */
+public class MetricsWriter {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+
+    /**
+     * Adds a counter sample
+     * @param name      Metric name
+     * @param help      Metric description
+     * @param labels    Label name/value pairs
+     * @param value     Current value
+     */
+    public void counter(String name, String help, String[] labels, double value) {
+        family(name, help, "counter").samples.add(sample(name, labels, null, value));
+    }
+
+
+    /**
+     * Adds a gauge sample
+     * @param name      Metric name
+     * @param help      Metric description
+     * @param labels    Label name/value pairs
+     * @param value     Current value
+     */
+    public void gauge(String name, String help, String[] labels, double value) {
+        family(name, help, "gauge").samples.add(sample(name, labels, null, value));
+    }
+
+
+    /**
+     * Adds a latency histogram as a summary in seconds, with p50, p99 and p999 quantiles plus the max
+     * @param name      Metric name, should end in _seconds
+     * @param help      Metric description
+     * @param labels    Label name/value pairs
+     * @param histogram Recorded latencies
+     */
+    public void summary(String name, String help, String[] labels, LatencyHistogram histogram) {
+        Family family = family(name, help, "summary");
+
+        family.samples.add(sample(name, labels, "0.5", histogram.valueAtQuantile(0.5) / NANOS_PER_SECOND));
+        family.samples.add(sample(name, labels, "0.99", histogram.valueAtQuantile(0.99) / NANOS_PER_SECOND));
+        family.samples.add(sample(name, labels, "0.999", histogram.valueAtQuantile(0.999) / NANOS_PER_SECOND));
+        family.samples.add(sample(name + "_sum", labels, null, histogram.getSum() / NANOS_PER_SECOND));
+        family.samples.add(sample(name + "_count", labels, null, histogram.getCount()));
+
+        gauge(name + "_max", help + " (max)", labels, histogram.getMax() / NANOS_PER_SECOND);
+    }
+
+
+    /**
+     * Renders all collected samples
+     * @return  Prometheus text format
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for(Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+
+            sb.append("# HELP ").append(entry.getKey()).append(' ').append(family.help).append('\n');
+            sb.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            for(String sample : family.samples) {
+                sb.append(sample).append('\n');
+            }
+        }
+
+        return sb.toString();
+    }
+
+
+    private Family family(String name, String help, String type) {
+        Family family = families.get(name);
+
+        if(family == null) {
+            family = new Family(help, type);
+            families.put(name, family);
+        }
+
+        return family;
+    }
+
+    private static String sample(String name, String[] labels, String quantile, double value) {
+        StringBuilder sb = new StringBuilder(name);
+        boolean first = true;
+
+        for(int i = 0; i + 1 < labels.length; i += 2) {
+            sb.append(first ? '{' : ',').append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            first = false;
+        }
+        if(quantile != null) {
+            sb.append(first ? '{' : ',').append("quantile=\"").append(quantile).append('"');
+            first = false;
+        }
+        if(!first) {
+            sb.append('}');
+        }
+
+        sb.append(' ');
+        if(value == Math.rint(value) && !Double.isInfinite(value)) {
+            sb.append((long) value);
+        }
+        else {
+            sb.append(value);
+        }
+
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+
+    /**
+     * Samples of one metric name
+     */
+    private static class Family {
+        final String help;
+        final String type;
+        final List<String> samples = new ArrayList<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
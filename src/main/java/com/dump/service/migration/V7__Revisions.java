@@ -0,0 +1,116 @@
+package com.dump.service.migration;
+
+import com.dump.service.utils.Hashing;
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+
+/**
+ * Adds the content hash and modification time of Dumps and the dump_revision table, and backfills the hashes of
+ * the existing Dumps with the same digest the application computes when saving.
+ *
+ * Databases which Hibernate updated after these were added but before migrations were introduced are
+ * baselined at V1 with them already in place, so each one is only created if it is missing.
+ */
+public class V7__Revisions implements JdbcMigration {
+
+    private static final int BATCH = 500;
+
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        DatabaseMetaData meta = connection.getMetaData();
+
+        try(Statement statement = connection.createStatement()) {
+            if(!exists(meta, "dump", "content_hash")) {
+                statement.execute("alter table dump add column content_hash varchar(255)");
+            }
+            if(!exists(meta, "dump", "modified")) {
+                statement.execute("alter table dump add column modified datetime");
+            }
+
+            if(!exists(meta, "dump_revision", null)) {
+                statement.execute("create table dump_revision (" +
+                        "id integer not null auto_increment, " +
+                        "content_hash varchar(255), " +
+                        "data longblob, " +
+                        "date_time datetime, " +
+                        "length integer, " +
+                        "public_id varchar(255), " +
+                        "revision integer, " +
+                        "snapshot bit, " +
+                        "primary key (id))");
+            }
+            else {
+                // concurrent updates could store a revision number twice before it was unique, keep the first
+                statement.execute("delete from dump_revision where id in (select id from (" +
+                        "select r.id from dump_revision r join dump_revision k " +
+                        "on k.public_id = r.public_id and k.revision = r.revision and k.id < r.id) duplicate)");
+            }
+
+            // newest revision, nearest snapshot and revision ranges of a Dump; one row per revision
+            statement.execute("create unique index ux_dump_revision_public_id on dump_revision (public_id, revision)");
+        }
+
+        backfill(connection);
+    }
+
+
+    /**
+     * Hashes the contents of the Dumps saved without a content hash
+     * @param connection    Connection to migrate
+     * @throws SQLException on database error
+     */
+    private static void backfill(Connection connection) throws SQLException {
+        try(Statement select = connection.createStatement();
+            PreparedStatement update = connection.prepareStatement("update dump set content_hash = ? where id = ?")) {
+            select.setFetchSize(BATCH);
+
+            try(ResultSet rows = select.executeQuery("select id, contents from dump where content_hash is null and contents is not null")) {
+                int pending = 0;
+
+                while(rows.next()) {
+                    update.setString(1, Hashing.sha256(rows.getString(2)));
+                    update.setInt(2, rows.getInt(1));
+                    update.addBatch();
+
+                    if(++pending == BATCH) {
+                        update.executeBatch();
+                        pending = 0;
+                    }
+                }
+
+                if(pending > 0) {
+                    update.executeBatch();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param meta      Database metadata
+     * @param table     Table name
+     * @param column    Column name, null to check for the table
+     * @return  Whether the table, or the column of the table, exists
+     * @throws SQLException on database error
+     */
+    private static boolean exists(DatabaseMetaData meta, String table, String column) throws SQLException {
+        if(meta.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase();
+            column = column == null ? null : column.toUpperCase();
+        }
+
+        try(ResultSet rows = column == null
+                ? meta.getTables(meta.getConnection().getCatalog(), null, table, null)
+                : meta.getColumns(meta.getConnection().getCatalog(), null, table, column)) {
+            return rows.next();
+        }
+    }
+}
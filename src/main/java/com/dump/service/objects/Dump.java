@@ -1,31 +1,76 @@
 package com.dump.service.objects;
 
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import java.util.Date;
 import com.dump.service.Enumerations.*;
 
 
 /**
- * Object to contain Dump information
+ * Object to contain Dump information. Updates only write changed columns, so
+ * metadata changes never rewrite the contents LOB. IDs are unique across shards,
+ * see {@link com.dump.service.sharding.DumpIdGenerator}.
  */
 @Entity
+@DynamicUpdate
 public class Dump {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "dump-ids")
+    @GenericGenerator(name = "dump-ids", strategy = "com.dump.service.sharding.DumpIdGenerator", parameters = {
+            @Parameter(name = "table_name", value = "dump_ids"),
+            @Parameter(name = "segment_value", value = "dump"),
+            @Parameter(name = "increment_size", value = "100"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Integer id;
 
     private String publicId;
     private String username;
+
+    // see User#normalize
+    private String usernameLower;
+
     private Date dateTime;
     private Exposure exposure;
     private Date expiration;
     private String type;
     private Integer views;
+
+    // distinct viewers, only written by com.dump.service.views.UniqueViewers
+    @Column(insertable = false, updatable = false)
+    private Integer uniqueViews = 0;
+
     private String title;
 
     @Lob
     private String contents;
 
+    private String contentHash;
+
+    private Date modified;
+
+    public Dump(Dump source) {
+        this.id = source.id;
+        this.publicId = source.publicId;
+        this.username = source.username;
+        this.usernameLower = source.usernameLower;
+        this.dateTime = source.dateTime;
+        this.exposure = source.exposure;
+        this.expiration = source.expiration;
+        this.type = source.type;
+        this.views = source.views;
+        this.uniqueViews = source.uniqueViews;
+        this.title = source.title;
+        this.contents = source.contents;
+        this.contentHash = source.contentHash;
+        this.modified = source.modified;
+    }
+
+    public Dump() {}
+
     public Integer getId() {
         return id;
     }
@@ -48,6 +93,7 @@ public class Dump {
 
     public void setUsername(String userId) {
         this.username = userId;
+        this.usernameLower = User.normalize(userId);
     }
 
     public Date getDateTime() {
@@ -90,6 +136,14 @@ public class Dump {
         this.views = views;
     }
 
+    public Integer getUniqueViews() {
+        return uniqueViews;
+    }
+
+    public void setUniqueViews(Integer uniqueViews) {
+        this.uniqueViews = uniqueViews;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -105,4 +159,20 @@ public class Dump {
     public void setContents(String contents) {
         this.contents = contents;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Date getModified() {
+        return modified;
+    }
+
+    public void setModified(Date modified) {
+        this.modified = modified;
+    }
 }
@@ -0,0 +1,51 @@
+package com.dump.service.objects;
+
+import javax.persistence.*;
+
+
+/**
+ * Chunk of UTF-8 bytes appended to a live Dump, covering the byte offsets from start (inclusive) to end
+ * (exclusive) of its contents. Chunks are deleted once the live Dump is sealed.
+ */
+@Entity
+public class DumpChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+
+    private String publicId;
+    private Integer startOffset;
+    private Integer endOffset;
+
+    @Lob
+    private byte[] data;
+
+    public DumpChunk(String publicId, Integer startOffset, byte[] data) {
+        this.publicId = publicId;
+        this.startOffset = startOffset;
+        this.endOffset = startOffset + data.length;
+        this.data = data;
+    }
+
+    public DumpChunk() {}
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public Integer getStartOffset() {
+        return startOffset;
+    }
+
+    public Integer getEndOffset() {
+        return endOffset;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
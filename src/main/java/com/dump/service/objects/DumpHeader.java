@@ -0,0 +1,63 @@
+package com.dump.service.objects;
+
+import com.dump.service.Enumerations;
+
+import java.util.Date;
+
+/**
+ * Lightweight projection of the Dump columns needed to authorize and diff an update, or to answer a conditional
+ * GET, without loading contents
+ */
+public class DumpHeader {
+    private Integer id;
+    private String publicId;
+    private String username;
+    private String contentHash;
+    private Date modified;
+    private Enumerations.Exposure exposure;
+
+    public DumpHeader(String publicId, String username, String contentHash) {
+        this(publicId, username, contentHash, null);
+    }
+
+    public DumpHeader(String publicId, String username, String contentHash, Date modified) {
+        this(publicId, username, contentHash, modified, null);
+    }
+
+    public DumpHeader(String publicId, String username, String contentHash, Date modified, Enumerations.Exposure exposure) {
+        this(null, publicId, username, contentHash, modified, exposure);
+    }
+
+    public DumpHeader(Integer id, String publicId, String username, String contentHash, Date modified, Enumerations.Exposure exposure) {
+        this.id = id;
+        this.publicId = publicId;
+        this.username = username;
+        this.contentHash = contentHash;
+        this.modified = modified;
+        this.exposure = exposure;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Date getModified() {
+        return modified;
+    }
+
+    public Enumerations.Exposure getExposure() {
+        return exposure;
+    }
+}
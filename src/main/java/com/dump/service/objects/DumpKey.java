@@ -0,0 +1,50 @@
+package com.dump.service.objects;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import javax.persistence.*;
+import java.util.Date;
+
+
+/**
+ * Read-only view of the Dump columns which never change after a Dump is added: its IDs, owner and creation
+ * time. Cached by ID and by public ID, so ownership and existence checks don't touch the database or load
+ * contents.
+ */
+@Entity
+@Immutable
+@Table(name = "dump")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "dump-keys")
+@NaturalIdCache(region = "dump-key-ids")
+public class DumpKey {
+    // assigned by the Dump entity's generator, this one never inserts
+    @Id
+    private Integer id;
+
+    @NaturalId
+    private String publicId;
+
+    private String username;
+    private Date dateTime;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Date getDateTime() {
+        return dateTime;
+    }
+}
@@ -0,0 +1,103 @@
+package com.dump.service.objects;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.persistence.*;
+import java.util.Date;
+
+
+/**
+ * Object to contain one stored revision of a Dump's contents. Revisions are either a full
+ * (deflated) snapshot or a binary delta against the previous revision.
+ */
+@Entity
+public class DumpRevision {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+
+    private String publicId;
+    private Integer revision;
+    private Boolean snapshot;
+    private Date dateTime;
+    private Integer length;
+    private String contentHash;
+
+    @Lob
+    @JsonIgnore
+    private byte[] data;
+
+    public DumpRevision() {}
+
+    public DumpRevision(Integer revision, Boolean snapshot, Date dateTime, Integer length, String contentHash) {
+        this.revision = revision;
+        this.snapshot = snapshot;
+        this.dateTime = dateTime;
+        this.length = length;
+        this.contentHash = contentHash;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public void setPublicId(String publicId) {
+        this.publicId = publicId;
+    }
+
+    public Integer getRevision() {
+        return revision;
+    }
+
+    public void setRevision(Integer revision) {
+        this.revision = revision;
+    }
+
+    public Boolean getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(Boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public Date getDateTime() {
+        return dateTime;
+    }
+
+    public void setDateTime(Date dateTime) {
+        this.dateTime = dateTime;
+    }
+
+    public Integer getLength() {
+        return length;
+    }
+
+    public void setLength(Integer length) {
+        this.length = length;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
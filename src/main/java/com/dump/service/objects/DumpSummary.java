@@ -0,0 +1,75 @@
+package com.dump.service.objects;
+
+import com.dump.service.Enumerations;
+
+import java.util.Date;
+
+/**
+ * Projection of the Dump columns a list needs to render an entry, without contents
+ */
+public class DumpSummary {
+    private String publicId;
+    private String username;
+    private String title;
+    private String type;
+    private Enumerations.Exposure exposure;
+    private Date dateTime;
+    private Date expiration;
+    private Date modified;
+    private Integer views;
+    private Integer uniqueViews;
+
+    public DumpSummary(String publicId, String username, String title, String type, Enumerations.Exposure exposure,
+                       Date dateTime, Date expiration, Date modified, Integer views, Integer uniqueViews) {
+        this.publicId = publicId;
+        this.username = username;
+        this.title = title;
+        this.type = type;
+        this.exposure = exposure;
+        this.dateTime = dateTime;
+        this.expiration = expiration;
+        this.modified = modified;
+        this.views = views;
+        this.uniqueViews = uniqueViews;
+    }
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Enumerations.Exposure getExposure() {
+        return exposure;
+    }
+
+    public Date getDateTime() {
+        return dateTime;
+    }
+
+    public Date getExpiration() {
+        return expiration;
+    }
+
+    public Date getModified() {
+        return modified;
+    }
+
+    public Integer getViews() {
+        return views;
+    }
+
+    public Integer getUniqueViews() {
+        return uniqueViews;
+    }
+}
@@ -0,0 +1,41 @@
+package com.dump.service.objects;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+
+/**
+ * Version of a Dump list, bumped by every write that can change it, see {@link com.dump.service.lists.ListVersions}.
+ * Kept in the home database so every node derives the same ETags. Rows are only ever inserted, never merged,
+ * so a node creating a row can't reset a version another node already bumped.
+ */
+@Entity
+public class ListVersion implements Persistable<String> {
+    // "public" for the lists of public Dumps, or "user:" followed by the lower case username
+    @Id
+    private String id;
+
+    private Long version;
+
+    public ListVersion(String id, Long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public ListVersion() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
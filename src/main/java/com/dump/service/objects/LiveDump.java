@@ -0,0 +1,64 @@
+package com.dump.service.objects;
+
+import javax.persistence.*;
+import java.util.Date;
+
+
+/**
+ * State of a live Dump which is still being appended to, see {@link com.dump.service.live.LiveDumps}. Kept in
+ * the home database next to the appended chunks. The Dump row itself holds the metadata and, once the live
+ * Dump is sealed, the contents.
+ */
+@Entity
+public class LiveDump {
+    @Id
+    private String publicId;
+
+    private String username;
+
+    // SHA-256 of the producer's append token
+    private String tokenHash;
+
+    // bytes appended so far, final once closed
+    private Integer length;
+
+    // time of the last append, or of closing
+    private Date updated;
+
+    private Boolean closed;
+
+    public LiveDump(String publicId, String username, String tokenHash, Date updated) {
+        this.publicId = publicId;
+        this.username = username;
+        this.tokenHash = tokenHash;
+        this.length = 0;
+        this.updated = updated;
+        this.closed = false;
+    }
+
+    public LiveDump() {}
+
+    public String getPublicId() {
+        return publicId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public Integer getLength() {
+        return length;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public Boolean getClosed() {
+        return closed;
+    }
+}
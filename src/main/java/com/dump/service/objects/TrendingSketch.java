@@ -0,0 +1,55 @@
+package com.dump.service.objects;
+
+import javax.persistence.*;
+
+
+/**
+ * Serialized trending window of one node, see {@link com.dump.service.trending.Trending}. Kept in the home
+ * database, where every node writes its own windows and reads those of the others.
+ */
+@Entity
+public class TrendingSketch {
+    // node name, "/", then window name
+    @Id
+    private String id;
+
+    private String node;
+
+    private String period;
+
+    // time the node last wrote the window, in milliseconds
+    private Long updated;
+
+    @Lob
+    private byte[] sketch;
+
+    public TrendingSketch(String node, String period, Long updated, byte[] sketch) {
+        this.id = node + "/" + period;
+        this.node = node;
+        this.period = period;
+        this.updated = updated;
+        this.sketch = sketch;
+    }
+
+    public TrendingSketch() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public Long getUpdated() {
+        return updated;
+    }
+
+    public byte[] getSketch() {
+        return sketch;
+    }
+}
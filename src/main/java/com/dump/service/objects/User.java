@@ -1,35 +1,59 @@
 package com.dump.service.objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
 import java.util.Date;
+import java.util.Locale;
 
 
 /**
- * Object to contain User information
+ * Object to contain User information. Kept in the second-level cache, so the avatar is not part of the
+ * entity: it lives in the same row but is mapped by {@link UserAvatar} and only filled in where it is sent.
+ * The view counts are only written by the in-place counters, so a cached copy may lag behind them and saving
+ * a User never overwrites them.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@DynamicUpdate
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Integer id;
 
     private String username;
+
+    // stored lower case so lookups compare against an index instead of upper(username)
+    private String usernameLower;
+
     private String email;
     private String password;
     private String website;
+
+    @Column(updatable = false)
     private Integer views;
+
+    // distinct viewers of the User's Dumps, only written by com.dump.service.views.UniqueViewers
+    @Column(insertable = false, updatable = false)
+    private Integer uniqueViews = 0;
+
     private Date joined;
 
-    @Lob
+    @Transient
     private byte[] avatar;
 
     public User(User source) {
         this.id = source.id;
         this.username = source.username;
+        this.usernameLower = source.usernameLower;
         this.email = source.email;
         this.password = source.password;
         this.website = source.website;
         this.views = source.views;
+        this.uniqueViews = source.uniqueViews;
         this.joined = source.joined;
         this.avatar = source.avatar;
     }
@@ -50,6 +74,16 @@ public class User {
 
     public void setUsername(String username) {
         this.username = username;
+        this.usernameLower = normalize(username);
+    }
+
+    /**
+     * Normalizes a username for the case-insensitive username_lower columns of Users and Dumps
+     * @param username  Username
+     * @return  Lower case username, null if username is null
+     */
+    public static String normalize(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ROOT);
     }
 
     public String getEmail() {
@@ -92,6 +126,14 @@ public class User {
         this.views = views;
     }
 
+    public Integer getUniqueViews() {
+        return uniqueViews;
+    }
+
+    public void setUniqueViews(Integer uniqueViews) {
+        this.uniqueViews = uniqueViews;
+    }
+
     public Date getJoined() {
         return joined;
     }
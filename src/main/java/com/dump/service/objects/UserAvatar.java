@@ -0,0 +1,62 @@
+package com.dump.service.objects;
+
+import org.hibernate.annotations.DynamicUpdate;
+
+import javax.persistence.*;
+
+
+/**
+ * Avatar column of a User row. Mapped apart from {@link User} so the cached User entity never carries image
+ * bytes. Never inserted, the row is created with the User.
+ */
+@Entity
+@Table(name = "user")
+@DynamicUpdate
+public class UserAvatar {
+    // same generator as the owning entity, so the shared id column is generated whichever is mapped first
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+
+    @Column(insertable = false, updatable = false)
+    private String username;
+
+    @Column(insertable = false, updatable = false)
+    private String usernameLower;
+
+    @Lob
+    private byte[] avatar;
+
+    public UserAvatar(UserAvatar source) {
+        this.id = source.id;
+        this.username = source.username;
+        this.avatar = source.avatar;
+    }
+
+    public UserAvatar(Integer id, byte[] avatar) {
+        this.id = id;
+        this.avatar = avatar;
+    }
+
+    public UserAvatar() {}
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public byte[] getAvatar() {
+        return avatar;
+    }
+
+    public void setAvatar(byte[] avatar) {
+        this.avatar = avatar;
+    }
+}
@@ -0,0 +1,39 @@
+package com.dump.service.objects;
+
+import javax.persistence.*;
+
+
+/**
+ * Secondary index entry saying a shard holds Dumps of a User, so a User's lists are only gathered from the
+ * shards holding them. Kept in the home database; an entry may outlive the User's last Dump on the shard.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "username", "shard" }))
+public class UserShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+
+    // lower case, lists match usernames case-insensitively
+    private String username;
+    private String shard;
+
+    public UserShard(String username, String shard) {
+        this.username = username;
+        this.shard = shard;
+    }
+
+    public UserShard() {}
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dump.service.objects;
+
+import javax.persistence.*;
+
+
+/**
+ * Serialized HyperLogLog sketch of the distinct viewers of a Dump or of all Dumps of a User, see
+ * {@link com.dump.service.views.UniqueViewers}. Kept in the home database. Nodes merge their sketches into it
+ * concurrently, so the version guards against lost merges.
+ */
+@Entity
+public class ViewerSketch {
+    // "dump:" followed by the public ID, or "user:" followed by the lower case username
+    @Id
+    private String id;
+
+    @Lob
+    private byte[] sketch;
+
+    @Version
+    private Integer version;
+
+    public ViewerSketch(String id, byte[] sketch) {
+        this.id = id;
+        this.sketch = sketch;
+    }
+
+    public ViewerSketch() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public byte[] getSketch() {
+        return sketch;
+    }
+
+    public void setSketch(byte[] sketch) {
+        this.sketch = sketch;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+}
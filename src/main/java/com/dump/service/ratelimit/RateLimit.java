@@ -0,0 +1,46 @@
+package com.dump.service.ratelimit;
+
+
+/**
+ * Sustained rate and burst of one class of requests, enforced per client by {@link TokenBuckets}
+ */
+public class RateLimit {
+
+    private final String name;
+    private final double rate;
+    private final int burst;
+
+    final long interval;
+    final long tolerance;
+
+
+    /**
+     * Creates a RateLimit
+     * @param name  Request class, e.g. "add"
+     * @param rate  Sustained requests per second
+     * @param burst Requests allowed at once by a client which was idle
+     */
+    public RateLimit(String name, double rate, int burst) {
+        if(rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit " + name + " needs a positive rate and burst: " + rate + ", " + burst);
+        }
+
+        this.name = name;
+        this.rate = rate;
+        this.burst = burst;
+        this.interval = Math.max(1, Math.round(1e6 / rate));
+        this.tolerance = interval * burst;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+}
@@ -0,0 +1,115 @@
+package com.dump.service.ratelimit;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.utils.Hashing;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Rate limits the expensive endpoints per client. Every limited request takes a token from the bucket of its
+ * client address, from the bucket of the credentials it carries if any, and from the bucket of the username
+ * it names if any, so logins to one account from many addresses are limited too. A request refused by any of
+ * them gets a 429 with a Retry-After, before reaching a handler or the database.
+ *
+ * Clients are hashed with a per-process seed, so nobody can pick addresses which crowd one probe window of
+ * the bucket table.
+ */
+public class RateLimitFilter extends OncePerRequestFilter implements MetricSource {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final TokenBuckets buckets;
+    private final Map<String, RateLimit> limits = new HashMap<>();
+    private final Map<String, LongAdder> refused = new HashMap<>();
+
+    private final String seed = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final long origin = System.nanoTime();
+
+
+    /**
+     * Creates a RateLimitFilter
+     * @param buckets   Bucket table shared by every limit
+     */
+    public RateLimitFilter(TokenBuckets buckets) {
+        this.buckets = buckets;
+    }
+
+
+    /**
+     * Limits requests to an endpoint. Call before the filter is in use.
+     * @param method    HTTP method
+     * @param path      Request path
+     * @param limit     Limit per client
+     */
+    public void limit(String method, String path, RateLimit limit) {
+        limits.put(method + " " + path, limit);
+        refused.putIfAbsent(limit.getName(), new LongAdder());
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimit limit = limits.get(request.getMethod() + " " + request.getRequestURI().substring(request.getContextPath().length()));
+
+        if(limit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long now = (System.nanoTime() - origin) / 1000 + 1;
+        long wait = buckets.acquire(key(limit, "ip", request.getRemoteAddr()), limit, now);
+
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if(wait == 0 && authorization != null) {
+            wait = buckets.acquire(key(limit, "credentials", authorization), limit, now);
+        }
+
+        String username = request.getParameter("username");
+        if(wait == 0 && username != null) {
+            wait = buckets.acquire(key(limit, "user", username.toLowerCase(Locale.ROOT)), limit, now);
+        }
+
+        if(wait > 0) {
+            refused.get(limit.getName()).increment();
+
+            response.setStatus(TOO_MANY_REQUESTS);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString((wait + 999999) / 1000000));
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        for(Map.Entry<String, LongAdder> entry : refused.entrySet()) {
+            writer.counter("dump_rate_limited_total", "Requests refused with a 429",
+                    new String[] { "limit", entry.getKey() }, entry.getValue().sum());
+        }
+
+        writer.counter("dump_rate_limit_evictions_total", "Idle client buckets evicted for other clients",
+                new String[0], buckets.getEvictions());
+        writer.counter("dump_rate_limit_overflows_total", "Requests let through because the bucket table was full around their client",
+                new String[0], buckets.getOverflows());
+    }
+
+
+    private long key(RateLimit limit, String type, String client) {
+        return Hashing.hash64(seed + limit.getName() + '\n' + type + '\n' + client);
+    }
+}
@@ -0,0 +1,191 @@
+package com.dump.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free table of token buckets keyed by 64-bit client hashes, 16 bytes per bucket.
+ *
+ * Each bucket is kept as its theoretical arrival time (GCRA): the time at which it would be full again. Taking
+ * a token moves it one interval later, and a request is refused while that would put it more than a burst of
+ * intervals ahead of now. This is exactly a token bucket, but one long replaces the token count and refill
+ * time, and no fractional tokens are lost between refills.
+ *
+ * Slots are two longs, the key and the arrival time, in striped arrays probed linearly. A bucket whose arrival
+ * time has passed is full and so holds no information, and its slot is taken over by the next client probing
+ * past it. Idle clients are thereby evicted without a sweeper, and slots never become empty again, so a probe
+ * can stop at the first empty slot. Taking over first swaps the arrival time for a marker, so a concurrent
+ * update of the evicted bucket fails its compare-and-set and probes again.
+ *
+ * Two threads inserting the same new client at once may both take over a slot, giving it twice the burst for
+ * a moment. When every slot of a probe window holds a busy bucket, the request is let through and counted as
+ * an overflow rather than refused.
+ */
+public class TokenBuckets {
+
+    private static final int PROBES = 16;
+    private static final long EMPTY = 0;
+    private static final long RESERVED = Long.MIN_VALUE;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeShift;
+    private final int slotMask;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+
+    /**
+     * Creates an empty table
+     * @param capacity  Number of buckets, rounded up to a power of two
+     * @param stripes   Number of arrays the buckets are split over, a power of two
+     */
+    public TokenBuckets(int capacity, int stripes) {
+        if(Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two: " + stripes);
+        }
+
+        int slots = Math.max(PROBES, Integer.highestOneBit(Math.max(1, capacity / stripes - 1)) << 1);
+
+        this.stripes = new AtomicLongArray[stripes];
+        for(int i = 0; i < stripes; i++) {
+            this.stripes[i] = new AtomicLongArray(slots * 2);
+        }
+
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripes);
+        this.slotMask = slots - 1;
+    }
+
+
+    /**
+     * Takes a token from a client's bucket
+     * @param key   64-bit hash of the client and request class
+     * @param limit Limit of the request class
+     * @param now   Current time in microseconds, from a monotonic clock
+     * @return  0 if a token was taken, otherwise microseconds until one is available
+     */
+    public long acquire(long key, RateLimit limit, long now) {
+        if(key == EMPTY) {
+            key = 1;
+        }
+
+        AtomicLongArray stripe = stripes.length == 1 ? stripes[0] : stripes[(int) (key >>> stripeShift)];
+        int start = (int) key & slotMask;
+
+        while(true) {
+            int reclaimable = -1;
+
+            for(int probe = 0; probe < PROBES; probe++) {
+                int slot = ((start + probe) & slotMask) * 2;
+                long owner = stripe.get(slot);
+
+                if(owner == key) {
+                    long wait = take(stripe, slot, key, limit, now);
+                    if(wait >= 0) {
+                        return wait;
+                    }
+                    break;
+                }
+
+                if(owner == EMPTY) {
+                    if(stripe.compareAndSet(slot, EMPTY, key) || stripe.get(slot) == key) {
+                        long wait = take(stripe, slot, key, limit, now);
+                        if(wait >= 0) {
+                            return wait;
+                        }
+                    }
+                    break;
+                }
+
+                long arrival = stripe.get(slot + 1);
+                if(reclaimable < 0 && arrival != RESERVED && arrival <= now) {
+                    reclaimable = slot;
+                }
+
+                if(probe == PROBES - 1) {
+                    if(reclaimable < 0) {
+                        overflows.increment();
+                        return 0;
+                    }
+
+                    long wait = takeOver(stripe, reclaimable, key, limit, now);
+                    if(wait >= 0) {
+                        return wait;
+                    }
+                }
+            }
+            // lost a race for a slot, probe again
+        }
+    }
+
+
+    /**
+     * @return  Buckets evicted to make room for other clients
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+
+    /**
+     * @return  Requests let through because no bucket could be found or made for their client
+     */
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+
+    /**
+     * @return  Number of buckets the table holds
+     */
+    public int getCapacity() {
+        return stripes.length * (slotMask + 1);
+    }
+
+
+    /**
+     * Takes a token from the bucket in a slot
+     * @return  0 if taken, microseconds to wait if refused, -1 if the slot no longer holds the key
+     */
+    private static long take(AtomicLongArray stripe, int slot, long key, RateLimit limit, long now) {
+        while(true) {
+            // the arrival time is read before the key, see takeOver
+            long arrival = stripe.get(slot + 1);
+
+            if(arrival == RESERVED || stripe.get(slot) != key) {
+                return -1;
+            }
+
+            long next = Math.max(arrival, now) + limit.interval;
+
+            if(next - now > limit.tolerance) {
+                return next - now - limit.tolerance;
+            }
+
+            if(stripe.compareAndSet(slot + 1, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+
+    /**
+     * Hands the full bucket in a slot over to another client, with one token already taken
+     * @return  0, or -1 if the bucket was updated or taken over concurrently
+     */
+    private long takeOver(AtomicLongArray stripe, int slot, long key, RateLimit limit, long now) {
+        long arrival = stripe.get(slot + 1);
+
+        if(arrival == RESERVED || arrival > now || !stripe.compareAndSet(slot + 1, arrival, RESERVED)) {
+            return -1;
+        }
+
+        // the arrival times a slot holds only ever grow, so a stale update of the old owner can't succeed
+        stripe.set(slot, key);
+        stripe.set(slot + 1, now + limit.interval);
+        evictions.increment();
+
+        return 0;
+    }
+}
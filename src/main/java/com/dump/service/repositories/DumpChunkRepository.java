@@ -0,0 +1,40 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.DumpChunk;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Spring Repository for the chunks appended to live Dumps. Declared finders run in read-only transactions.
+ * Chunks are stored through {@link LiveDumpRepository#append(String, Integer, String)}.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface DumpChunkRepository extends CrudRepository<DumpChunk, Integer> {
+
+    /**
+     * Finds the chunks of a live Dump which end after an offset, so the first one holds the byte at the offset
+     * @param publicId  Dump public ID
+     * @param offset    Byte offset
+     * @return  Up to 64 DumpChunks, in order
+     */
+    DumpChunk[] findFirst64ByPublicIdAndEndOffsetGreaterThanOrderByEndOffsetAsc(String publicId, Integer offset);
+
+
+    /**
+     * Finds every chunk of a live Dump
+     * @param publicId  Dump public ID
+     * @return  DumpChunk array, in order
+     */
+    DumpChunk[] findByPublicIdOrderByEndOffsetAsc(String publicId);
+
+
+    /**
+     * Deletes every chunk of a sealed live Dump
+     * @param publicId  Dump public ID
+     */
+    @Transactional
+    void deleteByPublicId(String publicId);
+}
@@ -2,26 +2,68 @@ package com.dump.service.repositories;
 
 import com.dump.service.Enumerations;
 import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpHeader;
+import com.dump.service.objects.DumpSummary;
+import com.dump.service.objects.User;
+import com.dump.service.sharding.OwnerKey;
+import com.dump.service.sharding.ShardKey;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 /**
- * Spring Repository to hold Dumps
+ * Spring Repository to hold Dumps. Declared finders run in read-only transactions, which go to a read replica
+ * when replicas are configured. When Dumps are sharded, calls are routed by their {@link ShardKey} and
+ * {@link OwnerKey} parameters, see {@link com.dump.service.sharding.ShardingAspect}.
+ *
+ * Usernames are matched against the stored lower case column rather than with IgnoreCase, which wraps both
+ * sides in upper() and can't use an index. Indexes are created by the migrations in db/migration.
  */
 @Repository
-public interface DumpRepository extends PagingAndSortingRepository<Dump, Long> {
+@Transactional(readOnly = true)
+public interface DumpRepository extends PagingAndSortingRepository<Dump, Long>, DumpRepositoryCustom {
 
     /**
      * Finds a Dump by searching for the given public ID
      * @param publicId  Dump public ID to find
      * @return  Dump
      */
-    Dump findByPublicId(String publicId);
+    Dump findByPublicId(@ShardKey String publicId);
+
+
+    /**
+     * Finds the row ID, owner, content hash, modification time and exposure of a Dump without loading its contents
+     * @param publicId  Dump public ID to find
+     * @return  DumpHeader, null if not found
+     */
+    @Query("select new com.dump.service.objects.DumpHeader(d.id, d.publicId, d.username, d.contentHash, d.modified, d.exposure) from Dump d where d.publicId = ?1")
+    DumpHeader findHeaderByPublicId(@ShardKey String publicId);
+
+
+    /**
+     * Finds the list metadata of several Dumps with one query per shard holding them
+     * @param publicIds Dump public IDs to find
+     * @return  DumpSummaries of the Dumps found, in no particular order
+     */
+    @Query("select new com.dump.service.objects.DumpSummary(d.publicId, d.username, d.title, d.type, d.exposure, d.dateTime, d.expiration, d.modified, d.views, d.uniqueViews) from Dump d where d.publicId in (?1)")
+    List<DumpSummary> findSummariesByPublicIdIn(@ShardKey Collection<String> publicIds);
+
+
+    /**
+     * Finds only the contents of a Dump
+     * @param publicId  Dump public ID to find
+     * @return  Contents, null if not found
+     */
+    @Query("select d.contents from Dump d where d.publicId = ?1")
+    String findContentsByPublicId(@ShardKey String publicId);
 
 
     /**
@@ -34,27 +76,58 @@ public interface DumpRepository extends PagingAndSortingRepository<Dump, Long> {
 
     /**
      * Finds the first 10 Dumps by a specified user sorted by ID in descending order
-     * @param username  username to search
+     * @param username  username to search (case-insensitive)
+     * @return  Dump array
+     */
+    default Dump[] findFirst10ByUsernameIgnoreCaseOrderByIdDesc(@OwnerKey String username) {
+        return findFirst10ByUsernameLowerOrderByIdDesc(User.normalize(username));
+    }
+
+
+    /**
+     * Finds the first 10 Dumps by a specified user sorted by ID in descending order
+     * @param usernameLower Normalized username to search
      * @return  Dump array
      */
-    Dump[] findFirst10ByUsernameIgnoreCaseOrderByIdDesc(String username);
+    Dump[] findFirst10ByUsernameLowerOrderByIdDesc(@OwnerKey String usernameLower);
 
 
     /**
      * Finds the first 100 Dumps by a specified user and Exposure, sorted by ID in descending order
-     * @param username  Username to search
+     * @param username  Username to search (case-insensitive)
      * @param exposure  Exposure to search
      * @return  Dump array
      */
-    Dump[] findFirst100ByUsernameIgnoreCaseAndExposureOrderByIdDesc(String username, Enumerations.Exposure exposure);
+    default Dump[] findFirst100ByUsernameIgnoreCaseAndExposureOrderByIdDesc(@OwnerKey String username, Enumerations.Exposure exposure) {
+        return findFirst100ByUsernameLowerAndExposureOrderByIdDesc(User.normalize(username), exposure);
+    }
+
+
+    /**
+     * Finds the first 100 Dumps by a specified user and Exposure, sorted by ID in descending order
+     * @param usernameLower Normalized username to search
+     * @param exposure      Exposure to search
+     * @return  Dump array
+     */
+    Dump[] findFirst100ByUsernameLowerAndExposureOrderByIdDesc(@OwnerKey String usernameLower, Enumerations.Exposure exposure);
+
+
+    /**
+     * Finds the first 100 Dumps by a specified user sorted by ID in descending order
+     * @param username  Username to search (case-insensitive)
+     * @return Dump array
+     */
+    default Dump[] findFirst100ByUsernameIgnoreCaseOrderByIdDesc(@OwnerKey String username) {
+        return findFirst100ByUsernameLowerOrderByIdDesc(User.normalize(username));
+    }
 
 
     /**
      * Finds the first 100 Dumps by a specified user sorted by ID in descending order
-     * @param username  Username to search
+     * @param usernameLower Normalized username to search
      * @return Dump array
      */
-    Dump[] findFirst100ByUsernameIgnoreCaseOrderByIdDesc(String username);
+    Dump[] findFirst100ByUsernameLowerOrderByIdDesc(@OwnerKey String usernameLower);
 
 
     /**
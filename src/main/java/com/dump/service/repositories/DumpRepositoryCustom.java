@@ -0,0 +1,55 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.DumpKey;
+import com.dump.service.sharding.ShardKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom Dump repository operations that can't be expressed as derived queries
+ */
+public interface DumpRepositoryCustom {
+
+    /**
+     * Updates only the given columns of a Dump with a single targeted UPDATE statement
+     * @param publicId  Public ID of Dump to update
+     * @param fields    Map of Dump property name to new value
+     * @return  Number of rows updated
+     */
+    int updateFields(@ShardKey String publicId, Map<String, Object> fields);
+
+
+    /**
+     * Increments the view count of a Dump in place, without loading or rewriting the row
+     * @param publicId  Dump public ID
+     * @return  Number of updated rows
+     */
+    int incrementViews(@ShardKey String publicId);
+
+
+    /**
+     * Sets the estimated number of distinct viewers of a Dump in place
+     * @param publicId      Dump public ID
+     * @param uniqueViews   Estimated distinct viewers
+     * @return  Number of updated rows
+     */
+    int updateUniqueViews(@ShardKey String publicId, int uniqueViews);
+
+
+    /**
+     * Finds the immutable columns of a Dump, from the second-level cache when possible
+     * @param publicId  Dump public ID to find
+     * @return  DumpKey, null if not found
+     */
+    DumpKey findKeyByPublicId(@ShardKey String publicId);
+
+
+    /**
+     * Finds the immutable columns of several Dumps with one query per shard holding them, caching them
+     * @param publicIds Dump public IDs to find
+     * @return  DumpKeys found, in no particular order
+     */
+    List<DumpKey> findKeysByPublicIdIn(@ShardKey Collection<String> publicIds);
+}
@@ -0,0 +1,145 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.DumpKey;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of custom Dump repository operations
+ */
+public class DumpRepositoryImpl implements DumpRepositoryCustom {
+
+    /**
+     * Properties that may be changed through {@link #updateFields(String, Map)}
+     */
+    private static final Set<String> UPDATABLE = new HashSet<>(Arrays.asList(
+            "title", "exposure", "expiration", "type", "contents", "contentHash", "modified"
+    ));
+
+    /**
+     * Query space of the view counter. Hibernate invalidates every cached entity and query over the dump table,
+     * DumpKeys included, on a bulk update of it, which on this path would happen once per view.
+     */
+    static final String VIEWS_SPACE = "dump_views";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    /**
+     * Updates only the given columns of a Dump with a single targeted UPDATE statement
+     * @param publicId  Public ID of Dump to update
+     * @param fields    Map of Dump property name to new value
+     * @return  Number of rows updated
+     */
+    @Override
+    @Transactional
+    public int updateFields(String publicId, Map<String, Object> fields) {
+        if(fields.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder jpql = new StringBuilder("update Dump d set ");
+        boolean first = true;
+
+        for(String field : fields.keySet()) {
+            if(!UPDATABLE.contains(field)) {
+                throw new IllegalArgumentException("Field is not updatable: " + field);
+            }
+
+            if(!first) {
+                jpql.append(", ");
+            }
+            jpql.append("d.").append(field).append(" = :").append(field);
+            first = false;
+        }
+
+        jpql.append(" where d.publicId = :publicId");
+
+        Query query = entityManager.createQuery(jpql.toString());
+        for(Map.Entry<String, Object> entry : fields.entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue());
+        }
+        query.setParameter("publicId", publicId);
+
+        return query.executeUpdate();
+    }
+
+
+    /**
+     * Increments the view count of a Dump in place, without loading or rewriting the row. Runs as native SQL
+     * in its own query space so cached Dump keys stay put.
+     * @param publicId  Dump public ID
+     * @return  Number of updated rows
+     */
+    @Override
+    @Transactional
+    public int incrementViews(String publicId) {
+        return entityManager.createNativeQuery("update dump set views = views + 1 where public_id = ?1")
+                .setParameter(1, publicId)
+                .unwrap(SQLQuery.class)
+                .addSynchronizedQuerySpace(VIEWS_SPACE)
+                .executeUpdate();
+    }
+
+
+    /**
+     * Sets the estimated number of distinct viewers of a Dump in place, in the query space of the view counter
+     * @param publicId      Dump public ID
+     * @param uniqueViews   Estimated distinct viewers
+     * @return  Number of updated rows
+     */
+    @Override
+    @Transactional
+    public int updateUniqueViews(String publicId, int uniqueViews) {
+        return entityManager.createNativeQuery("update dump set unique_views = ?1 where public_id = ?2")
+                .setParameter(1, uniqueViews)
+                .setParameter(2, publicId)
+                .unwrap(SQLQuery.class)
+                .addSynchronizedQuerySpace(VIEWS_SPACE)
+                .executeUpdate();
+    }
+
+
+    /**
+     * Finds the immutable columns of a Dump through the natural ID cache
+     * @param publicId  Dump public ID to find
+     * @return  DumpKey, null if not found
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public DumpKey findKeyByPublicId(String publicId) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(DumpKey.class).load(publicId);
+    }
+
+
+    /**
+     * Finds the immutable columns of several Dumps with a single IN query. Loading them caches them by ID and
+     * by public ID.
+     * @param publicIds Dump public IDs to find
+     * @return  DumpKeys found, in no particular order
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<DumpKey> findKeysByPublicIdIn(Collection<String> publicIds) {
+        if(publicIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return entityManager.createQuery("select k from DumpKey k where k.publicId in (?1)", DumpKey.class)
+                .setParameter(1, publicIds)
+                .getResultList();
+    }
+}
@@ -0,0 +1,58 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.DumpRevision;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Spring Repository to hold Dump revisions. Declared finders run in read-only transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface DumpRevisionRepository extends CrudRepository<DumpRevision, Long> {
+
+    /**
+     * Lists revision metadata of a Dump without loading revision data
+     * @param publicId  Dump public ID
+     * @return  DumpRevision array sorted by revision ascending
+     */
+    @Query("select new com.dump.service.objects.DumpRevision(r.revision, r.snapshot, r.dateTime, r.length, r.contentHash) from DumpRevision r where r.publicId = ?1 order by r.revision asc")
+    DumpRevision[] findInfoByPublicId(String publicId);
+
+
+    /**
+     * Finds the newest revision of a Dump
+     * @param publicId  Dump public ID
+     * @return  DumpRevision, null if the Dump has never been revised
+     */
+    DumpRevision findFirstByPublicIdOrderByRevisionDesc(String publicId);
+
+
+    /**
+     * Finds the nearest full snapshot at or before a revision
+     * @param publicId  Dump public ID
+     * @param revision  Revision to reconstruct
+     * @return  DumpRevision snapshot
+     */
+    DumpRevision findFirstByPublicIdAndSnapshotIsTrueAndRevisionLessThanEqualOrderByRevisionDesc(String publicId, Integer revision);
+
+
+    /**
+     * Finds a range of revisions of a Dump
+     * @param publicId  Dump public ID
+     * @param from  First revision (inclusive)
+     * @param to    Last revision (inclusive)
+     * @return  DumpRevision array sorted by revision ascending
+     */
+    DumpRevision[] findByPublicIdAndRevisionBetweenOrderByRevisionAsc(String publicId, Integer from, Integer to);
+
+
+    /**
+     * Deletes all revisions of a Dump
+     * @param publicId  Dump public ID
+     */
+    @Transactional
+    void deleteByPublicId(String publicId);
+}
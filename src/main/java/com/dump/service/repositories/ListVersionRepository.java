@@ -0,0 +1,36 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.ListVersion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Spring Repository for the versions of the Dump lists. Declared finders run in read-only transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface ListVersionRepository extends CrudRepository<ListVersion, String> {
+
+    /**
+     * Finds the version of a list
+     * @param id    List ID
+     * @return  Version, null if the list was never changed
+     */
+    @Query("select v.version from ListVersion v where v.id = ?1")
+    Long findVersionById(String id);
+
+
+    /**
+     * Increments the version of a list in place, so concurrent writers on any node never lose a bump
+     * @param id    List ID
+     * @return  Number of rows updated, 0 if the list has no version yet
+     */
+    @Transactional
+    @Modifying
+    @Query("update ListVersion v set v.version = v.version + 1 where v.id = ?1")
+    int increment(String id);
+}
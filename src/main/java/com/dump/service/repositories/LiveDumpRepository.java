@@ -0,0 +1,32 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.LiveDump;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+
+/**
+ * Spring Repository for live Dumps. Declared finders run in read-only transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface LiveDumpRepository extends CrudRepository<LiveDump, String>, LiveDumpRepositoryCustom {
+
+    /**
+     * Finds open live Dumps last appended to before a time, oldest first
+     * @param updated   Time of the last append
+     * @return  LiveDump array
+     */
+    LiveDump[] findFirst100ByClosedFalseAndUpdatedBeforeOrderByUpdatedAsc(Date updated);
+
+
+    /**
+     * Finds live Dumps closed before a time, oldest first
+     * @param updated   Time of closing
+     * @return  LiveDump array
+     */
+    LiveDump[] findFirst100ByClosedTrueAndUpdatedBeforeOrderByUpdatedAsc(Date updated);
+}
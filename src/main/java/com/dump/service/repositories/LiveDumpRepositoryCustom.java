@@ -0,0 +1,25 @@
+package com.dump.service.repositories;
+
+/**
+ * Custom live Dump repository operations that can't be expressed as derived queries
+ */
+public interface LiveDumpRepositoryCustom {
+
+    /**
+     * Appends a chunk to a live Dump if it is still open and its length is the expected one. The length is
+     * moved and the chunk stored in one transaction, so concurrent appends can't both claim an offset.
+     * @param publicId  Dump public ID
+     * @param length    Expected length of the live Dump, where the chunk starts
+     * @param text      Chunk to append
+     * @return  Number of updated rows, 0 if the live Dump was closed or its length has changed
+     */
+    int append(String publicId, Integer length, String text);
+
+
+    /**
+     * Closes a live Dump, after which its length is final
+     * @param publicId  Dump public ID
+     * @return  Number of updated rows, 0 if it was already closed
+     */
+    int close(String publicId);
+}
@@ -0,0 +1,62 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.DumpChunk;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Implementation of custom live Dump repository operations
+ */
+public class LiveDumpRepositoryImpl implements LiveDumpRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    /**
+     * Appends a chunk to a live Dump if it is still open and its length is the expected one
+     * @param publicId  Dump public ID
+     * @param length    Expected length of the live Dump, where the chunk starts
+     * @param text      Chunk to append
+     * @return  Number of updated rows, 0 if the live Dump was closed or its length has changed
+     */
+    @Override
+    @Transactional
+    public int append(String publicId, Integer length, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        int updated = entityManager.createQuery("update LiveDump l set l.length = :next, l.updated = :updated " +
+                "where l.publicId = :publicId and l.length = :length and l.closed = false")
+                .setParameter("next", length + data.length)
+                .setParameter("updated", new Date())
+                .setParameter("publicId", publicId)
+                .setParameter("length", length)
+                .executeUpdate();
+
+        if(updated > 0) {
+            entityManager.persist(new DumpChunk(publicId, length, data));
+        }
+
+        return updated;
+    }
+
+
+    /**
+     * Closes a live Dump, after which its length is final
+     * @param publicId  Dump public ID
+     * @return  Number of updated rows, 0 if it was already closed
+     */
+    @Override
+    @Transactional
+    public int close(String publicId) {
+        return entityManager.createQuery("update LiveDump l set l.closed = true, l.updated = :updated " +
+                "where l.publicId = :publicId and l.closed = false")
+                .setParameter("updated", new Date())
+                .setParameter("publicId", publicId)
+                .executeUpdate();
+    }
+}
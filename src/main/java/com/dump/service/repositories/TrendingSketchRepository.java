@@ -0,0 +1,15 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.TrendingSketch;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Spring Repository for the trending windows of every node. Declared finders run in read-only transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface TrendingSketchRepository extends CrudRepository<TrendingSketch, String> {
+}
@@ -0,0 +1,33 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.User;
+import com.dump.service.objects.UserAvatar;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Spring Repository for User avatars, kept apart from the cached User entity. Declared finders run in read-only
+ * transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface UserAvatarRepository extends CrudRepository<UserAvatar, Integer> {
+
+    /**
+     * Finds the avatar of a User by username (case-insensitive)
+     * @param username  username to search
+     * @return  UserAvatar, with a null avatar if the User has none. Null if there is no such User.
+     */
+    default UserAvatar findByUsernameIgnoreCase(String username) {
+        return findByUsernameLower(User.normalize(username));
+    }
+
+
+    /**
+     * Finds the avatar of a User by normalized username
+     * @param usernameLower Normalized username to search
+     * @return  UserAvatar, with a null avatar if the User has none. Null if there is no such User.
+     */
+    UserAvatar findByUsernameLower(String usernameLower);
+}
@@ -1,21 +1,42 @@
 package com.dump.service.repositories;
 
 import com.dump.service.objects.User;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
 
 /**
- * Spring Repository for managing Users
+ * Spring Repository for managing Users. Lookups by username and ID go through the query cache. Declared finders
+ * run in read-only transactions, which go to a read replica when replicas are configured. Usernames are
+ * matched against the stored lower case column, which is indexed.
  */
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+@Transactional(readOnly = true)
+public interface UserRepository extends CrudRepository<User, Long>, UserRepositoryCustom {
 
     /**
      * Finds User by username (case-insensitive)
      * @param username  username to search
      * @return  User object
      */
-    User findByUsernameIgnoreCase(String username);
+    default User findByUsernameIgnoreCase(String username) {
+        return findByUsernameLower(User.normalize(username));
+    }
+
+
+    /**
+     * Finds User by normalized username
+     * @param usernameLower Normalized username to search
+     * @return  User object
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "user-queries")
+    })
+    User findByUsernameLower(String usernameLower);
 
 
     /**
@@ -23,6 +44,10 @@ public interface UserRepository extends CrudRepository<User, Long> {
      * @param id    ID to search
      * @return  User object
      */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "user-queries")
+    })
     User findById(Integer id);
 
 
@@ -32,5 +57,16 @@ public interface UserRepository extends CrudRepository<User, Long> {
      * @param password password to search
      * @return User object
      */
-    User findByUsernameIgnoreCaseAndPassword(String username, String password);
+    default User findByUsernameIgnoreCaseAndPassword(String username, String password) {
+        return findByUsernameLowerAndPassword(User.normalize(username), password);
+    }
+
+
+    /**
+     * Finds User by normalized username and password
+     * @param usernameLower Normalized username to search
+     * @param password      password to search
+     * @return User object
+     */
+    User findByUsernameLowerAndPassword(String usernameLower, String password);
 }
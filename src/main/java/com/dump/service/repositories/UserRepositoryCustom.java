@@ -0,0 +1,36 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.User;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Custom User repository operations that can't be expressed as derived queries
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Increments the view count of a User in place, without loading or rewriting the row
+     * @param username  username (case-insensitive)
+     * @return  Number of updated rows
+     */
+    int incrementViews(String username);
+
+
+    /**
+     * Sets the estimated number of distinct viewers of a User's Dumps in place
+     * @param username      username (case-insensitive)
+     * @param uniqueViews   Estimated distinct viewers
+     * @return  Number of updated rows
+     */
+    int updateUniqueViews(String username, int uniqueViews);
+
+
+    /**
+     * Finds several Users by ID, from the second-level cache when possible
+     * @param ids   IDs to find
+     * @return  Users found, in no particular order
+     */
+    List<User> findByIdIn(Collection<Integer> ids);
+}
@@ -0,0 +1,102 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.User;
+import org.hibernate.SQLQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Implementation of custom User repository operations
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    /**
+     * Query space of the view counter. Hibernate invalidates every cached User and User query on a bulk update
+     * of the user table, which on this path would happen once per Dump view.
+     */
+    static final String VIEWS_SPACE = "user_views";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    /**
+     * Increments the view count of a User in place, without loading or rewriting the row. Runs as native SQL
+     * in its own query space so cached Users stay put; their view count may lag until they expire.
+     * @param username  username (case-insensitive)
+     * @return  Number of updated rows
+     */
+    @Override
+    @Transactional
+    public int incrementViews(String username) {
+        return entityManager.createNativeQuery("update user set views = views + 1 where username_lower = ?1")
+                .setParameter(1, User.normalize(username))
+                .unwrap(SQLQuery.class)
+                .addSynchronizedQuerySpace(VIEWS_SPACE)
+                .executeUpdate();
+    }
+
+
+    /**
+     * Sets the estimated number of distinct viewers of a User's Dumps in place, in the query space of the view
+     * counter
+     * @param username      username (case-insensitive)
+     * @param uniqueViews   Estimated distinct viewers
+     * @return  Number of updated rows
+     */
+    @Override
+    @Transactional
+    public int updateUniqueViews(String username, int uniqueViews) {
+        return entityManager.createNativeQuery("update user set unique_views = ?1 where username_lower = ?2")
+                .setParameter(1, uniqueViews)
+                .setParameter(2, User.normalize(username))
+                .unwrap(SQLQuery.class)
+                .addSynchronizedQuerySpace(VIEWS_SPACE)
+                .executeUpdate();
+    }
+
+
+    /**
+     * Finds several Users by ID. Users in the second-level cache are taken from it, and the rest are loaded
+     * with a single IN query, which caches them for the next lookup.
+     * @param ids   IDs to find
+     * @return  Users found, in no particular order
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findByIdIn(Collection<Integer> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        List<User> users = new ArrayList<>();
+        List<Integer> missed = new ArrayList<>();
+
+        for(Integer id : new LinkedHashSet<>(ids)) {
+            if(id == null) {
+                continue;
+            }
+
+            User cached = cache.contains(User.class, id) ? entityManager.find(User.class, id) : null;
+
+            if(cached != null) {
+                users.add(cached);
+            }
+            else {
+                missed.add(id);
+            }
+        }
+
+        if(!missed.isEmpty()) {
+            users.addAll(entityManager.createQuery("select u from User u where u.id in (?1)", User.class)
+                    .setParameter(1, missed)
+                    .getResultList());
+        }
+
+        return users;
+    }
+}
@@ -0,0 +1,24 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.UserShard;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Spring Repository for the index of shards holding each User's Dumps. Declared finders run in read-only
+ * transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface UserShardRepository extends CrudRepository<UserShard, Integer> {
+
+    /**
+     * Finds the shards holding Dumps of a User
+     * @param username  Lower case username
+     * @return  Index entries, empty if the User has no Dumps
+     */
+    List<UserShard> findByUsername(String username);
+}
@@ -0,0 +1,23 @@
+package com.dump.service.repositories;
+
+import com.dump.service.objects.ViewerSketch;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Spring Repository for the unique viewer sketches of Dumps and Users. Declared finders run in read-only
+ * transactions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface ViewerSketchRepository extends CrudRepository<ViewerSketch, String> {
+
+    /**
+     * Deletes a sketch, if it exists
+     * @param id    Sketch ID
+     */
+    @Transactional
+    void deleteById(String id);
+}
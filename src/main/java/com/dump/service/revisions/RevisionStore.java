@@ -0,0 +1,261 @@
+package com.dump.service.revisions;
+
+import com.dump.service.objects.DumpRevision;
+import com.dump.service.repositories.DumpRevisionRepository;
+import com.dump.service.utils.Delta;
+import com.dump.service.utils.Hashing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Stores the revision history of Dumps as binary deltas against the previous revision, with a full
+ * snapshot every few revisions to bound reconstruction cost. The newest reconstructed version of
+ * recently touched Dumps is kept in memory.
+ *
+ * Revision numbers are unique per Dump (ux_dump_revision_public_id). Two concurrent updates of a Dump
+ * compete for the same number and the loser records again on top of the winner's revision.
+ */
+@Service
+public class RevisionStore {
+
+    @Autowired
+    private DumpRevisionRepository revisionRepository;
+
+    private static final int RECORD_ATTEMPTS = 3;
+
+    private final int snapshotInterval;
+
+    private final Map<String, Latest> latestCache;
+
+
+    /**
+     * Creates a RevisionStore
+     * @param snapshotInterval  Every how many revisions a full snapshot is stored
+     * @param cacheSize         Number of Dumps whose newest revision is kept in memory
+     */
+    public RevisionStore(@Value("${dump.revisions.snapshot-interval:10}") int snapshotInterval,
+                         @Value("${dump.revisions.cache-size:256}") final int cacheSize) {
+        if(snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+
+        this.snapshotInterval = snapshotInterval;
+        this.latestCache = Collections.synchronizedMap(new LinkedHashMap<String, Latest>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Latest> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+
+    /**
+     * Records a new revision of a Dump. Call once the Dump row was written, so a failed write never leaves a
+     * revision behind; the revisions live in the home database and can't share the write's transaction.
+     * @param publicId  Dump public ID
+     * @param previous  Contents before the write, the base of the stored delta
+     * @param contents  New contents
+     */
+    public void record(String publicId, String previous, String contents) {
+        String hash = Hashing.sha256(contents);
+
+        for(int attempt = 1; ; attempt++) {
+            try {
+                record(publicId, previous, contents, hash);
+                return;
+            }
+            catch(DataIntegrityViolationException e) {
+                // a concurrent update stored this revision number first
+                if(attempt >= RECORD_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+
+    private void record(String publicId, String previous, String contents, String hash) {
+        if(previous == null) {
+            return;
+        }
+
+        DumpRevision newest = revisionRepository.findFirstByPublicIdOrderByRevisionDesc(publicId);
+
+        String previousHash = Hashing.sha256(previous);
+        if(hash.equals(previousHash)) {
+            return;
+        }
+
+        int revision;
+
+        // first edit: keep the original contents as revision 0
+        if(newest == null) {
+            revisionRepository.save(snapshot(publicId, 0, previous));
+            revision = 1;
+        }
+        else {
+            revision = newest.getRevision() + 1;
+        }
+
+        DumpRevision stored;
+        boolean baseMatches = newest == null || previousHash.equals(newest.getContentHash());
+
+        if(revision % snapshotInterval == 0 || !baseMatches) {
+            stored = snapshot(publicId, revision, contents);
+        }
+        else {
+            byte[] target = contents.getBytes(StandardCharsets.UTF_8);
+            byte[] delta = Delta.encode(previous.getBytes(StandardCharsets.UTF_8), target);
+
+            // fall back to a snapshot when the edit rewrote most of the dump
+            if(delta.length >= target.length / 2) {
+                stored = snapshot(publicId, revision, contents);
+            }
+            else {
+                stored = new DumpRevision(revision, false, new Date(), contents.length(), hash);
+                stored.setPublicId(publicId);
+                stored.setData(delta);
+            }
+        }
+
+        revisionRepository.save(stored);
+        latestCache.put(publicId, new Latest(revision, contents));
+    }
+
+
+    /**
+     * Lists the revisions of a Dump
+     * @param publicId  Dump public ID
+     * @return  DumpRevision array without revision data
+     */
+    public DumpRevision[] list(String publicId) {
+        return revisionRepository.findInfoByPublicId(publicId);
+    }
+
+
+    /**
+     * Reconstructs the contents of a Dump at a given revision
+     * @param publicId  Dump public ID
+     * @param revision  Revision number
+     * @return  Contents, null if the revision doesn't exist
+     */
+    public String fetch(String publicId, int revision) {
+        Latest cached = latestCache.get(publicId);
+        if(cached != null && cached.revision == revision) {
+            return cached.contents;
+        }
+
+        DumpRevision base = revisionRepository.findFirstByPublicIdAndSnapshotIsTrueAndRevisionLessThanEqualOrderByRevisionDesc(publicId, revision);
+        if(base == null) {
+            return null;
+        }
+
+        byte[] contents = inflate(base.getData());
+        int reached = base.getRevision();
+
+        if(reached < revision) {
+            for(DumpRevision delta : revisionRepository.findByPublicIdAndRevisionBetweenOrderByRevisionAsc(publicId, reached + 1, revision)) {
+                contents = delta.getSnapshot() ? inflate(delta.getData()) : Delta.apply(contents, delta.getData());
+                reached = delta.getRevision();
+            }
+        }
+
+        if(reached != revision) {
+            return null;
+        }
+
+        String result = new String(contents, StandardCharsets.UTF_8);
+
+        DumpRevision newest = revisionRepository.findFirstByPublicIdOrderByRevisionDesc(publicId);
+        if(newest != null && newest.getRevision() == revision) {
+            latestCache.put(publicId, new Latest(revision, result));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Drops all revisions of a deleted Dump
+     * @param publicId  Dump public ID
+     */
+    public void delete(String publicId) {
+        latestCache.remove(publicId);
+        revisionRepository.deleteByPublicId(publicId);
+    }
+
+
+    private DumpRevision snapshot(String publicId, int revision, String contents) {
+        DumpRevision snapshot = new DumpRevision(revision, true, new Date(), contents.length(), Hashing.sha256(contents));
+        snapshot.setPublicId(publicId);
+        snapshot.setData(deflate(contents.getBytes(StandardCharsets.UTF_8)));
+        return snapshot;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        byte[] buffer = new byte[8192];
+        while(!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[8192];
+        try {
+            while(!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if(n == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated revision snapshot");
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        catch(DataFormatException e) {
+            throw new IllegalStateException("Corrupt revision snapshot", e);
+        }
+        finally {
+            inflater.end();
+        }
+
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Newest reconstructed revision of a Dump
+     */
+    private static class Latest {
+        final int revision;
+        final String contents;
+
+        Latest(int revision, String contents) {
+            this.revision = revision;
+            this.contents = contents;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.dump.service.routing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Read-your-writes on top of replica reads. Every write to a Dump or User starts a sticky window, and a request
+ * reading that Dump or acting as that User within the window is pinned to the primary. The window must cover
+ * the replica lag limit plus a check interval, so once it ends any replica still in rotation has the write.
+ *
+ * Does nothing unless read replicas are configured.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final String ANONYMOUS = "anonymous";
+
+    @Value("${dump.replicas.urls:}")
+    private String replicaUrls = "";
+
+    @Value("${dump.replicas.sticky-window:10000}")
+    private long window;
+
+    private final ConcurrentMap<String, Long> written = new ConcurrentHashMap<>();
+    private volatile long listsWritten;
+
+
+    /**
+     * Records a write to a Dump and pins the current thread. Call after the write is committed.
+     * @param publicId  Public ID of the Dump
+     * @param username  Owner of the Dump
+     */
+    public void wroteDump(String publicId, String username) {
+        if(!isEnabled()) {
+            return;
+        }
+
+        long until = System.currentTimeMillis() + window;
+
+        written.put(dumpKey(publicId), until);
+        listsWritten = until;
+
+        // anonymous Dumps are pinned by public ID only, not for every anonymous reader
+        if(username != null && !username.equalsIgnoreCase(ANONYMOUS)) {
+            written.put(userKey(username), until);
+        }
+
+        ReplicaRouting.pin(window);
+    }
+
+
+    /**
+     * Records a write to a User and pins the current thread. Call after the write is committed.
+     * @param id        User ID, null if not known
+     * @param username  Username
+     */
+    public void wroteUser(Integer id, String username) {
+        if(!isEnabled()) {
+            return;
+        }
+
+        long until = System.currentTimeMillis() + window;
+
+        if(id != null) {
+            written.put(idKey(id), until);
+        }
+        written.put(userKey(username), until);
+
+        ReplicaRouting.pin(window);
+    }
+
+
+    /**
+     * Pins the current thread if the Dump was written within the window
+     * @param publicId  Public ID of the Dump
+     * @return  TRUE if the current thread reads from the primary
+     */
+    public boolean pinDump(String publicId) {
+        return pin(dumpKey(publicId));
+    }
+
+
+    /**
+     * Pins the current thread if the User wrote within the window
+     * @param username  Username
+     * @return  TRUE if the current thread reads from the primary
+     */
+    public boolean pinUser(String username) {
+        return pin(userKey(username));
+    }
+
+
+    /**
+     * Pins the current thread if the User wrote within the window
+     * @param id    User ID
+     * @return  TRUE if the current thread reads from the primary
+     */
+    public boolean pinUser(Integer id) {
+        return pin(idKey(id));
+    }
+
+
+    /**
+     * Whether a list read now may come from a replica which hasn't seen the latest Dump write. Such a list must
+     * not be tagged with the current list version, or clients would keep the stale copy.
+     * @return  TRUE if the list may be behind its version
+     */
+    public boolean isListBehind() {
+        return isEnabled() && !ReplicaRouting.isPinned() && listsWritten - System.currentTimeMillis() > 0;
+    }
+
+
+    /**
+     * Forgets writes whose window has ended
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        written.values().removeIf(until -> until - now <= 0);
+    }
+
+
+    private boolean pin(String key) {
+        if(!isEnabled()) {
+            return false;
+        }
+
+        Long until = written.get(key);
+
+        if(until != null) {
+            long left = until - System.currentTimeMillis();
+
+            if(left > 0) {
+                ReplicaRouting.pin(left);
+            }
+        }
+
+        return ReplicaRouting.isPinned();
+    }
+
+    private boolean isEnabled() {
+        return !replicaUrls.isEmpty();
+    }
+
+    private static String dumpKey(String publicId) {
+        return "d:" + publicId;
+    }
+
+    private static String userKey(String username) {
+        return "u:" + username.toLowerCase(Locale.ROOT);
+    }
+
+    private static String idKey(Integer id) {
+        return "i:" + id;
+    }
+}
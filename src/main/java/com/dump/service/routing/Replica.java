@@ -0,0 +1,93 @@
+package com.dump.service.routing;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * One read replica with the state of its last health check
+ */
+public class Replica {
+
+    private final String name;
+    private final DataSource dataSource;
+
+    private volatile boolean healthy;
+    private volatile long lagMillis = -1;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+
+    /**
+     * Creates a Replica, unhealthy until it has been checked
+     * @param name          Name used in logs and metrics
+     * @param dataSource    Connection pool of the replica
+     */
+    public Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+
+    /**
+     * @return  Name used in logs and metrics
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * @return  Connection pool of the replica
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+
+    /**
+     * @return  TRUE if the last check succeeded
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+
+    /**
+     * @return  Replication lag in milliseconds seen by the last check, -1 if unknown
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+
+    /**
+     * @return  Connections handed out for reads
+     */
+    public long getReads() {
+        return reads.get();
+    }
+
+
+    /**
+     * @return  Failed checks and connection attempts
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+
+    void checked(long lagMillis) {
+        this.lagMillis = lagMillis;
+        this.healthy = true;
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+        healthy = false;
+    }
+
+    void read() {
+        reads.incrementAndGet();
+    }
+}
@@ -0,0 +1,49 @@
+package com.dump.service.routing;
+
+
+/**
+ * Primary pin of the current thread. A pinned thread reads from the primary even in read-only transactions,
+ * so a request sees writes which may not have reached the replicas yet.
+ *
+ * A pin only lasts until its deadline, so a pin left behind on a pooled thread can at worst send a few more
+ * reads to the primary. Request threads are still reset between requests.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Long> PINNED_UNTIL = new ThreadLocal<>();
+
+
+    private ReplicaRouting() {
+    }
+
+
+    /**
+     * @return  TRUE if the current thread reads from the primary
+     */
+    public static boolean isPinned() {
+        Long until = PINNED_UNTIL.get();
+        return until != null && until - System.currentTimeMillis() > 0;
+    }
+
+
+    /**
+     * Pins the current thread to the primary
+     * @param millis    How long the pin lasts
+     */
+    public static void pin(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        Long current = PINNED_UNTIL.get();
+
+        if(current == null || until - current > 0) {
+            PINNED_UNTIL.set(until);
+        }
+    }
+
+
+    /**
+     * Removes the pin of the current thread
+     */
+    public static void reset() {
+        PINNED_UNTIL.remove();
+    }
+}
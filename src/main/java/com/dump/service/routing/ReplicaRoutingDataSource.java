@@ -0,0 +1,91 @@
+package com.dump.service.routing;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * Sends read-only transactions to a read replica and everything else to the primary. Read-only transactions
+ * of a thread pinned by {@link ReplicaRouting}, and those started while no replica is usable, go to the
+ * primary too. A replica refusing a connection is taken out of rotation and the read falls back to the primary.
+ *
+ * Transaction managers fetch the connection before they mark the transaction read-only, so this must sit
+ * behind a {@link LazyConnectionDataSourceProxy}, which only fetches it when the first statement runs.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final ReplicaSet replicas;
+
+
+    /**
+     * Creates a ReplicaRoutingDataSource
+     * @param primary   DataSource of the primary
+     * @param replicas  Read replicas
+     */
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaSet replicas) {
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+
+    /**
+     * Wraps a primary and its replicas in a lazily connecting routing DataSource
+     * @param primary   DataSource of the primary
+     * @param replicas  Read replicas
+     * @return  DataSource to hand to the transaction manager
+     */
+    public static DataSource lazy(DataSource primary, ReplicaSet replicas) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas));
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+
+        if(ReplicaRouting.isPinned()) {
+            replicas.pinned();
+            return primary.getConnection();
+        }
+
+        Replica replica = replicas.choose();
+
+        if(replica == null) {
+            replicas.unavailable();
+            return primary.getConnection();
+        }
+
+        try {
+            Connection connection = replica.getDataSource().getConnection();
+            replica.read();
+            return connection;
+        }
+        catch(SQLException e) {
+            replicas.failed(replica, e);
+            return primary.getConnection();
+        }
+    }
+
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // credentials are the primary's, they don't apply to the replicas
+        return primary.getConnection(username, password);
+    }
+
+
+    /**
+     * @return  DataSource of the primary
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+}
@@ -0,0 +1,225 @@
+package com.dump.service.routing;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The read replicas and their health. Every check runs the lag query on each replica; a replica which fails,
+ * reports no lag (replication stopped) or lags more than the limit is skipped until a later check passes.
+ * Reads are spread round-robin over the usable replicas.
+ *
+ * The lag query returns the lag in seconds, either in a Seconds_Behind_Master column (MySQL's SHOW SLAVE
+ * STATUS) or in the first column. Without a lag query replicas are only checked for liveness.
+ */
+public class ReplicaSet implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private static final String LAG_COLUMN = "Seconds_Behind_Master";
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final int checkTimeout;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong pinnedReads = new AtomicLong();
+    private final AtomicLong unavailableReads = new AtomicLong();
+    private final AtomicLong failedReads = new AtomicLong();
+
+
+    /**
+     * Creates a ReplicaSet and checks every replica once
+     * @param replicas      Read replicas
+     * @param maxLagMillis  Replication lag above which a replica is skipped
+     * @param lagQuery      Query returning the replication lag in seconds, empty to only check liveness
+     * @param checkTimeout  Seconds a check may take before the replica counts as failed
+     */
+    public ReplicaSet(List<Replica> replicas, long maxLagMillis, String lagQuery, int checkTimeout) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.maxLagMillis = maxLagMillis;
+        this.lagQuery = lagQuery == null || lagQuery.isEmpty() ? null : lagQuery;
+        this.checkTimeout = checkTimeout;
+
+        check();
+    }
+
+
+    /**
+     * @return  Read replicas
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+
+    /**
+     * Picks the replica for the next read
+     * @return  Replica, null if none is usable
+     */
+    public Replica choose() {
+        int size = replicas.size();
+        int start = next.getAndIncrement();
+
+        for(int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, size));
+
+            if(replica.isHealthy() && replica.getLagMillis() <= maxLagMillis) {
+                return replica;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Checks every replica. Scheduled every dump.replicas.check-interval milliseconds.
+     */
+    @Scheduled(fixedDelayString = "${dump.replicas.check-interval:1000}")
+    public void check() {
+        for(Replica replica : replicas) {
+            boolean wasUsable = replica.isHealthy() && replica.getLagMillis() <= maxLagMillis;
+
+            try {
+                replica.checked(lag(replica.getDataSource()));
+            }
+            catch(SQLException e) {
+                replica.failed();
+
+                if(wasUsable) {
+                    logger.warn("Replica {} failed its check, reading from the primary: {}", replica.getName(), e.getMessage());
+                }
+                continue;
+            }
+
+            boolean usable = replica.getLagMillis() <= maxLagMillis;
+
+            if(wasUsable && !usable) {
+                logger.warn("Replica {} is {}ms behind, reading from the primary", replica.getName(), replica.getLagMillis());
+            }
+            else if(!wasUsable && usable) {
+                logger.info("Replica {} is back in rotation", replica.getName());
+            }
+        }
+    }
+
+
+    /**
+     * Takes a replica out of rotation after a connection failure, until the next check passes
+     * @param replica   Failed replica
+     * @param e         Failure
+     */
+    public void failed(Replica replica, SQLException e) {
+        failedReads.incrementAndGet();
+        replica.failed();
+
+        logger.warn("Replica {} refused a connection, reading from the primary: {}", replica.getName(), e.getMessage());
+    }
+
+
+    void pinned() {
+        pinnedReads.incrementAndGet();
+    }
+
+    void unavailable() {
+        unavailableReads.incrementAndGet();
+    }
+
+
+    /**
+     * Closes the replica connection pools
+     */
+    public void close() {
+        for(Replica replica : replicas) {
+            DataSource dataSource = replica.getDataSource();
+
+            if(dataSource instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+                ((org.apache.tomcat.jdbc.pool.DataSource) dataSource).close();
+            }
+        }
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        for(Replica replica : replicas) {
+            String[] labels = { "replica", replica.getName() };
+
+            writer.gauge("dump_replica_healthy", "1 if the replica passed its last check", labels, replica.isHealthy() ? 1 : 0);
+            writer.gauge("dump_replica_lag_seconds", "Replication lag seen by the last check, -1 if unknown", labels,
+                    replica.getLagMillis() < 0 ? -1 : replica.getLagMillis() / 1000.0);
+            writer.counter("dump_replica_reads_total", "Read-only transactions served by the replica", labels, replica.getReads());
+            writer.counter("dump_replica_failures_total", "Failed checks and connections of the replica", labels, replica.getFailures());
+        }
+
+        writer.counter("dump_replica_fallbacks_total", "Read-only transactions served by the primary",
+                new String[] { "reason", "pinned" }, pinnedReads.get());
+        writer.counter("dump_replica_fallbacks_total", "Read-only transactions served by the primary",
+                new String[] { "reason", "unavailable" }, unavailableReads.get());
+        writer.counter("dump_replica_fallbacks_total", "Read-only transactions served by the primary",
+                new String[] { "reason", "error" }, failedReads.get());
+    }
+
+
+    /**
+     * Runs the lag query
+     * @return  Lag in milliseconds, -1 without a lag query
+     */
+    private long lag(DataSource dataSource) throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()) {
+
+            statement.setQueryTimeout(checkTimeout);
+
+            try(ResultSet rs = statement.executeQuery(lagQuery == null ? "SELECT 1" : lagQuery)) {
+                if(!rs.next()) {
+                    throw new SQLException("no replication status");
+                }
+
+                if(lagQuery == null) {
+                    return -1;
+                }
+
+                String seconds = rs.getString(lagColumn(rs.getMetaData()));
+
+                if(seconds == null) {
+                    throw new SQLException("replication is stopped");
+                }
+
+                try {
+                    return Math.round(Double.parseDouble(seconds) * 1000);
+                }
+                catch(NumberFormatException e) {
+                    throw new SQLException("unreadable replication lag " + seconds);
+                }
+            }
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for(int i = 1; i <= metaData.getColumnCount(); i++) {
+            if(metaData.getColumnLabel(i).equalsIgnoreCase(LAG_COLUMN)) {
+                return i;
+            }
+        }
+
+        return 1;
+    }
+}
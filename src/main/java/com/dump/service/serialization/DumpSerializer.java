@@ -0,0 +1,118 @@
+package com.dump.service.serialization;
+
+import com.dump.service.objects.Dump;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+
+/**
+ * Hand-written streaming serializer for Dumps. Large contents are escaped and written to the
+ * generator in fixed size chunks instead of as one escaped copy of the whole String.
+ */
+public class DumpSerializer extends StdSerializer<Dump> {
+
+    /**
+     * Number of characters of contents escaped and written at a time
+     */
+    static final int CHUNK = 8192;
+
+    public DumpSerializer() {
+        super(Dump.class);
+    }
+
+
+    /**
+     * Writes a Dump as a JSON object
+     * @param dump      Dump to write
+     * @param gen       Generator to write to
+     * @param provider  Serializer provider
+     * @throws IOException  on write failure
+     */
+    @Override
+    public void serialize(Dump dump, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+
+        writeNumber(gen, "id", dump.getId());
+        gen.writeStringField("publicId", dump.getPublicId());
+        gen.writeStringField("username", dump.getUsername());
+        writeDate(gen, provider, "dateTime", dump.getDateTime());
+        gen.writeStringField("exposure", dump.getExposure() == null ? null : dump.getExposure().name());
+        writeDate(gen, provider, "expiration", dump.getExpiration());
+        gen.writeStringField("type", dump.getType());
+        writeNumber(gen, "views", dump.getViews());
+        writeNumber(gen, "uniqueViews", dump.getUniqueViews());
+        gen.writeStringField("title", dump.getTitle());
+        gen.writeFieldName("contents");
+        writeContents(gen, dump.getContents());
+        gen.writeStringField("contentHash", dump.getContentHash());
+        writeDate(gen, provider, "modified", dump.getModified());
+
+        gen.writeEndObject();
+    }
+
+
+    /**
+     * Writes Dump contents, chunking the escaping of large contents for text JSON generators
+     * @param gen       Generator to write to
+     * @param contents  Contents to write
+     * @throws IOException  on write failure
+     */
+    static void writeContents(JsonGenerator gen, String contents) throws IOException {
+        if(contents == null) {
+            gen.writeNull();
+            return;
+        }
+
+        // binary formats and small contents don't benefit from chunking
+        if(contents.length() <= CHUNK || !(gen instanceof JsonGeneratorImpl)) {
+            gen.writeString(contents);
+            return;
+        }
+
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+
+        gen.writeRawValue("\"");
+
+        int start = 0;
+        while(start < contents.length()) {
+            int end = Math.min(start + CHUNK, contents.length());
+
+            // never split a surrogate pair across chunks
+            if(end < contents.length() && Character.isHighSurrogate(contents.charAt(end - 1))) {
+                end--;
+            }
+
+            char[] escaped = encoder.quoteAsString(contents.substring(start, end));
+            gen.writeRaw(escaped, 0, escaped.length);
+            start = end;
+        }
+
+        gen.writeRaw('"');
+    }
+
+    static void writeNumber(JsonGenerator gen, String field, Integer value) throws IOException {
+        gen.writeFieldName(field);
+        if(value == null) {
+            gen.writeNull();
+        }
+        else {
+            gen.writeNumber(value);
+        }
+    }
+
+    static void writeDate(JsonGenerator gen, SerializerProvider provider, String field, Date value) throws IOException {
+        gen.writeFieldName(field);
+        if(value == null) {
+            gen.writeNull();
+        }
+        else {
+            provider.defaultSerializeDateValue(value, gen);
+        }
+    }
+}
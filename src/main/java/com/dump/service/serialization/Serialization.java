@@ -0,0 +1,64 @@
+package com.dump.service.serialization;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.http.MediaType;
+
+
+/**
+ * Factory for the shared, pre-configured Jackson ObjectMapper. ObjectMappers are expensive to create and
+ * hold the serializer caches, so one instance is shared by the whole application.
+ */
+public class Serialization {
+
+    /**
+     * Media type of the compact binary (Smile) encoding used by the command line client
+     */
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    private Serialization() {}
+
+
+    /**
+     * Creates an ObjectMapper with the hand-written Dump and User serializers registered
+     * @return  ObjectMapper
+     */
+    public static ObjectMapper createMapper() {
+        return configure(new ObjectMapper());
+    }
+
+
+    /**
+     * Creates a Smile ObjectMapper with the same serializers. Strings (and so Dump contents) are written as
+     * length-prefixed raw UTF-8, and binary values as raw bytes rather than 7-bit encoded.
+     * @return  ObjectMapper
+     */
+    public static ObjectMapper createSmileMapper() {
+        SmileFactory factory = new SmileFactory();
+        factory.disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+
+        return configure(new ObjectMapper(factory));
+    }
+
+
+    /**
+     * Applies the shared configuration to an ObjectMapper
+     * @param mapper    ObjectMapper to configure
+     * @return  The same ObjectMapper
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        SimpleModule module = new SimpleModule("dump-serializers");
+        module.addSerializer(Dump.class, new DumpSerializer());
+        module.addSerializer(User.class, new UserSerializer());
+
+        mapper.registerModule(module);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        return mapper;
+    }
+}
@@ -0,0 +1,27 @@
+package com.dump.service.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+
+/**
+ * Message converter for the compact binary Smile encoding, negotiated with "Accept: application/x-jackson-smile".
+ * Strings and byte arrays are already raw and are left to the plain converters.
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public SmileHttpMessageConverter(ObjectMapper smileMapper) {
+        super(smileMapper, Serialization.SMILE);
+    }
+
+
+    /**
+     * Checks if a type is handled by this converter
+     * @param clazz Type to check
+     * @return  TRUE for everything except Strings and byte arrays
+     */
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz != String.class && clazz != byte[].class;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dump.service.serialization;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * JSON message converter which streams responses straight to the response body through one cached
+ * ObjectWriter per response type, so the root serializer is resolved once per type instead of per request.
+ */
+public class StreamingJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public StreamingJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+
+    /**
+     * Writes an object to the response body
+     * @param object        Object to write
+     * @param type          Declared type of object
+     * @param outputMessage Response
+     * @throws IOException  on write failure
+     */
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        ObjectWriter writer = writers.computeIfAbsent(object.getClass(), getObjectMapper()::writerFor);
+        JsonGenerator generator = getObjectMapper().getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+
+        try {
+            writer.writeValue(generator, object);
+            generator.flush();
+        }
+        catch(IOException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getMessage(), e);
+        }
+    }
+}
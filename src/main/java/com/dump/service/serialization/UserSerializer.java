@@ -0,0 +1,54 @@
+package com.dump.service.serialization;
+
+import com.dump.service.objects.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+import static com.dump.service.serialization.DumpSerializer.writeDate;
+import static com.dump.service.serialization.DumpSerializer.writeNumber;
+
+
+/**
+ * Hand-written streaming serializer for Users
+ */
+public class UserSerializer extends StdSerializer<User> {
+
+    public UserSerializer() {
+        super(User.class);
+    }
+
+
+    /**
+     * Writes a User as a JSON object
+     * @param user      User to write
+     * @param gen       Generator to write to
+     * @param provider  Serializer provider
+     * @throws IOException  on write failure
+     */
+    @Override
+    public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+
+        writeNumber(gen, "id", user.getId());
+        gen.writeStringField("username", user.getUsername());
+        gen.writeStringField("email", user.getEmail());
+        gen.writeStringField("password", user.getPassword());
+        gen.writeStringField("website", user.getWebsite());
+        writeNumber(gen, "views", user.getViews());
+        writeNumber(gen, "uniqueViews", user.getUniqueViews());
+        writeDate(gen, provider, "joined", user.getJoined());
+
+        gen.writeFieldName("avatar");
+        if(user.getAvatar() == null) {
+            gen.writeNull();
+        }
+        else {
+            gen.writeBinary(user.getAvatar());
+        }
+
+        gen.writeEndObject();
+    }
+}
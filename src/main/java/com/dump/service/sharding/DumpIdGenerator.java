@@ -0,0 +1,40 @@
+package com.dump.service.sharding;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.enhanced.TableGenerator;
+
+import java.io.Serializable;
+
+
+/**
+ * Dump IDs, allocated in blocks from one sequence table in the home database. Per-database auto increment
+ * would hand out the same IDs on every shard, while these are unique across shards and still grow with time,
+ * so lists gathered from several shards can be merged by ID.
+ *
+ * The block is fetched in a separate transaction, which must reach the home database even when the Dump is
+ * being inserted into a shard.
+ */
+public class DumpIdGenerator extends TableGenerator {
+
+    /**
+     * Table holding the sequence
+     */
+    public static final String TABLE = "dump_ids";
+
+    /**
+     * Row of the sequence
+     */
+    public static final String SEGMENT = "dump";
+
+    @Override
+    public Serializable generate(SessionImplementor session, Object object) {
+        Shard previous = ShardRouting.enter(null);
+
+        try {
+            return super.generate(session, object);
+        }
+        finally {
+            ShardRouting.enter(previous);
+        }
+    }
+}
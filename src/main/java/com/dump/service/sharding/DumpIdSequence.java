@@ -0,0 +1,71 @@
+package com.dump.service.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Collections;
+
+
+/**
+ * Starts the Dump ID sequence above every existing Dump ID. Without its row the generator would start again at
+ * 1, which collides with Dumps added while IDs came from the database's auto increment.
+ */
+@Component
+public class DumpIdSequence {
+
+    private static final Logger logger = LoggerFactory.getLogger(DumpIdSequence.class);
+
+    // the schema is created along with the entity manager factory
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired(required = false)
+    private ShardSet shards;
+
+
+    /**
+     * Inserts the sequence row if there is none yet
+     */
+    @PostConstruct
+    public void seed() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        String table = DumpIdGenerator.TABLE;
+
+        Integer rows = jdbc.queryForObject("select count(*) from " + table + " where sequence_name = ?",
+                Integer.class, DumpIdGenerator.SEGMENT);
+        if(rows > 0) {
+            return;
+        }
+
+        long next = 1;
+        for(Shard shard : shards == null ? Collections.<Shard>singletonList(null) : shards.getAll()) {
+            Shard previous = ShardRouting.enter(shard);
+
+            try {
+                Long max = jdbc.queryForObject("select max(id) from dump", Long.class);
+                next = Math.max(next, max == null ? 1 : max + 1);
+            }
+            finally {
+                ShardRouting.enter(previous);
+            }
+        }
+
+        try {
+            jdbc.update("insert into " + table + " (sequence_name, next_val) values (?, ?)", DumpIdGenerator.SEGMENT, next);
+            logger.info("Dump IDs start at {}", next);
+        }
+        catch(DuplicateKeyException e) {
+            // another node seeded it first
+        }
+    }
+}
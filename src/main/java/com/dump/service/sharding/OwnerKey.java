@@ -0,0 +1,16 @@
+package com.dump.service.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks the username parameter of a repository method listing a User's Dumps, which is then gathered from
+ * the shards holding that User's Dumps only
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface OwnerKey {
+}
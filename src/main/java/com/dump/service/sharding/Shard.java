@@ -0,0 +1,73 @@
+package com.dump.service.sharding;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * One database holding a share of the Dumps
+ */
+public class Shard {
+
+    private final String name;
+    private final DataSource dataSource;
+
+    private final LongAdder points = new LongAdder();
+    private final LongAdder scatters = new LongAdder();
+
+
+    /**
+     * Creates a Shard
+     * @param name          Name, which places the shard on the hash ring and must not change
+     * @param dataSource    DataSource of the shard, null for the home database
+     */
+    public Shard(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return  DataSource of the shard, null for the home database
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return  TRUE for the home database
+     */
+    public boolean isHome() {
+        return dataSource == null;
+    }
+
+    /**
+     * @return  Repository calls routed to this shard alone
+     */
+    public long getPoints() {
+        return points.sum();
+    }
+
+    /**
+     * @return  Repository calls this shard answered a part of
+     */
+    public long getScatters() {
+        return scatters.sum();
+    }
+
+    void point() {
+        points.increment();
+    }
+
+    void scatter() {
+        scatters.increment();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
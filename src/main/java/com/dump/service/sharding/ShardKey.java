@@ -0,0 +1,16 @@
+package com.dump.service.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks the Dump public ID parameter of a repository method, which is then routed to the one shard holding
+ * that Dump. A collection of public IDs is split up, and each shard is called with the IDs it holds.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ShardKey {
+}
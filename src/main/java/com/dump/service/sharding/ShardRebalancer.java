@@ -0,0 +1,133 @@
+package com.dump.service.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+/**
+ * Moves every Dump to the shard the ring places it on, after shards were added or removed, or from the home
+ * database when sharding is turned on. Rows are copied as they are, keeping their IDs, then deleted at the
+ * source; a copy already present on the target wins, so an interrupted run can simply be repeated.
+ *
+ * Run it with dump.shards.fallback-reads on every node, so Dumps not yet moved are still found. A Dump
+ * edited while it is being moved may lose that edit.
+ */
+public class ShardRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final ShardSet shards;
+    private final UserShards users;
+    private final JdbcTemplate jdbc;
+    private final int batchSize;
+
+
+    /**
+     * Creates a ShardRebalancer
+     * @param shards        Shards
+     * @param users         Index of the shards holding each User's Dumps
+     * @param dataSource    Shard routing DataSource
+     * @param batchSize     Rows read from a shard at once
+     */
+    public ShardRebalancer(ShardSet shards, UserShards users, DataSource dataSource, int batchSize) {
+        this.shards = shards;
+        this.users = users;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Moves every misplaced Dump
+     * @return  Number of Dumps moved
+     */
+    public long rebalance() {
+        long moved = 0;
+
+        for(Shard source : shards.getAll()) {
+            long fromSource = rebalance(source);
+
+            if(fromSource > 0) {
+                logger.info("Moved {} Dumps off {}", fromSource, source);
+            }
+            moved += fromSource;
+        }
+
+        return moved;
+    }
+
+
+    private long rebalance(Shard source) {
+        long moved = 0;
+        long after = Long.MIN_VALUE;
+
+        while(true) {
+            long from = after;
+            List<Map<String, Object>> rows = on(source, () -> jdbc.queryForList(
+                    "select id, public_id, username from dump where id > ? order by id limit " + batchSize, from));
+
+            if(rows.isEmpty()) {
+                return moved;
+            }
+
+            for(Map<String, Object> row : rows) {
+                Number id = (Number) row.get("id");
+                String publicId = (String) row.get("public_id");
+                after = id.longValue();
+
+                if(publicId == null) {
+                    continue;
+                }
+
+                Shard target = shards.shardFor(publicId);
+                if(target != source) {
+                    move(id, publicId, (String) row.get("username"), source, target);
+                    moved++;
+                }
+            }
+        }
+    }
+
+
+    private void move(Number id, String publicId, String username, Shard source, Shard target) {
+        users.add(username, target);
+
+        Integer present = on(target, () -> jdbc.queryForObject(
+                "select count(*) from dump where public_id = ?", Integer.class, publicId));
+
+        if(present == 0) {
+            Map<String, Object> row = on(source, () -> jdbc.queryForMap("select * from dump where id = ?", id));
+
+            List<String> columns = new ArrayList<>(row.keySet());
+            StringBuilder sql = new StringBuilder("insert into dump (").append(String.join(", ", columns)).append(") values (");
+
+            for(int i = 0; i < columns.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+
+            on(target, () -> jdbc.update(sql.toString(), row.values().toArray()));
+        }
+
+        on(source, () -> jdbc.update("delete from dump where id = ?", id));
+    }
+
+
+    private static <T> T on(Shard shard, Supplier<T> work) {
+        Shard previous = ShardRouting.enter(shard);
+
+        try {
+            return work.get();
+        }
+        finally {
+            ShardRouting.enter(previous);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dump.service.sharding;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+
+/**
+ * Consistent hash ring over the shards. Each shard is placed at many points (virtual nodes) so keys spread
+ * evenly, and adding or removing a shard only moves the keys of the ring segments it takes or gives up, about
+ * one shard's share, instead of reshuffling everything as a modulo would.
+ *
+ * Placement only depends on the shard names, so every node computes the same ring.
+ */
+public class ShardRing {
+
+    private final NavigableMap<Long, Shard> ring = new TreeMap<>();
+
+
+    /**
+     * Creates a ShardRing
+     * @param shards        Shards to place
+     * @param virtualNodes  Points per shard
+     */
+    public ShardRing(List<Shard> shards, int virtualNodes) {
+        if(shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards to place");
+        }
+
+        for(Shard shard : shards) {
+            for(int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard.getName() + "#" + i), shard);
+            }
+        }
+    }
+
+
+    /**
+     * Finds the shard owning a key: the first shard point at or after the key's hash, wrapping around
+     * @param key   Key, the public ID of a Dump
+     * @return  Shard
+     */
+    public Shard shardFor(String key) {
+        Map.Entry<Long, Shard> owner = ring.ceilingEntry(hash(key));
+        return owner == null ? ring.firstEntry().getValue() : owner.getValue();
+    }
+
+
+    /**
+     * First 64 bits of the MD5 digest. Not for security, only for a well spread and stable position.
+     */
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.dump.service.sharding;
+
+
+/**
+ * The shard the current thread's Dump statements go to. Set around every routed DumpRepository call; while
+ * none is set, statements go to the home database which holds everything but Dumps.
+ */
+public final class ShardRouting {
+
+    private static final ThreadLocal<Shard> CURRENT = new ThreadLocal<>();
+
+    private ShardRouting() {}
+
+
+    /**
+     * @return  Shard of the current thread, null for the home database
+     */
+    public static Shard current() {
+        return CURRENT.get();
+    }
+
+
+    /**
+     * Routes the current thread to a shard
+     * @param shard Shard, null for the home database
+     * @return  Previous shard, to restore afterwards
+     */
+    public static Shard enter(Shard shard) {
+        Shard previous = CURRENT.get();
+
+        if(shard == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(shard);
+        }
+
+        return previous;
+    }
+}
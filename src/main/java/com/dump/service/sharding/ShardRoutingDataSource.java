@@ -0,0 +1,54 @@
+package com.dump.service.sharding;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+
+/**
+ * Sends statements to the shard {@link ShardRouting} names for the current thread, and to the home database
+ * when it names none or the home database itself.
+ *
+ * Behind a {@link LazyConnectionDataSourceProxy}, so the connection is only fetched when the first statement
+ * runs. That lets the Dump ID generator step out to the home database in the middle of a shard transaction.
+ */
+public class ShardRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource home;
+
+
+    /**
+     * Creates a ShardRoutingDataSource
+     * @param home  DataSource of the home database
+     */
+    public ShardRoutingDataSource(DataSource home) {
+        this.home = home;
+    }
+
+
+    /**
+     * Wraps the home database in a lazily connecting shard routing DataSource
+     * @param home  DataSource of the home database
+     * @return  DataSource to hand to the transaction manager
+     */
+    public static DataSource lazy(DataSource home) {
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(home));
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Shard shard = ShardRouting.current();
+        return shard == null || shard.isHome() ? home.getConnection() : shard.getDataSource().getConnection();
+    }
+
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // credentials are the home database's, they don't apply to the shards
+        return home.getConnection(username, password);
+    }
+}
@@ -0,0 +1,28 @@
+package com.dump.service.sharding;
+
+import org.flywaydb.core.Flyway;
+
+import javax.sql.DataSource;
+
+
+/**
+ * Migrates the Dump table of a shard with the migrations in db/shard, which mirror the Dump part of those the
+ * home database runs from db/migration. Shards created before migrations are baselined at the first version.
+ */
+public final class ShardSchema {
+
+    private ShardSchema() {}
+
+
+    /**
+     * Migrates the schema of a shard to the latest version
+     * @param dataSource    DataSource of the shard
+     */
+    public static void migrate(DataSource dataSource) {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations("classpath:db/shard");
+        flyway.setBaselineOnMigrate(true);
+        flyway.migrate();
+    }
+}
@@ -0,0 +1,127 @@
+package com.dump.service.sharding;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The Dump shards and the ring placing Dumps on them by public ID. The home database, which holds Users,
+ * revisions and the ID sequence, is kept alongside as a shard off the ring: it isn't given new Dumps, but
+ * still holds those written before sharding until the rebalancer moves them out.
+ */
+public class ShardSet implements MetricSource {
+
+    /**
+     * Name of the home database
+     */
+    public static final String HOME = "home";
+
+    private final Shard home;
+    private final List<Shard> shards;
+    private final Map<String, Shard> byName = new LinkedHashMap<>();
+    private final ShardRing ring;
+
+    private final LongAdder fallbacks = new LongAdder();
+
+
+    /**
+     * Creates a ShardSet
+     * @param shards        Dump shards
+     * @param virtualNodes  Ring points per shard
+     */
+    public ShardSet(List<Shard> shards, int virtualNodes) {
+        this.home = new Shard(HOME, null);
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.ring = new ShardRing(this.shards, virtualNodes);
+
+        byName.put(HOME, home);
+        for(Shard shard : this.shards) {
+            if(byName.put(shard.getName(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate shard " + shard.getName());
+            }
+        }
+    }
+
+
+    /**
+     * @return  Home database
+     */
+    public Shard getHome() {
+        return home;
+    }
+
+    /**
+     * @return  Dump shards, in configuration order
+     */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return  Dump shards followed by the home database, everywhere a Dump may be before rebalancing
+     */
+    public List<Shard> getAll() {
+        List<Shard> all = new ArrayList<>(shards);
+        all.add(home);
+        return all;
+    }
+
+
+    /**
+     * @param publicId  Dump public ID
+     * @return  Shard holding the Dump
+     */
+    public Shard shardFor(String publicId) {
+        return ring.shardFor(publicId);
+    }
+
+
+    /**
+     * @param name  Shard name
+     * @return  Shard, null if there is none by that name
+     */
+    public Shard named(String name) {
+        return byName.get(name);
+    }
+
+
+    void fallback() {
+        fallbacks.increment();
+    }
+
+
+    /**
+     * Closes the shard connection pools
+     */
+    public void close() {
+        for(Shard shard : shards) {
+            DataSource dataSource = shard.getDataSource();
+
+            if(dataSource instanceof org.apache.tomcat.jdbc.pool.DataSource) {
+                ((org.apache.tomcat.jdbc.pool.DataSource) dataSource).close();
+            }
+        }
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        for(Shard shard : getAll()) {
+            writer.counter("dump_shard_calls_total", "Dump repository calls served by the shard",
+                    new String[] { "shard", shard.getName(), "kind", "point" }, shard.getPoints());
+            writer.counter("dump_shard_calls_total", "Dump repository calls served by the shard",
+                    new String[] { "shard", shard.getName(), "kind", "scatter" }, shard.getScatters());
+        }
+
+        writer.counter("dump_shard_fallbacks_total", "Point lookups which missed their shard and searched the others",
+                new String[0], fallbacks.sum());
+    }
+}
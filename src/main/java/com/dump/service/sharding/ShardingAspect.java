@@ -0,0 +1,437 @@
+package com.dump.service.sharding;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.tracing.QueryTrace;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The sharding layer under DumpRepository. Every call is routed by its arguments:
+ *
+ * - a {@link ShardKey} public ID or a Dump entity goes to the one shard holding that Dump
+ * - a collection of {@link ShardKey} public IDs is split up by shard, and the shards are queried in parallel
+ * - a batch of Dump entities is split up by shard
+ * - a {@link OwnerKey} username is gathered from the shards holding that User's Dumps
+ * - anything else, such as the recent list and search, is gathered from every shard
+ *
+ * Gathering queries the shards in parallel and merges their answers: lists ordered by ID are merged by ID,
+ * limited to the "findFirstN" count, and pages are cut from the merged first pages of each shard.
+ *
+ * With dump.shards.fallback-reads, a point lookup which misses its shard searches the others and the home
+ * database. Keep it on from a change of shards until the rebalancer has moved every Dump to its new shard.
+ */
+@Aspect
+public class ShardingAspect {
+
+    private static final Pattern LIMIT = Pattern.compile("^find(?:First|Top)(\\d+)");
+
+    private static final Comparator<Object> ID_DESCENDING =
+            Comparator.comparing((Object dump) -> ((Dump) dump).getId(), Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final ShardSet shards;
+    private final UserShards users;
+    private final Executor executor;
+    private final long timeout;
+    private final boolean fallbackReads;
+
+    private final ConcurrentMap<Method, Route> routes = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a ShardingAspect
+     * @param shards        Shards
+     * @param users         Index of the shards holding each User's Dumps
+     * @param executor      Runs the queries of gathered calls
+     * @param timeout       Milliseconds a gathered call waits for the slowest shard
+     * @param fallbackReads Whether point lookups missing their shard search the others
+     */
+    public ShardingAspect(ShardSet shards, UserShards users, Executor executor, long timeout, boolean fallbackReads) {
+        this.shards = shards;
+        this.users = users;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.fallbackReads = fallbackReads;
+    }
+
+
+    @Around("target(com.dump.service.repositories.DumpRepository)")
+    public Object route(ProceedingJoinPoint pjp) throws Throwable {
+        // already routed, such as by the rebalancer
+        if(ShardRouting.current() != null) {
+            return pjp.proceed();
+        }
+
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Route route = routes.computeIfAbsent(method, Route::of);
+        Object[] args = pjp.getArgs();
+
+        switch(route.kind) {
+            case KEY:
+                return point(pjp, args, shards.shardFor((String) args[route.argument]));
+
+            case KEYS:
+                if(fallbackReads) {
+                    return gather(pjp, method, args, shards.getAll());
+                }
+                return splitKeys(pjp, method, route, args);
+
+            case OWNER:
+                String username = (String) args[route.argument];
+                return gather(pjp, method, args, fallbackReads ? shards.getAll() : users.shardsOf(username));
+
+            case ENTITY:
+                if(args[0] instanceof Dump) {
+                    Dump dump = (Dump) args[0];
+                    Shard shard = shards.shardFor(dump.getPublicId());
+
+                    if(route.writes) {
+                        users.add(dump.getUsername(), shard);
+                    }
+                    return point(pjp, args, shard);
+                }
+                if(args[0] instanceof Iterable) {
+                    return split(pjp, route, (Iterable<?>) args[0]);
+                }
+                throw new UnsupportedOperationException(method.getName() + " by ID can't be routed to a shard, pass the Dump");
+
+            default:
+                return gather(pjp, method, args, fallbackReads ? shards.getAll() : shards.getShards());
+        }
+    }
+
+
+    private Object point(ProceedingJoinPoint pjp, Object[] args, Shard shard) throws Throwable {
+        Object result = on(shard, pjp, args);
+        shard.point();
+
+        if(!fallbackReads || !missed(result)) {
+            return result;
+        }
+
+        for(Shard other : shards.getAll()) {
+            if(other == shard) {
+                continue;
+            }
+
+            Object found = on(other, pjp, args);
+            other.point();
+
+            if(!missed(found)) {
+                shards.fallback();
+                return found;
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Runs a batch call once per shard with the entities it holds
+     */
+    private Object split(ProceedingJoinPoint pjp, Route route, Iterable<?> entities) throws Throwable {
+        Map<Shard, List<Object>> byShard = new LinkedHashMap<>();
+
+        for(Object entity : entities) {
+            Dump dump = (Dump) entity;
+            Shard shard = shards.shardFor(dump.getPublicId());
+
+            if(route.writes) {
+                users.add(dump.getUsername(), shard);
+            }
+            byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(dump);
+        }
+
+        List<Object> results = new ArrayList<>();
+
+        for(Map.Entry<Shard, List<Object>> entry : byShard.entrySet()) {
+            Object result = on(entry.getKey(), pjp, new Object[] { entry.getValue() });
+            entry.getKey().point();
+
+            if(result instanceof Iterable) {
+                for(Object saved : (Iterable<?>) result) {
+                    results.add(saved);
+                }
+            }
+        }
+
+        return results;
+    }
+
+
+    /**
+     * Runs a lookup of several public IDs once per shard with the IDs it holds, in parallel
+     */
+    private Object splitKeys(ProceedingJoinPoint pjp, Method method, Route route, Object[] args) throws Throwable {
+        Map<Shard, List<String>> byShard = new LinkedHashMap<>();
+
+        for(Object key : (Collection<?>) args[route.argument]) {
+            byShard.computeIfAbsent(shards.shardFor((String) key), shard -> new ArrayList<>()).add((String) key);
+        }
+
+        List<Shard> targets = new ArrayList<>();
+        List<Object[]> shardArgs = new ArrayList<>();
+
+        for(Map.Entry<Shard, List<String>> entry : byShard.entrySet()) {
+            Object[] callArgs = args.clone();
+            callArgs[route.argument] = entry.getValue();
+
+            targets.add(entry.getKey());
+            shardArgs.add(callArgs);
+        }
+
+        return merge(method, scatter(pjp, targets, shardArgs), null);
+    }
+
+
+    /**
+     * Runs a call on several shards in parallel and merges the answers
+     */
+    private Object gather(ProceedingJoinPoint pjp, Method method, Object[] args, List<Shard> targets) throws Throwable {
+        Pageable pageable = null;
+        Object[] shardArgs = args;
+
+        // every shard answers the merged page from its own first rows
+        for(int i = 0; i < args.length; i++) {
+            if(args[i] instanceof Pageable) {
+                pageable = (Pageable) args[i];
+                shardArgs = args.clone();
+                shardArgs[i] = new PageRequest(0, pageable.getOffset() + pageable.getPageSize(), pageable.getSort());
+            }
+        }
+
+        return merge(method, scatter(pjp, targets, Collections.nCopies(targets.size(), shardArgs)), pageable);
+    }
+
+
+    /**
+     * Runs a call on several shards in parallel, each with its own arguments, and returns their answers in
+     * order. The first shard's query runs on the calling thread, which has to wait anyway.
+     */
+    private List<Object> scatter(ProceedingJoinPoint pjp, List<Shard> targets, List<Object[]> shardArgs) throws Throwable {
+        List<FutureTask<Object>> tasks = new ArrayList<>();
+        QueryTrace trace = QueryTrace.current();
+
+        for(int t = 0; t < targets.size(); t++) {
+            Shard shard = targets.get(t);
+            Object[] callArgs = shardArgs.get(t);
+
+            tasks.add(new FutureTask<>(() -> {
+                QueryTrace previous = QueryTrace.attach(trace);
+
+                try {
+                    shard.scatter();
+                    return on(shard, pjp, callArgs);
+                }
+                catch(Throwable e) {
+                    throw e instanceof Exception ? (Exception) e : new ExecutionException(e);
+                }
+                finally {
+                    QueryTrace.attach(previous);
+                }
+            }));
+        }
+
+        for(int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            }
+            catch(RejectedExecutionException e) {
+                tasks.get(i).run();
+            }
+        }
+        if(!tasks.isEmpty()) {
+            tasks.get(0).run();
+        }
+
+        List<Object> results = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        try {
+            for(int i = 0; i < tasks.size(); i++) {
+                try {
+                    results.add(tasks.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                }
+                catch(TimeoutException e) {
+                    throw new QueryTimeoutException("Shard " + targets.get(i) + " did not answer within " + timeout + "ms");
+                }
+                catch(ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        finally {
+            for(FutureTask<Object> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+        return results;
+    }
+
+
+    private static Object merge(Method method, List<Object> results, Pageable pageable) {
+        Class<?> type = method.getReturnType();
+
+        if(type.isArray()) {
+            List<Object> merged = new ArrayList<>();
+            for(Object result : results) {
+                if(result != null) {
+                    Collections.addAll(merged, (Object[]) result);
+                }
+            }
+
+            merged = ordered(method, merged);
+
+            Matcher limit = LIMIT.matcher(method.getName());
+            if(limit.find() && merged.size() > Integer.parseInt(limit.group(1))) {
+                merged = merged.subList(0, Integer.parseInt(limit.group(1)));
+            }
+
+            return merged.toArray((Object[]) Array.newInstance(type.getComponentType(), merged.size()));
+        }
+
+        if(Page.class.isAssignableFrom(type)) {
+            List<Object> merged = new ArrayList<>();
+            long total = 0;
+
+            for(Object result : results) {
+                Page<?> page = (Page<?>) result;
+                merged.addAll(page.getContent());
+                total += page.getTotalElements();
+            }
+
+            merged = ordered(method, merged);
+
+            int from = Math.min(pageable.getOffset(), merged.size());
+            int to = Math.min(from + pageable.getPageSize(), merged.size());
+
+            return new PageImpl<>(new ArrayList<>(merged.subList(from, to)), pageable, total);
+        }
+
+        if(type == long.class || type == Long.class) {
+            long sum = 0;
+            for(Object result : results) {
+                sum += (Long) result;
+            }
+            return sum;
+        }
+
+        if(type == boolean.class || type == Boolean.class) {
+            return results.contains(Boolean.TRUE);
+        }
+
+        if(Iterable.class.isAssignableFrom(type)) {
+            List<Object> merged = new ArrayList<>();
+            for(Object result : results) {
+                for(Object element : (Iterable<?>) result) {
+                    merged.add(element);
+                }
+            }
+            return merged;
+        }
+
+        // a single entity lives on one shard
+        for(Object result : results) {
+            if(result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+
+    private static List<Object> ordered(Method method, List<Object> merged) {
+        if(method.getName().endsWith("OrderByIdDesc")) {
+            merged.sort(ID_DESCENDING);
+        }
+        return merged;
+    }
+
+
+    private static Object on(Shard shard, ProceedingJoinPoint pjp, Object[] args) throws Throwable {
+        Shard previous = ShardRouting.enter(shard);
+
+        try {
+            return pjp.proceed(args);
+        }
+        finally {
+            ShardRouting.enter(previous);
+        }
+    }
+
+
+    private static boolean missed(Object result) {
+        return result == null || Integer.valueOf(0).equals(result);
+    }
+
+
+    /**
+     * How calls of one repository method are routed
+     */
+    private static class Route {
+        enum Kind { KEY, KEYS, OWNER, ENTITY, ALL }
+
+        final Kind kind;
+        final int argument;
+        final boolean writes;
+
+        Route(Kind kind, int argument, boolean writes) {
+            this.kind = kind;
+            this.argument = argument;
+            this.writes = writes;
+        }
+
+        static Route of(Method method) {
+            Annotation[][] annotations = method.getParameterAnnotations();
+
+            for(int i = 0; i < annotations.length; i++) {
+                for(Annotation annotation : annotations[i]) {
+                    if(annotation instanceof ShardKey) {
+                        return new Route(Collection.class.isAssignableFrom(method.getParameterTypes()[i]) ? Kind.KEYS : Kind.KEY, i, false);
+                    }
+                    if(annotation instanceof OwnerKey) {
+                        return new Route(Kind.OWNER, i, false);
+                    }
+                }
+            }
+
+            String name = method.getName();
+
+            if(annotations.length == 1 && (name.startsWith("save") || name.startsWith("delete"))) {
+                return new Route(Kind.ENTITY, 0, name.startsWith("save"));
+            }
+
+            return new Route(Kind.ALL, -1, false);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.dump.service.sharding;
+
+import com.dump.service.objects.User;
+import com.dump.service.objects.UserShard;
+import com.dump.service.repositories.UserShardRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Index of the shards holding each User's Dumps. Dumps are placed by public ID, so a User's Dumps are spread
+ * over the shards; the index lets a User's list skip the shards holding none of them.
+ *
+ * Entries are added before the Dump is written, so a list never misses a shard, at worst it visits one more.
+ * Anonymous Dumps aren't indexed, their lists are gathered from every shard.
+ */
+public class UserShards {
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private final UserShardRepository repository;
+    private final ShardSet shards;
+
+    // entries known to be stored, so repeated writes don't repeat the insert
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Creates a UserShards index
+     * @param repository    Index storage
+     * @param shards        Shards
+     */
+    public UserShards(UserShardRepository repository, ShardSet shards) {
+        this.repository = repository;
+        this.shards = shards;
+    }
+
+
+    /**
+     * Records that a shard holds Dumps of a User
+     * @param username  Owner of the Dump
+     * @param shard     Shard the Dump is written to
+     */
+    public void add(String username, Shard shard) {
+        if(isAnonymous(username)) {
+            return;
+        }
+
+        String user = User.normalize(username);
+        String key = user + "|" + shard.getName();
+
+        if(stored.contains(key)) {
+            return;
+        }
+
+        Shard previous = ShardRouting.enter(null);
+
+        try {
+            repository.save(new UserShard(user, shard.getName()));
+        }
+        catch(DataIntegrityViolationException e) {
+            // already indexed, by an earlier run or another node
+        }
+        finally {
+            ShardRouting.enter(previous);
+        }
+
+        stored.add(key);
+    }
+
+
+    /**
+     * Finds the shards holding Dumps of a User
+     * @param username  Username
+     * @return  Shards, every shard for anonymous Dumps
+     */
+    public List<Shard> shardsOf(String username) {
+        if(isAnonymous(username)) {
+            return shards.getShards();
+        }
+
+        List<Shard> result = new ArrayList<>();
+        Shard previous = ShardRouting.enter(null);
+
+        try {
+            for(UserShard entry : repository.findByUsername(User.normalize(username))) {
+                Shard shard = shards.named(entry.getShard());
+
+                // shards taken out of the configuration are skipped
+                if(shard != null && !shard.isHome()) {
+                    result.add(shard);
+                }
+            }
+        }
+        finally {
+            ShardRouting.enter(previous);
+        }
+
+        return result;
+    }
+
+
+    private static boolean isAnonymous(String username) {
+        return username == null || username.equalsIgnoreCase(ANONYMOUS);
+    }
+}
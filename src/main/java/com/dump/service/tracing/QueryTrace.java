@@ -0,0 +1,146 @@
+package com.dump.service.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+/**
+ * JDBC statements issued while handling one request. The trace is bound to whichever thread is working on
+ * the request, so statements run by async handlers on the persistence pool are counted too.
+ */
+public class QueryTrace {
+
+    /**
+     * Distinct statement shapes kept per request, further shapes are only counted
+     */
+    static final int MAX_SHAPES = 32;
+
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern SPACE = Pattern.compile("\\s+");
+
+    private final Map<String, Shape> shapes = new LinkedHashMap<>();
+    private int count;
+    private long nanos;
+
+
+    /**
+     * @return  Trace bound to the current thread, null if none
+     */
+    public static QueryTrace current() {
+        return CURRENT.get();
+    }
+
+
+    /**
+     * Binds a trace to the current thread
+     * @param trace Trace to bind, null to unbind
+     * @return  Previously bound trace, to restore afterwards
+     */
+    public static QueryTrace attach(QueryTrace trace) {
+        QueryTrace previous = CURRENT.get();
+
+        if(trace == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(trace);
+        }
+
+        return previous;
+    }
+
+
+    /**
+     * Records one executed statement
+     * @param sql   Statement SQL
+     * @param nanos Execution time
+     */
+    public synchronized void record(String sql, long nanos) {
+        count++;
+        this.nanos += nanos;
+
+        String key = sql == null ? "(batch)" : shape(sql);
+        Shape shape = shapes.get(key);
+
+        if(shape == null) {
+            if(shapes.size() >= MAX_SHAPES) {
+                key = "(other)";
+                shape = shapes.get(key);
+            }
+            if(shape == null) {
+                shape = new Shape();
+                shapes.put(key, shape);
+            }
+        }
+
+        shape.count++;
+        shape.nanos += nanos;
+    }
+
+
+    /**
+     * @return  Number of statements executed
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+
+    /**
+     * @return  Total statement execution time in nanoseconds
+     */
+    public synchronized long getNanos() {
+        return nanos;
+    }
+
+
+    /**
+     * @return  Highest number of times a single statement shape was executed, a hint of N+1 queries
+     */
+    public synchronized int getMaxRepeats() {
+        int max = 0;
+
+        for(Shape shape : shapes.values()) {
+            max = Math.max(max, shape.count);
+        }
+
+        return max;
+    }
+
+
+    /**
+     * Describes the executed statements, one shape per line with its count and total time
+     * @return  Description
+     */
+    public synchronized String describe() {
+        StringBuilder sb = new StringBuilder();
+
+        for(Map.Entry<String, Shape> entry : shapes.entrySet()) {
+            sb.append(String.format("  %3dx %8.2fms  %s%n", entry.getValue().count, entry.getValue().nanos / 1e6, entry.getKey()));
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Reduces a statement to its shape by replacing literals with ? and collapsing whitespace
+     * @param sql   Statement SQL
+     * @return  Statement shape
+     */
+    static String shape(String sql) {
+        String shape = STRING.matcher(sql).replaceAll("?");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        return SPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+
+    private static class Shape {
+        int count;
+        long nanos;
+    }
+}
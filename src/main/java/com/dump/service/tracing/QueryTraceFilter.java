@@ -0,0 +1,168 @@
+package com.dump.service.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+
+/**
+ * Starts a {@link QueryTrace} for every request and logs requests which run too many statements, spend too
+ * long in the database or repeat one statement too often (likely N+1 queries).
+ *
+ * Async requests pass through twice, once when the handler starts and once on the async dispatch which writes
+ * the response, and share one trace between them. With headers enabled, X-Query-Count and X-Query-Time are
+ * added just before the response is committed.
+ */
+public class QueryTraceFilter extends OncePerRequestFilter {
+
+    static final String ATTRIBUTE = QueryTraceFilter.class.getName() + ".trace";
+
+    public static final String COUNT_HEADER = "X-Query-Count";
+    public static final String TIME_HEADER = "X-Query-Time";
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryTraceFilter.class);
+
+    private final boolean headers;
+    private final int maxQueries;
+    private final long maxNanos;
+    private final int maxRepeats;
+
+
+    /**
+     * Creates a QueryTraceFilter
+     * @param headers       TRUE to add the debug headers to responses
+     * @param maxQueries    Statements per request before it is logged
+     * @param maxMillis     Total statement time per request before it is logged
+     * @param maxRepeats    Executions of one statement shape per request before it is logged
+     */
+    public QueryTraceFilter(boolean headers, int maxQueries, long maxMillis, int maxRepeats) {
+        this.headers = headers;
+        this.maxQueries = maxQueries;
+        this.maxNanos = maxMillis * 1000000L;
+        this.maxRepeats = maxRepeats;
+    }
+
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryTrace trace = (QueryTrace) request.getAttribute(ATTRIBUTE);
+
+        if(trace == null) {
+            trace = new QueryTrace();
+            request.setAttribute(ATTRIBUTE, trace);
+        }
+
+        // the async dispatch gets the wrapper back from the container
+        if(headers && !(response instanceof TracedResponse)) {
+            response = new TracedResponse(response, trace);
+        }
+
+        QueryTrace previous = QueryTrace.attach(trace);
+
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            QueryTrace.attach(previous);
+        }
+
+        if(isAsyncStarted(request)) {
+            return;
+        }
+
+        if(response instanceof TracedResponse) {
+            ((TracedResponse) response).addTraceHeaders();
+        }
+
+        report(request, trace);
+    }
+
+
+    private void report(HttpServletRequest request, QueryTrace trace) {
+        int count = trace.getCount();
+        long nanos = trace.getNanos();
+        int repeats = trace.getMaxRepeats();
+
+        if(count > maxQueries || nanos > maxNanos || repeats > maxRepeats) {
+            logger.warn("{} {} ran {} statements in {}ms{}:\n{}", request.getMethod(), request.getRequestURI(), count,
+                    String.format(Locale.ROOT, "%.2f", nanos / 1e6),
+                    repeats > maxRepeats ? ", one of them " + repeats + " times (N+1?)" : "", trace.describe());
+        }
+    }
+
+
+    /**
+     * Adds the trace headers the first time the response could be committed
+     */
+    private static class TracedResponse extends HttpServletResponseWrapper {
+        private final QueryTrace trace;
+        private boolean added;
+
+        TracedResponse(HttpServletResponse response, QueryTrace trace) {
+            super(response);
+            this.trace = trace;
+        }
+
+        void addTraceHeaders() {
+            if(added || isCommitted()) {
+                return;
+            }
+            added = true;
+
+            setHeader(COUNT_HEADER, Integer.toString(trace.getCount()));
+            setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", trace.getNanos() / 1e6));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addTraceHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addTraceHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addTraceHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addTraceHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addTraceHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addTraceHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
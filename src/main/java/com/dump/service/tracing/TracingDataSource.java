@@ -0,0 +1,118 @@
+package com.dump.service.tracing;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+
+/**
+ * DataSource wrapper which times every statement execution and records it in the {@link QueryTrace} bound to
+ * the calling thread. Only execution is timed, not iterating over results. Threads without a trace pay for
+ * one ThreadLocal lookup per statement.
+ */
+public class TracingDataSource extends DelegatingDataSource {
+
+    /**
+     * Creates a TracingDataSource
+     * @param target    DataSource to trace
+     */
+    public TracingDataSource(DataSource target) {
+        super(target);
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    /**
+     * Wraps statements created by a connection, remembering the SQL of prepared statements
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(connection, method, args);
+
+            if(result instanceof Statement) {
+                String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+                return Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+                        new Class<?>[] { type }, new StatementHandler((Statement) result, sql));
+            }
+
+            return result;
+        }
+    }
+
+
+    /**
+     * Times execute* calls of a statement
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+
+        StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            QueryTrace trace = method.getName().startsWith("execute") ? QueryTrace.current() : null;
+
+            if(trace == null) {
+                return TracingDataSource.invoke(statement, method, args);
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                return TracingDataSource.invoke(statement, method, args);
+            }
+            finally {
+                boolean literal = args != null && args.length > 0 && args[0] instanceof String;
+                trace.record(literal ? (String) args[0] : sql, System.nanoTime() - start);
+            }
+        }
+    }
+}
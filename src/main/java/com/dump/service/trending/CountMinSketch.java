@@ -0,0 +1,136 @@
+package com.dump.service.trending;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * Count-Min sketch of weighted counts. Estimates never undercount, and overcount by at most e / width of the
+ * total weight with probability 1 - e^-depth. Sketches of the same shape add up, which is how nodes merge
+ * their counts. Not thread safe.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final double[][] counts;
+
+
+    /**
+     * Creates an empty sketch
+     * @param depth Number of rows
+     * @param width Counters per row, a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        if(Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two: " + width);
+        }
+
+        this.depth = depth;
+        this.width = width;
+        this.counts = new double[depth][width];
+    }
+
+
+    /**
+     * Adds weight to an item
+     * @param hash      64-bit hash of the item
+     * @param weight    Weight to add
+     */
+    public void add(long hash, double weight) {
+        for(int row = 0; row < depth; row++) {
+            counts[row][index(hash, row)] += weight;
+        }
+    }
+
+
+    /**
+     * @param hash  64-bit hash of the item
+     * @return  Estimated weight of the item
+     */
+    public double estimate(long hash) {
+        double min = Double.MAX_VALUE;
+
+        for(int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row][index(hash, row)]);
+        }
+
+        return min;
+    }
+
+
+    /**
+     * Adds another sketch of the same shape to this one
+     * @param other     Sketch to add
+     * @param factor    Factor to scale the other sketch's counts by
+     */
+    public void merge(CountMinSketch other, double factor) {
+        if(other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Can't merge a " + other.depth + "x" + other.width + " sketch into a " + depth + "x" + width + " one");
+        }
+
+        for(int row = 0; row < depth; row++) {
+            for(int i = 0; i < width; i++) {
+                counts[row][i] += other.counts[row][i] * factor;
+            }
+        }
+    }
+
+
+    /**
+     * Multiplies every count
+     * @param factor    Factor to multiply by
+     */
+    public void scale(double factor) {
+        for(double[] row : counts) {
+            for(int i = 0; i < width; i++) {
+                row[i] *= factor;
+            }
+        }
+    }
+
+
+    /**
+     * Writes the shape and counts. Counts are written as floats, which is plenty for ranking.
+     * @param out   Output to write to
+     * @throws IOException  on write failure
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+
+        for(double[] row : counts) {
+            for(double count : row) {
+                out.writeFloat((float) count);
+            }
+        }
+    }
+
+
+    /**
+     * Reads a sketch written by {@link #write(DataOutput)}
+     * @param in    Input to read from
+     * @return  CountMinSketch
+     * @throws IOException  on read failure
+     */
+    public static CountMinSketch read(DataInput in) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+
+        for(double[] row : sketch.counts) {
+            for(int i = 0; i < sketch.width; i++) {
+                row[i] = in.readFloat();
+            }
+        }
+
+        return sketch;
+    }
+
+
+    // double hashing, each row takes a different combination of the two halves of the hash
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return (h1 + row * h2) & (width - 1);
+    }
+}
@@ -0,0 +1,98 @@
+package com.dump.service.trending;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Space-Saving summary of the heaviest items of a weighted stream. Holds a fixed number of counters; an item
+ * without one takes over the smallest, inheriting its count as possible overcount. Any item heavier than
+ * total weight / capacity is guaranteed to hold a counter. Not thread safe.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+
+
+    /**
+     * Creates an empty summary
+     * @param capacity  Number of counters
+     */
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * Adds weight to an item. Taking over a counter scans for the smallest, which is cheap at the few hundred
+     * counters a top list needs.
+     * @param item      Item
+     * @param weight    Weight to add
+     */
+    public void offer(String item, double weight) {
+        Counter counter = counters.get(item);
+
+        if(counter != null) {
+            counter.count += weight;
+            return;
+        }
+
+        if(counters.size() < capacity) {
+            counters.put(item, new Counter(item, weight));
+            return;
+        }
+
+        Counter smallest = null;
+        for(Counter candidate : counters.values()) {
+            if(smallest == null || candidate.count < smallest.count) {
+                smallest = candidate;
+            }
+        }
+
+        counters.remove(smallest.item);
+        counters.put(item, new Counter(item, smallest.count + weight));
+    }
+
+
+    /**
+     * Multiplies every count
+     * @param factor    Factor to multiply by
+     */
+    public void scale(double factor) {
+        for(Counter counter : counters.values()) {
+            counter.count *= factor;
+        }
+    }
+
+
+    /**
+     * @return  Items currently holding a counter
+     */
+    public List<String> items() {
+        return new ArrayList<>(counters.keySet());
+    }
+
+
+    /**
+     * @param item  Item
+     * @return  Counted weight of the item, including possible overcount, 0 if it holds no counter
+     */
+    public double count(String item) {
+        Counter counter = counters.get(item);
+        return counter == null ? 0 : counter.count;
+    }
+
+
+    private static class Counter {
+        final String item;
+        double count;
+
+        Counter(String item, double count) {
+            this.item = item;
+            this.count = count;
+        }
+    }
+}
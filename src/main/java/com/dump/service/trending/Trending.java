@@ -0,0 +1,194 @@
+package com.dump.service.trending;
+
+import com.dump.service.Enumerations;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.TrendingSketch;
+import com.dump.service.repositories.TrendingSketchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Trending public Dumps over the last hour and the last day, ranked by exponentially decayed view counts, see
+ * {@link TrendingWindow}. Views only update the windows in memory and top lists are served from memory.
+ *
+ * Every dump.trending.exchange-interval milliseconds each node writes its windows to the home database, reads
+ * the windows of the other nodes and re-ranks, so the top lists cover the views of every node and lag them by
+ * up to one interval. Windows of nodes which stopped writing are dropped once their views have decayed away.
+ */
+@Component
+public class Trending implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(Trending.class);
+
+    private static final long HOUR = 3600000L;
+
+    // a window's views have decayed to 1/256 after 8 half lives
+    private static final int EXPIRY_HALF_LIVES = 8;
+
+    @Autowired
+    private TrendingSketchRepository sketchRepository;
+
+    @Value("${dump.trending.size:50}")
+    private int size;
+
+    @Value("${dump.trending.node:}")
+    private String node;
+
+    private final Map<String, TrendingWindow> windows = new LinkedHashMap<>();
+    private final Map<String, Long> halfLives = new HashMap<>();
+
+    // serialized windows of the other nodes as of the last exchange, by window name
+    private volatile Map<String, List<byte[]>> remotes = Collections.emptyMap();
+    private volatile Map<String, List<TrendingWindow.Trend>> top = Collections.emptyMap();
+    private volatile int remoteNodes;
+
+    private final LongAdder failed = new LongAdder();
+
+
+    @PostConstruct
+    public void init() {
+        if(node.isEmpty()) {
+            node = hostname() + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xFFFFFF);
+        }
+
+        long now = System.currentTimeMillis();
+        window("hour", HOUR, now);
+        window("day", 24 * HOUR, now);
+    }
+
+
+    /**
+     * Records one view of a Dump. Only public Dumps trend.
+     * @param publicId  Public ID of the viewed Dump
+     * @param exposure  Exposure of the viewed Dump
+     */
+    public void record(String publicId, Enumerations.Exposure exposure) {
+        if(exposure != Enumerations.Exposure.PUBLIC) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        for(TrendingWindow window : windows.values()) {
+            window.record(publicId, now);
+        }
+    }
+
+
+    /**
+     * Top list of a window as of the last exchange
+     * @param window    Window name, "hour" or "day"
+     * @param limit     Maximum number of Dumps to return, capped at dump.trending.size
+     * @return  Trending Dumps, highest score first, null if there is no such window
+     */
+    public List<TrendingWindow.Trend> top(String window, int limit) {
+        if(!windows.containsKey(window)) {
+            return null;
+        }
+
+        List<TrendingWindow.Trend> ranked = top.getOrDefault(window, Collections.emptyList());
+
+        return ranked.size() > limit ? ranked.subList(0, Math.max(limit, 0)) : ranked;
+    }
+
+
+    /**
+     * Writes this node's windows, reads those of the other nodes and re-ranks every window. When the database
+     * is unavailable the windows are re-ranked with the other nodes' windows from the last exchange.
+     */
+    @Scheduled(fixedDelayString = "${dump.trending.exchange-interval:15000}")
+    public void exchange() {
+        long now = System.currentTimeMillis();
+
+        try {
+            for(TrendingWindow window : windows.values()) {
+                sketchRepository.save(new TrendingSketch(node, window.getName(), now, window.toBytes()));
+            }
+
+            Map<String, List<byte[]>> read = new HashMap<>();
+            List<String> nodes = new ArrayList<>();
+
+            for(TrendingSketch sketch : sketchRepository.findAll()) {
+                Long halfLife = halfLives.get(sketch.getPeriod());
+
+                if(halfLife == null || node.equals(sketch.getNode())) {
+                    continue;
+                }
+
+                if(sketch.getUpdated() == null || now - sketch.getUpdated() > EXPIRY_HALF_LIVES * halfLife) {
+                    sketchRepository.delete(sketch.getId());
+                    continue;
+                }
+
+                read.computeIfAbsent(sketch.getPeriod(), k -> new ArrayList<>()).add(sketch.getSketch());
+
+                if(!nodes.contains(sketch.getNode())) {
+                    nodes.add(sketch.getNode());
+                }
+            }
+
+            remotes = read;
+            remoteNodes = nodes.size();
+        }
+        catch(RuntimeException e) {
+            logger.warn("Failed to exchange trending windows, ranking with those of the last exchange", e);
+            failed.increment();
+        }
+
+        Map<String, List<TrendingWindow.Trend>> ranked = new HashMap<>();
+
+        for(TrendingWindow window : windows.values()) {
+            ranked.put(window.getName(), Collections.unmodifiableList(
+                    window.rank(remotes.getOrDefault(window.getName(), Collections.emptyList()), now, size)));
+        }
+
+        top = ranked;
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        for(TrendingWindow window : windows.values()) {
+            writer.gauge("dump_trending_candidates", "Dumps tracked as trending candidates by this node",
+                    new String[] { "window", window.getName() }, window.candidateCount());
+        }
+
+        writer.gauge("dump_trending_remote_nodes", "Other nodes whose trending windows were merged at the last exchange",
+                new String[0], remoteNodes);
+        writer.counter("dump_trending_exchange_failures_total", "Trending window exchanges which failed",
+                new String[0], failed.sum());
+    }
+
+
+    private void window(String name, long halfLife, long now) {
+        windows.put(name, new TrendingWindow(name, halfLife, size * 4, now));
+        halfLives.put(name, halfLife);
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        }
+        catch(UnknownHostException e) {
+            return "node";
+        }
+    }
+}
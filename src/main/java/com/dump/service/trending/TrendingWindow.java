@@ -0,0 +1,201 @@
+package com.dump.service.trending;
+
+import com.dump.service.utils.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Exponentially decayed view counts of one trending window. A view counts fully now and half as much every
+ * half life later, so the window has no edge where views suddenly drop out.
+ *
+ * Decay is applied forward: a view at time t is added with weight e^((t - landmark) / tau) and every count is
+ * divided by e^((now - landmark) / tau) when read, so recording never has to touch the other counts. The
+ * landmark moves up, rescaling the counts, before the weights could overflow.
+ *
+ * A Count-Min sketch holds the counts of every Dump and a Space-Saving summary tracks which Dumps are the
+ * candidates for the top list. Both are sized for the top list, not for the number of Dumps. Thread safe.
+ */
+public class TrendingWindow {
+
+    private static final byte FORMAT = 1;
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+
+    // rescale before e^(age / tau) gets anywhere near float range, sketches are exchanged as floats
+    private static final double RESCALE_AGE = 16;
+
+    private final String name;
+    private final double tau;
+    private final int capacity;
+
+    private long landmark;
+    private CountMinSketch counts = new CountMinSketch(DEPTH, WIDTH);
+    private SpaceSaving candidates;
+
+
+    /**
+     * Creates an empty window
+     * @param name      Window name, e.g. "hour"
+     * @param halfLife  Time in milliseconds for a view to count half as much
+     * @param capacity  Number of candidates tracked, a few times the top list size
+     * @param now       Current time in milliseconds
+     */
+    public TrendingWindow(String name, long halfLife, int capacity, long now) {
+        this.name = name;
+        this.tau = halfLife / Math.log(2);
+        this.capacity = capacity;
+        this.landmark = now;
+        this.candidates = new SpaceSaving(capacity);
+    }
+
+
+    /**
+     * @return  Window name
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Records one view
+     * @param publicId  Public ID of the viewed Dump
+     * @param now       Time of the view in milliseconds
+     */
+    public synchronized void record(String publicId, long now) {
+        if(now - landmark > RESCALE_AGE * tau) {
+            double factor = Math.exp((landmark - now) / tau);
+            counts.scale(factor);
+            candidates.scale(factor);
+            landmark = now;
+        }
+
+        double weight = Math.exp((now - landmark) / tau);
+        counts.add(Hashing.hash64(publicId), weight);
+        candidates.offer(publicId, weight);
+    }
+
+
+    /**
+     * Serializes the counts and candidates, to be merged by other nodes: a format byte, the landmark, the sketch,
+     * then the candidate public IDs
+     * @return  Serialized window
+     */
+    public synchronized byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(DEPTH * WIDTH * 4 + capacity * 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeByte(FORMAT);
+            out.writeLong(landmark);
+            counts.write(out);
+
+            List<String> items = candidates.items();
+            out.writeInt(items.size());
+            for(String item : items) {
+                out.writeUTF(item);
+            }
+
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch(IOException e) {
+            // in memory, can't happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Ranks the candidates of this window and of the given serialized windows of other nodes by their decayed
+     * view counts summed over all nodes. Malformed remote windows, e.g. from a node running another version,
+     * are left out.
+     * @param remotes   Windows serialized by {@link #toBytes()} on other nodes
+     * @param now       Current time in milliseconds
+     * @param size      Maximum number of Dumps to return
+     * @return  Trending Dumps, highest score first
+     */
+    public List<Trend> rank(List<byte[]> remotes, long now, int size) {
+        // every sketch is decayed straight to now, so a node idle for long can't overflow the others' counts
+        CountMinSketch merged = new CountMinSketch(DEPTH, WIDTH);
+        Set<String> ids = new HashSet<>();
+
+        synchronized(this) {
+            merged.merge(counts, Math.exp((landmark - now) / tau));
+            ids.addAll(candidates.items());
+        }
+
+        for(byte[] remote : remotes) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(remote));
+
+                if(in.readByte() != FORMAT) {
+                    continue;
+                }
+
+                long remoteLandmark = in.readLong();
+                CountMinSketch sketch = CountMinSketch.read(in);
+
+                merged.merge(sketch, Math.exp((remoteLandmark - now) / tau));
+
+                for(int i = in.readInt(); i > 0; i--) {
+                    ids.add(in.readUTF());
+                }
+            }
+            catch(IOException | IllegalArgumentException e) {
+                // a truncated candidate list only loses candidates, a bad sketch was never merged
+            }
+        }
+
+        List<Trend> ranked = new ArrayList<>(ids.size());
+
+        for(String id : ids) {
+            ranked.add(new Trend(id, merged.estimate(Hashing.hash64(id))));
+        }
+
+        ranked.sort(Comparator.comparingDouble(Trend::getScore).reversed());
+
+        return ranked.size() > size ? new ArrayList<>(ranked.subList(0, size)) : ranked;
+    }
+
+
+    /**
+     * @return  Number of candidates currently tracked
+     */
+    public synchronized int candidateCount() {
+        return candidates.items().size();
+    }
+
+
+    /**
+     * A trending Dump and its decayed view count
+     */
+    public static class Trend {
+        private final String publicId;
+        private final double score;
+
+        public Trend(String publicId, double score) {
+            this.publicId = publicId;
+            this.score = score;
+        }
+
+        public String getPublicId() {
+            return publicId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
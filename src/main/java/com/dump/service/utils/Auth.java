@@ -2,6 +2,7 @@ package com.dump.service.utils;
 
 import com.dump.service.objects.User;
 import com.dump.service.repositories.UserRepository;
+import com.dump.service.routing.ReadYourWrites;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jws;
@@ -24,6 +25,9 @@ public class Auth  {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
     @Autowired
     private Environment env;
 
@@ -67,6 +71,9 @@ public class Auth  {
 
             Integer userId = Integer.valueOf(claims.getBody().getSubject());
 
+            // a user who just wrote reads their own writes for the rest of the request
+            readYourWrites.pinUser(userId);
+
             User user  = userRepository.findById(userId);
 
             // bail if we can't find the user
@@ -74,6 +81,8 @@ public class Auth  {
                 return null;
             }
 
+            readYourWrites.pinUser(user.getUsername());
+
             // create copy of User object
             User retUser = new User(user);
 
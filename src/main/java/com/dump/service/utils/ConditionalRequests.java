@@ -0,0 +1,109 @@
+package com.dump.service.utils;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.Date;
+
+
+/**
+ * Helpers for HTTP validators (ETag / Last-Modified) and conditional GETs
+ */
+public class ConditionalRequests {
+
+    private ConditionalRequests() {}
+
+
+    /**
+     * Builds a strong entity tag
+     * @param value Opaque tag value, null for none
+     * @return  Quoted entity tag, null if value is null
+     */
+    public static String strong(String value) {
+        return value == null ? null : "\"" + value + "\"";
+    }
+
+
+    /**
+     * Builds a weak entity tag, for representations which are only semantically equivalent
+     * @param value Opaque tag value, null for none
+     * @return  Weak entity tag, null if value is null
+     */
+    public static String weak(String value) {
+        return value == null ? null : "W/\"" + value + "\"";
+    }
+
+
+    /**
+     * Checks if a request carries any validators worth checking before doing real work
+     * @param request   Request headers
+     * @return  TRUE if If-None-Match or If-Modified-Since is present
+     */
+    public static boolean isConditional(HttpHeaders request) {
+        return request.containsKey(HttpHeaders.IF_NONE_MATCH) || request.containsKey(HttpHeaders.IF_MODIFIED_SINCE);
+    }
+
+
+    /**
+     * Checks a GET against the current validators. If-None-Match wins over If-Modified-Since, and tags are
+     * compared weakly as GET allows.
+     * @param request       Request headers
+     * @param etag          Current entity tag, null if none
+     * @param lastModified  Current modification time, null if unknown
+     * @return  TRUE if the client's copy is current and a 304 can be sent
+     */
+    public static boolean notModified(HttpHeaders request, String etag, Date lastModified) {
+        if(request.containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            if(etag == null) {
+                return false;
+            }
+
+            String current = opaque(etag);
+
+            for(String tag : request.getIfNoneMatch()) {
+                if(tag.equals("*") || opaque(tag).equals(current)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        if(lastModified == null) {
+            return false;
+        }
+
+        try {
+            long since = request.getIfModifiedSince();
+            return since >= 0 && lastModified.getTime() / 1000 <= since / 1000;
+        }
+        catch(IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Builds the validator headers sent with both full and 304 responses
+     * @param etag          Entity tag, null for none
+     * @param lastModified  Modification time, null for none
+     * @return  Headers
+     */
+    public static HttpHeaders validators(String etag, Date lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+
+        if(etag != null) {
+            headers.setETag(etag);
+        }
+        if(lastModified != null) {
+            headers.setLastModified(lastModified.getTime());
+        }
+
+        return headers;
+    }
+
+
+    private static String opaque(String tag) {
+        tag = tag.trim();
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,43 @@
+package com.dump.service.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Avatar image served for users who haven't uploaded one, loaded once at startup
+ */
+@Component
+public class DefaultAvatar {
+
+    @Value("classpath:t.png")
+    private Resource res;
+
+    private byte[] bytes;
+
+
+    /**
+     * Reads the image from the classpath
+     * @throws IOException  if the image is missing
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        try(InputStream is = res.getInputStream()) {
+            bytes = StreamUtils.copyToByteArray(is);
+        }
+    }
+
+
+    /**
+     * @return  PNG image bytes, shared and must not be modified
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
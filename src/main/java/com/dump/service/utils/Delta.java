@@ -0,0 +1,186 @@
+package com.dump.service.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Compact binary delta encoding between two byte arrays.
+ *
+ * The base is indexed in fixed size blocks and the target is scanned with a rolling hash, so
+ * unchanged regions become COPY instructions and only edited bytes are stored as INSERTs.
+ * Format: varint target length, then a sequence of
+ * COPY (0x00, varint base offset, varint length) and INSERT (0x01, varint length, bytes).
+ */
+public class Delta {
+
+    private static final int BLOCK = 16;
+    private static final int PRIME = 31;
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+
+    private Delta() {}
+
+
+    /**
+     * Encodes the difference between base and target
+     * @param base      Previous version
+     * @param target    New version
+     * @return  Delta which rebuilds target from base
+     */
+    public static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, target.length);
+
+        // index base blocks by hash, keeping the first occurrence
+        Map<Integer, Integer> index = new HashMap<>();
+        for(int off = 0; off + BLOCK <= base.length; off += BLOCK) {
+            index.putIfAbsent(hash(base, off), off);
+        }
+
+        int pow = 1;
+        for(int i = 1; i < BLOCK; i++) {
+            pow *= PRIME;
+        }
+
+        int literalStart = 0;
+        int i = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+
+        while(i + BLOCK <= target.length) {
+            Integer candidate = index.get(h);
+
+            if(candidate != null && regionMatches(base, candidate, target, i, BLOCK)) {
+                int baseStart = candidate;
+                int targetStart = i;
+
+                // extend backwards into pending literal bytes
+                while(baseStart > 0 && targetStart > literalStart && base[baseStart - 1] == target[targetStart - 1]) {
+                    baseStart--;
+                    targetStart--;
+                }
+
+                // extend forwards
+                int end = i + BLOCK;
+                int baseEnd = candidate + BLOCK;
+                while(end < target.length && baseEnd < base.length && base[baseEnd] == target[end]) {
+                    end++;
+                    baseEnd++;
+                }
+
+                writeInsert(out, target, literalStart, targetStart);
+                out.write(COPY);
+                writeVarint(out, baseStart);
+                writeVarint(out, end - targetStart);
+
+                literalStart = end;
+                i = end;
+                if(i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+                continue;
+            }
+
+            // roll hash forward one byte
+            if(i + BLOCK < target.length) {
+                h = (h - (target[i] & 0xFF) * pow) * PRIME + (target[i + BLOCK] & 0xFF);
+            }
+            i++;
+        }
+
+        writeInsert(out, target, literalStart, target.length);
+
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Rebuilds a target by applying a delta to its base
+     * @param base  Previous version
+     * @param delta Delta produced by {@link #encode(byte[], byte[])}
+     * @return  New version
+     */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int length = readVarint(delta, pos);
+        byte[] out = new byte[length];
+        int written = 0;
+
+        while(pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+
+            if(op == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, out, written, len);
+                written += len;
+            }
+            else if(op == INSERT) {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], out, written, len);
+                pos[0] += len;
+                written += len;
+            }
+            else {
+                throw new IllegalArgumentException("Corrupt delta");
+            }
+        }
+
+        if(written != length) {
+            throw new IllegalArgumentException("Corrupt delta");
+        }
+
+        return out;
+    }
+
+
+    private static int hash(byte[] data, int off) {
+        int h = 0;
+        for(int i = 0; i < BLOCK; i++) {
+            h = h * PRIME + (data[off + i] & 0xFF);
+        }
+        return h;
+    }
+
+    private static boolean regionMatches(byte[] a, int aOff, byte[] b, int bOff, int len) {
+        for(int i = 0; i < len; i++) {
+            if(a[aOff + i] != b[bOff + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeInsert(ByteArrayOutputStream out, byte[] data, int from, int to) {
+        if(to <= from) {
+            return;
+        }
+
+        out.write(INSERT);
+        writeVarint(out, to - from);
+        out.write(data, from, to - from);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+
+        return value;
+    }
+}
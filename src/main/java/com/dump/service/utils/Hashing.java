@@ -0,0 +1,88 @@
+package com.dump.service.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * Hashing helpers for Dump contents and sketches
+ */
+public class Hashing {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Hashing() {}
+
+
+    /**
+     * Computes the SHA-256 hash of a string's UTF-8 bytes
+     * @param contents  String to hash
+     * @return  Lower-case hex digest, null if contents is null
+     */
+    public static String sha256(String contents) {
+        if(contents == null) {
+            return null;
+        }
+
+        return sha256(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Computes the SHA-256 hash of a byte array
+     * @param bytes Bytes to hash
+     * @return  Lower-case hex digest
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return toHex(digest.digest(bytes));
+        }
+        catch(NoSuchAlgorithmException e) {
+            // every JRE is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Hashes a string into 64 well mixed bits for sketches, FNV-1a over its characters followed by the
+     * MurmurHash3 finalizer. Not cryptographic.
+     * @param value String to hash
+     * @return  Hash
+     */
+    public static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for(int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+
+    /**
+     * Converts bytes to a lower-case hex string
+     * @param bytes Bytes to convert
+     * @return  Hex string
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+
+        for(int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+
+        return new String(out);
+    }
+}
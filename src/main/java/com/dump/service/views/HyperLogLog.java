@@ -0,0 +1,262 @@
+package com.dump.service.views;
+
+
+/**
+ * HyperLogLog sketch estimating the number of distinct 64-bit hashes offered to it. With the default precision
+ * of 12 the sketch has 4096 registers, a standard error of about 1.6% and takes at most 4KB.
+ *
+ * Sketches start sparse, storing only the registers which are set, and switch to one byte per register once
+ * that would be smaller. Most Dumps have few viewers, so most sketches stay a few hundred bytes. Not thread
+ * safe.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final byte FORMAT_SPARSE = 1;
+    private static final byte FORMAT_DENSE = 2;
+
+    private final int precision;
+    private final int registerCount;
+
+    // index << 8 | rank of every set register while sparse, null once dense
+    private int[] sparse = new int[4];
+    private int sparseSize;
+
+    private byte[] registers;
+
+
+    /**
+     * Creates an empty sketch with the default precision
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+
+    /**
+     * Creates an empty sketch
+     * @param precision Number of index bits, between 4 and 16. Error is about 1.04 / sqrt(2^precision).
+     */
+    public HyperLogLog(int precision) {
+        if(precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16: " + precision);
+        }
+
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+
+    /**
+     * Offers a hash to the sketch
+     * @param hash  Well mixed 64-bit hash of the item, see {@link com.dump.service.utils.Hashing#hash64(String)}
+     */
+    public void offer(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit caps the rank when every remaining bit is zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+
+        set(index, rank);
+    }
+
+
+    /**
+     * Adds every item counted by another sketch to this one
+     * @param other Sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if(other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge sketches of precision " + other.precision + " into " + precision);
+        }
+
+        if(other.registers != null) {
+            for(int i = 0; i < registerCount; i++) {
+                if(other.registers[i] != 0) {
+                    set(i, other.registers[i]);
+                }
+            }
+            return;
+        }
+
+        for(int i = 0; i < other.sparseSize; i++) {
+            set(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+        }
+    }
+
+
+    /**
+     * @return  Estimated number of distinct hashes offered
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+
+        if(registers != null) {
+            for(byte rank : registers) {
+                sum += 1.0 / (1L << rank);
+                if(rank == 0) {
+                    zeros++;
+                }
+            }
+        }
+        else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for(int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        }
+
+        double estimate = alpha() * registerCount * registerCount / sum;
+
+        // linear counting is more accurate while many registers are still empty
+        if(estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+
+    /**
+     * @return  Whether nothing was offered yet
+     */
+    public boolean isEmpty() {
+        return registers == null && sparseSize == 0;
+    }
+
+
+    /**
+     * Serializes the sketch: a format byte and the precision, then the set registers as 2-byte index and
+     * 1-byte rank while that is smaller, otherwise every register as one byte
+     * @return  Serialized sketch
+     */
+    public byte[] toBytes() {
+        if(registers == null && sparseSize * 3 + 4 < registerCount + 2) {
+            byte[] bytes = new byte[4 + sparseSize * 3];
+            bytes[0] = FORMAT_SPARSE;
+            bytes[1] = (byte) precision;
+            bytes[2] = (byte) (sparseSize >>> 8);
+            bytes[3] = (byte) sparseSize;
+
+            for(int i = 0; i < sparseSize; i++) {
+                int index = sparse[i] >>> 8;
+                bytes[4 + i * 3] = (byte) (index >>> 8);
+                bytes[5 + i * 3] = (byte) index;
+                bytes[6 + i * 3] = (byte) sparse[i];
+            }
+            return bytes;
+        }
+
+        byte[] bytes = new byte[2 + registerCount];
+        bytes[0] = FORMAT_DENSE;
+        bytes[1] = (byte) precision;
+
+        if(registers != null) {
+            System.arraycopy(registers, 0, bytes, 2, registerCount);
+        }
+        else {
+            for(int i = 0; i < sparseSize; i++) {
+                bytes[2 + (sparse[i] >>> 8)] = (byte) sparse[i];
+            }
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Deserializes a sketch written by {@link #toBytes()}
+     * @param bytes Serialized sketch
+     * @return  HyperLogLog
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if(bytes == null || bytes.length < 2) {
+            throw new IllegalArgumentException("Not a serialized sketch");
+        }
+
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+
+        if(bytes[0] == FORMAT_SPARSE && bytes.length >= 4) {
+            int size = (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+
+            if(bytes.length != 4 + size * 3) {
+                throw new IllegalArgumentException("Truncated sparse sketch");
+            }
+
+            for(int i = 0; i < size; i++) {
+                int index = (bytes[4 + i * 3] & 0xFF) << 8 | (bytes[5 + i * 3] & 0xFF);
+                if(index >= sketch.registerCount) {
+                    throw new IllegalArgumentException("Register out of range: " + index);
+                }
+                sketch.set(index, bytes[6 + i * 3] & 0xFF);
+            }
+            return sketch;
+        }
+
+        if(bytes[0] == FORMAT_DENSE && bytes.length == 2 + sketch.registerCount) {
+            sketch.registers = new byte[sketch.registerCount];
+            System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registerCount);
+            sketch.sparse = null;
+            sketch.sparseSize = 0;
+            return sketch;
+        }
+
+        throw new IllegalArgumentException("Unknown sketch format " + bytes[0] + " of " + bytes.length + " bytes");
+    }
+
+
+    private void set(int index, int rank) {
+        if(registers != null) {
+            if(registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        for(int i = 0; i < sparseSize; i++) {
+            if(sparse[i] >>> 8 == index) {
+                if((sparse[i] & 0xFF) < rank) {
+                    sparse[i] = index << 8 | rank;
+                }
+                return;
+            }
+        }
+
+        // past a sixteenth of the registers, the linear lookups get slow
+        if(sparseSize >= registerCount / 16) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+
+        if(sparseSize == sparse.length) {
+            int[] grown = new int[sparse.length * 2];
+            System.arraycopy(sparse, 0, grown, 0, sparseSize);
+            sparse = grown;
+        }
+        sparse[sparseSize++] = index << 8 | rank;
+    }
+
+
+    private void toDense() {
+        registers = new byte[registerCount];
+
+        for(int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+
+        sparse = null;
+        sparseSize = 0;
+    }
+
+
+    private double alpha() {
+        switch(registerCount) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+}
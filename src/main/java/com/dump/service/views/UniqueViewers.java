@@ -0,0 +1,196 @@
+package com.dump.service.views;
+
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.User;
+import com.dump.service.objects.ViewerSketch;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.repositories.ViewerSketchRepository;
+import com.dump.service.utils.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Counts distinct viewers of each Dump, and of all Dumps of each User, with HyperLogLog sketches of hashed
+ * client fingerprints. Views only touch sketches in memory; every dump.unique-views.flush-interval milliseconds
+ * they are merged into the stored sketches and the estimates written to the uniqueViews columns, so those lag
+ * by up to one interval.
+ *
+ * Only sketches of Dumps and Users viewed since the last flush are held in memory, each a few hundred bytes
+ * for the first viewers and at most 4KB.
+ */
+@Component
+public class UniqueViewers implements MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(UniqueViewers.class);
+
+    private static final String ANONYMOUS = "anonymous";
+    private static final int MERGE_ATTEMPTS = 3;
+
+    @Autowired
+    private ViewerSketchRepository sketchRepository;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ConcurrentMap<String, HyperLogLog> dumps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HyperLogLog> users = new ConcurrentHashMap<>();
+
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+
+    /**
+     * Hashes a client fingerprint. Only the hash is kept, never the address.
+     * @param address   Client address
+     * @param userAgent User-Agent header, null if none
+     * @return  Viewer hash
+     */
+    public static long fingerprint(String address, String userAgent) {
+        return Hashing.hash64(address + '\n' + (userAgent == null ? "" : userAgent));
+    }
+
+
+    /**
+     * Records a viewer of a Dump
+     * @param publicId  Public ID of the viewed Dump
+     * @param username  Owner of the viewed Dump
+     * @param viewer    Viewer hash, see {@link #fingerprint(String, String)}
+     */
+    public void offer(String publicId, String username, long viewer) {
+        offer(dumps, publicId, viewer);
+
+        if(username != null && username.length() > 0 && !username.equalsIgnoreCase(ANONYMOUS)) {
+            offer(users, User.normalize(username), viewer);
+        }
+    }
+
+
+    /**
+     * Drops the stored sketch of a deleted Dump and any viewers counted for it since the last flush. The
+     * owner's sketch keeps them, like the owner's view count.
+     * @param publicId  Public ID of the deleted Dump
+     */
+    public void delete(String publicId) {
+        dumps.remove(publicId);
+        sketchRepository.deleteById("dump:" + publicId);
+    }
+
+
+    /**
+     * Merges the sketches of everything viewed since the last flush into the stored ones and updates the
+     * estimates. Sketches which fail to merge are kept for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${dump.unique-views.flush-interval:60000}")
+    public void flush() {
+        flush(dumps, "dump:", dumpRepository::updateUniqueViews);
+        flush(users, "user:", userRepository::updateUniqueViews);
+    }
+
+
+    /**
+     * Flushes what was counted before shutting down
+     */
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.gauge("dump_unique_views_pending_sketches", "Sketches of Dumps and Users viewed since the last flush",
+                new String[0], dumps.size() + users.size());
+        writer.counter("dump_unique_views_flushed_total", "Sketches merged into the stored ones",
+                new String[0], flushed.sum());
+        writer.counter("dump_unique_views_failed_total", "Sketch merges which failed and were retried on the next flush",
+                new String[0], failed.sum());
+    }
+
+
+    private static void offer(ConcurrentMap<String, HyperLogLog> sketches, String key, long viewer) {
+        // updated inside compute, so a flush removing the sketch never races an update of it
+        sketches.compute(key, (k, sketch) -> {
+            HyperLogLog updated = sketch == null ? new HyperLogLog() : sketch;
+            updated.offer(viewer);
+            return updated;
+        });
+    }
+
+
+    private void flush(ConcurrentMap<String, HyperLogLog> sketches, String prefix, BiConsumer<String, Integer> update) {
+        for(String key : new ArrayList<>(sketches.keySet())) {
+            HyperLogLog sketch = sketches.remove(key);
+
+            if(sketch == null) {
+                continue;
+            }
+
+            try {
+                long estimate = merge(prefix + key, sketch);
+                update.accept(key, (int) Math.min(estimate, Integer.MAX_VALUE));
+                flushed.increment();
+            }
+            catch(RuntimeException e) {
+                logger.warn("Failed to merge the viewer sketch of {}{}", prefix, key, e);
+                failed.increment();
+
+                sketches.compute(key, (k, newer) -> {
+                    if(newer != null) {
+                        sketch.merge(newer);
+                    }
+                    return sketch;
+                });
+            }
+        }
+    }
+
+
+    /**
+     * Merges a sketch into the stored one, retrying when another node merged into it concurrently
+     * @return  Estimate of the merged sketch
+     */
+    private long merge(String id, HyperLogLog sketch) {
+        for(int attempt = 1; ; attempt++) {
+            ViewerSketch stored = sketchRepository.findOne(id);
+            HyperLogLog merged = new HyperLogLog();
+
+            if(stored == null) {
+                stored = new ViewerSketch(id, null);
+            }
+            else {
+                merged = HyperLogLog.fromBytes(stored.getSketch());
+            }
+
+            merged.merge(sketch);
+            stored.setSketch(merged.toBytes());
+
+            try {
+                sketchRepository.save(stored);
+                return merged.estimate();
+            }
+            catch(ObjectOptimisticLockingFailureException | DataIntegrityViolationException e) {
+                if(attempt >= MERGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
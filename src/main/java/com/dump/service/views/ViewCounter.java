@@ -0,0 +1,68 @@
+package com.dump.service.views;
+
+import com.dump.service.Enumerations;
+import com.dump.service.objects.Dump;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.trending.Trending;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Counts Dump views for both the Dump and its owner, as raw hits and as distinct viewers, and feeds the trending
+ * windows. Shared by every read path so views are counted the same way regardless of which listener served the
+ * request.
+ */
+@Component
+public class ViewCounter {
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UniqueViewers uniqueViewers;
+
+    @Autowired
+    private Trending trending;
+
+
+    /**
+     * Records one view of a Dump
+     * @param dump      Dump which was viewed
+     * @param viewer    Viewer hash, see {@link UniqueViewers#fingerprint(String, String)}
+     */
+    public void record(Dump dump, long viewer) {
+        record(dump.getPublicId(), dump.getUsername(), dump.getExposure(), viewer);
+    }
+
+
+    /**
+     * Records one view of a Dump which was not loaded, e.g. one answered with a 304
+     * @param publicId  Public ID of the viewed Dump
+     * @param username  Owner of the viewed Dump
+     * @param exposure  Exposure of the viewed Dump, only public Dumps trend
+     * @param viewer    Viewer hash, see {@link UniqueViewers#fingerprint(String, String)}
+     */
+    public void record(String publicId, String username, Enumerations.Exposure exposure, long viewer) {
+        uniqueViewers.offer(publicId, username, viewer);
+        trending.record(publicId, exposure);
+        dumpRepository.incrementViews(publicId);
+
+        if(username != null && username.length() > 0) {
+            userRepository.incrementViews(username);
+        }
+    }
+
+
+    /**
+     * Drops the distinct viewers counted for a deleted Dump
+     * @param publicId  Public ID of the deleted Dump
+     */
+    public void delete(String publicId) {
+        uniqueViewers.delete(publicId);
+    }
+}
@@ -0,0 +1,295 @@
+package com.dump.service.warmup;
+
+import com.dump.service.Enumerations;
+import com.dump.service.caching.EntityCaches;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpKey;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.trending.Trending;
+import com.dump.service.trending.TrendingWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Loads the hottest entries into the second-level cache after startup, before the instance reports ready on
+ * /api/ready, so a restarted node doesn't send all of its first requests to the database:
+ *
+ * - the keys cached by the previous process, from the snapshot at dump.warmup.snapshot if one is configured
+ * - the keys of the recent public Dumps and of the Dumps trending over the last hour and day
+ * - the owners of those Dumps, by username and by ID as authorization looks them up
+ *
+ * Entries are loaded in batches with IN queries. Warm-up stops loading after dump.warmup.timeout
+ * milliseconds and the instance reports ready with what it has, as it does when warm-up fails.
+ *
+ * The snapshot is written every dump.warmup.snapshot-interval milliseconds and at shutdown, but only once
+ * warm-up is done, so a process stopped while warming up doesn't replace it with a partial one.
+ */
+@Component
+public class CacheWarmer implements ApplicationListener<ApplicationReadyEvent>, MetricSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final int BATCH = 100;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityCaches entityCaches;
+
+    @Autowired
+    private Trending trending;
+
+    @Value("${dump.warmup.enabled:true}")
+    private boolean enabled;
+
+    // trending Dumps preloaded from each window
+    @Value("${dump.warmup.trending:50}")
+    private int trendingDumps;
+
+    @Value("${dump.warmup.users:100}")
+    private int maxUsers;
+
+    @Value("${dump.warmup.timeout:60000}")
+    private long timeout;
+
+    @Value("${dump.warmup.snapshot:}")
+    private String snapshot;
+
+    // keys of each kind kept in the snapshot
+    @Value("${dump.warmup.snapshot-keys:20000}")
+    private int snapshotKeys;
+
+    private volatile boolean ready;
+    private volatile long duration;
+
+    private final LongAdder dumps = new LongAdder();
+    private final LongAdder users = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder snapshotFailures = new LongAdder();
+
+
+    /**
+     * Starts warming up once the application has started
+     * @param event Application ready event
+     */
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if(!enabled) {
+            ready = true;
+            return;
+        }
+
+        Thread thread = new Thread(this::warmUp, "cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Loads the snapshot's keys and the hottest Dumps and Users, then reports ready
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        try {
+            restore(deadline);
+            preload(deadline);
+        }
+        catch(RuntimeException e) {
+            logger.warn("Cache warm-up failed, reporting ready with what was loaded", e);
+            failures.increment();
+        }
+        finally {
+            duration = System.nanoTime() - start;
+            ready = true;
+        }
+
+        logger.info("Cache warm-up loaded {} Dump keys and {} Users in {}ms", dumps.sum(), users.sum(),
+                TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+
+    /**
+     * Writes the snapshot of the cached keys, once warm-up is done
+     */
+    @Scheduled(fixedDelayString = "${dump.warmup.snapshot-interval:300000}")
+    public void writeSnapshot() {
+        if(ready) {
+            write();
+        }
+    }
+
+
+    /**
+     * Reports not ready, so the instance is taken out of rotation while it drains, and writes the snapshot
+     */
+    @PreDestroy
+    public void shutdown() {
+        boolean warmed = ready;
+        ready = false;
+
+        if(warmed) {
+            write();
+        }
+    }
+
+
+    /**
+     * @return  Whether warm-up is done
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        writer.gauge("dump_warmup_ready", "Whether cache warm-up is done and the instance reports ready",
+                new String[0], ready ? 1 : 0);
+        writer.gauge("dump_warmup_seconds", "Duration of the cache warm-up",
+                new String[0], duration / 1e9);
+        writer.counter("dump_warmup_loaded_total", "Entries loaded into the second-level cache by warm-up",
+                new String[] { "kind", "dump" }, dumps.sum());
+        writer.counter("dump_warmup_loaded_total", "Entries loaded into the second-level cache by warm-up",
+                new String[] { "kind", "user" }, users.sum());
+        writer.counter("dump_warmup_failures_total", "Cache warm-ups which failed part way",
+                new String[0], failures.sum());
+        writer.counter("dump_warmup_snapshots_total", "Cache key snapshots written",
+                new String[0], snapshots.sum());
+        writer.counter("dump_warmup_snapshot_failures_total", "Cache key snapshots which failed to write or read",
+                new String[0], snapshotFailures.sum());
+    }
+
+
+    /**
+     * Writes the snapshot of the cached keys, if one is configured
+     */
+    private void write() {
+        if(snapshot.isEmpty()) {
+            return;
+        }
+
+        try {
+            new KeySnapshot(entityCaches.cachedDumpIds(snapshotKeys), entityCaches.cachedUserIds(snapshotKeys))
+                    .write(Paths.get(snapshot));
+            snapshots.increment();
+        }
+        catch(IOException | RuntimeException e) {
+            logger.warn("Failed to write the cache key snapshot to " + snapshot, e);
+            snapshotFailures.increment();
+        }
+    }
+
+
+    /**
+     * Loads the keys of the previous process's snapshot
+     */
+    private void restore(long deadline) {
+        if(snapshot.isEmpty()) {
+            return;
+        }
+
+        KeySnapshot keys;
+        try {
+            keys = KeySnapshot.read(Paths.get(snapshot));
+        }
+        catch(IOException e) {
+            logger.warn("Failed to read the cache key snapshot from " + snapshot + ", warming up without it", e);
+            snapshotFailures.increment();
+            return;
+        }
+
+        if(keys == null) {
+            logger.info("No cache key snapshot at {}", snapshot);
+            return;
+        }
+
+        loadDumps(keys.getDumps(), deadline);
+
+        List<Integer> ids = keys.getUsers();
+        for(int i = 0; i < ids.size() && System.nanoTime() < deadline; i += BATCH) {
+            users.add(userRepository.findByIdIn(ids.subList(i, Math.min(ids.size(), i + BATCH))).size());
+        }
+    }
+
+
+    /**
+     * Loads the recent and trending public Dumps and the principals of their owners
+     */
+    private void preload(long deadline) {
+        Set<String> publicIds = new LinkedHashSet<>();
+
+        for(Dump dump : dumpRepository.findFirst10ByExposureOrderByIdDesc(Enumerations.Exposure.PUBLIC)) {
+            publicIds.add(dump.getPublicId());
+        }
+
+        for(String window : new String[] { "hour", "day" }) {
+            List<TrendingWindow.Trend> top = trending.top(window, trendingDumps);
+
+            if(top != null) {
+                for(TrendingWindow.Trend trend : top) {
+                    publicIds.add(trend.getPublicId());
+                }
+            }
+        }
+
+        Set<String> owners = new LinkedHashSet<>();
+        for(DumpKey key : loadDumps(new ArrayList<>(publicIds), deadline)) {
+            if(key.getUsername() != null && owners.size() < maxUsers) {
+                owners.add(key.getUsername());
+            }
+        }
+
+        for(String owner : owners) {
+            if(System.nanoTime() >= deadline) {
+                return;
+            }
+
+            User user = userRepository.findByUsernameIgnoreCase(owner);
+
+            if(user != null) {
+                userRepository.findById(user.getId());
+                users.increment();
+            }
+        }
+    }
+
+
+    private List<DumpKey> loadDumps(List<String> publicIds, long deadline) {
+        List<DumpKey> loaded = new ArrayList<>();
+
+        for(int i = 0; i < publicIds.size() && System.nanoTime() < deadline; i += BATCH) {
+            loaded.addAll(dumpRepository.findKeysByPublicIdIn(publicIds.subList(i, Math.min(publicIds.size(), i + BATCH))));
+        }
+
+        dumps.add(loaded.size());
+        return loaded;
+    }
+}
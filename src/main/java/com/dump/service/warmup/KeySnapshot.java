@@ -0,0 +1,126 @@
+package com.dump.service.warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * The keys of a process's second-level cache, the public IDs of cached Dump keys and the IDs of cached Users,
+ * saved so the next process can load the same entries before it takes traffic. Stored gzipped as a magic
+ * number, then a count and the values of each list.
+ */
+public class KeySnapshot {
+
+    private static final int MAGIC = 0x444b5301;
+
+    // more keys than any region holds means the file is damaged
+    private static final int MAX_KEYS = 1 << 22;
+
+    private final List<String> dumps;
+    private final List<Integer> users;
+
+
+    /**
+     * Creates a KeySnapshot
+     * @param dumps Public IDs of cached Dump keys
+     * @param users IDs of cached Users
+     */
+    public KeySnapshot(List<String> dumps, List<Integer> users) {
+        this.dumps = Collections.unmodifiableList(dumps);
+        this.users = Collections.unmodifiableList(users);
+    }
+
+
+    /**
+     * Reads a snapshot
+     * @param path  File to read
+     * @return  KeySnapshot, null if there is no such file
+     * @throws IOException  if the file can't be read or isn't a snapshot
+     */
+    public static KeySnapshot read(Path path) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Not a cache key snapshot: " + path);
+            }
+
+            List<String> dumps = new ArrayList<>();
+            for(int i = count(in); i > 0; i--) {
+                dumps.add(in.readUTF());
+            }
+
+            List<Integer> users = new ArrayList<>();
+            for(int i = count(in); i > 0; i--) {
+                users.add(in.readInt());
+            }
+
+            return new KeySnapshot(dumps, users);
+        }
+        catch(NoSuchFileException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Writes the snapshot next to the file and moves it in place, so a crash mid-write leaves the previous one
+     * @param path  File to write
+     * @throws IOException  on write failure
+     */
+    public void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+
+            out.writeInt(dumps.size());
+            for(String publicId : dumps) {
+                out.writeUTF(publicId);
+            }
+
+            out.writeInt(users.size());
+            for(Integer id : users) {
+                out.writeInt(id);
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * @return  Public IDs of cached Dump keys
+     */
+    public List<String> getDumps() {
+        return dumps;
+    }
+
+
+    /**
+     * @return  IDs of cached Users
+     */
+    public List<Integer> getUsers() {
+        return users;
+    }
+
+
+    private static int count(DataInputStream in) throws IOException {
+        int count = in.readInt();
+
+        if(count < 0 || count > MAX_KEYS) {
+            throw new IOException("Bad key count in cache key snapshot: " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,28 @@
+-- Schema of the first release, as Hibernate generated it for the original Dump and User. Existing databases are
+-- baselined at this version (flyway.baseline-on-migrate) and only run the later migrations.
+
+create table dump (
+    id integer not null auto_increment,
+    contents longtext,
+    date_time datetime,
+    expiration datetime,
+    exposure integer,
+    public_id varchar(255),
+    title varchar(255),
+    type varchar(255),
+    username varchar(255),
+    views integer,
+    primary key (id)
+);
+
+create table user (
+    id integer not null auto_increment,
+    avatar longblob,
+    email varchar(255),
+    joined datetime,
+    password varchar(255),
+    username varchar(255),
+    views integer,
+    website varchar(255),
+    primary key (id)
+);
@@ -0,0 +1,16 @@
+-- Dump ID sequence and the index of shards holding each user's Dumps. Databases which ran with sharding before
+-- migrations already have them.
+
+create table if not exists dump_ids (
+    sequence_name varchar(255) not null,
+    next_val bigint,
+    primary key (sequence_name)
+);
+
+create table if not exists user_shard (
+    id integer not null auto_increment,
+    shard varchar(255),
+    username varchar(255),
+    primary key (id),
+    constraint ux_user_shard unique (username, shard)
+);
@@ -0,0 +1,20 @@
+-- Indexes for the query shapes of the repositories, and lower case usernames so case-insensitive lookups
+-- compare against an index instead of upper(username). QueryPlanTest fails if a finder scans a table.
+
+alter table dump add column username_lower varchar(255);
+update dump set username_lower = lower(username);
+
+alter table user add column username_lower varchar(255);
+update user set username_lower = lower(username);
+
+-- findByPublicId and every other point lookup, and the natural ID of DumpKey
+create unique index ux_dump_public_id on dump (public_id);
+-- findFirst10ByExposureOrderByIdDesc and the search pages
+create index ix_dump_exposure_id on dump (exposure, id);
+-- a user's Dumps, newest first, all or by exposure
+create index ix_dump_user_id on dump (username_lower, id);
+create index ix_dump_user_exposure_id on dump (username_lower, exposure, id);
+-- the expiration sweep
+create index ix_dump_expiration on dump (expiration);
+
+create index ix_user_username on user (username_lower);
@@ -0,0 +1,11 @@
+-- Distinct viewer counts of Dumps and Users, and the HyperLogLog sketches they are estimated from
+
+alter table dump add column unique_views integer default 0;
+alter table user add column unique_views integer default 0;
+
+create table viewer_sketch (
+    id varchar(255) not null,
+    sketch longblob,
+    version integer,
+    primary key (id)
+);
@@ -0,0 +1,10 @@
+-- Trending windows of every node, exchanged to rank trending Dumps across nodes
+
+create table trending_sketch (
+    id varchar(255) not null,
+    node varchar(255),
+    period varchar(255),
+    updated bigint,
+    sketch longblob,
+    primary key (id)
+);
@@ -0,0 +1,26 @@
+-- Live Dumps being appended to, and their chunks until they are sealed into the dump table
+
+create table live_dump (
+    public_id varchar(255) not null,
+    username varchar(255),
+    token_hash varchar(255),
+    length integer,
+    updated datetime,
+    closed bit,
+    primary key (public_id)
+);
+
+-- the sweeps of abandoned and of sealed live Dumps
+create index ix_live_dump_closed_updated on live_dump (closed, updated);
+
+create table dump_chunk (
+    id integer not null auto_increment,
+    public_id varchar(255),
+    start_offset integer,
+    end_offset integer,
+    data longblob,
+    primary key (id)
+);
+
+-- the chunks of a live Dump from an offset on, and their order; one chunk per offset
+create unique index ux_dump_chunk_end on dump_chunk (public_id, end_offset);
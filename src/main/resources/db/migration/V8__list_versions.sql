@@ -0,0 +1,7 @@
+-- Versions of the Dump lists, the shared source of their ETags
+
+create table list_version (
+    id varchar(255) not null,
+    version bigint,
+    primary key (id)
+);
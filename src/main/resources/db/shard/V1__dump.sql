@@ -0,0 +1,18 @@
+-- Dump table of a shard. IDs come from the sequence in the home database. Shards created before migrations
+-- are baselined at this version.
+
+create table dump (
+    id integer not null,
+    content_hash varchar(255),
+    contents longtext,
+    date_time datetime,
+    expiration datetime,
+    exposure integer,
+    modified datetime,
+    public_id varchar(255),
+    title varchar(255),
+    type varchar(255),
+    username varchar(255),
+    views integer,
+    primary key (id)
+);
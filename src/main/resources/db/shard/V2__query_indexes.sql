@@ -0,0 +1,10 @@
+-- The Dump part of db/migration/V3__query_indexes.sql
+
+alter table dump add column username_lower varchar(255);
+update dump set username_lower = lower(username);
+
+create unique index ux_dump_public_id on dump (public_id);
+create index ix_dump_exposure_id on dump (exposure, id);
+create index ix_dump_user_id on dump (username_lower, id);
+create index ix_dump_user_exposure_id on dump (username_lower, exposure, id);
+create index ix_dump_expiration on dump (expiration);
@@ -0,0 +1,3 @@
+-- The Dump part of db/migration/V4__unique_views.sql
+
+alter table dump add column unique_views integer default 0;
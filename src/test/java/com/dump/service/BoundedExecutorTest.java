@@ -0,0 +1,120 @@
+package com.dump.service;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.executors.BoundedScheduler;
+import com.dump.service.metrics.LatencyHistogram;
+import com.dump.service.metrics.MetricSource;
+import com.dump.service.metrics.MetricsWriter;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+
+/**
+ * Tests the bounded executor pools and their metrics
+ */
+public class BoundedExecutorTest {
+
+    /**
+     * Tests that a saturated pool rejects work and that queued work drains on shutdown
+     * @throws Exception
+     */
+    @Test
+    public void testRejectAndDrain() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 2, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        executor.execute(() -> {
+            await(release);
+            ran.incrementAndGet();
+        });
+        executor.execute(ran::incrementAndGet);
+        executor.submit(() -> { throw new IllegalStateException("boom"); });
+
+        try {
+            executor.execute(ran::incrementAndGet);
+            fail("Saturated executor accepted a task");
+        }
+        catch(RejectedExecutionException e) {
+            assertThat(executor.getRejectedCount()).isEqualTo(1);
+        }
+
+        release.countDown();
+        executor.shutdownGracefully();
+
+        assertThat(executor.isTerminated()).isTrue();
+        assertThat(ran.get()).isEqualTo(2);
+
+        String metrics = render(executor);
+        assertThat(metrics).contains("dump_executor_completed_total{pool=\"test\"} 2");
+        assertThat(metrics).contains("dump_executor_failed_total{pool=\"test\"} 1");
+        assertThat(metrics).contains("dump_executor_rejected_total{pool=\"test\"} 1");
+        assertThat(metrics).contains("dump_executor_wait_seconds_count{pool=\"test\"} 3");
+    }
+
+
+    /**
+     * Tests the scheduler pending task cap
+     * @throws Exception
+     */
+    @Test
+    public void testSchedulerCapacity() throws Exception {
+        BoundedScheduler scheduler = new BoundedScheduler("sched", 1, 1, 1000);
+
+        scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+        try {
+            scheduler.schedule(() -> {}, 1, TimeUnit.HOURS);
+            fail("Full scheduler accepted a task");
+        }
+        catch(RejectedExecutionException e) {
+            // expected
+        }
+
+        scheduler.shutdownGracefully();
+        assertThat(scheduler.isTerminated()).isTrue();
+        assertThat(render(scheduler)).contains("dump_executor_rejected_total{pool=\"sched\"} 1");
+    }
+
+
+    /**
+     * Tests histogram quantiles stay within bucket precision
+     */
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for(int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(1000000);
+        assertThat(histogram.valueAtQuantile(0.5)).isBetween(500000L, 516000L);
+        assertThat(histogram.valueAtQuantile(0.99)).isBetween(990000L, 1000000L);
+        assertThat(histogram.valueAtQuantile(1.0)).isEqualTo(1000000);
+        assertThat(new LatencyHistogram().valueAtQuantile(0.99)).isEqualTo(0);
+    }
+
+
+    private static String render(MetricSource source) {
+        MetricsWriter writer = new MetricsWriter();
+        source.writeMetrics(writer);
+        return writer.toString();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.dump.service;
+
+import com.dump.service.admission.ConcurrencyLimiter;
+import com.dump.service.admission.Priority;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.executors.BoundedScheduler;
+import com.dump.service.metrics.MetricsWriter;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests the adaptive concurrency limit, its priorities, and fast rejection of handlers over it
+ */
+public class ConcurrencyLimitTest {
+
+    private static final long MILLIS = 1000000L;
+
+
+    /**
+     * Tests that each priority may fill its share of the limit, and that released permits are reused
+     * @throws Exception
+     */
+    @Test
+    public void testPriorities() throws Exception {
+        ConcurrencyLimiter limiter = limiter(10);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+
+        for(int i = 0; i < 5; i++) {
+            permits.add(limiter.tryAcquire(Priority.LOW));
+        }
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire(Priority.LOW)).isNull();
+
+        for(int i = 0; i < 3; i++) {
+            permits.add(limiter.tryAcquire(Priority.NORMAL));
+        }
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire(Priority.NORMAL)).isNull();
+
+        permits.add(limiter.tryAcquire(Priority.HIGH));
+        permits.add(limiter.tryAcquire(Priority.HIGH));
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire(Priority.HIGH)).isNull();
+        assertThat(limiter.getInflight()).isEqualTo(10);
+
+        // releasing twice frees one place
+        permits.get(0).release();
+        permits.get(0).release();
+        assertThat(limiter.getInflight()).isEqualTo(9);
+        assertThat(limiter.tryAcquire(Priority.LOW)).isNull();
+        assertThat(limiter.tryAcquire(Priority.HIGH)).isNotNull();
+
+        MetricsWriter writer = new MetricsWriter();
+        limiter.writeMetrics(writer);
+        assertThat(writer.toString())
+                .contains("dump_concurrency_limit 10")
+                .contains("dump_concurrency_rejected_total{priority=\"low\"} 2")
+                .contains("dump_concurrency_rejected_total{priority=\"high\"} 1");
+    }
+
+
+    /**
+     * Tests that the limit grows while latency holds and the limit is in use, shrinks as latency rises, backs
+     * off on timeouts and stays within its bounds
+     * @throws Exception
+     */
+    @Test
+    public void testGradient() throws Exception {
+        ConcurrencyLimiter limiter = limiter(20);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for(int i = 0; i < 15; i++) {
+            permits.add(limiter.tryAcquire(Priority.HIGH));
+        }
+
+        for(int window = 0; window < 20; window++) {
+            sample(limiter, 2 * MILLIS);
+        }
+        double grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(25);
+
+        // an idle limit doesn't grow
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+        for(int window = 0; window < 20; window++) {
+            sample(limiter, 2 * MILLIS);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(grown);
+
+        // the database slows down
+        for(int window = 0; window < 20; window++) {
+            sample(limiter, 10 * MILLIS);
+        }
+        assertThat(limiter.getLimit()).isLessThan(grown / 2);
+
+        for(int window = 0; window < 100; window++) {
+            limiter.record(MILLIS, true);
+            limiter.adjust();
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        // too few calls say nothing
+        limiter.record(100 * MILLIS, false);
+        limiter.adjust();
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+
+    /**
+     * Tests that handlers over the limit are answered with a 503 at once, without running
+     * @throws Exception
+     */
+    @Test
+    public void testFastReject() throws Exception {
+        ConcurrencyLimiter limiter = limiter(4);
+        BoundedExecutor executor = new BoundedExecutor("test", 4, 16, 1000);
+        AsyncResponses async = new AsyncResponses();
+        ReflectionTestUtils.setField(async, "executor", executor);
+        ReflectionTestUtils.setField(async, "limiter", limiter);
+        ReflectionTestUtils.setField(async, "enabled", true);
+
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            List<DeferredResult<ResponseEntity>> blocked = new ArrayList<>();
+            for(int i = 0; i < 2; i++) {
+                blocked.add(async.run(Priority.LOW, () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new ResponseEntity(HttpStatus.OK);
+                }, 5000));
+            }
+
+            AtomicBoolean ran = new AtomicBoolean();
+            DeferredResult<ResponseEntity> rejected = async.run(Priority.LOW, () -> {
+                ran.set(true);
+                return new ResponseEntity(HttpStatus.OK);
+            }, 5000);
+
+            assertThat(rejected.hasResult()).isTrue();
+            assertThat(((ResponseEntity) rejected.getResult()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+            assertThat(((ResponseEntity) rejected.getResult()).getHeaders().getFirst("Retry-After")).isEqualTo("1");
+
+            // views are still admitted
+            CountDownLatch viewed = new CountDownLatch(1);
+            async.run(Priority.HIGH, () -> {
+                viewed.countDown();
+                return new ResponseEntity(HttpStatus.OK);
+            }, 5000);
+            assertThat(viewed.await(5, TimeUnit.SECONDS)).isTrue();
+
+            release.countDown();
+            for(DeferredResult<ResponseEntity> result : blocked) {
+                while(!result.hasResult()) {
+                    Thread.sleep(10);
+                }
+            }
+            while(limiter.getInflight() > 0) {
+                Thread.sleep(10);
+            }
+            assertThat(ran.get()).isFalse();
+        }
+        finally {
+            executor.shutdownGracefully();
+        }
+    }
+
+
+    /**
+     * Tests that the limit is adjusted on the admission scheduler without being called
+     * @throws Exception
+     */
+    @Test
+    public void testScheduled() throws Exception {
+        BoundedScheduler scheduler = new BoundedScheduler("admission", 1, 4, 1000);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 100);
+        ReflectionTestUtils.setField(limiter, "minLimit", 4);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 256);
+        ReflectionTestUtils.setField(limiter, "window", 10L);
+        ReflectionTestUtils.setField(limiter, "scheduler", scheduler);
+
+        try {
+            limiter.init();
+            limiter.record(MILLIS, true);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while(limiter.getLimit() >= 100) {
+                assertThat(System.currentTimeMillis()).isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            scheduler.shutdownGracefully();
+        }
+    }
+
+
+    /**
+     * Records enough calls of one latency for a window and adjusts the limit
+     */
+    private static void sample(ConcurrencyLimiter limiter, long nanos) {
+        for(int i = 0; i < 20; i++) {
+            limiter.record(nanos, false);
+        }
+        limiter.adjust();
+    }
+
+    private static ConcurrencyLimiter limiter(int initialLimit) {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(limiter, "minLimit", 4);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 256);
+        limiter.init();
+        return limiter;
+    }
+}
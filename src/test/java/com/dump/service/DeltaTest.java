@@ -0,0 +1,53 @@
+package com.dump.service;
+
+import com.dump.service.utils.Delta;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests binary delta encoding
+ */
+public class DeltaTest {
+
+    /**
+     * Tests that small edits to a large dump produce a small delta that rebuilds the target
+     */
+    @Test
+    public void testSmallEdit() {
+        StringBuilder sb = new StringBuilder();
+        Random rnd = new Random(42);
+        for(int i = 0; i < 2000; i++) {
+            sb.append("line ").append(i).append(": value=").append(rnd.nextInt()).append('\n');
+        }
+
+        byte[] base = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] target = sb.insert(5000, "an inserted line\n").replace(30000, 30010, "EDITED").toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] delta = Delta.encode(base, target);
+
+        assertThat(Delta.apply(base, delta)).isEqualTo(target);
+        assertThat(delta.length).isLessThan(200);
+    }
+
+
+    /**
+     * Tests edge cases of empty and unrelated inputs
+     */
+    @Test
+    public void testEdgeCases() {
+        byte[] empty = new byte[0];
+        byte[] text = "short text".getBytes(StandardCharsets.UTF_8);
+        byte[] other = new byte[1000];
+        new Random(7).nextBytes(other);
+
+        assertThat(Delta.apply(empty, Delta.encode(empty, text))).isEqualTo(text);
+        assertThat(Delta.apply(text, Delta.encode(text, empty))).isEqualTo(empty);
+        assertThat(Delta.apply(text, Delta.encode(text, other))).isEqualTo(other);
+        assertThat(Delta.apply(other, Delta.encode(other, other))).isEqualTo(other);
+    }
+}
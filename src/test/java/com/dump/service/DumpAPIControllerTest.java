@@ -1,34 +1,65 @@
 package com.dump.service;
 
+import com.dump.service.admission.ConcurrencyLimiter;
+import com.dump.service.caching.EntityCaches;
 import com.dump.service.controllers.DumpAPIController;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.lists.ListVersions;
+import com.dump.service.live.LiveDumps;
+import com.dump.service.loading.CoalescingLoader;
 import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpHeader;
 import com.dump.service.objects.User;
 import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.ListVersionRepository;
+import com.dump.service.repositories.UserAvatarRepository;
 import com.dump.service.repositories.UserRepository;
+import com.dump.service.revisions.RevisionStore;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.serialization.Serialization;
+import com.dump.service.trending.Trending;
+import com.dump.service.trending.TrendingWindow;
 import com.dump.service.utils.Auth;
+import com.dump.service.utils.Hashing;
+import com.dump.service.views.ViewCounter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,6 +70,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @RunWith(SpringRunner.class)
 @WebMvcTest(DumpAPIController.class)
+@Import({ ExecutorConfig.class, AsyncResponses.class, ConcurrencyLimiter.class, CoalescingLoader.class, ListVersions.class,
+        ReadYourWrites.class })
 public class DumpAPIControllerTest {
 
     @Autowired
@@ -53,6 +86,27 @@ public class DumpAPIControllerTest {
     @MockBean
     private Auth authUtil;
 
+    @MockBean
+    private RevisionStore revisionStore;
+
+    @MockBean
+    private ViewCounter viewCounter;
+
+    @MockBean
+    private UserAvatarRepository userAvatarRepository;
+
+    @MockBean
+    private EntityCaches entityCaches;
+
+    @MockBean
+    private Trending trending;
+
+    @MockBean
+    private LiveDumps liveDumps;
+
+    @MockBean
+    private ListVersionRepository listVersionRepository;
+
 
     /**
      * Tests /view handler
@@ -84,14 +138,12 @@ public class DumpAPIControllerTest {
                 .thenReturn(mockUser);  // valid User
 
         // verify 404 on invalid Dump
-        this.mockMvc
-                .perform(get("/api/dumps/view/aaaa"))
+        perform(get("/api/dumps/view/aaaa"))
                 .andDo(print())
                 .andExpect(status().isNotFound());
 
         // verify valid Dump request
-        this.mockMvc
-                .perform(get("/api/dumps/view/aaaa"))
+        perform(get("/api/dumps/view/aaaa"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.username").value("josh"))
@@ -101,8 +153,7 @@ public class DumpAPIControllerTest {
         assertThat(mockUser.getViews() == 3);
 
         // verify download method
-        this.mockMvc
-                .perform(get("/api/dumps/view/aaaa?download=true"))
+        perform(get("/api/dumps/view/aaaa?download=true"))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Type", "text/plain"))
@@ -111,6 +162,179 @@ public class DumpAPIControllerTest {
     }
 
 
+    /**
+     * Tests /view handler with binary content negotiation
+     * @throws Exception
+     */
+    @Test
+    public void testViewSmile() throws Exception {
+        Dump mockDump = new Dump();
+        mockDump.setExpiration(new Date(0));
+        mockDump.setViews(1);
+        mockDump.setUsername("");
+        mockDump.setContents("raw \"contents\"\n");
+        mockDump.setPublicId("aaaa");
+
+        when(dumpRepository.findByPublicId("aaaa"))
+                .thenReturn(mockDump);
+
+        // verify JSON stays the default
+        perform(get("/api/dumps/view/aaaa"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+
+        // verify Smile on request
+        byte[] payload = perform(get("/api/dumps/view/aaaa").accept(Serialization.SMILE))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(Serialization.SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Dump decoded = Serialization.createSmileMapper().readValue(payload, Dump.class);
+        assertThat(decoded.getContents()).isEqualTo("raw \"contents\"\n");
+    }
+
+
+    /**
+     * Tests /view handler with conditional requests
+     * @throws Exception
+     */
+    @Test
+    public void testViewConditional() throws Exception {
+        Date modified = new Date(1500000000000L);
+        String hash = Hashing.sha256("contents");
+
+        Dump mockDump = new Dump();
+        mockDump.setExpiration(new Date(0));
+        mockDump.setViews(1);
+        mockDump.setUsername("josh");
+        mockDump.setContents("contents");
+        mockDump.setContentHash(hash);
+        mockDump.setModified(modified);
+        mockDump.setPublicId("aaaa");
+
+        when(dumpRepository.findByPublicId("aaaa"))
+                .thenReturn(mockDump);
+        when(dumpRepository.findHeaderByPublicId("aaaa"))
+                .thenReturn(new DumpHeader("aaaa", "josh", hash, modified, Enumerations.Exposure.PUBLIC));
+
+        // verify validators on full responses
+        String etag = perform(get("/api/dumps/view/aaaa"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Last-Modified", "Fri, 14 Jul 2017 02:40:00 GMT"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("W/\"" + hash);
+
+        perform(get("/api/dumps/view/aaaa?download=true"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + hash + "\""));
+
+        // verify revalidations are answered without loading contents
+        perform(get("/api/dumps/view/aaaa").header("If-None-Match", etag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        perform(get("/api/dumps/view/aaaa?download=true").header("If-None-Match", "\"" + hash + "\""))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+
+        perform(get("/api/dumps/view/aaaa?download=true").header("If-Modified-Since", "Fri, 14 Jul 2017 02:40:00 GMT"))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+
+        verify(dumpRepository, times(2)).findByPublicId("aaaa");
+        verify(viewCounter, times(3)).record(eq("aaaa"), eq("josh"), eq(Enumerations.Exposure.PUBLIC), anyLong());
+
+        // verify stale validators get the full Dump
+        perform(get("/api/dumps/view/aaaa").header("If-None-Match", "W/\"stale\""))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.publicId").value("aaaa"));
+    }
+
+
+    /**
+     * Tests list handlers with conditional requests
+     * @throws Exception
+     */
+    @Test
+    public void testListConditional() throws Exception {
+        AtomicLong version = new AtomicLong();
+        when(listVersionRepository.increment(any()))
+                .thenAnswer(invocation -> (int) version.incrementAndGet());
+        when(listVersionRepository.findVersionById(any()))
+                .thenAnswer(invocation -> version.get());
+
+        User mockUser = new User();
+        mockUser.setUsername("josh");
+        Dump mockDump = new Dump();
+        mockDump.setUsername("josh");
+        mockDump.setTitle("title");
+
+        when(authUtil.verifyAuthorization(any()))
+                .thenReturn(mockUser);
+        when(dumpRepository.findByPublicId(any()))
+                .thenReturn(null);
+        when(dumpRepository.findFirst10ByExposureOrderByIdDesc(any()))
+                .thenReturn(new Dump[1]);
+
+        String etag = perform(get("/api/dumps/recent"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("W/");
+
+        // verify pollers get a 304 without a query
+        perform(get("/api/dumps/recent").header("If-None-Match", etag))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+        verify(dumpRepository, times(1)).findFirst10ByExposureOrderByIdDesc(any());
+
+        // verify a new Dump changes the tag
+        perform(
+                        post("/api/dumps/add")
+                                .content(asJsonString(mockDump))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        perform(get("/api/dumps/recent").header("If-None-Match", etag))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+        verify(dumpRepository, times(2)).findFirst10ByExposureOrderByIdDesc(any());
+    }
+
+
+    /**
+     * Tests /trending handler
+     * @throws Exception
+     */
+    @Test
+    public void testTrending() throws Exception {
+        when(trending.top("hour", 10))
+                .thenReturn(Arrays.asList(new TrendingWindow.Trend("aaaa", 12.5), new TrendingWindow.Trend("bbbb", 3)));
+        when(trending.top("week", 10))
+                .thenReturn(null);
+
+        perform(get("/api/dumps/trending"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].publicId").value("aaaa"))
+                .andExpect(jsonPath("$[0].score").value(12.5))
+                .andExpect(jsonPath("$[1].publicId").value("bbbb"));
+
+        // verify unknown windows are rejected
+        perform(get("/api/dumps/trending?window=week"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+
     /**
      * Tests /delete handler
      * @throws Exception
@@ -136,37 +360,33 @@ public class DumpAPIControllerTest {
                 .thenReturn(mockDump);                  // valid Dump
 
         // test expired JWT
-        this.mockMvc
-                .perform(delete("/api/dumps/delete?publicId=aaaa"))
+        perform(delete("/api/dumps/delete?publicId=aaaa"))
                 .andDo(print())
                 .andExpect(status().isIAmATeapot());
 
         // test invalid user
-        this.mockMvc
-                .perform(delete("/api/dumps/delete?publicId=aaaa"))
+        perform(delete("/api/dumps/delete?publicId=aaaa"))
                 .andDo(print())
                 .andExpect(status().isForbidden());
 
         // test invalid dump
-        this.mockMvc
-                .perform(delete("/api/dumps/delete?publicId=aaaa"))
+        perform(delete("/api/dumps/delete?publicId=aaaa"))
                 .andDo(print())
                 .andExpect(status().isBadRequest());
 
         // test unauthorized user
-        this.mockMvc
-                .perform(delete("/api/dumps/delete?publicId=aaaa"))
+        perform(delete("/api/dumps/delete?publicId=aaaa"))
                 .andDo(print())
                 .andExpect(status().isForbidden());
 
         // test success
-        this.mockMvc
-                .perform(delete("/api/dumps/delete?publicId=aaaa"))
+        perform(delete("/api/dumps/delete?publicId=aaaa"))
                 .andDo(print())
                 .andExpect(status().isOk());
 
         verify(authUtil, times(5)).verifyAuthorization(any());
         verify(dumpRepository, times(1)).delete(any(Dump.class));
+        verify(viewCounter, times(1)).delete("aaaa");
 
     }
 
@@ -181,17 +401,25 @@ public class DumpAPIControllerTest {
         mockDump.setUsername("Josh");
         mockDump.setTitle("2018-01-04 15:04:11.455 DEBUG 21248 --- [       Thread-2] o.s.b.f.s.DefaultListableBeanFactory     : Retrieved dependent beans for bean 'org.springframework.boot.autoconfigure.internalCachingMetadataReaderFactory': [org.springframework.context.annotation.internalConfigurationAnnotationProcessor]");
         mockDump.setPublicId("aaaa");
+        mockDump.setContents("new contents");
         User mockUser = new User();
         mockUser.setUsername("josh");
+        User wrongMockUser = new User();
+        wrongMockUser.setUsername("not-josh");
 
         when(authUtil.verifyAuthorization(any()))
                 .thenThrow(new Exception("expired"))    // expired JWT
                 .thenReturn(null)                       // invalid user
+                .thenReturn(wrongMockUser)              // owner of the body, not of the stored Dump
                 .thenReturn(mockUser);                  // value user
 
+        when(dumpRepository.findHeaderByPublicId("aaaa"))
+                .thenReturn(new DumpHeader(7, "aaaa", "Josh", Hashing.sha256("contents"), null, Enumerations.Exposure.PUBLIC));
+        when(dumpRepository.findContentsByPublicId("aaaa"))
+                .thenReturn("contents");
+
         // test expired JWT
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/update")
                             .content(asJsonString(mockDump))
                             .contentType(MediaType.APPLICATION_JSON))
@@ -199,17 +427,26 @@ public class DumpAPIControllerTest {
                 .andExpect(status().isIAmATeapot());
 
         // test invalid user
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/update")
                             .content(asJsonString(mockDump))
                             .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
                 .andExpect(status().isForbidden());
 
+        // test claiming someone else's Dump through the owner in the body
+        mockDump.setUsername("not-josh");
+        perform(
+                        post("/api/dumps/update")
+                                .content(asJsonString(mockDump))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+        verify(revisionStore, times(0)).record(any(), any(), any());
+        mockDump.setUsername("Josh");
+
         // test success with culled title
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/update")
                                 .content(asJsonString(mockDump))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -218,7 +455,141 @@ public class DumpAPIControllerTest {
                 .andExpect(content().string("aaaa"));
 
         assertThat(mockDump.getTitle().length() == 250);
-        verify(dumpRepository, times(1)).save(any(Dump.class));
+
+        // verify the stored row is written before its revision is recorded
+        ArgumentCaptor<Dump> saved = ArgumentCaptor.forClass(Dump.class);
+        InOrder order = inOrder(dumpRepository, revisionStore);
+        order.verify(dumpRepository, times(1)).save(saved.capture());
+        order.verify(revisionStore, times(1)).record("aaaa", "contents", "new contents");
+        assertThat(saved.getValue().getId()).isEqualTo(7);
+    }
+
+
+    /**
+     * Tests PATCH /update handler
+     * @throws Exception
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPatch() throws Exception {
+        Dump mockPatch = new Dump();
+        mockPatch.setPublicId("aaaa");
+        mockPatch.setTitle("renamed");
+        mockPatch.setContents("contents");
+        User wrongMockUser = new User();
+        wrongMockUser.setUsername("not-josh");
+        User mockUser = new User();
+        mockUser.setUsername("josh");
+
+        when(authUtil.verifyAuthorization(any()))
+                .thenReturn(null)                       // invalid user
+                .thenReturn(wrongMockUser)              // unauthorized user
+                .thenReturn(mockUser);                  // authorized user
+
+        when(dumpRepository.findHeaderByPublicId("aaaa"))
+                .thenReturn(new DumpHeader("aaaa", "Josh", Hashing.sha256("contents")));
+
+        // test invalid user
+        perform(
+                        patch("/api/dumps/update")
+                                .content(asJsonString(mockPatch))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        // test unauthorized user
+        perform(
+                        patch("/api/dumps/update")
+                                .content(asJsonString(mockPatch))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        // test success with unchanged contents
+        perform(
+                        patch("/api/dumps/update")
+                                .content(asJsonString(mockPatch))
+                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("aaaa"));
+
+        // verify only the title was written
+        ArgumentCaptor<Map> fields = ArgumentCaptor.forClass(Map.class);
+        verify(dumpRepository, times(1)).updateFields(eq("aaaa"), fields.capture());
+        assertThat(fields.getValue()).containsOnlyKeys("title", "modified");
+        verify(dumpRepository, times(0)).save(any(Dump.class));
+    }
+
+
+    /**
+     * Tests /revisions handlers, and that revisions of a private Dump are refused to anyone but its owner
+     * @throws Exception
+     */
+    @Test
+    public void testRevisions() throws Exception {
+        User wrongMockUser = new User();
+        wrongMockUser.setUsername("not-josh");
+        User mockUser = new User();
+        mockUser.setUsername("josh");
+
+        when(dumpRepository.findHeaderByPublicId("aaaa"))
+                .thenReturn(new DumpHeader("aaaa", "Josh", null, null, Enumerations.Exposure.PUBLIC));
+        when(dumpRepository.findHeaderByPublicId("bbbb"))
+                .thenReturn(new DumpHeader("bbbb", "Josh", null, null, Enumerations.Exposure.PRIVATE));
+        when(revisionStore.fetch("aaaa", 1))
+                .thenReturn("contents");
+        when(revisionStore.fetch("bbbb", 1))
+                .thenReturn("private contents");
+
+        // verify missing revision
+        perform(get("/api/dumps/revisions/aaaa/2"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+
+        // verify existing revision
+        perform(get("/api/dumps/revisions/aaaa/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("contents"));
+
+        // verify missing Dump
+        perform(get("/api/dumps/revisions/cccc"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+
+        when(authUtil.verifyAuthorization(any()))
+                .thenReturn(null)                       // anonymous user
+                .thenReturn(null)                       // anonymous user
+                .thenReturn(wrongMockUser)              // unauthorized user
+                .thenReturn(wrongMockUser)              // unauthorized user
+                .thenReturn(mockUser)                   // owner
+                .thenReturn(mockUser);                  // owner
+
+        // verify private revisions are refused to anonymous and other users
+        perform(get("/api/dumps/revisions/bbbb"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        perform(get("/api/dumps/revisions/bbbb/1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        perform(get("/api/dumps/revisions/bbbb"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        perform(get("/api/dumps/revisions/bbbb/1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        verify(revisionStore, times(0)).list("bbbb");
+        verify(revisionStore, times(0)).fetch("bbbb", 1);
+
+        // verify the owner reads them
+        perform(get("/api/dumps/revisions/bbbb"))
+                .andDo(print())
+                .andExpect(status().isOk());
+        perform(get("/api/dumps/revisions/bbbb/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string("private contents"));
     }
 
 
@@ -240,12 +611,11 @@ public class DumpAPIControllerTest {
                 .thenReturn(null)                       // invalid user
                 .thenReturn(mockUser);                  // success
 
-        when(dumpRepository.findByPublicId(any()))
+        when(dumpRepository.findKeyByPublicId(any()))
                 .thenReturn(null);                      // unique public ID
 
         // test expired JWT
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/add")
                                 .content(asJsonString(mockDump))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -253,8 +623,7 @@ public class DumpAPIControllerTest {
                 .andExpect(status().isIAmATeapot());
 
         // test invalid user
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/add")
                                 .content(asJsonString(mockDump))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -262,8 +631,7 @@ public class DumpAPIControllerTest {
                 .andExpect(status().isForbidden());
 
         // test success with culled title
-        this.mockMvc
-                .perform(
+        perform(
                         post("/api/dumps/add")
                                 .content(asJsonString(mockDump))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -295,28 +663,24 @@ public class DumpAPIControllerTest {
                 .thenReturn(new Dump[5]);               // anon user
 
         // test expired JWT
-        this.mockMvc
-                .perform(get("/api/dumps/user?username=josh&viewAll=true"))
+        perform(get("/api/dumps/user?username=josh&viewAll=true"))
                 .andDo(print())
                 .andExpect(status().isIAmATeapot());
 
         // test unauthorized user
-        this.mockMvc
-                .perform(get("/api/dumps/user?username=josh&viewAll=true"))
+        perform(get("/api/dumps/user?username=josh&viewAll=true"))
                 .andDo(print())
                 .andExpect(status().isForbidden());
 
         // test authorized user
-        this.mockMvc
-                .perform(get("/api/dumps/user?username=josh&viewAll=true"))
+        perform(get("/api/dumps/user?username=josh&viewAll=true"))
                 .andDo(print())
                 .andExpect(status().isOk());
 
         verify(dumpRepository, times(1)).findFirst100ByUsernameIgnoreCaseOrderByIdDesc(any());
 
         // test authorized user
-        this.mockMvc
-                .perform(get("/api/dumps/user?username=josh&viewAll=false"))
+        perform(get("/api/dumps/user?username=josh&viewAll=false"))
                 .andDo(print())
                 .andExpect(status().isOk());
 
@@ -324,6 +688,25 @@ public class DumpAPIControllerTest {
     }
 
 
+    /**
+     * Performs a request, waiting for handlers running on the persistence executor to finish
+     * @param request   Request to perform
+     * @return  Result of the request, or of its async dispatch
+     * @throws Exception
+     */
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = this.mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+
+        if(result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult(5000);
+            return this.mockMvc.perform(asyncDispatch(result));
+        }
+
+        return actions;
+    }
+
+
     /**
      * Returns JSONified version of passed Object
      * @param obj Object to serialize to JSON
@@ -0,0 +1,150 @@
+package com.dump.service;
+
+import com.dump.service.caching.CacheRegionFactory;
+import com.dump.service.caching.EntityCaches;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpKey;
+import com.dump.service.objects.User;
+import com.dump.service.objects.UserAvatar;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserAvatarRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.tracing.QueryTrace;
+import com.dump.service.views.ViewCounter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests the second-level cache of Users and Dump keys against an embedded database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EntityCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private ViewCounter viewCounter;
+
+    @Autowired
+    private EntityCaches entityCaches;
+
+    @Autowired
+    private CacheRegionFactory cacheRegionFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    /**
+     * Tests that User lookups are answered from the cache, survive view counting, and that saving a User
+     * neither loses its avatar nor rewinds its view count
+     * @throws Exception
+     */
+    @Test
+    public void testUser() throws Exception {
+        User user = new User();
+        user.setUsername("cached-user");
+        user.setViews(0);
+        userRepository.save(user);
+        Integer id = userRepository.findByUsernameIgnoreCase("cached-user").getId();
+
+        userAvatarRepository.save(new UserAvatar(id, new byte[] { 1, 2, 3 }));
+
+        // writing the avatar invalidated the cached queries over the user table
+        userRepository.findById(id);
+        userRepository.findByUsernameIgnoreCase("cached-user");
+        assertThat(statements(() -> userRepository.findById(id))).isZero();
+        assertThat(statements(() -> userRepository.findByUsernameIgnoreCase("cached-user"))).isZero();
+
+        // the in-place counter runs in its own query space
+        viewCounter.record("none", "cached-user", null, 0L);
+        assertThat(statements(() -> userRepository.findById(id))).isZero();
+
+        // a save from a cached copy with a stale view count
+        User stale = userRepository.findById(id);
+        stale.setWebsite("https://example.com");
+        userRepository.save(stale);
+
+        User saved = userRepository.findById(id);
+        assertThat(saved.getWebsite()).isEqualTo("https://example.com");
+        assertThat(saved.getAvatar()).isNull();
+        assertThat(userAvatarRepository.findByUsernameIgnoreCase("CACHED-USER").getAvatar()).containsExactly(1, 2, 3);
+
+        viewCounter.record("none", "cached-user", null, 0L);
+        assertThat(jdbcTemplate.queryForObject("select views from user where id = ?", Integer.class, id)).isEqualTo(2);
+
+        MetricsWriter writer = new MetricsWriter();
+        cacheRegionFactory.writeMetrics(writer);
+        assertThat(writer.toString())
+                .contains("dump_cache_hit_ratio{region=\"users\"}")
+                .contains("dump_cache_hits_total{region=\"user-queries\"}");
+    }
+
+
+    /**
+     * Tests that Dump keys are cached by public ID and evicted with their Dump
+     * @throws Exception
+     */
+    @Test
+    public void testDumpKey() throws Exception {
+        Dump dump = new Dump();
+        dump.setPublicId("cached-dump");
+        dump.setUsername("cached-owner");
+        dump.setTitle("title");
+        dump.setContents("contents");
+        dump.setExposure(PUBLIC);
+        dump.setExpiration(new Date(0));
+        dump.setViews(0);
+        dumpRepository.save(dump);
+
+        DumpKey key = dumpRepository.findKeyByPublicId("cached-dump");
+        assertThat(key.getUsername()).isEqualTo("cached-owner");
+
+        viewCounter.record("cached-dump", null, PUBLIC, 0L);
+        assertThat(statements(() -> dumpRepository.findKeyByPublicId("cached-dump"))).isZero();
+
+        Dump stored = dumpRepository.findByPublicId("cached-dump");
+        dumpRepository.delete(stored);
+        entityCaches.evictDump(stored.getId(), stored.getPublicId());
+
+        assertThat(dumpRepository.findKeyByPublicId("cached-dump")).isNull();
+    }
+
+
+    /**
+     * @return  Number of statements a lookup ran
+     */
+    private static int statements(Supplier<?> lookup) {
+        QueryTrace trace = new QueryTrace();
+        QueryTrace previous = QueryTrace.attach(trace);
+
+        try {
+            lookup.get();
+        }
+        finally {
+            QueryTrace.attach(previous);
+        }
+
+        return trace.getCount();
+    }
+}
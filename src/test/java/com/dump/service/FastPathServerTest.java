@@ -0,0 +1,139 @@
+package com.dump.service;
+
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.fastpath.FastPathHandler;
+import com.dump.service.fastpath.FastPathServer;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.UserAvatar;
+import com.dump.service.utils.DefaultAvatar;
+import com.dump.service.views.ViewCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the NIO fast path listener
+ */
+public class FastPathServerTest {
+
+    private CoalescingLoader loader;
+    private ViewCounter viewCounter;
+    private BoundedExecutor executor;
+    private FastPathServer server;
+
+    @Before
+    public void setup() throws Exception {
+        loader = mock(CoalescingLoader.class);
+        viewCounter = mock(ViewCounter.class);
+        DefaultAvatar defaultAvatar = mock(DefaultAvatar.class);
+
+        Dump dump = new Dump();
+        dump.setPublicId("aaaa");
+        dump.setUsername("josh");
+        dump.setContents("contents ✓");
+        dump.setExposure(Enumerations.Exposure.PUBLIC);
+        when(loader.findDump("aaaa")).thenReturn(dump);
+
+        Dump unlisted = new Dump();
+        unlisted.setPublicId("cccc");
+        unlisted.setUsername("josh");
+        unlisted.setContents("unlisted");
+        unlisted.setExposure(Enumerations.Exposure.UNLISTED);
+        when(loader.findDump("cccc")).thenReturn(unlisted);
+
+        when(loader.findAvatar("josh")).thenReturn(new UserAvatar(1, null));
+        when(defaultAvatar.getBytes()).thenReturn(new byte[] { 1, 2, 3 });
+
+        executor = new BoundedExecutor("test", 2, 16, 1000);
+        server = new FastPathServer(0, new FastPathHandler(loader, viewCounter, defaultAvatar), executor, 30000, 100);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop();
+        executor.shutdownGracefully();
+    }
+
+
+    /**
+     * Tests raw downloads and avatars, and that only public Dumps are downloaded
+     * @throws Exception
+     */
+    @Test
+    public void testDownload() throws Exception {
+        HttpURLConnection connection = open("/api/dumps/view/aaaa?download=true");
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(connection.getHeaderField("Content-Disposition")).isEqualTo("attachment; filename=\"aaaa.txt\"");
+        assertThat(new String(read(connection.getInputStream()), StandardCharsets.UTF_8)).isEqualTo("contents ✓");
+        verify(viewCounter, times(1)).record(eq(loader.findDump("aaaa")), anyLong());
+
+        // JSON views are left to the MVC listener
+        assertThat(open("/api/dumps/view/aaaa").getResponseCode()).isEqualTo(404);
+        assertThat(open("/api/dumps/view/bbbb?download=true").getResponseCode()).isEqualTo(404);
+
+        // unlisted and private Dumps stay on the MVC listener
+        assertThat(open("/api/dumps/view/cccc?download=true").getResponseCode()).isEqualTo(404);
+        verify(viewCounter, times(0)).record(eq(loader.findDump("cccc")), anyLong());
+
+        connection = open("/api/users/avatar/josh.png");
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(connection.getContentType()).isEqualTo("image/png");
+        assertThat(read(connection.getInputStream())).containsExactly(1, 2, 3);
+    }
+
+
+    /**
+     * Tests pipelined keep-alive requests and unsupported methods on one raw connection
+     * @throws Exception
+     */
+    @Test
+    public void testKeepAlive() throws Exception {
+        try(Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /api/users/avatar/josh.png HTTP/1.1\r\nHost: x\r\n\r\n"
+                    + "HEAD /api/users/avatar/josh.png HTTP/1.1\r\nHost: x\r\n\r\n"
+                    + "DELETE /api/users/avatar/josh.png HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            String response = new String(read(socket.getInputStream()), StandardCharsets.ISO_8859_1);
+
+            assertThat(response.split("HTTP/1.1 200 OK", -1)).hasSize(3);
+            assertThat(response).contains("HTTP/1.1 405 Method Not Allowed");
+            assertThat(response.indexOf("405")).isGreaterThan(response.lastIndexOf("200 OK"));
+        }
+    }
+
+
+    private HttpURLConnection open(String path) throws Exception {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.dump.service;
+
+import com.dump.service.metrics.InstrumentationAspect;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.Dump;
+import com.dump.service.repositories.DumpRepository;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the handler and repository instrumentation aspect
+ */
+public class InstrumentationAspectTest {
+
+    /**
+     * Tests that handler calls, repository calls and their failures are recorded per mapping and per overload
+     * @throws Exception
+     */
+    @Test
+    public void testRecord() throws Exception {
+        InstrumentationAspect aspect = new InstrumentationAspect();
+
+        DumpRepository repository = mock(DumpRepository.class);
+        when(repository.findByPublicId("aaaa")).thenReturn(new Dump());
+        when(repository.findByPublicId("bbbb")).thenThrow(new IllegalStateException("boom"));
+
+        DumpRepository instrumentedRepository = proxy(repository, aspect);
+        TestController controller = proxy(new TestController(), aspect);
+
+        instrumentedRepository.findByPublicId("aaaa");
+        instrumentedRepository.findByPublicId("aaaa");
+        try {
+            instrumentedRepository.findByPublicId("bbbb");
+            fail("Repository failure was swallowed");
+        }
+        catch(IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("boom");
+        }
+        instrumentedRepository.count();
+        instrumentedRepository.delete(1L);
+        instrumentedRepository.delete(new Dump());
+
+        controller.ok();
+        controller.ok("aaaa");
+        controller.ok("aaaa");
+        controller.broken();
+
+        MetricsWriter writer = new MetricsWriter();
+        aspect.writeMetrics(writer);
+        String metrics = writer.toString();
+
+        assertThat(metrics).contains("dump_repository_seconds_count{class=\"DumpRepository\",method=\"findByPublicId(String)\"} 3");
+        assertThat(metrics).contains("dump_repository_errors_total{class=\"DumpRepository\",method=\"findByPublicId(String)\"} 1");
+        assertThat(metrics).contains("dump_repository_seconds_count{class=\"DumpRepository\",method=\"count()\"} 1");
+        assertThat(metrics).contains("dump_repository_seconds_count{class=\"DumpRepository\",method=\"delete(Serializable)\"} 1");
+        assertThat(metrics).contains("dump_repository_seconds_count{class=\"DumpRepository\",method=\"delete(Object)\"} 1");
+
+        String ok = "class=\"TestController\",method=\"ok\",http_method=\"GET\",path=\"/api/test/ok\"";
+        String okById = "class=\"TestController\",method=\"ok\",http_method=\"GET\",path=\"/api/test/ok/{id}\"";
+        assertThat(metrics).contains("dump_handler_seconds{" + ok + ",quantile=\"0.99\"}");
+        assertThat(metrics).contains("dump_handler_seconds_count{" + ok + "} 1");
+        assertThat(metrics).contains("dump_handler_seconds_count{" + okById + "} 2");
+        assertThat(metrics).contains("dump_handler_errors_total{" + ok + "} 0");
+        assertThat(metrics).contains("dump_handler_errors_total{class=\"TestController\",method=\"broken\",http_method=\"POST\",path=\"/api/test/broken\"} 1");
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, InstrumentationAspect aspect) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(!(target instanceof DumpRepository));
+        factory.addAspect(aspect);
+        return (T) factory.getProxy();
+    }
+
+
+    @RestController
+    @RequestMapping(path="/api/test")
+    public class TestController {
+        @GetMapping(path="/ok")
+        public ResponseEntity ok() {
+            return new ResponseEntity(HttpStatus.OK);
+        }
+
+        @GetMapping(path="/ok/{id}")
+        public ResponseEntity ok(@PathVariable String id) {
+            return new ResponseEntity(HttpStatus.OK);
+        }
+
+        @PostMapping(path="/broken")
+        public ResponseEntity broken() {
+            return new ResponseEntity(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
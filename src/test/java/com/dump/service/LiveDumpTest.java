@@ -0,0 +1,323 @@
+package com.dump.service;
+
+import com.dump.service.live.LiveDumps;
+import com.dump.service.live.Slice;
+import com.dump.service.live.TailBuffer;
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.objects.Dump;
+import com.dump.service.repositories.DumpChunkRepository;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.routing.ReplicaRouting;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+/**
+ * Tests live Dumps, their followers and sealing
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class LiveDumpTest {
+
+    private static final String TOKEN = "X-Live-Token";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private LiveDumps liveDumps;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private DumpChunkRepository chunkRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+
+    @After
+    public void tearDown() {
+        // appends on this thread pin it to the primary
+        ReplicaRouting.reset();
+    }
+
+
+    /**
+     * Tests that the buffer keeps the newest bytes across the end of its ring, skips bytes it already has and
+     * refuses gaps
+     * @throws Exception
+     */
+    @Test
+    public void testBuffer() throws Exception {
+        TailBuffer buffer = new TailBuffer(8, 100);
+
+        assertThat(buffer.read(100, 10)).isEmpty();
+        assertThat(buffer.read(99, 10)).isNull();
+
+        assertThat(buffer.append(100, bytes("abcde"))).isTrue();
+        assertThat(buffer.append(103, bytes("defgh"))).isTrue();
+        assertThat(buffer.read(100, 10)).isEqualTo(bytes("abcdefgh"));
+        assertThat(buffer.read(102, 3)).isEqualTo(bytes("cde"));
+
+        // wraps around and drops the oldest bytes
+        assertThat(buffer.append(108, bytes("ijk"))).isTrue();
+        assertThat(buffer.getStart()).isEqualTo(103);
+        assertThat(buffer.getEnd()).isEqualTo(111);
+        assertThat(buffer.read(102, 10)).isNull();
+        assertThat(buffer.read(103, 10)).isEqualTo(bytes("defghijk"));
+
+        // longer than the ring
+        assertThat(buffer.append(111, bytes("0123456789"))).isTrue();
+        assertThat(buffer.read(113, 10)).isEqualTo(bytes("23456789"));
+
+        assertThat(buffer.append(122, bytes("x"))).isFalse();
+        assertThat(buffer.getEnd()).isEqualTo(121);
+    }
+
+
+    /**
+     * Tests appending with and without the token and offset, followers waiting on the shared buffer, and
+     * sealing into the Dump's contents
+     * @throws Exception
+     */
+    @Test
+    public void testLive() throws Exception {
+        Map<?, ?> opened = open("job output");
+        String id = (String) opened.get("publicId");
+        String token = (String) opened.get("token");
+
+        assertThat(dumpRepository.findContentsByPublicId(id)).isEmpty();
+
+        BlockingQueue<Slice> first = new LinkedBlockingQueue<>();
+        liveDumps.follow(id, 0, 10000, first::add);
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/dumps/live/" + id + "/append")
+                .header(TOKEN, token).param("offset", "0").contentType(MediaType.TEXT_PLAIN).content(bytes("hello "))).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("6"));
+
+        Slice slice = first.poll(5, TimeUnit.SECONDS);
+        assertThat(slice.getText()).isEqualTo("hello ");
+        assertThat(slice.getNext()).isEqualTo(6);
+        assertThat(slice.isClosed()).isFalse();
+
+        // a retried append, a foreign producer and a Dump which isn't live
+        assertThat(liveDumps.append(id, token, 0, "hello ").getOutcome()).isEqualTo(LiveDumps.Outcome.CONFLICT);
+        assertThat(liveDumps.append(id, token, 0, "hello ").getLength()).isEqualTo(6);
+        assertThat(liveDumps.append(id, "guess", null, "x").getOutcome()).isEqualTo(LiveDumps.Outcome.FORBIDDEN);
+        assertThat(liveDumps.append("no-such-live", token, null, "x").getOutcome()).isEqualTo(LiveDumps.Outcome.NOT_FOUND);
+
+        // many followers at the end wait on one buffer
+        long catchUps = metric("dump_live_catch_up_reads_total");
+        List<BlockingQueue<Slice>> followers = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            BlockingQueue<Slice> follower = new LinkedBlockingQueue<>();
+            liveDumps.follow(id, 6, 10000, follower::add);
+            followers.add(follower);
+        }
+
+        assertThat(liveDumps.append(id, token, null, "wörld\n").getLength()).isEqualTo(13);
+
+        for(BlockingQueue<Slice> follower : followers) {
+            slice = follower.poll(5, TimeUnit.SECONDS);
+            assertThat(slice.getOffset()).isEqualTo(6);
+            assertThat(slice.getText()).isEqualTo("wörld\n");
+        }
+        assertThat(metric("dump_live_catch_up_reads_total")).isEqualTo(catchUps);
+
+        // reads cut short end on a whole character
+        int maxRead = (int) ReflectionTestUtils.getField(liveDumps, "maxRead");
+        ReflectionTestUtils.setField(liveDumps, "maxRead", 7);
+        try {
+            BlockingQueue<Slice> cut = new LinkedBlockingQueue<>();
+            liveDumps.follow(id, 1, 0, cut::add);
+            assertThat(cut.poll(5, TimeUnit.SECONDS).getText()).isEqualTo("ello w");
+        }
+        finally {
+            ReflectionTestUtils.setField(liveDumps, "maxRead", maxRead);
+        }
+
+        BlockingQueue<Slice> waiting = new LinkedBlockingQueue<>();
+        liveDumps.follow(id, 13, 10000, waiting::add);
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/dumps/live/" + id + "/close").header(TOKEN, token)).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("13"));
+
+        slice = waiting.poll(5, TimeUnit.SECONDS);
+        assertThat(slice.getData()).isEmpty();
+        assertThat(slice.isClosed()).isTrue();
+
+        assertThat(dumpRepository.findContentsByPublicId(id)).isEqualTo("hello wörld\n");
+        assertThat(chunkRepository.findByPublicIdOrderByEndOffsetAsc(id)).isEmpty();
+        assertThat(liveDumps.append(id, token, null, "late").getOutcome()).isEqualTo(LiveDumps.Outcome.CLOSED);
+
+        // the sealed Dump reads like a closed live Dump
+        MvcResult poll = mockMvc.perform(get("/api/dumps/live/" + id).param("offset", "6")).andReturn();
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Live-Offset", "13"))
+                .andExpect(header().string("X-Live-Closed", "true"))
+                .andExpect(content().bytes(bytes("wörld\n")));
+
+        // an ordinary Dump is read whole from the offset on, however short reads are cut
+        Dump plain = new Dump();
+        plain.setPublicId("plain-live");
+        plain.setContents("hello wörld\n");
+        plain.setExposure(Enumerations.Exposure.PUBLIC);
+        plain.setExpiration(new Date(0));
+        plain.setViews(0);
+        dumpRepository.save(plain);
+
+        ReflectionTestUtils.setField(liveDumps, "maxRead", 7);
+        try {
+            BlockingQueue<Slice> whole = new LinkedBlockingQueue<>();
+            liveDumps.follow("plain-live", 1, 0, whole::add);
+            slice = whole.poll(5, TimeUnit.SECONDS);
+            assertThat(slice.getText()).isEqualTo("ello wörld\n");
+            assertThat(slice.isClosed()).isTrue();
+        }
+        finally {
+            ReflectionTestUtils.setField(liveDumps, "maxRead", maxRead);
+        }
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/dumps/live/no-such-dump")).andReturn()))
+                .andExpect(status().isNotFound());
+    }
+
+
+    /**
+     * Tests that an event stream carries each append and ends with the close
+     * @throws Exception
+     */
+    @Test
+    public void testEvents() throws Exception {
+        Map<?, ?> opened = open("streamed");
+        String id = (String) opened.get("publicId");
+        String token = (String) opened.get("token");
+
+        liveDumps.append(id, token, null, "one\n");
+
+        MvcResult stream = mockMvc.perform(get("/api/dumps/live/" + id + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitFor(stream, "\"one\\n\"");
+        liveDumps.append(id, token, null, "two\n");
+        waitFor(stream, "\"two\\n\"");
+        liveDumps.close(id, token);
+        waitFor(stream, "data:{\"length\":8}");
+
+        String events = stream.getResponse().getContentAsString();
+        assertThat(events)
+                .contains("id:4\nevent:append\ndata:{\"offset\":0,\"text\":\"one\\n\"}")
+                .contains("id:8\nevent:append\ndata:{\"offset\":4,\"text\":\"two\\n\"}")
+                .contains("id:8\nevent:close\ndata:{\"length\":8}");
+
+        // resuming after the last event only gets the close
+        MvcResult resumed = mockMvc.perform(get("/api/dumps/live/" + id + "/events").header("Last-Event-ID", "8")).andReturn();
+        waitFor(resumed, "event:close");
+        assertThat(resumed.getResponse().getContentAsString()).doesNotContain("event:append");
+    }
+
+
+    /**
+     * Tests that live Dumps whose producer went away are sealed with what they have
+     * @throws Exception
+     */
+    @Test
+    public void testAbandoned() throws Exception {
+        Map<?, ?> opened = open("abandoned");
+        String id = (String) opened.get("publicId");
+        String token = (String) opened.get("token");
+
+        liveDumps.append(id, token, null, "partial");
+
+        long idleTimeout = (long) ReflectionTestUtils.getField(liveDumps, "idleTimeout");
+        ReflectionTestUtils.setField(liveDumps, "idleTimeout", -1000L);
+        try {
+            liveDumps.sweep();
+        }
+        finally {
+            ReflectionTestUtils.setField(liveDumps, "idleTimeout", idleTimeout);
+        }
+
+        assertThat(dumpRepository.findContentsByPublicId(id)).isEqualTo("partial");
+        assertThat(liveDumps.append(id, token, null, "more").getOutcome()).isEqualTo(LiveDumps.Outcome.CLOSED);
+    }
+
+
+    private Map<?, ?> open(String title) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/dumps/live")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"anonymous\",\"title\":\"" + title + "\",\"exposure\":\"PUBLIC\",\"views\":0}"))
+                .andReturn();
+
+        return objectMapper.readValue(mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), Map.class);
+    }
+
+    private static void waitFor(MvcResult stream, String text) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while(!stream.getResponse().getContentAsString().contains(text)) {
+            assertThat(System.currentTimeMillis()).as(text).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private long metric(String name) {
+        MetricsWriter writer = new MetricsWriter();
+        liveDumps.writeMetrics(writer);
+
+        for(String line : writer.toString().split("\n")) {
+            if(line.startsWith(name + " ")) {
+                return (long) Double.parseDouble(line.substring(name.length() + 1));
+            }
+        }
+
+        throw new AssertionError("No metric " + name);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
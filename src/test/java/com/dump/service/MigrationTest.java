@@ -0,0 +1,114 @@
+package com.dump.service;
+
+import com.dump.service.utils.Hashing;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests that databases created by Hibernate before migrations were introduced are baselined and migrated
+ */
+public class MigrationTest {
+
+    private static final String DUMP = "create table dump (id integer not null auto_increment, contents longtext, " +
+            "date_time datetime, expiration datetime, exposure integer, public_id varchar(255), title varchar(255), " +
+            "type varchar(255), username varchar(255), views integer, primary key (id))";
+
+    private static final String USER = "create table user (id integer not null auto_increment, avatar longblob, " +
+            "email varchar(255), joined datetime, password varchar(255), username varchar(255), views integer, " +
+            "website varchar(255), primary key (id))";
+
+
+    /**
+     * Tests that a database with the schema of the first release gets the revision columns and table, and the
+     * content hashes of its Dumps
+     * @throws SQLException
+     */
+    @Test
+    public void testFirstRelease() throws SQLException {
+        JdbcDataSource dataSource = dataSource("migration-first-release");
+
+        try(Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(DUMP);
+            statement.execute(USER);
+            statement.execute("insert into dump (public_id, username, contents, exposure, views) values ('aaaa', 'Alice', 'old contents', 0, 3)");
+            statement.execute("insert into dump (public_id, username, contents, exposure, views) values ('bbbb', 'Bob', null, 0, 0)");
+            statement.execute("insert into user (username, views) values ('Alice', 0)");
+        }
+
+        migrate(dataSource);
+
+        try(Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertThat(value(statement, "select content_hash from dump where public_id = 'aaaa'")).isEqualTo(Hashing.sha256("old contents"));
+            assertThat(value(statement, "select content_hash from dump where public_id = 'bbbb'")).isNull();
+            assertThat(value(statement, "select modified from dump where public_id = 'aaaa'")).isNull();
+            assertThat(value(statement, "select username_lower from dump where public_id = 'aaaa'")).isEqualTo("alice");
+            assertThat(value(statement, "select username_lower from user")).isEqualTo("alice");
+            assertThat(value(statement, "select count(*) from dump_revision")).isEqualTo(0L);
+        }
+    }
+
+
+    /**
+     * Tests that a database which Hibernate already gave the revision columns and table keeps them and their rows,
+     * less the revision numbers stored twice
+     * @throws SQLException
+     */
+    @Test
+    public void testRevisionsBeforeMigrations() throws SQLException {
+        JdbcDataSource dataSource = dataSource("migration-revisions");
+
+        try(Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(DUMP);
+            statement.execute(USER);
+            statement.execute("alter table dump add column content_hash varchar(255)");
+            statement.execute("alter table dump add column modified datetime");
+            statement.execute("create table dump_revision (id integer not null auto_increment, content_hash varchar(255), " +
+                    "data longblob, date_time datetime, length integer, public_id varchar(255), revision integer, " +
+                    "snapshot bit, primary key (id))");
+            statement.execute("insert into dump (public_id, username, contents, content_hash, exposure, views) values ('aaaa', 'Alice', 'contents', 'kept', 0, 0)");
+            statement.execute("insert into dump_revision (public_id, revision, snapshot) values ('aaaa', 1, true)");
+            statement.execute("insert into dump_revision (public_id, revision, snapshot) values ('aaaa', 2, false)");
+            statement.execute("insert into dump_revision (public_id, revision, snapshot) values ('aaaa', 2, true)");
+        }
+
+        migrate(dataSource);
+
+        try(Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertThat(value(statement, "select content_hash from dump where public_id = 'aaaa'")).isEqualTo("kept");
+            assertThat(value(statement, "select count(*) from dump_revision")).isEqualTo(2L);
+            assertThat(value(statement, "select snapshot from dump_revision where revision = 2")).isEqualTo(false);
+        }
+    }
+
+
+    private static JdbcDataSource dataSource(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    private static void migrate(JdbcDataSource dataSource) {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations("classpath:db/migration", "classpath:com/dump/service/migration");
+        flyway.setBaselineOnMigrate(true);
+        flyway.migrate();
+    }
+
+    private static Object value(Statement statement, String sql) throws SQLException {
+        try(ResultSet rows = statement.executeQuery(sql)) {
+            rows.next();
+            return rows.getObject(1);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.dump.service;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.tracing.QueryTrace;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static com.dump.service.Enumerations.Exposure.UNLISTED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Tests the batch lookups of Dump metadata and usernames
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "dump.jwt-key=" + MultiGetTest.KEY)
+public class MultiGetTest {
+
+    static final String KEY = "multi-get-key";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+
+    /**
+     * Tests that Dump metadata comes back keyed in request order with misses as null, from one query, and
+     * that Dumps which aren't public are only returned to their owner
+     * @throws Exception
+     */
+    @Test
+    public void testDumps() throws Exception {
+        dumpRepository.save(dump("multi-a", "alice", PUBLIC));
+        dumpRepository.save(dump("multi-b", "bob", UNLISTED));
+        Integer bob = user("Bob");
+
+        Map<?, ?> summaries = fetch("/api/dumps/view?ids=multi-b,missing,multi-a,multi-b", 200);
+
+        assertThat(new ArrayList<>(summaries.keySet())).containsExactly("multi-b", "missing", "multi-a");
+        assertThat(summaries.get("missing")).isNull();
+        assertThat(summaries.get("multi-b")).isNull();
+        assertThat(((Map<String, ?>) summaries.get("multi-a")).get("username")).isEqualTo("alice");
+
+        // other users don't see it either
+        Integer alice = user("alice");
+        summaries = fetch(get("/api/dumps/view?ids=multi-b,multi-a").header("authorization", bearer(alice)), 200);
+        assertThat(summaries.get("multi-b")).isNull();
+        assertThat(summaries.get("multi-a")).isNotNull();
+
+        summaries = fetch(get("/api/dumps/view?ids=multi-b,multi-a").header("authorization", bearer(bob)), 200);
+        assertThat(summaries.get("multi-a")).isNotNull();
+
+        Map<String, ?> summary = (Map<String, ?>) summaries.get("multi-b");
+        assertThat(summary.get("username")).isEqualTo("bob");
+        assertThat(summary.get("title")).isEqualTo("multi-b");
+        assertThat(summary.get("exposure")).isEqualTo("UNLISTED");
+        assertThat(summary).doesNotContainKey("contents");
+
+        assertThat(statements(() -> dumpRepository.findSummariesByPublicIdIn(Arrays.asList("multi-a", "multi-b", "missing"))))
+                .isEqualTo(1);
+
+        List<String> tooMany = new ArrayList<>();
+        for(int i = 0; i <= 100; i++) {
+            tooMany.add("many" + i);
+        }
+        fetch("/api/dumps/view?ids=,", 400);
+        fetch("/api/dumps/view?ids=" + String.join(",", tooMany), 400);
+
+        dumpRepository.delete(dumpRepository.findByPublicId("multi-a"));
+        dumpRepository.delete(dumpRepository.findByPublicId("multi-b"));
+    }
+
+
+    /**
+     * Tests that usernames are answered from the cached Users and only the rest are queried, together
+     * @throws Exception
+     */
+    @Test
+    public void testUsernames() throws Exception {
+        Integer first = user("multi-first");
+        Integer second = user("multi-second");
+        Integer third = user("multi-third");
+
+        assertThat(statements(() -> userRepository.findByIdIn(Arrays.asList(first, second)))).isLessThanOrEqualTo(1);
+        assertThat(statements(() -> userRepository.findByIdIn(Arrays.asList(first, second)))).isZero();
+        assertThat(statements(() -> userRepository.findByIdIn(Arrays.asList(first, second, third, -1)))).isEqualTo(1);
+
+        Map<?, ?> usernames = fetch("/api/users/usernames?ids=" + third + ",-1," + first, 200);
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(third.toString(), "multi-third");
+        expected.put("-1", null);
+        expected.put(first.toString(), "multi-first");
+        assertThat(usernames).isEqualTo(expected);
+
+        fetch("/api/users/usernames?ids=one", 400);
+    }
+
+
+    private Map<?, ?> fetch(String url, int status) throws Exception {
+        return fetch(get(url), status);
+    }
+
+    private Map<?, ?> fetch(RequestBuilder request, int status) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+
+        if(result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andExpect(status().is(status)).andReturn();
+        }
+        else {
+            assertThat(result.getResponse().getStatus()).isEqualTo(status);
+        }
+
+        return status == 200 ? objectMapper.readValue(result.getResponse().getContentAsString(), Map.class) : null;
+    }
+
+    private Integer user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setViews(0);
+        return userRepository.save(user).getId();
+    }
+
+    private static String bearer(Integer userId) {
+        return "Bearer " + Jwts.builder()
+                .setSubject(userId.toString())
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS256, KEY)
+                .compact();
+    }
+
+    private static Dump dump(String publicId, String username, Enumerations.Exposure exposure) {
+        Dump dump = new Dump();
+        dump.setPublicId(publicId);
+        dump.setUsername(username);
+        dump.setTitle(publicId);
+        dump.setContents("contents of " + publicId);
+        dump.setExposure(exposure);
+        dump.setExpiration(new Date(0));
+        dump.setDateTime(new Date());
+        dump.setViews(0);
+        return dump;
+    }
+
+    /**
+     * @return  Number of statements a lookup ran
+     */
+    private static int statements(Supplier<?> lookup) {
+        QueryTrace trace = new QueryTrace();
+        QueryTrace previous = QueryTrace.attach(trace);
+
+        try {
+            lookup.get();
+        }
+        finally {
+            QueryTrace.attach(previous);
+        }
+
+        return trace.getCount();
+    }
+}
@@ -0,0 +1,135 @@
+package com.dump.service;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.tracing.QueryTraceFilter;
+import com.dump.service.utils.Hashing;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Date;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Asserts the number of statements each endpoint runs against an embedded database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "dump.query-trace.headers=true")
+@AutoConfigureMockMvc
+public class QueryBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+
+    @Before
+    public void setup() {
+        if(dumpRepository.findByPublicId("budget") != null) {
+            return;
+        }
+
+        User user = new User();
+        user.setUsername("budget-user");
+        user.setViews(0);
+        userRepository.save(user);
+
+        Dump dump = new Dump();
+        dump.setPublicId("budget");
+        dump.setUsername("budget-user");
+        dump.setTitle("title");
+        dump.setContents("contents");
+        dump.setContentHash(Hashing.sha256("contents"));
+        dump.setExposure(PUBLIC);
+        dump.setExpiration(new Date(0));
+        dump.setModified(new Date());
+        dump.setViews(0);
+        dumpRepository.save(dump);
+    }
+
+
+    /**
+     * Tests the budget of /view: one select plus the Dump and User view counter updates
+     * @throws Exception
+     */
+    @Test
+    public void testView() throws Exception {
+        String etag = perform(get("/api/dumps/view/budget"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "3"))
+                .andExpect(header().string(QueryTraceFilter.TIME_HEADER, notNullValue()))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // revalidation selects only the header columns
+        perform(get("/api/dumps/view/budget").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "3"));
+
+        perform(get("/api/dumps/view/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "1"));
+    }
+
+
+    /**
+     * Tests the budget of the list endpoints: the list version for the ETag, then the list
+     * @throws Exception
+     */
+    @Test
+    public void testLists() throws Exception {
+        String etag = perform(get("/api/dumps/recent"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "2"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // revalidation reads only the list version
+        perform(get("/api/dumps/recent").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "1"));
+
+        perform(get("/api/dumps/user?username=budget-user&viewAll=false"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "2"));
+
+        // the count query is skipped while the first page isn't full
+        perform(get("/api/dumps/search?page=0&limit=20&title=tit"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryTraceFilter.COUNT_HEADER, "2"));
+    }
+
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = this.mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+
+        if(result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult(5000);
+            return this.mockMvc.perform(asyncDispatch(result));
+        }
+
+        return actions;
+    }
+}
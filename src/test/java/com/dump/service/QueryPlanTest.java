@@ -0,0 +1,186 @@
+package com.dump.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Calls every repository finder once and EXPLAINs the SQL it runs on the embedded database, failing if any of
+ * them scans a whole table or index instead of looking up the indexes created by the migrations
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.dump.service.QueryPlanTest$Recorder")
+public class QueryPlanTest {
+
+    /**
+     * An index comment without a condition, such as PUBLIC.DUMP.tableScan or PUBLIC.PRIMARY_KEY_2 scanned
+     * for its order
+     */
+    private static final Pattern SCAN = Pattern.compile("/\\* PUBLIC\\.[\\w.]+ \\*/");
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    /**
+     * Tests that no statement of a declared repository method scans
+     * @throws Exception
+     */
+    @Test
+    public void testNoScans() throws Exception {
+        Map<String, String> plans = new LinkedHashMap<>();
+        Recorder.thread = Thread.currentThread();
+
+        for(Object repository : context.getBeansWithAnnotation(Repository.class).values()) {
+            for(Method method : declaredMethods(repository.getClass())) {
+                Recorder.STATEMENTS.clear();
+                method.invoke(repository, arguments(method));
+
+                assertThat(Recorder.STATEMENTS).as(method.getName()).isNotEmpty();
+
+                for(String sql : Recorder.STATEMENTS) {
+                    plans.put(method.getDeclaringClass().getSimpleName() + "." + method.getName() + ": " + sql, explain(sql));
+                }
+            }
+        }
+
+        assertThat(plans).isNotEmpty();
+
+        List<String> scans = new ArrayList<>();
+        for(Map.Entry<String, String> plan : plans.entrySet()) {
+            if(SCAN.matcher(plan.getValue()).find()) {
+                scans.add(plan.getKey() + "\n" + plan.getValue());
+            }
+        }
+        assertThat(scans).isEmpty();
+    }
+
+
+    /**
+     * Methods declared by the repository interfaces of the application, leaving out those inherited from
+     * Spring Data and the defaults delegating to declared ones
+     */
+    private static Set<Method> declaredMethods(Class<?> type) {
+        Set<Method> methods = new LinkedHashSet<>();
+
+        for(Class<?> repository : type.getInterfaces()) {
+            if(!repository.getName().startsWith("com.dump.service.repositories")) {
+                continue;
+            }
+
+            for(Method method : repository.getDeclaredMethods()) {
+                if(!method.isDefault() && !Modifier.isStatic(method.getModifiers())) {
+                    methods.add(method);
+                }
+            }
+            methods.addAll(declaredMethods(repository));
+        }
+
+        return methods;
+    }
+
+
+    private static Object[] arguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+
+        for(int i = 0; i < types.length; i++) {
+            if(types[i] == String.class) {
+                args[i] = "plan-probe";
+            }
+            else if(types[i] == Integer.class || types[i] == int.class) {
+                args[i] = 1;
+            }
+            else if(types[i].isEnum()) {
+                args[i] = types[i].getEnumConstants()[0];
+            }
+            else if(types[i] == Date.class) {
+                args[i] = new Date();
+            }
+            else if(types[i] == Pageable.class) {
+                args[i] = new PageRequest(0, 10);
+            }
+            else if(types[i] == Map.class) {
+                args[i] = Collections.singletonMap("title", "plan-probe");
+            }
+            else if(types[i] == Collection.class) {
+                // keys nothing is cached under, so cache-aware lookups still query
+                Type element = ((ParameterizedType) method.getGenericParameterTypes()[i]).getActualTypeArguments()[0];
+                args[i] = Arrays.asList(element == Integer.class ? -1 : "plan-probe", element == Integer.class ? -2 : "plan-probe-2");
+            }
+            else {
+                throw new IllegalArgumentException("No probe argument for " + types[i] + " of " + method);
+            }
+        }
+
+        return args;
+    }
+
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((java.sql.Connection connection) -> {
+            try(PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for(int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                    statement.setObject(i, null);
+                }
+
+                StringBuilder plan = new StringBuilder();
+                try(ResultSet result = statement.executeQuery()) {
+                    while(result.next()) {
+                        plan.append(result.getString(1));
+                    }
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+
+    /**
+     * Records the SQL Hibernate prepares on the test's thread, leaving out scheduled tasks running meanwhile
+     */
+    public static class Recorder implements StatementInspector {
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+        static volatile Thread thread;
+
+        @Override
+        public String inspect(String sql) {
+            if(Thread.currentThread() == thread) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.dump.service;
+
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.ratelimit.RateLimit;
+import com.dump.service.ratelimit.RateLimitFilter;
+import com.dump.service.ratelimit.TokenBuckets;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests the token bucket table and the rate limiting filter
+ */
+public class RateLimitTest {
+
+    private static final long SECOND = 1000000L;
+
+
+    /**
+     * Tests bursts, refill, the wait reported for refused requests, and that full buckets make room for other
+     * clients
+     * @throws Exception
+     */
+    @Test
+    public void testBuckets() throws Exception {
+        TokenBuckets buckets = new TokenBuckets(1024, 4);
+        RateLimit limit = new RateLimit("test", 2, 5);
+        long now = SECOND;
+
+        // an idle client gets its burst, then one request per half second
+        for(int i = 0; i < 5; i++) {
+            assertThat(buckets.acquire(42, limit, now)).isZero();
+        }
+        assertThat(buckets.acquire(42, limit, now)).isEqualTo(SECOND / 2);
+        assertThat(buckets.acquire(42, limit, now + SECOND / 4)).isEqualTo(SECOND / 4);
+        assertThat(buckets.acquire(42, limit, now + SECOND / 2)).isZero();
+        assertThat(buckets.acquire(42, limit, now + SECOND / 2)).isGreaterThan(0);
+
+        // other clients have their own buckets
+        assertThat(buckets.acquire(43, limit, now)).isZero();
+
+        // after idling the burst is back, but no more
+        now += 10 * SECOND;
+        for(int i = 0; i < 5; i++) {
+            assertThat(buckets.acquire(42, limit, now)).isZero();
+        }
+        assertThat(buckets.acquire(42, limit, now)).isGreaterThan(0);
+
+        // a table with a single probe window: busy clients keep their buckets, idle ones are evicted
+        TokenBuckets small = new TokenBuckets(16, 1);
+        for(long key = 1; key <= 16; key++) {
+            small.acquire(key << 32, limit, now);
+        }
+        assertThat(small.acquire(100L << 32, limit, now)).isZero();
+        assertThat(small.getOverflows()).isEqualTo(1);
+        assertThat(small.getEvictions()).isZero();
+
+        assertThat(small.acquire(100L << 32, limit, now + SECOND)).isZero();
+        assertThat(small.getEvictions()).isEqualTo(1);
+        for(int i = 0; i < 4; i++) {
+            assertThat(small.acquire(100L << 32, limit, now + SECOND)).isZero();
+        }
+        assertThat(small.acquire(100L << 32, limit, now + SECOND)).isGreaterThan(0);
+    }
+
+
+    /**
+     * Tests that threads sharing a bucket are admitted exactly the burst between them
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        TokenBuckets buckets = new TokenBuckets(1024, 4);
+        RateLimit limit = new RateLimit("test", 0.001, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Integer>> admitted = new ArrayList<>();
+            for(int t = 0; t < 8; t++) {
+                admitted.add(executor.submit(() -> {
+                    int count = 0;
+                    for(int i = 0; i < 1000; i++) {
+                        if(buckets.acquire(7, limit, SECOND) == 0) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+
+            int total = 0;
+            for(Future<Integer> future : admitted) {
+                total += future.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(total).isEqualTo(1000);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Tests that limited endpoints answer 429 with a Retry-After per address and per username, and that other
+     * endpoints pass
+     * @throws Exception
+     */
+    @Test
+    public void testFilter() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(new TokenBuckets(1024, 4));
+        filter.limit("GET", "/api/users/login", new RateLimit("login", 0.1, 2));
+
+        assertThat(perform(filter, "GET", "/api/users/login", "10.0.0.1", "josh").getStatus()).isEqualTo(200);
+        assertThat(perform(filter, "GET", "/api/users/login", "10.0.0.1", "josh").getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse refused = perform(filter, "GET", "/api/users/login", "10.0.0.1", "josh");
+        assertThat(refused.getStatus()).isEqualTo(429);
+        assertThat(Integer.parseInt(refused.getHeader("Retry-After"))).isBetween(9, 10);
+
+        // another address logging in as the same user is limited too
+        assertThat(perform(filter, "GET", "/api/users/login", "10.0.0.2", "JOSH").getStatus()).isEqualTo(429);
+        assertThat(perform(filter, "GET", "/api/users/login", "10.0.0.2", "bob").getStatus()).isEqualTo(200);
+
+        // other endpoints aren't limited
+        for(int i = 0; i < 10; i++) {
+            assertThat(perform(filter, "GET", "/api/dumps/view/aaaa", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        }
+
+        MetricsWriter writer = new MetricsWriter();
+        filter.writeMetrics(writer);
+        assertThat(writer.toString()).contains("dump_rate_limited_total{limit=\"login\"} 2");
+    }
+
+
+    private static MockHttpServletResponse perform(RateLimitFilter filter, String method, String path, String address,
+                                                   String username) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(address);
+        if(username != null) {
+            request.setParameter("username", username);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
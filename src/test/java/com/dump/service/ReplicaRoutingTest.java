@@ -0,0 +1,201 @@
+package com.dump.service;
+
+import com.dump.service.metrics.MetricsWriter;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.routing.Replica;
+import com.dump.service.routing.ReplicaRouting;
+import com.dump.service.routing.ReplicaRoutingDataSource;
+import com.dump.service.routing.ReplicaSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.H2;
+
+
+/**
+ * Tests read/write splitting against two embedded databases standing in for the primary and a replica. Each
+ * holds a different title for the same Dump, so every read shows where it was routed.
+ */
+public class ReplicaRoutingTest {
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica;
+    private FlakyDataSource flaky;
+    private ReplicaSet replicas;
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate reads;
+    private TransactionTemplate writes;
+
+
+    @Before
+    public void setup() {
+        primary = new EmbeddedDatabaseBuilder().setType(H2).setName("routing-primary").build();
+        replica = new EmbeddedDatabaseBuilder().setType(H2).setName("routing-replica").build();
+
+        new JdbcTemplate(primary).execute("create table dump (public_id varchar(16), title varchar(64))");
+        new JdbcTemplate(primary).update("insert into dump values ('aaaa', 'primary')");
+        new JdbcTemplate(replica).execute("create table dump (public_id varchar(16), title varchar(64))");
+        new JdbcTemplate(replica).update("insert into dump values ('aaaa', 'replica')");
+        new JdbcTemplate(replica).execute("create table replication_lag (seconds int)");
+        new JdbcTemplate(replica).update("insert into replication_lag values (0)");
+
+        flaky = new FlakyDataSource(replica);
+        replicas = new ReplicaSet(Collections.singletonList(new Replica("replica-0", flaky)), 5000,
+                "select seconds from replication_lag", 1);
+
+        DataSourceTransactionManager transactionManager =
+                new DataSourceTransactionManager(ReplicaRoutingDataSource.lazy(primary, replicas));
+
+        jdbc = new JdbcTemplate(transactionManager.getDataSource());
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+        writes = new TransactionTemplate(transactionManager);
+    }
+
+
+    @After
+    public void teardown() {
+        ReplicaRouting.reset();
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+
+    /**
+     * Tests that read-only transactions go to the replica and everything else to the primary
+     * @throws Exception
+     */
+    @Test
+    public void testRouting() throws Exception {
+        assertThat(read()).isEqualTo("replica");
+        assertThat(written()).isEqualTo("primary");
+        assertThat(title()).isEqualTo("primary");
+
+        // reads joining a write transaction stay on its connection
+        String joined = writes.execute(status -> read());
+        assertThat(joined).isEqualTo("primary");
+
+        ReplicaRouting.pin(10000);
+        assertThat(read()).isEqualTo("primary");
+        ReplicaRouting.reset();
+        assertThat(read()).isEqualTo("replica");
+    }
+
+
+    /**
+     * Tests that a lagging, stopped or unreachable replica is skipped until a check passes again
+     * @throws Exception
+     */
+    @Test
+    public void testFallback() throws Exception {
+        new JdbcTemplate(replica).update("update replication_lag set seconds = 60");
+        replicas.check();
+        assertThat(read()).isEqualTo("primary");
+
+        new JdbcTemplate(replica).update("update replication_lag set seconds = null");
+        replicas.check();
+        assertThat(replicas.getReplicas().get(0).isHealthy()).isFalse();
+        assertThat(read()).isEqualTo("primary");
+
+        new JdbcTemplate(replica).update("update replication_lag set seconds = 1");
+        replicas.check();
+        assertThat(replicas.getReplicas().get(0).getLagMillis()).isEqualTo(1000);
+        assertThat(read()).isEqualTo("replica");
+
+        flaky.down = true;
+        assertThat(read()).isEqualTo("primary");
+        flaky.down = false;
+        assertThat(read()).isEqualTo("primary");
+        replicas.check();
+        assertThat(read()).isEqualTo("replica");
+
+        MetricsWriter writer = new MetricsWriter();
+        replicas.writeMetrics(writer);
+        assertThat(writer.toString())
+                .contains("dump_replica_lag_seconds{replica=\"replica-0\"} 1")
+                .contains("dump_replica_fallbacks_total{reason=\"error\"} 1")
+                .contains("dump_replica_fallbacks_total{reason=\"unavailable\"} 3");
+    }
+
+
+    /**
+     * Tests that reads of a written Dump or by its owner are pinned to the primary within the window
+     * @throws Exception
+     */
+    @Test
+    public void testReadYourWrites() throws Exception {
+        ReadYourWrites readYourWrites = new ReadYourWrites();
+        ReflectionTestUtils.setField(readYourWrites, "replicaUrls", "jdbc:h2:mem:routing-replica");
+        ReflectionTestUtils.setField(readYourWrites, "window", 10000L);
+
+        readYourWrites.wroteDump("aaaa", "josh");
+        assertThat(read()).isEqualTo("primary");
+        assertThat(readYourWrites.isListBehind()).isFalse();
+
+        ReplicaRouting.reset();
+        assertThat(readYourWrites.isListBehind()).isTrue();
+        assertThat(readYourWrites.pinDump("bbbb")).isFalse();
+        assertThat(readYourWrites.pinUser("someone")).isFalse();
+        assertThat(read()).isEqualTo("replica");
+
+        assertThat(readYourWrites.pinUser("JOSH")).isTrue();
+        assertThat(read()).isEqualTo("primary");
+
+        ReplicaRouting.reset();
+        assertThat(readYourWrites.pinDump("aaaa")).isTrue();
+
+        // anonymous Dumps don't pin every anonymous reader
+        ReplicaRouting.reset();
+        readYourWrites.wroteDump("cccc", "anonymous");
+        ReplicaRouting.reset();
+        assertThat(readYourWrites.pinUser("anonymous")).isFalse();
+        assertThat(readYourWrites.pinDump("cccc")).isTrue();
+    }
+
+
+    private String read() {
+        return reads.execute(status -> title());
+    }
+
+    private String written() {
+        return writes.execute(status -> title());
+    }
+
+    private String title() {
+        return jdbc.queryForObject("select title from dump where public_id = 'aaaa'", String.class);
+    }
+
+
+    /**
+     * Replica which refuses connections while down
+     */
+    private static class FlakyDataSource extends DelegatingDataSource {
+        volatile boolean down;
+
+        FlakyDataSource(EmbeddedDatabase target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if(down) {
+                throw new SQLException("connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.dump.service;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpRevision;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.DumpRevisionRepository;
+import com.dump.service.revisions.RevisionStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+/**
+ * Tests recording and reconstructing revisions against an embedded database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RevisionStoreTest {
+
+    @Autowired
+    private RevisionStore revisionStore;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private DumpRevisionRepository revisionRepository;
+
+
+    /**
+     * Tests that edits are stored as snapshots every snapshot interval and deltas in between, and that every
+     * revision is reconstructed to the contents it was recorded with
+     */
+    @Test
+    public void testRecordAndFetch() {
+        List<String> versions = new ArrayList<>();
+        versions.add(contents(0));
+
+        Dump dump = new Dump();
+        dump.setPublicId("revs");
+        dump.setUsername("alice");
+        dump.setTitle("revisions");
+        dump.setContents(versions.get(0));
+        dump.setExposure(PUBLIC);
+        dump.setDateTime(new Date());
+        dump.setExpiration(new Date(0));
+        dump.setViews(0);
+        dump = dumpRepository.save(dump);
+
+        for(int i = 1; i <= 12; i++) {
+            versions.add(contents(i));
+            dump.setContents(versions.get(i));
+            dump = dumpRepository.save(dump);
+            revisionStore.record("revs", versions.get(i - 1), versions.get(i));
+        }
+
+        // unchanged contents aren't a revision
+        revisionStore.record("revs", versions.get(12), versions.get(12));
+
+        DumpRevision[] revisions = revisionStore.list("revs");
+        assertThat(revisions).hasSize(13);
+        for(DumpRevision revision : revisions) {
+            assertThat(revision.getSnapshot()).as("revision %d", revision.getRevision())
+                    .isEqualTo(revision.getRevision() % 10 == 0);
+        }
+
+        for(int i = 12; i >= 0; i--) {
+            assertThat(revisionStore.fetch("revs", i)).as("revision %d", i).isEqualTo(versions.get(i));
+        }
+        assertThat(revisionStore.fetch("revs", 13)).isNull();
+
+        DumpRevision duplicate = new DumpRevision(12, true, new Date(), 0, null);
+        duplicate.setPublicId("revs");
+        assertThatThrownBy(() -> revisionRepository.save(duplicate)).isInstanceOf(DataIntegrityViolationException.class);
+
+        revisionStore.delete("revs");
+        assertThat(revisionStore.list("revs")).isEmpty();
+        dumpRepository.delete(dump);
+    }
+
+
+    /**
+     * Tests that a snapshot interval which would never store a snapshot is refused
+     */
+    @Test
+    public void testSnapshotInterval() {
+        assertThatThrownBy(() -> new RevisionStore(0, 16)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+
+    /**
+     * @return  Contents of a version, a long shared text with a small edit so deltas stay smaller than snapshots
+     */
+    private static String contents(int version) {
+        StringBuilder sb = new StringBuilder();
+
+        for(int line = 0; line < 200; line++) {
+            sb.append("line ").append(line).append(line == version * 10 ? " edited in version " + version : "").append('\n');
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.dump.service;
+
+import com.dump.service.Enumerations.Exposure;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.serialization.Serialization;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests the hand-written Dump and User serializers against Jackson's default bean serialization
+ */
+public class SerializationTest {
+
+    private final ObjectMapper defaultMapper = new ObjectMapper();
+    private final ObjectMapper sharedMapper = Serialization.createMapper();
+
+
+    /**
+     * Tests that chunked contents, including escapes and surrogate pairs on chunk boundaries, match default output
+     * @throws Exception
+     */
+    @Test
+    public void testDump() throws Exception {
+        StringBuilder contents = new StringBuilder();
+        while(contents.length() < 50000) {
+            contents.append("line \"quoted\" \\ tab\t é 😀 \u0001\n");
+        }
+
+        Dump dump = new Dump();
+        dump.setId(7);
+        dump.setPublicId("aaaa");
+        dump.setUsername("josh");
+        dump.setDateTime(new Date(1500000000000L));
+        dump.setExposure(Exposure.PUBLIC);
+        dump.setViews(3);
+        dump.setTitle("title");
+        dump.setContents(contents.toString());
+
+        JsonNode expected = defaultMapper.readTree(defaultMapper.writeValueAsString(dump));
+        JsonNode actual = defaultMapper.readTree(sharedMapper.writeValueAsBytes(dump));
+
+        assertThat(actual).isEqualTo(expected);
+
+        Dump[] list = { dump, new Dump() };
+        assertThat(defaultMapper.readTree(sharedMapper.writeValueAsString(list)))
+                .isEqualTo(defaultMapper.readTree(defaultMapper.writeValueAsString(list)));
+    }
+
+
+    /**
+     * Tests that User output matches default output
+     * @throws Exception
+     */
+    @Test
+    public void testUser() throws Exception {
+        User user = new User();
+        user.setId(1);
+        user.setUsername("josh");
+        user.setEmail("josh@example.com");
+        user.setJoined(new Date(1500000000000L));
+        user.setAvatar(new byte[] { 1, 2, 3 });
+
+        assertThat(defaultMapper.readTree(sharedMapper.writeValueAsString(user)))
+                .isEqualTo(defaultMapper.readTree(defaultMapper.writeValueAsString(user)));
+    }
+}
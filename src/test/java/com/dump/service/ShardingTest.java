@@ -0,0 +1,282 @@
+package com.dump.service;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.DumpSummary;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserShardRepository;
+import com.dump.service.sharding.Shard;
+import com.dump.service.sharding.ShardRebalancer;
+import com.dump.service.sharding.ShardRing;
+import com.dump.service.sharding.ShardSet;
+import com.dump.service.sharding.ShardingAspect;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static com.dump.service.Enumerations.Exposure.UNLISTED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests Dump sharding against three embedded databases standing in for the shards, next to the embedded home
+ * database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding-home;DB_CLOSE_DELAY=-1",
+        "dump.shards.urls=jdbc:h2:mem:shard-a;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-b;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-c;DB_CLOSE_DELAY=-1"
+})
+public class ShardingTest {
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserShardRepository userShardRepository;
+
+    @Autowired
+    private ShardSet shards;
+
+    @Autowired
+    private ShardingAspect shardingAspect;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private JdbcTemplate home;
+
+
+    @Before
+    public void setup() {
+        for(Shard shard : shards.getShards()) {
+            new JdbcTemplate(shard.getDataSource()).update("delete from dump");
+        }
+        home.update("delete from dump");
+        userShardRepository.deleteAll();
+    }
+
+
+    /**
+     * Tests that keys spread evenly over the ring, and that a new shard only takes keys, about its share
+     * @throws Exception
+     */
+    @Test
+    public void testRing() throws Exception {
+        List<Shard> three = Arrays.asList(new Shard("shard-0", null), new Shard("shard-1", null), new Shard("shard-2", null));
+        List<Shard> four = new ArrayList<>(three);
+        four.add(new Shard("shard-3", null));
+
+        ShardRing before = new ShardRing(three, 128);
+        ShardRing after = new ShardRing(four, 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+
+        for(int i = 0; i < 30000; i++) {
+            String key = "key" + i;
+            Shard owner = before.shardFor(key);
+            counts.merge(owner.getName(), 1, Integer::sum);
+
+            Shard newOwner = after.shardFor(key);
+            if(!newOwner.getName().equals(owner.getName())) {
+                assertThat(newOwner.getName()).isEqualTo("shard-3");
+                moved++;
+            }
+        }
+
+        for(int count : counts.values()) {
+            assertThat(count).isBetween(8000, 12000);
+        }
+        assertThat(moved).isBetween(6000, 9000);
+    }
+
+
+    /**
+     * Tests that Dumps are written to and read from the shard owning their public ID, with IDs unique across
+     * shards
+     * @throws Exception
+     */
+    @Test
+    public void testPointLookups() throws Exception {
+        List<Dump> dumps = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            dumps.add(dump("point" + i, "alice", PUBLIC));
+        }
+        dumpRepository.save(dumps.subList(0, 10));
+        for(Dump dump : dumps.subList(10, 20)) {
+            dumpRepository.save(dump);
+        }
+
+        List<Integer> ids = new ArrayList<>();
+
+        for(Dump dump : dumps) {
+            Shard owner = shards.shardFor(dump.getPublicId());
+
+            for(Shard shard : shards.getShards()) {
+                assertThat(count(shard, dump.getPublicId())).isEqualTo(shard == owner ? 1 : 0);
+            }
+
+            assertThat(dumpRepository.findByPublicId(dump.getPublicId()).getTitle()).isEqualTo(dump.getPublicId());
+            assertThat(dumpRepository.findKeyByPublicId(dump.getPublicId()).getId()).isEqualTo(dump.getId());
+            ids.add(dump.getId());
+        }
+
+        assertThat(ids).doesNotHaveDuplicates();
+        assertThat(dumps.stream().map(dump -> shards.shardFor(dump.getPublicId())).distinct().count()).isEqualTo(3);
+
+        // a batch lookup is split up by shard
+        List<String> publicIds = dumps.stream().map(Dump::getPublicId).collect(Collectors.toList());
+        publicIds.add("no-such-dump");
+        assertThat(dumpRepository.findSummariesByPublicIdIn(publicIds).stream().map(DumpSummary::getPublicId).collect(Collectors.toList()))
+                .isSubsetOf(publicIds)
+                .hasSize(20);
+
+        assertThat(dumpRepository.incrementViews("point3")).isEqualTo(1);
+        assertThat(dumpRepository.updateFields("point3", Collections.singletonMap("title", "renamed"))).isEqualTo(1);
+        Dump updated = dumpRepository.findByPublicId("point3");
+        assertThat(updated.getTitle()).isEqualTo("renamed");
+        assertThat(updated.getViews()).isEqualTo(1);
+
+        dumpRepository.delete(updated);
+        assertThat(dumpRepository.findByPublicId("point3")).isNull();
+        assertThat(dumpRepository.count()).isEqualTo(19);
+    }
+
+
+    /**
+     * Tests that lists and search pages gathered from every shard match those of a single database
+     * @throws Exception
+     */
+    @Test
+    public void testGather() throws Exception {
+        List<Dump> dumps = new ArrayList<>();
+        for(int i = 0; i < 30; i++) {
+            Dump dump = dump("list" + i, i % 3 == 0 ? "Bob" : "anonymous", i % 4 == 0 ? UNLISTED : PUBLIC);
+            dumpRepository.save(dump);
+            dumps.add(dump);
+        }
+
+        List<Dump> listed = dumps.stream()
+                .filter(dump -> dump.getExposure() == PUBLIC)
+                .sorted(Comparator.comparing(Dump::getId).reversed())
+                .collect(Collectors.toList());
+
+        assertThat(publicIds(dumpRepository.findFirst10ByExposureOrderByIdDesc(PUBLIC)))
+                .isEqualTo(publicIds(listed.subList(0, 10)));
+
+        Page<Dump[]> page = dumpRepository.findByExposureAndTitleContainsAndContentsContainsOrderByIdDesc(
+                new PageRequest(1, 5), PUBLIC, "list", "");
+        assertThat(page.getTotalElements()).isEqualTo(listed.size());
+        assertThat(page.getNumber()).isEqualTo(1);
+        assertThat(publicIds(page.getContent().toArray())).isEqualTo(publicIds(listed.subList(5, 10)));
+
+        // Bob's Dumps are only looked for on the shards the index lists
+        List<Dump> bobs = dumps.stream()
+                .filter(dump -> dump.getUsername().equals("Bob"))
+                .sorted(Comparator.comparing(Dump::getId).reversed())
+                .collect(Collectors.toList());
+        long bobShards = bobs.stream().map(dump -> shards.shardFor(dump.getPublicId())).distinct().count();
+
+        assertThat(userShardRepository.findByUsername("bob")).hasSize((int) bobShards);
+        assertThat(publicIds(dumpRepository.findFirst100ByUsernameIgnoreCaseOrderByIdDesc("BOB"))).isEqualTo(publicIds(bobs));
+        assertThat(dumpRepository.findFirst10ByUsernameIgnoreCaseOrderByIdDesc("nobody")).isEmpty();
+
+        long scatters = shards.getShards().stream().mapToLong(Shard::getScatters).sum();
+        dumpRepository.findFirst10ByUsernameIgnoreCaseOrderByIdDesc("nobody");
+        assertThat(shards.getShards().stream().mapToLong(Shard::getScatters).sum()).isEqualTo(scatters);
+    }
+
+
+    /**
+     * Tests that misplaced Dumps are found with fallback reads on, and moved to their shard by the rebalancer
+     * @throws Exception
+     */
+    @Test
+    public void testRebalance() throws Exception {
+        Dump placed = dump("placed", "carol", PUBLIC);
+        dumpRepository.save(placed);
+
+        // one Dump from before sharding, one left on a shard which no longer owns it
+        insert(home, 1000001, "legacy", "carol");
+        Shard owner = shards.shardFor("stray");
+        Shard wrong = shards.getShards().stream().filter(shard -> shard != owner).findFirst().get();
+        insert(new JdbcTemplate(wrong.getDataSource()), 1000002, "stray", "carol");
+
+        assertThat(dumpRepository.findByPublicId("legacy")).isNull();
+
+        ReflectionTestUtils.setField(shardingAspect, "fallbackReads", true);
+        try {
+            assertThat(dumpRepository.findByPublicId("legacy").getId()).isEqualTo(1000001);
+            assertThat(dumpRepository.findHeaderByPublicId("stray")).isNotNull();
+            assertThat(dumpRepository.findFirst100ByUsernameIgnoreCaseOrderByIdDesc("carol")).hasSize(3);
+        }
+        finally {
+            ReflectionTestUtils.setField(shardingAspect, "fallbackReads", false);
+        }
+
+        assertThat(rebalancer.rebalance()).isEqualTo(2);
+        assertThat(rebalancer.rebalance()).isZero();
+
+        assertThat(home.queryForObject("select count(*) from dump", Integer.class)).isZero();
+        assertThat(count(owner, "stray")).isEqualTo(1);
+        assertThat(count(wrong, "stray")).isZero();
+
+        Dump legacy = dumpRepository.findByPublicId("legacy");
+        assertThat(legacy.getId()).isEqualTo(1000001);
+        assertThat(legacy.getContents()).isEqualTo("legacy contents");
+        assertThat(dumpRepository.findFirst100ByUsernameIgnoreCaseOrderByIdDesc("carol"))
+                .extracting(Dump::getPublicId).containsExactly("stray", "legacy", "placed");
+    }
+
+
+    private static Dump dump(String publicId, String username, Enumerations.Exposure exposure) {
+        Dump dump = new Dump();
+        dump.setPublicId(publicId);
+        dump.setUsername(username);
+        dump.setTitle(publicId);
+        dump.setContents(publicId + " contents");
+        dump.setExposure(exposure);
+        dump.setDateTime(new Date());
+        dump.setExpiration(new Date(0));
+        dump.setType("text");
+        dump.setViews(0);
+        return dump;
+    }
+
+    private static void insert(JdbcTemplate jdbc, int id, String publicId, String username) {
+        jdbc.update("insert into dump (id, public_id, username, username_lower, title, contents, exposure, views) values (?, ?, ?, ?, ?, ?, ?, 0)",
+                id, publicId, username, username.toLowerCase(), publicId, publicId + " contents", PUBLIC.ordinal());
+    }
+
+    private static int count(Shard shard, String publicId) {
+        return new JdbcTemplate(shard.getDataSource())
+                .queryForObject("select count(*) from dump where public_id = ?", Integer.class, publicId);
+    }
+
+    private static List<String> publicIds(Object[] dumps) {
+        return Arrays.stream(dumps).map(dump -> ((Dump) dump).getPublicId()).collect(Collectors.toList());
+    }
+
+    private static List<String> publicIds(List<Dump> dumps) {
+        return publicIds(dumps.toArray());
+    }
+}
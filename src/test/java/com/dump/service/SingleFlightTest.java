@@ -0,0 +1,129 @@
+package com.dump.service;
+
+import com.dump.service.loading.SingleFlight;
+import com.dump.service.objects.Dump;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+
+/**
+ * Tests coalescing of concurrent loads
+ */
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+
+    /**
+     * Tests that concurrent loads of one key run a single query and every caller gets its own copy
+     * @throws Exception
+     */
+    @Test
+    public void testCoalesce() throws Exception {
+        SingleFlight<String, Dump> flight = new SingleFlight<>(Dump::new);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Dump>> results = new ArrayList<>();
+
+        for(int i = 0; i < CALLERS; i++) {
+            results.add(pool.submit(() -> flight.load("aaaa", id -> {
+                queries.incrementAndGet();
+                await(release);
+
+                Dump dump = new Dump();
+                dump.setPublicId(id);
+                return dump;
+            })));
+        }
+
+        // hold the query until every other caller has joined it
+        long deadline = System.currentTimeMillis() + 5000;
+        while(flight.getCoalesced() < CALLERS - 1) {
+            if(System.currentTimeMillis() > deadline) {
+                fail("Callers did not join the running load");
+            }
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Map<Dump, Boolean> distinct = new IdentityHashMap<>();
+        for(Future<Dump> result : results) {
+            Dump dump = result.get(5, TimeUnit.SECONDS);
+            assertThat(dump.getPublicId()).isEqualTo("aaaa");
+            distinct.put(dump, true);
+        }
+        pool.shutdown();
+
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(flight.getLoads()).isEqualTo(1);
+        assertThat(distinct).hasSize(CALLERS);
+
+        // nothing is kept once the load finished
+        flight.load("aaaa", id -> null);
+        assertThat(flight.getLoads()).isEqualTo(2);
+    }
+
+
+    /**
+     * Tests that a failed load is rethrown to the callers waiting on it
+     * @throws Exception
+     */
+    @Test
+    public void testFailure() throws Exception {
+        SingleFlight<String, Dump> flight = new SingleFlight<>(Dump::new);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<Dump> leader = pool.submit(() -> flight.load("aaaa", id -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        started.await();
+
+        Future<Dump> follower = pool.submit(() -> flight.load("aaaa", id -> null));
+        while(flight.getCoalesced() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for(Future<Dump> result : Arrays.asList(leader, follower)) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Load did not fail");
+            }
+            catch(ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+            }
+        }
+        pool.shutdown();
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
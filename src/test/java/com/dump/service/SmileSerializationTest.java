@@ -0,0 +1,131 @@
+package com.dump.service;
+
+import com.dump.service.Enumerations.Exposure;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.serialization.Serialization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Round-trip tests for the binary Smile encoding
+ */
+public class SmileSerializationTest {
+
+    private final ObjectMapper smileMapper = Serialization.createSmileMapper();
+
+
+    /**
+     * Tests Dump round trip and that contents are embedded as raw, unescaped bytes
+     * @throws Exception
+     */
+    @Test
+    public void testDump() throws Exception {
+        Dump dump = dump("line \"one\"\n\tline \\two\\ é 😀\n");
+
+        byte[] payload = smileMapper.writeValueAsBytes(dump);
+        Dump decoded = smileMapper.readValue(payload, Dump.class);
+
+        assertDumpEquals(decoded, dump);
+        assertThat(indexOf(payload, dump.getContents().getBytes(StandardCharsets.UTF_8))).isGreaterThanOrEqualTo(0);
+    }
+
+
+    /**
+     * Tests round trip of large contents and of Dump arrays
+     * @throws Exception
+     */
+    @Test
+    public void testDumpArray() throws Exception {
+        StringBuilder large = new StringBuilder();
+        while(large.length() < 100000) {
+            large.append("log line with \"quotes\" and \\ backslashes\n");
+        }
+
+        Dump[] dumps = { dump(large.toString()), dump(""), new Dump() };
+
+        Dump[] decoded = smileMapper.readValue(smileMapper.writeValueAsBytes(dumps), Dump[].class);
+
+        assertThat(decoded).hasSize(3);
+        for(int i = 0; i < dumps.length; i++) {
+            assertDumpEquals(decoded[i], dumps[i]);
+        }
+    }
+
+
+    /**
+     * Tests User round trip with raw avatar bytes
+     * @throws Exception
+     */
+    @Test
+    public void testUser() throws Exception {
+        User user = new User();
+        user.setId(3);
+        user.setUsername("josh");
+        user.setEmail("josh@example.com");
+        user.setViews(12);
+        user.setJoined(new Date(1500000000000L));
+        user.setAvatar(new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, (byte) 0xFF });
+
+        byte[] payload = smileMapper.writeValueAsBytes(user);
+        User decoded = smileMapper.readValue(payload, User.class);
+
+        assertThat(decoded.getId()).isEqualTo(3);
+        assertThat(decoded.getUsername()).isEqualTo("josh");
+        assertThat(decoded.getEmail()).isEqualTo("josh@example.com");
+        assertThat(decoded.getViews()).isEqualTo(12);
+        assertThat(decoded.getJoined()).isEqualTo(user.getJoined());
+        assertThat(decoded.getAvatar()).isEqualTo(user.getAvatar());
+        assertThat(indexOf(payload, user.getAvatar())).isGreaterThanOrEqualTo(0);
+    }
+
+
+    private Dump dump(String contents) {
+        Dump dump = new Dump();
+        dump.setId(7);
+        dump.setPublicId("aaaa");
+        dump.setUsername("josh");
+        dump.setDateTime(new Date(1500000000000L));
+        dump.setExpiration(new Date(0));
+        dump.setExposure(Exposure.UNLISTED);
+        dump.setType("text");
+        dump.setViews(3);
+        dump.setTitle("title");
+        dump.setContents(contents);
+        dump.setContentHash("abc");
+        return dump;
+    }
+
+    private void assertDumpEquals(Dump actual, Dump expected) {
+        assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getPublicId()).isEqualTo(expected.getPublicId());
+        assertThat(actual.getUsername()).isEqualTo(expected.getUsername());
+        assertThat(actual.getDateTime()).isEqualTo(expected.getDateTime());
+        assertThat(actual.getExposure()).isEqualTo(expected.getExposure());
+        assertThat(actual.getExpiration()).isEqualTo(expected.getExpiration());
+        assertThat(actual.getType()).isEqualTo(expected.getType());
+        assertThat(actual.getViews()).isEqualTo(expected.getViews());
+        assertThat(actual.getTitle()).isEqualTo(expected.getTitle());
+        assertThat(actual.getContents()).isEqualTo(expected.getContents());
+        assertThat(actual.getContentHash()).isEqualTo(expected.getContentHash());
+    }
+
+    private int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for(int i = 0; i + needle.length <= haystack.length; i++) {
+            for(int j = 0; j < needle.length; j++) {
+                if(haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package com.dump.service;
+
+import com.dump.service.assets.StaticAssetCache;
+import com.dump.service.assets.StaticAssetHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Tests in-memory static asset serving
+ */
+public class StaticAssetHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StaticAssetCache cache;
+    private StaticAssetHandler handler;
+    private String bundle;
+
+    @Before
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 500; i++) {
+            sb.append("console.log('bundle line ").append(i).append("');\n");
+        }
+        bundle = sb.toString();
+
+        Files.write(folder.newFile("index.html").toPath(), "<html></html>".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.newFile("main.0123456789abcdef.bundle.js").toPath(), bundle.getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.newFile("main.0123456789abcdef.bundle.js.br").toPath(), new byte[] { 1, 2, 3 });
+
+        cache = new StaticAssetCache(folder.getRoot().toPath());
+        cache.start();
+        handler = new StaticAssetHandler(cache);
+    }
+
+    @After
+    public void teardown() {
+        cache.stop();
+    }
+
+
+    /**
+     * Tests encoding selection and immutable caching of fingerprinted bundles
+     * @throws Exception
+     */
+    @Test
+    public void testBundle() throws Exception {
+        MockHttpServletResponse response = get("main.0123456789abcdef.bundle.js", "gzip, deflate", null);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+        assertThat(response.getHeader("Cache-Control")).contains("immutable");
+        assertThat(gunzip(response.getContentAsByteArray())).isEqualTo(bundle);
+
+        response = get("main.0123456789abcdef.bundle.js", "gzip, br", null);
+        assertThat(response.getHeader("Content-Encoding")).isEqualTo("br");
+        assertThat(response.getContentAsByteArray()).containsExactly(1, 2, 3);
+
+        response = get("main.0123456789abcdef.bundle.js", "br;q=0", null);
+        assertThat(response.getHeader("Content-Encoding")).isNull();
+        assertThat(response.getContentAsString()).isEqualTo(bundle);
+
+        assertThat(get("missing.js", null, null).getStatus()).isEqualTo(404);
+    }
+
+
+    /**
+     * Tests revalidation of index.html with ETags
+     * @throws Exception
+     */
+    @Test
+    public void testIndexRevalidation() throws Exception {
+        MockHttpServletResponse response = get("index.html", null, null);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+        String etag = response.getHeader("ETag");
+
+        response = get("index.html", null, etag);
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+
+    /**
+     * Tests that reloading picks up changed files
+     * @throws Exception
+     */
+    @Test
+    public void testReload() throws Exception {
+        File index = new File(folder.getRoot(), "index.html");
+        Files.write(index.toPath(), "<html>v2</html>".getBytes(StandardCharsets.UTF_8));
+        cache.reload();
+
+        assertThat(get("index.html", null, null).getContentAsString()).isEqualTo("<html>v2</html>");
+    }
+
+
+    private MockHttpServletResponse get(String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + path);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, path);
+        if(acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        if(ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+        return response;
+    }
+
+    private String gunzip(byte[] data) throws Exception {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+        byte[] buffer = new byte[data.length * 20];
+        int total = 0;
+        int n;
+        while((n = in.read(buffer, total, buffer.length - total)) > 0) {
+            total += n;
+        }
+        return new String(buffer, 0, total, StandardCharsets.UTF_8);
+    }
+}
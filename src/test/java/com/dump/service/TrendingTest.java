@@ -0,0 +1,139 @@
+package com.dump.service;
+
+import com.dump.service.objects.TrendingSketch;
+import com.dump.service.repositories.TrendingSketchRepository;
+import com.dump.service.trending.Trending;
+import com.dump.service.trending.TrendingWindow;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static com.dump.service.Enumerations.Exposure.UNLISTED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+/**
+ * Tests the decayed trending windows and their exchange between nodes
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class TrendingTest {
+
+    private static final long HOUR = 3600000L;
+
+    @Autowired
+    private Trending trending;
+
+    @Autowired
+    private TrendingSketchRepository sketchRepository;
+
+
+    /**
+     * Tests that the heaviest Dumps of a long tailed stream are found, that old views count less than recent
+     * ones, and that windows of several nodes rank like one window of all their views
+     * @throws Exception
+     */
+    @Test
+    public void testWindow() throws Exception {
+        long now = 1500000000000L;
+        TrendingWindow window = new TrendingWindow("hour", HOUR, 40, now);
+
+        // dump0 to dump4 are heavy, thousands of others are viewed once or twice
+        for(int i = 0; i < 5000; i++) {
+            window.record("tail" + i, now);
+            if(i % 3 == 0) {
+                window.record("tail" + i, now);
+            }
+            if(i % 5 == 0) {
+                window.record("dump" + (i % 25 / 5), now);
+                window.record("dump" + (i % 25 / 5), now);
+            }
+        }
+
+        List<TrendingWindow.Trend> top = window.rank(Collections.emptyList(), now, 5);
+        assertThat(ids(top)).containsOnly("dump0", "dump1", "dump2", "dump3", "dump4");
+        assertThat(top.get(0).getScore()).isCloseTo(400, within(40.0));
+
+        // views an hour old count half
+        assertThat(window.rank(Collections.emptyList(), now + HOUR, 1).get(0).getScore()).isCloseTo(top.get(0).getScore() / 2, within(1.0));
+
+        TrendingWindow decayed = new TrendingWindow("hour", HOUR, 40, now);
+        for(int i = 0; i < 100; i++) {
+            decayed.record("old", now);
+        }
+        for(int i = 0; i < 40; i++) {
+            decayed.record("new", now + 2 * HOUR);
+        }
+        assertThat(ids(decayed.rank(Collections.emptyList(), now + 2 * HOUR, 2))).containsExactly("new", "old");
+
+        // far past the landmark the counts are rescaled, not overflowed
+        decayed.record("new", now + 100 * HOUR);
+        assertThat(decayed.rank(Collections.emptyList(), now + 100 * HOUR, 1).get(0).getScore()).isCloseTo(1, within(0.01));
+
+        // a Dump viewed a little on each node beats one viewed more on a single node
+        TrendingWindow a = new TrendingWindow("hour", HOUR, 40, now);
+        TrendingWindow b = new TrendingWindow("hour", HOUR, 40, now + 1000);
+        for(int i = 0; i < 30; i++) {
+            a.record("spread", now);
+            b.record("spread", now + 1000);
+        }
+        for(int i = 0; i < 50; i++) {
+            a.record("single", now);
+        }
+
+        List<TrendingWindow.Trend> merged = a.rank(Collections.singletonList(b.toBytes()), now + 1000, 2);
+        assertThat(ids(merged)).containsExactly("spread", "single");
+        assertThat(merged.get(0).getScore()).isCloseTo(60, within(0.5));
+
+        // garbage from another node is left out
+        assertThat(ids(a.rank(Collections.singletonList(new byte[] { 1, 2 }), now, 2))).containsExactly("single", "spread");
+    }
+
+
+    /**
+     * Tests that only public Dumps trend, and that the windows other nodes wrote are merged by the exchange
+     * @throws Exception
+     */
+    @Test
+    public void testExchange() throws Exception {
+        long now = System.currentTimeMillis();
+
+        for(int i = 0; i < 3000; i++) {
+            trending.record("local", PUBLIC);
+            trending.record("unlisted", UNLISTED);
+        }
+
+        TrendingWindow other = new TrendingWindow("hour", HOUR, 40, now);
+        for(int i = 0; i < 6000; i++) {
+            other.record("remote", now);
+        }
+        sketchRepository.save(new TrendingSketch("other-node", "hour", now, other.toBytes()));
+        sketchRepository.save(new TrendingSketch("dead-node", "hour", now - 30 * HOUR, other.toBytes()));
+
+        trending.exchange();
+
+        // other tests sharing the context view a few Dumps too, though far fewer times
+        assertThat(ids(trending.top("hour", 2))).containsExactly("remote", "local");
+        assertThat(ids(trending.top("hour", 10))).doesNotContain("unlisted");
+        assertThat(ids(trending.top("day", 10))).contains("local").doesNotContain("remote");
+        assertThat(ids(trending.top("hour", 1))).containsExactly("remote");
+        assertThat(trending.top("week", 10)).isNull();
+
+        // this node's windows were written for the others, the dead node's expired
+        assertThat(sketchRepository.findAll()).extracting("period").contains("hour", "day");
+        assertThat(sketchRepository.findOne("dead-node/hour")).isNull();
+    }
+
+
+    private static List<String> ids(List<TrendingWindow.Trend> trends) {
+        return trends.stream().map(TrendingWindow.Trend::getPublicId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,184 @@
+package com.dump.service;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.repositories.ViewerSketchRepository;
+import com.dump.service.utils.Hashing;
+import com.dump.service.views.HyperLogLog;
+import com.dump.service.views.UniqueViewers;
+import com.dump.service.views.ViewCounter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+/**
+ * Tests the HyperLogLog sketch and unique viewer counting against an embedded database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UniqueViewersTest {
+
+    @Autowired
+    private ViewCounter viewCounter;
+
+    @Autowired
+    private UniqueViewers uniqueViewers;
+
+    @Autowired
+    private ViewerSketchRepository sketchRepository;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    /**
+     * Tests the estimate at several cardinalities, that repeats aren't counted, and that sketches merge into
+     * the sketch of their union and survive serialization
+     * @throws Exception
+     */
+    @Test
+    public void testSketch() throws Exception {
+        HyperLogLog sketch = new HyperLogLog();
+        assertThat(sketch.isEmpty()).isTrue();
+        assertThat(sketch.estimate()).isZero();
+
+        for(int n : new int[] { 10, 1000, 100000 }) {
+            HyperLogLog counted = new HyperLogLog();
+            for(int i = 0; i < n; i++) {
+                counted.offer(Hashing.hash64("viewer" + i));
+                counted.offer(Hashing.hash64("viewer" + i));
+            }
+            assertThat((double) counted.estimate()).isCloseTo(n, within(n * 0.05 + 1));
+        }
+
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for(int i = 0; i < 30000; i++) {
+            a.offer(Hashing.hash64("viewer" + i));
+            b.offer(Hashing.hash64("viewer" + (i + 20000)));
+        }
+        a.merge(b);
+        assertThat((double) a.estimate()).isCloseTo(50000, within(2500.0));
+        assertThat(a.toBytes()).hasSize(2 + 4096);
+        assertThat(HyperLogLog.fromBytes(a.toBytes()).estimate()).isEqualTo(a.estimate());
+
+        // few viewers stay sparse
+        HyperLogLog few = new HyperLogLog();
+        for(int i = 0; i < 50; i++) {
+            few.offer(Hashing.hash64("viewer" + i));
+        }
+        assertThat(few.toBytes().length).isLessThan(200);
+        assertThat(HyperLogLog.fromBytes(few.toBytes()).estimate()).isEqualTo(few.estimate());
+    }
+
+
+    /**
+     * Tests that viewers are counted once per Dump and once per owner, and merged into the stored sketches
+     * by every flush
+     * @throws Exception
+     */
+    @Test
+    public void testFlush() throws Exception {
+        User user = new User();
+        user.setUsername("Viewed-User");
+        user.setViews(0);
+        userRepository.save(user);
+
+        dumpRepository.save(dump("viewed-a", "Viewed-User"));
+        dumpRepository.save(dump("viewed-b", "viewed-user"));
+
+        for(int i = 0; i < 500; i++) {
+            long viewer = UniqueViewers.fingerprint("10.0.0." + i, "Mozilla/5.0");
+            viewCounter.record("viewed-a", "Viewed-User", PUBLIC, viewer);
+            viewCounter.record("viewed-a", "Viewed-User", PUBLIC, viewer);
+            viewCounter.record("viewed-b", "viewed-user", PUBLIC, viewer);
+        }
+        uniqueViewers.flush();
+
+        assertThat(uniqueViews("dump", "public_id", "viewed-a")).isBetween(475, 525);
+        assertThat(uniqueViews("dump", "public_id", "viewed-b")).isBetween(475, 525);
+        assertThat(uniqueViews("user", "username_lower", "viewed-user")).isBetween(475, 525);
+        assertThat(jdbcTemplate.queryForObject("select views from dump where public_id = 'viewed-a'", Integer.class)).isEqualTo(1000);
+
+        // returning viewers aren't counted again, new ones are
+        int before = uniqueViews("dump", "public_id", "viewed-a");
+        for(int i = 0; i < 500; i++) {
+            viewCounter.record("viewed-a", "Viewed-User", PUBLIC, UniqueViewers.fingerprint("10.0.0." + i, "Mozilla/5.0"));
+        }
+        uniqueViewers.flush();
+        assertThat(uniqueViews("dump", "public_id", "viewed-a")).isEqualTo(before);
+
+        for(int i = 0; i < 500; i++) {
+            viewCounter.record("viewed-a", "Viewed-User", PUBLIC, UniqueViewers.fingerprint("10.0.1." + i, "Mozilla/5.0"));
+        }
+        uniqueViewers.flush();
+        assertThat(uniqueViews("dump", "public_id", "viewed-a")).isBetween(950, 1050);
+        assertThat(uniqueViews("user", "username_lower", "viewed-user")).isBetween(950, 1050);
+
+        assertThat(sketchRepository.findOne("dump:viewed-b").getSketch().length).isLessThan(4100);
+        assertThat(dumpRepository.findByPublicId("viewed-a").getUniqueViews()).isBetween(950, 1050);
+    }
+
+
+    /**
+     * Tests that deleting a Dump drops its stored sketch and the viewers counted since the last flush, but not
+     * those of its owner
+     * @throws Exception
+     */
+    @Test
+    public void testDelete() throws Exception {
+        dumpRepository.save(dump("deleted-a", "Deleted-User"));
+
+        viewCounter.record("deleted-a", "Deleted-User", PUBLIC, UniqueViewers.fingerprint("10.0.2.1", "Mozilla/5.0"));
+        uniqueViewers.flush();
+        assertThat(sketchRepository.findOne("dump:deleted-a")).isNotNull();
+
+        viewCounter.record("deleted-a", "Deleted-User", PUBLIC, UniqueViewers.fingerprint("10.0.2.2", "Mozilla/5.0"));
+        viewCounter.delete("deleted-a");
+        assertThat(sketchRepository.findOne("dump:deleted-a")).isNull();
+
+        // the pending viewer is gone too, the next flush doesn't store the sketch again
+        uniqueViewers.flush();
+        assertThat(sketchRepository.findOne("dump:deleted-a")).isNull();
+        assertThat(sketchRepository.findOne("user:deleted-user")).isNotNull();
+
+        // deleting a Dump without a sketch is fine
+        viewCounter.delete("deleted-b");
+    }
+
+
+    private int uniqueViews(String table, String column, String key) {
+        return jdbcTemplate.queryForObject("select unique_views from " + table + " where " + column + " = ?", Integer.class, key);
+    }
+
+    private static Dump dump(String publicId, String username) {
+        Dump dump = new Dump();
+        dump.setPublicId(publicId);
+        dump.setUsername(username);
+        dump.setTitle(publicId);
+        dump.setContents("contents");
+        dump.setExposure(PUBLIC);
+        dump.setDateTime(new Date());
+        dump.setExpiration(new Date(0));
+        dump.setViews(0);
+        return dump;
+    }
+}
@@ -0,0 +1,223 @@
+package com.dump.service;
+
+import com.dump.service.caching.EntityCaches;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.tracing.QueryTrace;
+import com.dump.service.warmup.CacheWarmer;
+import com.dump.service.warmup.KeySnapshot;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static com.dump.service.Enumerations.Exposure.PUBLIC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Tests the startup cache warm-up, the cache key snapshot and the readiness check
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class WarmupTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @Autowired
+    private EntityCaches entityCaches;
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private MockMvc mockMvc;
+
+
+    @Before
+    public void setUp() throws Exception {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!cacheWarmer.isReady()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+
+    /**
+     * Tests that a snapshot reads back as written and that damaged or missing ones are told apart
+     * @throws Exception
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("keys");
+        assertThat(KeySnapshot.read(path)).isNull();
+
+        new KeySnapshot(Arrays.asList("a", "bb", "ünï"), Arrays.asList(1, -2, Integer.MAX_VALUE)).write(path);
+
+        KeySnapshot read = KeySnapshot.read(path);
+        assertThat(read.getDumps()).containsExactly("a", "bb", "ünï");
+        assertThat(read.getUsers()).containsExactly(1, -2, Integer.MAX_VALUE);
+        assertThat(Files.exists(path.resolveSibling("keys.tmp"))).isFalse();
+
+        Files.write(path, new byte[] { 1, 2, 3 });
+        try {
+            KeySnapshot.read(path);
+            fail("Read a damaged snapshot");
+        }
+        catch(IOException expected) {
+        }
+    }
+
+
+    /**
+     * Tests that the keys cached before a restart are cached again by warm-up from the snapshot, along with
+     * the recent public Dumps and their owners
+     * @throws Exception
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+        User owner = new User();
+        owner.setUsername("warm-owner");
+        owner.setViews(0);
+        Integer ownerId = userRepository.save(owner).getId();
+
+        User reader = new User();
+        reader.setUsername("warm-reader");
+        reader.setViews(0);
+        Integer readerId = userRepository.save(reader).getId();
+
+        dumpRepository.save(dump("warm-recent", "warm-owner", PUBLIC));
+        dumpRepository.save(dump("warm-old", "someone", Enumerations.Exposure.UNLISTED));
+
+        Path path = folder.getRoot().toPath().resolve("keys");
+        ReflectionTestUtils.setField(cacheWarmer, "snapshot", path.toString());
+
+        try {
+            // the previous process looked these up
+            dumpRepository.findKeyByPublicId("warm-old");
+            userRepository.findByIdIn(Collections.singletonList(readerId));
+            cacheWarmer.writeSnapshot();
+
+            KeySnapshot written = KeySnapshot.read(path);
+            assertThat(written.getDumps()).contains("warm-old");
+            assertThat(written.getUsers()).contains(readerId);
+
+            evictAll();
+            assertThat(statements(() -> dumpRepository.findKeyByPublicId("warm-old"))).isPositive();
+            evictAll();
+
+            cacheWarmer.warmUp();
+
+            assertThat(statements(() -> dumpRepository.findKeyByPublicId("warm-old"))).isZero();
+            assertThat(statements(() -> dumpRepository.findKeyByPublicId("warm-recent"))).isZero();
+            assertThat(statements(() -> userRepository.findByIdIn(Collections.singletonList(readerId)))).isZero();
+
+            // the owner's principal, as authorization looks it up
+            assertThat(statements(() -> userRepository.findById(ownerId))).isZero();
+        }
+        finally {
+            ReflectionTestUtils.setField(cacheWarmer, "snapshot", "");
+            dumpRepository.delete(dumpRepository.findByPublicId("warm-recent"));
+            dumpRepository.delete(dumpRepository.findByPublicId("warm-old"));
+            entityCaches.evictDumps();
+        }
+    }
+
+
+    /**
+     * Tests that the instance reports ready only once warm-up is done
+     * @throws Exception
+     */
+    @Test
+    public void testReadiness() throws Exception {
+        mockMvc.perform(get("/api/ready"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("ready"));
+
+        ReflectionTestUtils.setField(cacheWarmer, "ready", false);
+        try {
+            mockMvc.perform(get("/api/ready")).andExpect(status().isServiceUnavailable());
+        }
+        finally {
+            ReflectionTestUtils.setField(cacheWarmer, "ready", true);
+        }
+    }
+
+
+    private void evictAll() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+
+        entityCaches.evictDumps();
+        sessionFactory.getCache().evictEntityRegion(User.class);
+        sessionFactory.getCache().evictQueryRegions();
+    }
+
+    private static Dump dump(String publicId, String username, Enumerations.Exposure exposure) {
+        Dump dump = new Dump();
+        dump.setPublicId(publicId);
+        dump.setUsername(username);
+        dump.setTitle(publicId);
+        dump.setContents("contents");
+        dump.setExposure(exposure);
+        dump.setExpiration(new Date(0));
+        dump.setDateTime(new Date());
+        dump.setViews(0);
+        return dump;
+    }
+
+    /**
+     * @return  Number of statements a lookup ran
+     */
+    private static int statements(Supplier<?> lookup) {
+        QueryTrace trace = new QueryTrace();
+        QueryTrace previous = QueryTrace.attach(trace);
+
+        try {
+            lookup.get();
+        }
+        finally {
+            QueryTrace.attach(previous);
+        }
+
+        return trace.getCount();
+    }
+}
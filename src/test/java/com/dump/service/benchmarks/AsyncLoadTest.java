@@ -0,0 +1,89 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.metrics.LatencyHistogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Load test comparing blocking and async handling of DB-bound endpoints.
+ *
+ * DumpAPIController runs against repositories that sleep to simulate a slow database, with a small Tomcat
+ * worker pool. Many clients hammer /view while a few probes hit /report, which never touches the database.
+ * In blocking mode the probes queue behind DB-bound requests for a worker thread; in async mode they don't.
+ *
+ * Run with: java -cp target/test-classes:target/classes:[test classpath] com.dump.service.benchmarks.AsyncLoadTest
+ * Optional arguments: clients, seconds, simulated DB latency in ms (defaults 256 10 50)
+ */
+public class AsyncLoadTest {
+
+    private static final int TOMCAT_THREADS = 32;
+    private static final int PROBES = 4;
+
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long dbLatency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        MockedApplication.dbLatency = dbLatency;
+
+        System.out.printf("clients=%d seconds=%d dbLatency=%dms tomcatThreads=%d%n", clients, seconds, dbLatency, TOMCAT_THREADS);
+        System.out.printf("%-9s %10s %10s %10s %10s %10s %12s %12s%n",
+                "mode", "view rps", "view p50", "view p99", "view p999", "errors", "probe p50", "probe p99");
+
+        for(boolean async : new boolean[] { false, true }) {
+            run(async, clients, seconds);
+        }
+
+        System.exit(0);
+    }
+
+
+    private static void run(boolean async, int clients, int seconds) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MockedApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.max-threads=" + TOMCAT_THREADS,
+                        "dump.async.enabled=" + async,
+                        "dump.executors.persistence.threads=" + TOMCAT_THREADS,
+                        "dump.executors.persistence.queue=4096",
+                        "dump.static.location=target/no-static",
+                        "logging.level.root=WARN")
+                .run();
+
+        int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        String view = "http://localhost:" + port + "/api/dumps/view/aaaa";
+        String probe = "http://localhost:" + port + "/api/dumps/report?id=aaaa&reason=load";
+
+        // warm up
+        HttpLoad.run(view, 16, System.nanoTime() + TimeUnit.SECONDS.toNanos(2), new LatencyHistogram(), new AtomicLong());
+
+        LatencyHistogram viewLatency = new LatencyHistogram();
+        LatencyHistogram probeLatency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> threads = new ArrayList<>();
+        threads.addAll(HttpLoad.start(view, clients, deadline, viewLatency, errors, 0));
+        threads.addAll(HttpLoad.start(probe, PROBES, deadline, probeLatency, errors, 100));
+        HttpLoad.join(threads);
+
+        System.out.printf("%-9s %10.0f %9.1fms %9.1fms %9.1fms %10d %11.1fms %11.1fms%n",
+                async ? "async" : "blocking",
+                viewLatency.getCount() / (double) seconds,
+                HttpLoad.millis(viewLatency.valueAtQuantile(0.5)),
+                HttpLoad.millis(viewLatency.valueAtQuantile(0.99)),
+                HttpLoad.millis(viewLatency.valueAtQuantile(0.999)),
+                errors.get(),
+                HttpLoad.millis(probeLatency.valueAtQuantile(0.5)),
+                HttpLoad.millis(probeLatency.valueAtQuantile(0.99)));
+
+        context.close();
+    }
+}
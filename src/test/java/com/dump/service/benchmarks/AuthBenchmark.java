@@ -0,0 +1,79 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.objects.User;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.utils.Auth;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures Auth.verifyAuthorization, which parses and verifies the JWT of every authenticated request.
+ * The user lookup is a stub, so this is the parsing and signature cost alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String KEY = "benchmark-signing-key";
+
+    private Auth auth;
+    private HttpHeaders valid;
+    private HttpHeaders forged;
+
+    @Setup
+    public void setup() {
+        User user = new User();
+        user.setId(42);
+        user.setUsername("josh");
+        user.setPassword("secret");
+
+        UserRepository users = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { UserRepository.class },
+                (proxy, method, args) -> method.getName().equals("findById") ? user : null);
+
+        auth = new Auth();
+        ReflectionTestUtils.setField(auth, "userRepository", users);
+        ReflectionTestUtils.setField(auth, "readYourWrites", new ReadYourWrites());
+        ReflectionTestUtils.setField(auth, "env", new MockEnvironment().withProperty("dump.jwt-key", KEY));
+
+        valid = bearer(KEY);
+        forged = bearer("some-other-key");
+    }
+
+    @Benchmark
+    public User verifyValid() throws Exception {
+        return auth.verifyAuthorization(valid);
+    }
+
+    @Benchmark
+    public User verifyForged() throws Exception {
+        return auth.verifyAuthorization(forged);
+    }
+
+
+    private static HttpHeaders bearer(String key) {
+        String jwt = Jwts.builder()
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, key)
+                .compact();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("authorization", "Bearer " + jwt);
+        return headers;
+    }
+}
@@ -0,0 +1,122 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.admission.ConcurrencyLimiter;
+import com.dump.service.controllers.UploadController;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.executors.BoundedExecutor;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.UserAvatarRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.utils.Auth;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the UploadController profile upload with an avatar: PNG decode, resize to 150x150 and PNG encode on
+ * the compute executor. Authorization and the save are stubs, and the handler runs on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvatarResizeBenchmark {
+
+    @Param({"256", "1024", "2048"})
+    public int sourceSize;
+
+    private UploadController controller;
+    private BoundedExecutor computeExecutor;
+    private HttpHeaders headers;
+    private MockMultipartFile avatar;
+
+    @Setup
+    public void setup() throws IOException {
+        UserRepository users = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { UserRepository.class },
+                (proxy, method, args) -> method.getName().equals("save") ? args[0] : null);
+        UserAvatarRepository avatars = (UserAvatarRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { UserAvatarRepository.class },
+                (proxy, method, args) -> method.getName().equals("save") ? args[0] : null);
+
+        Auth auth = new Auth() {
+            @Override
+            public User verifyAuthorization(HttpHeaders headers, boolean preservePassword) {
+                User user = new User();
+                user.setUsername("josh");
+                return user;
+            }
+        };
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.init();
+
+        AsyncResponses async = new AsyncResponses();
+        ReflectionTestUtils.setField(async, "limiter", limiter);
+        ReflectionTestUtils.setField(async, "enabled", false);
+
+        computeExecutor = new BoundedExecutor("compute", Runtime.getRuntime().availableProcessors(), 64, 1000);
+
+        controller = new UploadController();
+        ReflectionTestUtils.setField(controller, "async", async);
+        ReflectionTestUtils.setField(controller, "computeExecutor", computeExecutor);
+        ReflectionTestUtils.setField(controller, "authUtil", auth);
+        ReflectionTestUtils.setField(controller, "userRepository", users);
+        ReflectionTestUtils.setField(controller, "userAvatarRepository", avatars);
+        ReflectionTestUtils.setField(controller, "readYourWrites", new ReadYourWrites());
+
+        headers = new HttpHeaders();
+        avatar = new MockMultipartFile("avatar", "avatar.png", "image/png", png(sourceSize));
+
+        // make sure the resize path, not the error path, is measured
+        if(((User) upload().getBody()).getAvatar() == null) {
+            throw new IllegalStateException("Avatar was not resized");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        computeExecutor.shutdownGracefully();
+    }
+
+    @Benchmark
+    public ResponseEntity upload() {
+        return (ResponseEntity) controller.avatar(headers, avatar, "josh@example.com", "https://example.com", null).getResult();
+    }
+
+
+    /**
+     * Generates a photo-like PNG, a gradient with noise so it doesn't compress to nothing
+     */
+    private static byte[] png(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Random rnd = new Random(1);
+
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                int r = (x * 255 / size + rnd.nextInt(32)) & 0xFF;
+                int g = (y * 255 / size + rnd.nextInt(32)) & 0xFF;
+                int b = ((x + y) * 127 / size + rnd.nextInt(32)) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
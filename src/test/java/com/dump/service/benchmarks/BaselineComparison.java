@@ -0,0 +1,135 @@
+package com.dump.service.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Compares a JMH JSON result file with a baseline and flags regressions. A result regresses when it is worse
+ * than the baseline by more than the threshold and the two error intervals don't overlap, so noisy
+ * benchmarks don't fail the build. Allocation per operation (from -prof gc) is compared the same way.
+ *
+ * Run with: java -cp [test classpath] com.dump.service.benchmarks.BaselineComparison baseline.json result.json [threshold %]
+ * If the baseline doesn't exist the result is saved as the new baseline. Exits with 1 on regressions.
+ */
+public class BaselineComparison {
+
+    private static final String ALLOCATION = "·gc.alloc.rate.norm";
+
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("usage: BaselineComparison baseline.json result.json [threshold %]");
+            System.exit(2);
+        }
+
+        File baselineFile = new File(args[0]);
+        File resultFile = new File(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        if(!baselineFile.exists()) {
+            Files.copy(resultFile.toPath(), baselineFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("No baseline, saved " + resultFile + " as " + baselineFile);
+            return;
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(mapper.readTree(baselineFile));
+        Map<String, JsonNode> result = index(mapper.readTree(resultFile));
+
+        int regressions = 0;
+        System.out.printf("%-70s %18s %18s %9s%n", "benchmark", "baseline", "current", "change");
+
+        for(Map.Entry<String, JsonNode> entry : result.entrySet()) {
+            JsonNode old = baseline.get(entry.getKey());
+            if(old == null) {
+                System.out.printf("%-70s %18s %18s %9s%n", entry.getKey(), "-", score(entry.getValue().get("primaryMetric")), "new");
+                continue;
+            }
+
+            boolean higherIsBetter = entry.getValue().get("mode").asText().equals("thrpt");
+            regressions += compare(entry.getKey(), old.get("primaryMetric"), entry.getValue().get("primaryMetric"), higherIsBetter, threshold);
+
+            JsonNode oldAllocation = old.path("secondaryMetrics").get(ALLOCATION);
+            JsonNode allocation = entry.getValue().path("secondaryMetrics").get(ALLOCATION);
+            if(oldAllocation != null && allocation != null) {
+                regressions += compare(entry.getKey() + " alloc", oldAllocation, allocation, false, threshold);
+            }
+        }
+
+        for(String missing : baseline.keySet()) {
+            if(!result.containsKey(missing)) {
+                System.out.printf("%-70s %18s %18s %9s%n", missing, score(baseline.get(missing).get("primaryMetric")), "-", "gone");
+            }
+        }
+
+        if(regressions > 0) {
+            System.out.println(regressions + " regression(s) over " + Math.round(threshold * 100) + "%");
+            System.exit(1);
+        }
+
+        System.out.println("No regressions over " + Math.round(threshold * 100) + "%");
+    }
+
+
+    /**
+     * Prints one comparison line
+     * @return  1 if it regressed, 0 otherwise
+     */
+    private static int compare(String name, JsonNode old, JsonNode current, boolean higherIsBetter, double threshold) {
+        double before = old.get("score").asDouble();
+        double after = current.get("score").asDouble();
+        double change = before == 0 ? 0 : (after - before) / before;
+        double worse = higherIsBetter ? -change : change;
+
+        boolean overlap = higherIsBetter
+                ? after + error(current) >= before - error(old)
+                : after - error(current) <= before + error(old);
+        boolean regressed = worse > threshold && !overlap;
+
+        System.out.printf("%-70s %18s %18s %+8.1f%%%s%n", name, score(old), score(current), change * 100,
+                regressed ? "  REGRESSION" : "");
+
+        return regressed ? 1 : 0;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String score(JsonNode metric) {
+        return String.format("%.3f %s", metric.get("score").asDouble(), metric.get("scoreUnit").asText());
+    }
+
+    /**
+     * Keys results by benchmark, mode and parameters
+     */
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> index = new LinkedHashMap<>();
+
+        for(JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText()
+                    .replace("com.dump.service.benchmarks.", ""));
+            key.append(' ').append(result.get("mode").asText());
+
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while(params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+
+            index.put(key.toString(), result);
+        }
+
+        return index;
+    }
+}
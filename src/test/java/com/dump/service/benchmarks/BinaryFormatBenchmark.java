@@ -0,0 +1,68 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.serialization.Serialization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares encode and decode time of Dump lists in JSON and in the binary Smile encoding.
+ * Payload sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    @Param({"1024", "65536"})
+    public int contentSize;
+
+    private ObjectMapper json;
+    private ObjectMapper smile;
+    private Dump[] dumps;
+    private byte[] jsonPayload;
+    private byte[] smilePayload;
+
+    @Setup
+    public void setup() throws IOException {
+        json = Serialization.createMapper();
+        smile = Serialization.createSmileMapper();
+
+        dumps = new Dump[10];
+        for(int i = 0; i < dumps.length; i++) {
+            dumps[i] = Corpus.dump("dump" + i, contentSize, new Random(i));
+        }
+
+        jsonPayload = json.writeValueAsBytes(dumps);
+        smilePayload = smile.writeValueAsBytes(dumps);
+        System.out.printf("%ncontentSize=%d json=%d bytes smile=%d bytes%n", contentSize, jsonPayload.length, smilePayload.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return json.writeValueAsBytes(dumps);
+    }
+
+    @Benchmark
+    public byte[] encodeSmile() throws IOException {
+        return smile.writeValueAsBytes(dumps);
+    }
+
+    @Benchmark
+    public Dump[] decodeJson() throws IOException {
+        return json.readValue(jsonPayload, Dump[].class);
+    }
+
+    @Benchmark
+    public Dump[] decodeSmile() throws IOException {
+        return smile.readValue(smilePayload, Dump[].class);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.Enumerations.Exposure;
+import com.dump.service.objects.Dump;
+
+import java.util.Date;
+import java.util.Random;
+
+
+/**
+ * Synthetic data shared by the benchmarks
+ */
+public class Corpus {
+
+    private static final String[] WORDS = {
+            "INFO", "DEBUG", "ERROR", "at", "com.dump.service", "Exception", "null", "\"quoted\"",
+            "\t", "timeout", "connection", "refused", "{", "}", "=", "200", "GET", "/api/dumps"
+    };
+
+    private Corpus() {}
+
+
+    /**
+     * Generates log-like text
+     * @param size  Approximate number of characters
+     * @param rnd   Random source
+     * @return  Text
+     */
+    public static String text(int size, Random rnd) {
+        StringBuilder sb = new StringBuilder(size + 32);
+        while(sb.length() < size) {
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+            sb.append(rnd.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+
+
+    /**
+     * Generates a public Dump
+     * @param publicId  Public ID
+     * @param size      Contents size in characters
+     * @param rnd       Random source
+     * @return  Dump
+     */
+    public static Dump dump(String publicId, int size, Random rnd) {
+        Dump dump = new Dump();
+        dump.setId(rnd.nextInt(1000000));
+        dump.setPublicId(publicId);
+        dump.setUsername("josh");
+        dump.setDateTime(new Date());
+        dump.setExpiration(new Date(0));
+        dump.setExposure(Exposure.PUBLIC);
+        dump.setType("text");
+        dump.setViews(rnd.nextInt(1000));
+        dump.setTitle("benchmark dump " + publicId);
+        dump.setContents(text(size, rnd));
+        return dump;
+    }
+}
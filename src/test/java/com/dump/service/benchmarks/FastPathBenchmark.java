@@ -0,0 +1,74 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.fastpath.FastPathServer;
+import com.dump.service.metrics.LatencyHistogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Compares requests per second and latency of raw downloads through Spring MVC and through the NIO fast path.
+ *
+ * Both listeners run in one JVM against the same in-memory repositories, so the difference is the cost of
+ * the request handling stack. Each path is measured on its own after a warm-up.
+ *
+ * Run with: java -cp target/test-classes:target/classes:[test classpath] com.dump.service.benchmarks.FastPathBenchmark
+ * Optional arguments: clients, seconds (defaults 64 10). Pass -Dasync=false to measure blocking MVC handlers.
+ */
+public class FastPathBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        MockedApplication.dbLatency = 0;
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MockedApplication.class)
+                .properties(
+                        "server.port=0",
+                        "dump.fastpath.enabled=true",
+                        "dump.fastpath.port=0",
+                        "dump.async.enabled=" + System.getProperty("async", "true"),
+                        "dump.executors.persistence.queue=4096",
+                        "dump.static.location=target/no-static",
+                        "logging.level.root=WARN")
+                .run();
+
+        int mvcPort = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        int fastPort = context.getBean(FastPathServer.class).getPort();
+        String path = "/api/dumps/view/aaaa?download=true";
+
+        System.out.printf("clients=%d seconds=%d%n", clients, seconds);
+        System.out.printf("%-9s %10s %10s %10s %10s %10s%n", "path", "rps", "p50", "p99", "p999", "errors");
+
+        for(int round = 0; round < 2; round++) {
+            measure("mvc", "http://localhost:" + mvcPort + path, clients, seconds, round == 1);
+            measure("fastpath", "http://localhost:" + fastPort + path, clients, seconds, round == 1);
+        }
+
+        context.close();
+        System.exit(0);
+    }
+
+
+    private static void measure(String name, String url, int clients, int seconds, boolean report) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+
+        // the first round only warms up both paths
+        HttpLoad.run(url, clients, System.nanoTime() + TimeUnit.SECONDS.toNanos(report ? seconds : 3), latency, errors);
+
+        if(report) {
+            System.out.printf("%-9s %10.0f %9.2fms %9.2fms %9.2fms %10d%n",
+                    name,
+                    latency.getCount() / (double) seconds,
+                    HttpLoad.millis(latency.valueAtQuantile(0.5)),
+                    HttpLoad.millis(latency.valueAtQuantile(0.99)),
+                    HttpLoad.millis(latency.valueAtQuantile(0.999)),
+                    errors.get());
+        }
+    }
+}
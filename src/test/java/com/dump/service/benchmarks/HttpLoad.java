@@ -0,0 +1,113 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Closed-loop HTTP load generator for the load tests. Each client thread sends one request at a time over
+ * a keep-alive connection and records the latency of every response.
+ */
+public class HttpLoad {
+
+    private HttpLoad() {}
+
+
+    /**
+     * Starts client threads which run until a deadline
+     * @param url       URL to request
+     * @param clients   Number of client threads
+     * @param deadline  System.nanoTime() at which clients stop
+     * @param latency   Histogram to record latencies into
+     * @param errors    Counter of failed or non-200 requests
+     * @param pause     Milliseconds each client waits between requests
+     * @return  Started threads
+     */
+    public static List<Thread> start(String url, int clients, long deadline, LatencyHistogram latency, AtomicLong errors, long pause) {
+        List<Thread> threads = new ArrayList<>();
+
+        for(int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+
+                while(System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+
+                    try {
+                        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                        connection.setReadTimeout(30000);
+
+                        if(connection.getResponseCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+
+                        try(InputStream in = connection.getInputStream()) {
+                            while(in.read(buffer) > 0) {
+                                // drain so the connection is reused
+                            }
+                        }
+
+                        latency.record(System.nanoTime() - start);
+
+                        if(pause > 0) {
+                            Thread.sleep(pause);
+                        }
+                    }
+                    catch(IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        return threads;
+    }
+
+
+    /**
+     * Runs clients until a deadline and waits for them
+     * @param url       URL to request
+     * @param clients   Number of client threads
+     * @param deadline  System.nanoTime() at which clients stop
+     * @param latency   Histogram to record latencies into
+     * @param errors    Counter of failed or non-200 requests
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void run(String url, int clients, long deadline, LatencyHistogram latency, AtomicLong errors) throws InterruptedException {
+        join(start(url, clients, deadline, latency, errors, 0));
+    }
+
+
+    /**
+     * Waits for client threads
+     * @param threads   Threads to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void join(List<Thread> threads) throws InterruptedException {
+        for(Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+
+    /**
+     * @param nanos Duration in nanoseconds
+     * @return  Duration in milliseconds
+     */
+    public static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
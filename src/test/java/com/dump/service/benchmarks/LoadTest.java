@@ -0,0 +1,427 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.ServiceApplication;
+import com.dump.service.metrics.LatencyHistogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * End-to-end load test of the real application. Boots ServiceApplication with the loadtest profile, which
+ * runs against an in-memory H2 database seeded by LoadTestCorpus, then replays a weighted mix of traffic
+ * from closed-loop clients in the same JVM.
+ *
+ * Every endpoint of the mix is first run on its own, so GC time and allocation can be attributed to it,
+ * then the whole mix runs together. Allocation is read per thread from the JVM and excludes the client
+ * threads; threads which die mid-phase take their count with them, so it's a slight underestimate.
+ *
+ * Dumps are viewed with a skewed popularity (a few hot dumps, a long tail) and added with log-normal sizes.
+ *
+ * Run with: java -cp target/test-classes:target/classes:[test classpath] com.dump.service.benchmarks.LoadTest
+ * Optional arguments: clients, seconds per phase, mix (defaults 32 10 view=40,download=15,recent=15,search=10,add=10,login=10)
+ * Any further --name=value arguments override the loadtest profile, e.g. --dump.loadtest.dumps=50000
+ */
+public class LoadTest {
+
+    private static final String DEFAULT_MIX = "view=40,download=15,recent=15,search=10,add=10,login=10";
+    private static final int WARMUP_SECONDS = 5;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+
+    /**
+     * Kinds of request in the traffic mix
+     */
+    enum Endpoint {
+        VIEW, DOWNLOAD, RECENT, SEARCH, ADD, LOGIN
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : 10;
+        Map<Endpoint, Integer> mix = parseMix(args.length > 2 && !args[2].startsWith("--") ? args[2] : DEFAULT_MIX);
+
+        List<String> overrides = new ArrayList<>();
+        for(String arg : args) {
+            if(arg.startsWith("--")) {
+                overrides.add(arg);
+            }
+        }
+
+        // outside a Spring test, nothing stops the component scan from picking up MockedApplication's mocks
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ServiceApplication.class)
+                .profiles("loadtest")
+                .initializers(c -> c.getBeanFactory().registerSingleton(TestConfigurationFilter.class.getName(), new TestConfigurationFilter()))
+                .run(overrides.toArray(new String[0]));
+
+        int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+        Target target = new Target("http://localhost:" + port, context.getBean(LoadTestCorpus.class));
+
+        System.out.printf("clients=%d seconds=%d mix=%s%n", clients, seconds, mix);
+
+        run(target, mix, clients, WARMUP_SECONDS, null);
+
+        System.out.printf("%nisolated%n");
+        header();
+        for(Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            Map<Endpoint, Integer> single = new EnumMap<>(Endpoint.class);
+            single.put(entry.getKey(), 1);
+            run(target, single, clients, seconds, System.out);
+        }
+
+        System.out.printf("%nmixed%n");
+        header();
+        run(target, mix, clients, seconds, System.out);
+
+        context.close();
+        System.exit(0);
+    }
+
+
+    /**
+     * Runs one phase and prints a row per endpoint, plus a total row if several endpoints ran
+     * @param target    Application under test
+     * @param mix       Endpoint weights
+     * @param clients   Number of client threads
+     * @param seconds   Phase length
+     * @param out       Where to print results, null for a warm-up
+     */
+    private static void run(Target target, Map<Endpoint, Integer> mix, int clients, int seconds, PrintStream out) throws Exception {
+        Map<Endpoint, LatencyHistogram> latency = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+        LatencyHistogram total = new LatencyHistogram();
+        for(Endpoint endpoint : mix.keySet()) {
+            latency.put(endpoint, new LatencyHistogram());
+            errors.put(endpoint, new AtomicLong());
+        }
+
+        Endpoint[] weighted = weighted(mix);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < clients; i++) {
+            long seed = i;
+            threads.add(new Thread(() -> new Client(target, new Random(seed)).run(weighted, deadline, latency, total, errors), "load-client-" + i));
+        }
+        Set<Long> clientIds = new HashSet<>();
+        for(Thread thread : threads) {
+            clientIds.add(thread.getId());
+        }
+
+        Usage before = Usage.read(clientIds);
+        long start = System.nanoTime();
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        HttpLoad.join(threads);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Usage used = Usage.read(clientIds).minus(before);
+
+        if(out == null) {
+            return;
+        }
+
+        long requests = total.getCount();
+        long totalErrors = 0;
+
+        for(Endpoint endpoint : mix.keySet()) {
+            totalErrors += errors.get(endpoint).get();
+        }
+
+        for(Endpoint endpoint : mix.keySet()) {
+            LatencyHistogram histogram = latency.get(endpoint);
+
+            // with a mix, GC and allocation are shared out by request count
+            double share = requests == 0 ? 0 : histogram.getCount() / (double) requests;
+            row(out, endpoint.name().toLowerCase(), histogram, errors.get(endpoint).get(), elapsed, used, share, mix.size() > 1);
+        }
+
+        if(mix.size() > 1) {
+            row(out, "total", total, totalErrors, elapsed, used, 1, false);
+        }
+    }
+
+    private static void header() {
+        System.out.printf("%-10s %9s %9s %9s %9s %9s %9s %8s %9s %10s %9s%n",
+                "endpoint", "requests", "rps", "p50", "p90", "p99", "p999", "errors", "gc ms/s", "alloc MB/s", "KB/req");
+    }
+
+    private static void row(PrintStream out, String name, LatencyHistogram histogram, long errors, double elapsed,
+                            Usage used, double share, boolean estimated) {
+        long count = histogram.getCount();
+
+        out.printf("%-10s %9d %9.0f %8.1fms %8.1fms %8.1fms %8.1fms %8d %9.1f %10.1f %9.1f%s%n",
+                name, count, count / elapsed,
+                HttpLoad.millis(histogram.valueAtQuantile(0.5)),
+                HttpLoad.millis(histogram.valueAtQuantile(0.9)),
+                HttpLoad.millis(histogram.valueAtQuantile(0.99)),
+                HttpLoad.millis(histogram.valueAtQuantile(0.999)),
+                errors,
+                used.gcMillis * share / elapsed,
+                used.allocated * share / elapsed / 1e6,
+                count == 0 ? 0 : used.allocated * share / count / 1e3,
+                estimated ? "  (share of mix)" : "");
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+
+        for(String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+
+            if(weight > 0) {
+                weights.put(Endpoint.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+        }
+
+        return weights;
+    }
+
+    /**
+     * Expands weights into a table clients pick from uniformly
+     */
+    private static Endpoint[] weighted(Map<Endpoint, Integer> mix) {
+        List<Endpoint> table = new ArrayList<>();
+
+        for(Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            for(int i = 0; i < entry.getValue(); i++) {
+                table.add(entry.getKey());
+            }
+        }
+
+        return table.toArray(new Endpoint[0]);
+    }
+
+
+    /**
+     * Keeps test configurations out of the application's component scan, as a Spring test would
+     */
+    private static class TestConfigurationFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader reader, MetadataReaderFactory factory) {
+            return reader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+
+
+    /**
+     * Base URL and seeded data of the application under test
+     */
+    private static class Target {
+        final String base;
+        final List<String> publicIds;
+        final List<String> usernames;
+
+        Target(String base, LoadTestCorpus corpus) {
+            this.base = base;
+            this.publicIds = corpus.getPublicIds();
+            this.usernames = corpus.getUsernames();
+        }
+    }
+
+
+    /**
+     * One closed-loop client. Logs in once as a random seeded user so it can add dumps.
+     */
+    private static class Client {
+        private final Target target;
+        private final Random rnd;
+        private final byte[] buffer = new byte[8192];
+        private String username;
+        private String jwt;
+
+        Client(Target target, Random rnd) {
+            this.target = target;
+            this.rnd = rnd;
+        }
+
+        void run(Endpoint[] weighted, long deadline, Map<Endpoint, LatencyHistogram> latency, LatencyHistogram total,
+                 Map<Endpoint, AtomicLong> errors) {
+            while(System.nanoTime() < deadline) {
+                Endpoint endpoint = weighted[rnd.nextInt(weighted.length)];
+                long start = System.nanoTime();
+
+                try {
+                    if(!send(endpoint)) {
+                        errors.get(endpoint).incrementAndGet();
+                    }
+                }
+                catch(IOException e) {
+                    errors.get(endpoint).incrementAndGet();
+                }
+
+                long elapsed = System.nanoTime() - start;
+                latency.get(endpoint).record(elapsed);
+                total.record(elapsed);
+            }
+        }
+
+        /**
+         * @return  TRUE on a 2xx response
+         */
+        private boolean send(Endpoint endpoint) throws IOException {
+            switch(endpoint) {
+                case VIEW:
+                    return get("/api/dumps/view/" + popular()) != null;
+                case DOWNLOAD:
+                    return get("/api/dumps/view/" + popular() + "?download=true") != null;
+                case RECENT:
+                    return get("/api/dumps/recent") != null;
+                case SEARCH:
+                    String term = LoadTestCorpus.TITLE_WORDS[rnd.nextInt(LoadTestCorpus.TITLE_WORDS.length)];
+                    return get("/api/dumps/search?page=0&limit=20&title=" + term) != null;
+                case LOGIN:
+                    return login(target.usernames.get(rnd.nextInt(target.usernames.size())));
+                case ADD:
+                    if(jwt == null && !login(target.usernames.get(rnd.nextInt(target.usernames.size())))) {
+                        return false;
+                    }
+                    return post("/api/dumps/add", dump());
+                default:
+                    throw new IllegalArgumentException(endpoint.name());
+            }
+        }
+
+        private boolean login(String user) throws IOException {
+            String body = get("/api/users/login?username=" + user + "&password=" + LoadTestCorpus.password(user));
+
+            if(body == null) {
+                return false;
+            }
+
+            username = user;
+            jwt = mapper.readTree(body).get("jwt").asText();
+            return true;
+        }
+
+        /**
+         * Picks a seeded dump, favouring a small hot set the way real traffic favours freshly shared links
+         */
+        private String popular() {
+            int index = (int) (target.publicIds.size() * Math.pow(rnd.nextDouble(), 4));
+            return target.publicIds.get(index);
+        }
+
+        private byte[] dump() throws IOException {
+            int size = (int) Math.min(262144, 2048 * Math.exp(1.2 * rnd.nextGaussian()));
+
+            Map<String, Object> dump = new HashMap<>();
+            dump.put("username", username);
+            dump.put("title", "load test " + LoadTestCorpus.TITLE_WORDS[rnd.nextInt(LoadTestCorpus.TITLE_WORDS.length)]);
+            dump.put("contents", Corpus.text(Math.max(16, size), rnd));
+            dump.put("exposure", "PUBLIC");
+            dump.put("expiration", 0);
+            dump.put("type", "text");
+
+            return mapper.writeValueAsBytes(dump);
+        }
+
+        /**
+         * @return  Response body, null if the response wasn't 2xx
+         */
+        private String get(String path) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(target.base + path).openConnection();
+            connection.setReadTimeout(30000);
+
+            return read(connection);
+        }
+
+        private boolean post(String path, byte[] body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(target.base + path).openConnection();
+            connection.setReadTimeout(30000);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + jwt);
+
+            try(OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            return read(connection) != null;
+        }
+
+        private String read(HttpURLConnection connection) throws IOException {
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            StringBuilder body = new StringBuilder();
+
+            if(in != null) {
+                try(InputStream stream = in) {
+                    int n;
+                    while((n = stream.read(buffer)) > 0) {
+                        // drain so the connection is reused; only small bodies are kept
+                        if(body.length() < 4096) {
+                            body.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+            }
+
+            return status >= 200 && status < 300 ? body.toString() : null;
+        }
+    }
+
+
+    /**
+     * Cumulative GC time and allocation of the JVM, excluding the load clients
+     */
+    private static class Usage {
+        final long gcMillis;
+        final long allocated;
+
+        Usage(long gcMillis, long allocated) {
+            this.gcMillis = gcMillis;
+            this.allocated = allocated;
+        }
+
+        static Usage read(Set<Long> excluded) {
+            long gc = 0;
+            for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gc += Math.max(0, bean.getCollectionTime());
+            }
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocated = 0;
+            for(long id : threads.getAllThreadIds()) {
+                if(!excluded.contains(id)) {
+                    allocated += Math.max(0, threads.getThreadAllocatedBytes(id));
+                }
+            }
+
+            return new Usage(gc, allocated);
+        }
+
+        Usage minus(Usage before) {
+            return new Usage(gcMillis - before.gcMillis, allocated - before.allocated);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.Enumerations.Exposure;
+import com.dump.service.objects.Dump;
+import com.dump.service.objects.User;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.utils.Hashing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Seeds the embedded database of the loadtest profile with a synthetic corpus of users and dumps before the
+ * application reports ready. Everything is drawn from one seeded Random, so a given configuration always
+ * produces the same corpus.
+ *
+ * Dump sizes are log-normal, which matches pasted logs and stack traces far better than a uniform spread:
+ * most dumps are a few KB and a long tail reaches hundreds of KB.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestCorpus implements ApplicationRunner {
+
+    /**
+     * Words titles are built from, and which searches look for
+     */
+    public static final String[] TITLE_WORDS = {
+            "error", "stacktrace", "config", "build", "log", "crash", "timeout", "deploy", "query", "dump",
+            "server", "client", "request", "response", "memory", "thread", "gc", "startup", "test", "debug"
+    };
+
+    private static final int BATCH = 500;
+    private static final String ID_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Autowired
+    private DumpRepository dumpRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${dump.loadtest.seed:42}")
+    private long seed;
+
+    @Value("${dump.loadtest.users:500}")
+    private int users;
+
+    @Value("${dump.loadtest.dumps:10000}")
+    private int dumps;
+
+    @Value("${dump.loadtest.size-median:2048}")
+    private int sizeMedian;
+
+    @Value("${dump.loadtest.size-sigma:1.2}")
+    private double sizeSigma;
+
+    @Value("${dump.loadtest.size-min:16}")
+    private int sizeMin;
+
+    @Value("${dump.loadtest.size-max:262144}")
+    private int sizeMax;
+
+    @Value("${dump.loadtest.unlisted:0.15}")
+    private double unlisted;
+
+    @Value("${dump.loadtest.private:0.05}")
+    private double hidden;
+
+    @Value("${dump.loadtest.expiring:0.2}")
+    private double expiring;
+
+    @Value("${dump.loadtest.expired:0.05}")
+    private double expired;
+
+    private final List<String> usernames = new ArrayList<>();
+    private final List<String> publicIds = new ArrayList<>();
+    private long contentBytes;
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Random rnd = new Random(seed);
+        long start = System.nanoTime();
+
+        List<User> userBatch = new ArrayList<>();
+        for(int i = 0; i < users; i++) {
+            User user = new User();
+            user.setUsername(username(i));
+            user.setPassword(password(username(i)));
+            user.setEmail(username(i) + "@example.com");
+            user.setViews(0);
+            user.setJoined(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(rnd.nextInt(1000))));
+            userBatch.add(user);
+            usernames.add(user.getUsername());
+
+            if(userBatch.size() == BATCH) {
+                userRepository.save(userBatch);
+                userBatch.clear();
+            }
+        }
+        userRepository.save(userBatch);
+
+        long now = System.currentTimeMillis();
+        List<Dump> dumpBatch = new ArrayList<>();
+
+        for(int i = 0; i < dumps; i++) {
+            Dump dump = new Dump();
+            dump.setPublicId(publicId(rnd));
+            dump.setUsername(rnd.nextInt(10) == 0 ? "anonymous" : usernames.get(rnd.nextInt(users)));
+            dump.setDateTime(new Date(now - TimeUnit.MINUTES.toMillis(rnd.nextInt(90 * 24 * 60))));
+            dump.setModified(dump.getDateTime());
+            dump.setType("text");
+            dump.setViews(rnd.nextInt(1000));
+            dump.setTitle(title(rnd));
+            dump.setContents(Corpus.text(size(rnd), rnd));
+            dump.setContentHash(Hashing.sha256(dump.getContents()));
+
+            double exposure = rnd.nextDouble();
+            dump.setExposure(exposure < hidden ? Exposure.PRIVATE : exposure < hidden + unlisted ? Exposure.UNLISTED : Exposure.PUBLIC);
+
+            // Date(0) is what the client sends for "never expires"
+            double expiration = rnd.nextDouble();
+            if(expiration < expired) {
+                dump.setExpiration(new Date(now - TimeUnit.HOURS.toMillis(1 + rnd.nextInt(24 * 30))));
+            }
+            else if(expiration < expired + expiring) {
+                dump.setExpiration(new Date(now + TimeUnit.HOURS.toMillis(1 + rnd.nextInt(24 * 30))));
+            }
+            else {
+                dump.setExpiration(new Date(0));
+            }
+
+            dumpBatch.add(dump);
+            publicIds.add(dump.getPublicId());
+            contentBytes += dump.getContents().length();
+
+            if(dumpBatch.size() == BATCH) {
+                dumpRepository.save(dumpBatch);
+                dumpBatch.clear();
+            }
+        }
+        dumpRepository.save(dumpBatch);
+
+        System.out.printf("corpus: %d users, %d dumps, %.1f MB of contents, seeded in %.1fs%n",
+                users, dumps, contentBytes / 1e6, (System.nanoTime() - start) / 1e9);
+    }
+
+
+    /**
+     * @return  Usernames of every seeded user
+     */
+    public List<String> getUsernames() {
+        return Collections.unmodifiableList(usernames);
+    }
+
+
+    /**
+     * @return  Public IDs of every seeded Dump, in insertion order
+     */
+    public List<String> getPublicIds() {
+        return Collections.unmodifiableList(publicIds);
+    }
+
+
+    /**
+     * @param username  Seeded username
+     * @return  Password of the user
+     */
+    public static String password(String username) {
+        return "pw-" + username;
+    }
+
+
+    private static String username(int i) {
+        return "user" + i;
+    }
+
+    private static String publicId(Random rnd) {
+        char[] id = new char[10];
+        for(int i = 0; i < id.length; i++) {
+            id[i] = ID_CHARS.charAt(rnd.nextInt(ID_CHARS.length()));
+        }
+        return new String(id);
+    }
+
+    private static String title(Random rnd) {
+        int words = 2 + rnd.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < words; i++) {
+            if(i > 0) {
+                sb.append(' ');
+            }
+            sb.append(TITLE_WORDS[rnd.nextInt(TITLE_WORDS.length)]);
+        }
+
+        return sb.toString();
+    }
+
+    private int size(Random rnd) {
+        double size = sizeMedian * Math.exp(sizeSigma * rnd.nextGaussian());
+        return (int) Math.max(sizeMin, Math.min(sizeMax, size));
+    }
+}
@@ -0,0 +1,126 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.ExecutorConfig;
+import com.dump.service.caching.EntityCaches;
+import com.dump.service.FastPathConfig;
+import com.dump.service.WebConfig;
+import com.dump.service.admission.ConcurrencyLimiter;
+import com.dump.service.controllers.DumpAPIController;
+import com.dump.service.controllers.MetricsController;
+import com.dump.service.executors.AsyncResponses;
+import com.dump.service.lists.ListVersions;
+import com.dump.service.live.LiveDumps;
+import com.dump.service.loading.CoalescingLoader;
+import com.dump.service.metrics.InstrumentationAspect;
+import com.dump.service.objects.Dump;
+import com.dump.service.repositories.DumpRepository;
+import com.dump.service.repositories.DumpRevisionRepository;
+import com.dump.service.repositories.ListVersionRepository;
+import com.dump.service.repositories.UserAvatarRepository;
+import com.dump.service.repositories.UserRepository;
+import com.dump.service.revisions.RevisionStore;
+import com.dump.service.trending.Trending;
+import com.dump.service.utils.Auth;
+import com.dump.service.routing.ReadYourWrites;
+import com.dump.service.utils.DefaultAvatar;
+import com.dump.service.views.UniqueViewers;
+import com.dump.service.views.ViewCounter;
+import org.mockito.Mockito;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+import java.util.Date;
+
+import static org.mockito.Matchers.anyString;
+
+
+/**
+ * DumpAPIController and the fast path with simulated repositories and no database, for load tests.
+ * Dump lookups sleep for {@link #dbLatency} milliseconds to simulate a slow database. A test configuration so
+ * component scans in the other tests don't pick up its mocked repositories.
+ */
+@TestConfiguration
+@EnableAutoConfiguration(exclude = { DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class })
+@Import({ WebConfig.class, ExecutorConfig.class, FastPathConfig.class, AsyncResponses.class, DumpAPIController.class,
+        MetricsController.class, InstrumentationAspect.class, ViewCounter.class, DefaultAvatar.class, CoalescingLoader.class,
+        ListVersions.class, ReadYourWrites.class, ConcurrencyLimiter.class })
+public class MockedApplication {
+
+    static volatile long dbLatency;
+
+    @Bean
+    public DumpRepository dumpRepository() {
+        DumpRepository repository = Mockito.mock(DumpRepository.class);
+
+        Mockito.when(repository.findByPublicId(anyString())).thenAnswer(invocation -> {
+            if(dbLatency > 0) {
+                Thread.sleep(dbLatency);
+            }
+
+            Dump dump = new Dump();
+            dump.setPublicId("aaaa");
+            dump.setUsername("");
+            dump.setTitle("load test");
+            dump.setContents("contents");
+            dump.setExpiration(new Date(0));
+            dump.setViews(0);
+            return dump;
+        });
+
+        return repository;
+    }
+
+    @Bean
+    public UserRepository userRepository() {
+        return Mockito.mock(UserRepository.class);
+    }
+
+    @Bean
+    public UserAvatarRepository userAvatarRepository() {
+        return Mockito.mock(UserAvatarRepository.class);
+    }
+
+    @Bean
+    public EntityCaches entityCaches() {
+        return Mockito.mock(EntityCaches.class);
+    }
+
+    @Bean
+    public Auth auth() {
+        return Mockito.mock(Auth.class);
+    }
+
+    @Bean
+    public DumpRevisionRepository dumpRevisionRepository() {
+        return Mockito.mock(DumpRevisionRepository.class);
+    }
+
+    @Bean
+    public ListVersionRepository listVersionRepository() {
+        return Mockito.mock(ListVersionRepository.class);
+    }
+
+    @Bean
+    public RevisionStore revisionStore() {
+        return Mockito.mock(RevisionStore.class);
+    }
+
+    @Bean
+    public UniqueViewers uniqueViewers() {
+        return Mockito.mock(UniqueViewers.class);
+    }
+
+    @Bean
+    public Trending trending() {
+        return Mockito.mock(Trending.class);
+    }
+
+    @Bean
+    public LiveDumps liveDumps() {
+        return Mockito.mock(LiveDumps.class);
+    }
+}
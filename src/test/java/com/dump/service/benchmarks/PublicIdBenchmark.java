@@ -0,0 +1,37 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.controllers.DumpAPIController;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures DumpAPIController.genPublicId, which runs once or more for every new Dump
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicIdBenchmark {
+
+    private MethodHandle genPublicId;
+
+    @Setup
+    public void setup() throws Exception {
+        // private helper, called through a bound handle so the controller stays untouched
+        Method method = DumpAPIController.class.getDeclaredMethod("genPublicId");
+        method.setAccessible(true);
+        genPublicId = MethodHandles.lookup().unreflect(method).bindTo(new DumpAPIController());
+    }
+
+    @Benchmark
+    public String genPublicId() throws Throwable {
+        return (String) genPublicId.invokeExact();
+    }
+}
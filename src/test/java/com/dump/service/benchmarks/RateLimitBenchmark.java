@@ -0,0 +1,115 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.ratelimit.RateLimit;
+import com.dump.service.ratelimit.RateLimitFilter;
+import com.dump.service.ratelimit.TokenBuckets;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the per-request cost of RateLimitFilter: passing an unlimited request through, admitting requests
+ * of many clients, refusing an abusive client, and a bucket shared by several threads. The raw bucket table
+ * is measured over a million clients, as many as its default size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitBenchmark {
+
+    private static final int CLIENTS = 4096;
+    private static final int TABLE_CLIENTS = 1 << 20;
+
+    private static final FilterChain CHAIN = (request, response) -> {};
+
+    private RateLimitFilter filter;
+    private MockHttpServletRequest unlimited;
+    private MockHttpServletRequest[] clients;
+    private MockHttpServletRequest abusive;
+    private MockHttpServletRequest shared;
+
+    private TokenBuckets buckets;
+    private RateLimit limit;
+    private long[] keys;
+    private long origin;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        filter = new RateLimitFilter(new TokenBuckets(TABLE_CLIENTS, 64));
+        filter.limit("POST", "/api/dumps/add", new RateLimit("add", 1e6, 1000));
+        filter.limit("GET", "/api/users/login", new RateLimit("login", 0.01, 1));
+        filter.limit("GET", "/api/dumps/search", new RateLimit("search", 1e6, 1000));
+
+        unlimited = request("GET", "/api/dumps/view/aaaa", "10.0.0.1");
+
+        clients = new MockHttpServletRequest[CLIENTS];
+        for(int i = 0; i < CLIENTS; i++) {
+            clients[i] = request("POST", "/api/dumps/add", "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF));
+            clients[i].addHeader("Authorization", "Bearer token-" + i);
+        }
+
+        abusive = request("GET", "/api/users/login", "10.0.0.2");
+        abusive.setParameter("username", "josh");
+
+        shared = request("GET", "/api/dumps/search", "10.0.0.3");
+
+        buckets = new TokenBuckets(TABLE_CLIENTS, 64);
+        limit = new RateLimit("benchmark", 1e6, 1000);
+        keys = new long[TABLE_CLIENTS];
+        for(int i = 0; i < TABLE_CLIENTS; i++) {
+            keys[i] = ThreadLocalRandom.current().nextLong();
+        }
+        origin = System.nanoTime();
+    }
+
+    @Benchmark
+    public int unlimited() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(unlimited, response, CHAIN);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int admitted() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(clients[next++ & (CLIENTS - 1)], response, CHAIN);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int refused() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(abusive, response, CHAIN);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int contended() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(shared, response, CHAIN);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public long acquireMillionClients() {
+        return buckets.acquire(keys[next++ & (TABLE_CLIENTS - 1)], limit, (System.nanoTime() - origin) / 1000 + 1);
+    }
+
+
+    private static MockHttpServletRequest request(String method, String path, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
@@ -0,0 +1,112 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.Enumerations.Exposure;
+import com.dump.service.objects.Dump;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the /search substring match over a synthetic corpus, both as a scan over loaded Dumps and as
+ * the LIKE '%term%' query DumpRepository issues, against an in-memory H2 database. "timeout" matches
+ * nearly every Dump, "needle" one in a hundred and "missing" none, which forces a full scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int CONTENT_SIZE = 4096;
+    private static final int PAGE = 20;
+
+    @Param({"1000", "10000"})
+    public int corpusSize;
+
+    @Param({"timeout", "needle", "missing"})
+    public String term;
+
+    private Dump[] corpus;
+    private Connection connection;
+    private PreparedStatement query;
+
+    @Setup
+    public void setup() throws SQLException {
+        Random rnd = new Random(1);
+
+        corpus = new Dump[corpusSize];
+        for(int i = 0; i < corpusSize; i++) {
+            corpus[i] = Corpus.dump("d" + i, CONTENT_SIZE, rnd);
+            corpus[i].setId(i);
+            if(i % 100 == 0) {
+                corpus[i].setContents(corpus[i].getContents() + " needle");
+            }
+        }
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:search" + corpusSize + term);
+        try(Statement ddl = connection.createStatement()) {
+            ddl.execute("create table dump (id int primary key, exposure int, title varchar(255), contents clob)");
+        }
+        try(PreparedStatement insert = connection.prepareStatement("insert into dump values (?, ?, ?, ?)")) {
+            for(Dump dump : corpus) {
+                insert.setInt(1, dump.getId());
+                insert.setInt(2, dump.getExposure().ordinal());
+                insert.setString(3, dump.getTitle());
+                insert.setString(4, dump.getContents());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        // same shape as findByExposureAndTitleContainsAndContentsContainsOrderByIdDesc
+        query = connection.prepareStatement("select id, title from dump where exposure = ? and title like ? "
+                + "and contents like ? order by id desc limit " + PAGE);
+    }
+
+    @TearDown
+    public void teardown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Dump> scan() {
+        List<Dump> page = new ArrayList<>(PAGE);
+
+        for(int i = corpus.length - 1; i >= 0 && page.size() < PAGE; i--) {
+            Dump dump = corpus[i];
+            if(dump.getTitle().contains("benchmark") && dump.getContents().contains(term)) {
+                page.add(dump);
+            }
+        }
+
+        return page;
+    }
+
+    @Benchmark
+    public int like() throws SQLException {
+        query.setInt(1, Exposure.PUBLIC.ordinal());
+        query.setString(2, "%benchmark%");
+        query.setString(3, "%" + term + "%");
+
+        int found = 0;
+        try(ResultSet rs = query.executeQuery()) {
+            while(rs.next()) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+}
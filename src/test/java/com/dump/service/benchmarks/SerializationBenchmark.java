@@ -0,0 +1,83 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.objects.Dump;
+import com.dump.service.serialization.Serialization;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the old per-request ObjectMapper + String path of DumpAPIController.view with the shared,
+ * streaming serializers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int contentSize;
+
+    private Dump dump;
+    private Dump[] dumps;
+    private ObjectWriter dumpWriter;
+    private ObjectWriter listWriter;
+    private ByteArrayOutputStream sink;
+
+    @Setup
+    public void setup() {
+        dump = Corpus.dump("aaaaaa", contentSize, new Random(1));
+
+        dumps = new Dump[10];
+        for(int i = 0; i < dumps.length; i++) {
+            dumps[i] = Corpus.dump("dump" + i, contentSize, new Random(i));
+        }
+
+        ObjectMapper shared = Serialization.createMapper();
+        dumpWriter = shared.writerFor(Dump.class);
+        listWriter = shared.writerFor(Dump[].class);
+        sink = new ByteArrayOutputStream(contentSize * 12);
+    }
+
+    /**
+     * Old view path: new ObjectMapper per request, whole document built as a String, then encoded
+     */
+    @Benchmark
+    public int viewPerRequestMapper() throws IOException {
+        String json = new ObjectMapper().writeValueAsString(dump);
+        sink.reset();
+        sink.write(json.getBytes(StandardCharsets.UTF_8));
+        return sink.size();
+    }
+
+    /**
+     * New view path: shared writer streaming to the output stream
+     */
+    @Benchmark
+    public int viewSharedStreaming() throws IOException {
+        sink.reset();
+        dumpWriter.writeValue((OutputStream) sink, dump);
+        return sink.size();
+    }
+
+    /**
+     * New list path: shared writer streaming ten Dumps
+     */
+    @Benchmark
+    public int listSharedStreaming() throws IOException {
+        sink.reset();
+        listWriter.writeValue((OutputStream) sink, dumps);
+        return sink.size();
+    }
+}
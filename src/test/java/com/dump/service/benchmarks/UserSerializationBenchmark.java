@@ -0,0 +1,63 @@
+package com.dump.service.benchmarks;
+
+import com.dump.service.objects.User;
+import com.dump.service.serialization.Serialization;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures User JSON serialization with the shared writer. The avatar is written as base64, so its size
+ * dominates profile responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    @Param({"0", "8192", "65536"})
+    public int avatarSize;
+
+    private User user;
+    private ObjectWriter writer;
+    private ByteArrayOutputStream sink;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1);
+
+        user = new User();
+        user.setId(42);
+        user.setUsername("josh");
+        user.setEmail("josh@example.com");
+        user.setWebsite("https://example.com");
+        user.setViews(1234);
+        user.setJoined(new Date());
+
+        if(avatarSize > 0) {
+            byte[] avatar = new byte[avatarSize];
+            rnd.nextBytes(avatar);
+            user.setAvatar(avatar);
+        }
+
+        writer = Serialization.createMapper().writerFor(User.class);
+        sink = new ByteArrayOutputStream(avatarSize * 2 + 512);
+    }
+
+    @Benchmark
+    public int user() throws IOException {
+        sink.reset();
+        writer.writeValue((OutputStream) sink, user);
+        return sink.size();
+    }
+}